@@ -0,0 +1,107 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.content.Intent;
+import android.os.Parcel;
+import android.util.Log;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+
+import static org.junit.Assert.*;
+
+/**
+ * Measures how many bytes the detail Intent puts through Binder, with every field as an
+ * extra (as the search screens used to send it) and with only a ResultStore token.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ResultStoreParcelSizeTest {
+    private static final String TAG = "ParcelSizeTest";
+
+    @Test
+    public void tokenIntentIsSmallAndConstantSize() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        PlantItem plant = largePlant();
+
+        // Before: the extras PlantSearchActivity.showPlantDetails used to send
+        Intent extrasIntent = new Intent(context, PlantDetailActivity.class);
+        extrasIntent.putExtra("plantName", plant.getPlantName());
+        extrasIntent.putExtra("scientificName", plant.getScientificName());
+        extrasIntent.putExtra("family", plant.getFamily());
+        extrasIntent.putExtra("habitat", plant.getHabitat());
+        extrasIntent.putExtra("uses", plant.getUses());
+        extrasIntent.putExtra("confidence", 0.95);
+        extrasIntent.putExtra("isRealIdentification", false);
+        extrasIntent.putExtra("isFromSearchRoute", true);
+        extrasIntent.putExtra("databaseUses", plant.getUses());
+        extrasIntent.putExtra("databaseMedicinalProperties", plant.getMedicinalProperties());
+        extrasIntent.putExtra("databaseChemicalComponents", plant.getChemicalComponents());
+        extrasIntent.putStringArrayListExtra("dbImageUrls", new ArrayList<>(plant.getImageUrls()));
+        extrasIntent.putStringArrayListExtra("probablePlants", new ArrayList<String>());
+        extrasIntent.putExtra("hasDbImages", false);
+
+        // After: only the token
+        Intent tokenIntent = new Intent(context, PlantDetailActivity.class);
+        tokenIntent.putExtra(ResultStore.EXTRA_TOKEN, ResultStore.getInstance(context).put(plant));
+
+        int extrasBytes = parcelSize(extrasIntent);
+        int tokenBytes = parcelSize(tokenIntent);
+        long extrasNanos = parcelNanos(extrasIntent);
+        long tokenNanos = parcelNanos(tokenIntent);
+        Log.i(TAG, "Extras intent: " + extrasBytes + " bytes, " + extrasNanos / 1000 + " us to parcel");
+        Log.i(TAG, "Token intent:  " + tokenBytes + " bytes, " + tokenNanos / 1000 + " us to parcel");
+
+        assertTrue("token intent should stay under 1 KB, was " + tokenBytes, tokenBytes < 1024);
+        assertTrue(tokenBytes * 10 < extrasBytes);
+        assertSame(plant, ResultStore.getInstance(context).get(tokenIntent.getStringExtra(ResultStore.EXTRA_TOKEN)));
+    }
+
+    private static int parcelSize(Intent intent) {
+        Parcel parcel = Parcel.obtain();
+        try {
+            intent.writeToParcel(parcel, 0);
+            return parcel.dataSize();
+        } finally {
+            parcel.recycle();
+        }
+    }
+
+    private static long parcelNanos(Intent intent) {
+        long total = 0;
+        for (int i = 0; i < 20; i++) {
+            Parcel parcel = Parcel.obtain();
+            long start = System.nanoTime();
+            intent.writeToParcel(parcel, 0);
+            total += System.nanoTime() - start;
+            parcel.recycle();
+        }
+        return total / 20;
+    }
+
+    // Long texts like the generated entries the backend returns
+    private static PlantItem largePlant() {
+        StringBuilder uses = new StringBuilder();
+        StringBuilder chemicals = new StringBuilder();
+        for (int i = 0; i < 150; i++) {
+            uses.append("Leaves are used for skin conditions and the bark decoction for fever, entry ")
+                    .append(i).append(". ");
+            chemicals.append("Compound ").append(i).append(", ");
+        }
+        PlantItem plant = new PlantItem("Neem", "Azadirachta indica", "Meliaceae");
+        plant.setHabitat("Tropical and subtropical regions, plains and foothills up to 1500 m");
+        plant.setUses(uses.toString());
+        plant.setMedicinalProperties(uses.toString());
+        plant.setChemicalComponents(chemicals.toString());
+        ArrayList<String> images = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            images.add("https://res.cloudinary.com/herbai/image/upload/neem_" + i + ".jpg");
+        }
+        plant.setImageUrls(images);
+        return plant;
+    }
+}
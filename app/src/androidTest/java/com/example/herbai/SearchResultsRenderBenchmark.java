@@ -0,0 +1,172 @@
+package com.example.herbai;
+
+import android.app.Instrumentation;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.util.Log;
+import android.view.ContextThemeWrapper;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.LinearLayout;
+import android.widget.ScrollView;
+import android.widget.TextView;
+
+import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Main-thread time per result update with 200 results: the old hand-built CardViews in a
+ * LinearLayout (everything rebuilt on every query) against PlantAdapter in a RecyclerView
+ * (diffed in the background, only visible cards bound). Each frame is the update plus
+ * measure, layout and draw of a phone-sized screen.
+ */
+@RunWith(AndroidJUnit4.class)
+public class SearchResultsRenderBenchmark {
+    private static final String TAG = "RenderBenchmark";
+    private static final int RESULT_COUNT = 200;
+    private static final int UPDATES = 10;
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 2000;
+
+    @Test
+    public void recyclerViewUpdatesAreCheaperThanRebuiltCards() throws Exception {
+        Instrumentation instrumentation = InstrumentationRegistry.getInstrumentation();
+        Context context = new ContextThemeWrapper(instrumentation.getTargetContext(), R.style.Theme_HerbAi);
+        List<List<PlantItem>> resultSets = resultSets();
+        Bitmap bitmap = Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+
+        // Before: every query removes all cards and builds RESULT_COUNT new ones
+        long[] legacyNanos = new long[UPDATES];
+        ScrollView[] scrollView = new ScrollView[1];
+        LinearLayout[] legacyLayout = new LinearLayout[1];
+        instrumentation.runOnMainSync(() -> {
+            scrollView[0] = new ScrollView(context);
+            legacyLayout[0] = new LinearLayout(context);
+            legacyLayout[0].setOrientation(LinearLayout.VERTICAL);
+            scrollView[0].addView(legacyLayout[0]);
+        });
+        for (int i = 0; i < UPDATES; i++) {
+            List<PlantItem> plants = resultSets.get(i % resultSets.size());
+            int update = i;
+            instrumentation.runOnMainSync(() -> {
+                long start = System.nanoTime();
+                legacyLayout[0].removeAllViews();
+                for (int position = 0; position < plants.size(); position++) {
+                    legacyLayout[0].addView(legacyCard(context, plants.get(position), position + 1));
+                }
+                frame(scrollView[0], canvas);
+                legacyNanos[update] = System.nanoTime() - start;
+            });
+        }
+
+        // After: the list is diffed off the main thread, then only the visible cards are bound
+        long[] recyclerNanos = new long[UPDATES];
+        RecyclerView[] recyclerView = new RecyclerView[1];
+        PlantAdapter adapter = new PlantAdapter(plant -> { });
+        instrumentation.runOnMainSync(() -> {
+            recyclerView[0] = new RecyclerView(context);
+            recyclerView[0].setLayoutManager(new LinearLayoutManager(context));
+            recyclerView[0].setAdapter(adapter);
+        });
+        for (int i = 0; i < UPDATES; i++) {
+            List<PlantItem> plants = new ArrayList<>(resultSets.get(i % resultSets.size()));
+            CountDownLatch committed = new CountDownLatch(1);
+            long[] submitNanos = new long[1];
+            instrumentation.runOnMainSync(() -> {
+                long start = System.nanoTime();
+                adapter.submitList(plants, committed::countDown);
+                submitNanos[0] = System.nanoTime() - start;
+            });
+            assertTrue(committed.await(5, TimeUnit.SECONDS));
+            int update = i;
+            instrumentation.runOnMainSync(() -> {
+                long start = System.nanoTime();
+                frame(recyclerView[0], canvas);
+                recyclerNanos[update] = submitNanos[0] + System.nanoTime() - start;
+            });
+        }
+
+        long legacyMedian = median(legacyNanos);
+        long recyclerMedian = median(recyclerNanos);
+        Log.i(TAG, String.format("%d results, median frame: cards %.2f ms (first %.2f ms), RecyclerView %.2f ms (first %.2f ms)",
+                RESULT_COUNT, legacyMedian / 1e6, legacyNanos[0] / 1e6, recyclerMedian / 1e6, recyclerNanos[0] / 1e6));
+
+        assertTrue(recyclerMedian < legacyMedian);
+    }
+
+    private static void frame(View view, Canvas canvas) {
+        view.measure(View.MeasureSpec.makeMeasureSpec(WIDTH, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(HEIGHT, View.MeasureSpec.EXACTLY));
+        view.layout(0, 0, WIDTH, HEIGHT);
+        view.draw(canvas);
+    }
+
+    private static long median(long[] nanos) {
+        long[] sorted = nanos.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+
+    // Consecutive sets overlap by half, like results for a query that is being refined
+    private static List<List<PlantItem>> resultSets() {
+        List<PlantItem> all = new ArrayList<>();
+        for (int i = 0; i < RESULT_COUNT * 2; i++) {
+            PlantItem plant = new PlantItem("Plant " + i, "Genus" + i + " species" + i, "Family " + (i % 40));
+            plant.setUses("Leaves used for skin conditions, bark decoction for fever, twigs as toothbrush " + i);
+            plant.setMedicinalProperties("Anti-inflammatory and antibacterial activity, entry " + i);
+            plant.setDataSource("database");
+            all.add(plant);
+        }
+        List<List<PlantItem>> sets = new ArrayList<>();
+        for (int offset = 0; offset + RESULT_COUNT <= all.size(); offset += RESULT_COUNT / 2) {
+            sets.add(all.subList(offset, offset + RESULT_COUNT));
+        }
+        return sets;
+    }
+
+    // The card the search screens used to build per result
+    private static View legacyCard(Context context, PlantItem plant, int position) {
+        CardView cardView = new CardView(context);
+        LinearLayout.LayoutParams cardParams = new LinearLayout.LayoutParams(
+                ViewGroup.LayoutParams.MATCH_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT);
+        cardParams.setMargins(0, 0, 0, 16);
+        cardView.setLayoutParams(cardParams);
+        cardView.setCardElevation(6);
+        cardView.setRadius(12);
+        cardView.setContentPadding(16, 16, 16, 16);
+
+        LinearLayout contentLayout = new LinearLayout(context);
+        contentLayout.setOrientation(LinearLayout.VERTICAL);
+        contentLayout.addView(text(context, position + ". " + plant.getPlantName(), 18));
+        contentLayout.addView(text(context, "Scientific Name: " + plant.getScientificName(), 14));
+        contentLayout.addView(text(context, "Family: " + plant.getFamily(), 14));
+        contentLayout.addView(text(context, "Uses: " + plant.getUses(), 13));
+        contentLayout.addView(text(context, "Source: " + plant.getDataSource(), 11));
+        cardView.addView(contentLayout);
+        return cardView;
+    }
+
+    private static TextView text(Context context, String value, int size) {
+        TextView textView = new TextView(context);
+        textView.setText(value);
+        textView.setTextSize(size);
+        textView.setPadding(0, 0, 0, 4);
+        return textView;
+    }
+}
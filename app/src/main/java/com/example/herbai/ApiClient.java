@@ -0,0 +1,148 @@
+package com.example.herbai;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.ConnectionPool;
+import okhttp3.Dispatcher;
+import okhttp3.OkHttpClient;
+import okhttp3.Protocol;
+
+// Application-wide HTTP stack. Every screen shares one connection pool and dispatcher,
+// so moving between activities reuses the TLS connection to the backend instead of
+// handshaking again. Each endpoint family gets its own timeout profile.
+public class ApiClient {
+    public static final String BASE_URL = "https://serverv1-1.onrender.com/";
+    static final String USER_AGENT = "HerbAI-Android/1.0";
+
+    private static ApiClient instance;
+
+    private final String baseUrl;
+    private final OkHttpClient baseClient;
+    private final OkHttpClient predictClient;
+    private final OkHttpClient searchClient;
+    private final OkHttpClient statusClient;
+    private final OkHttpClient generateClient;
+    private final SearchResponseCache searchCache;
+    private final RequestCoalescer coalescer = new RequestCoalescer();
+
+    // Called from HerbAiApplication so the search cache can live in the app's cache dir
+    public static synchronized void init(Context context) {
+        if (instance == null) {
+            File cacheDir = new File(context.getApplicationContext().getCacheDir(), "http_search");
+            instance = new ApiClient(BASE_URL, new OkHttpClient.Builder(),
+                    new SearchResponseCache(cacheDir, SearchResponseCache.DEFAULT_MAX_BYTES));
+        }
+    }
+
+    public static synchronized ApiClient getInstance() {
+        if (instance == null) {
+            // Not initialised with a Context (e.g. in JVM tests): run without the disk cache
+            instance = new ApiClient(BASE_URL, new OkHttpClient.Builder());
+        }
+        return instance;
+    }
+
+    ApiClient(String baseUrl, OkHttpClient.Builder builder) {
+        this(baseUrl, builder, null);
+    }
+
+    ApiClient(String baseUrl, OkHttpClient.Builder builder, SearchResponseCache searchCache) {
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl : baseUrl + "/";
+        this.searchCache = searchCache;
+
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequestsPerHost(8);
+
+        baseClient = builder
+                .connectionPool(new ConnectionPool(5, 5, TimeUnit.MINUTES))
+                .dispatcher(dispatcher)
+                .protocols(Arrays.asList(Protocol.HTTP_2, Protocol.HTTP_1_1))
+                .retryOnConnectionFailure(true)
+                // First, so identical GETs share one call before the cache or the network sees them
+                .addInterceptor(coalescer)
+                .addInterceptor(chain -> chain.proceed(chain.request().newBuilder()
+                        .header("User-Agent", USER_AGENT)
+                        .build()))
+                .build();
+
+        // newBuilder() keeps the pool, dispatcher and interceptors; only the timeouts differ
+
+        // ML inference on the server can take a while, and the upload itself is the slow part on cellular
+        predictClient = baseClient.newBuilder()
+                .connectTimeout(30, TimeUnit.SECONDS)
+                .readTimeout(60, TimeUnit.SECONDS)
+                .writeTimeout(30, TimeUnit.SECONDS)
+                .build();
+
+        OkHttpClient.Builder searchBuilder = baseClient.newBuilder()
+                .connectTimeout(20, TimeUnit.SECONDS)
+                .readTimeout(20, TimeUnit.SECONDS);
+        if (searchCache != null) {
+            searchBuilder.cache(searchCache.getCache())
+                    .addInterceptor(searchCache.getApplicationInterceptor())
+                    .addNetworkInterceptor(searchCache.getNetworkInterceptor());
+        }
+        searchClient = searchBuilder.build();
+        if (searchCache != null) {
+            searchCache.setRevalidationClient(searchClient);
+        }
+
+        statusClient = baseClient.newBuilder()
+                .connectTimeout(10, TimeUnit.SECONDS)
+                .readTimeout(15, TimeUnit.SECONDS)
+                .build();
+
+        // Generation queries several external APIs before it answers
+        generateClient = baseClient.newBuilder()
+                .connectTimeout(20, TimeUnit.SECONDS)
+                .readTimeout(90, TimeUnit.SECONDS)
+                .build();
+    }
+
+    public String getBaseUrl() {
+        return baseUrl;
+    }
+
+    // Joins a path like "smart_search/Neem" onto the base URL without doubling slashes
+    public String url(String path) {
+        return baseUrl + (path.startsWith("/") ? path.substring(1) : path);
+    }
+
+    // %20 rather than + for spaces, the backend does not decode +
+    public static String smartSearchPath(String name) {
+        return "smart_search/" + name.trim().replace(" ", "%20");
+    }
+
+    public OkHttpClient getPredictClient() {
+        return predictClient;
+    }
+
+    public OkHttpClient getSearchClient() {
+        return searchClient;
+    }
+
+    public OkHttpClient getStatusClient() {
+        return statusClient;
+    }
+
+    public OkHttpClient getGenerateClient() {
+        return generateClient;
+    }
+
+    // Null when running without a Context
+    public SearchResponseCache getSearchCache() {
+        return searchCache;
+    }
+
+    public RequestCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    ConnectionPool getConnectionPool() {
+        return baseClient.connectionPool();
+    }
+}
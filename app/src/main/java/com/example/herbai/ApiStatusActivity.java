@@ -71,7 +71,7 @@ public class ApiStatusActivity extends AppCompatActivity {
         setupThemeSwitch();
         setupClickListeners();
 
-        client = new OkHttpClient();
+        client = ApiClient.getInstance().getStatusClient();
 
         // Load initial status
         loadSystemStatus();
@@ -150,15 +150,30 @@ public class ApiStatusActivity extends AppCompatActivity {
             @Override
             public void onResponse(Call call, Response response) throws IOException {
                 String responseBody = response.body().string();
+                // Read the cache size here, off the main thread
+                String cacheStats = searchCacheStats();
 
                 mainHandler.post(() -> {
                     showLoading(false);
                     parseSystemStatus(responseBody);
+                    if (cacheStats != null) {
+                        lastCheckedTextView.append("\nSearch cache: " + cacheStats);
+                    }
+                    lastCheckedTextView.append("\nCoalesced requests: "
+                            + ApiClient.getInstance().getCoalescer().getCoalescedCount());
                 });
             }
         });
     }
 
+    private String searchCacheStats() {
+        SearchResponseCache searchCache = ApiClient.getInstance().getSearchCache();
+        if (searchCache == null) {
+            return null;
+        }
+        return searchCache.getStatsSummary();
+    }
+
     private void parseSystemStatus(String responseBody) {
         try {
             JSONObject json = new JSONObject(responseBody);
@@ -1,32 +1,26 @@
 package com.example.herbai;
 
-import android.graphics.drawable.Drawable;
 import android.os.Bundle;
 import android.util.Log;
-import android.view.View;
 import android.widget.ImageView;
-import android.widget.ProgressBar;
 import android.widget.TextView;
 
-import androidx.annotation.Nullable;
 import androidx.appcompat.app.AppCompatActivity;
+import androidx.viewpager2.widget.ViewPager2;
 
-import com.bumptech.glide.Glide;
-import com.bumptech.glide.load.DataSource;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
-import com.bumptech.glide.load.engine.GlideException;
-import com.bumptech.glide.request.RequestListener;
-import com.bumptech.glide.request.RequestOptions;
-import com.bumptech.glide.request.target.Target;
-import com.github.chrisbanes.photoview.PhotoView;
+import java.util.ArrayList;
+import java.util.List;
 
 public class FullScreenImageActivity extends AppCompatActivity {
     private static final String TAG = "FullScreenImage";
+    // Pages kept ready on each side of the current one. One is enough to swipe without a
+    // blank page and holds at most three display-sized bitmaps.
+    private static final int OFFSCREEN_PAGES = 1;
 
-    private PhotoView photoView;
-    private ProgressBar progressBar;
+    private ViewPager2 imagePager;
     private TextView imageInfoTextView;
     private ImageView closeButton;
+    private List<String> imageUrls;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -39,57 +33,48 @@ public class FullScreenImageActivity extends AppCompatActivity {
     }
 
     private void initializeViews() {
-        photoView = findViewById(R.id.fullScreenImageView);
-        progressBar = findViewById(R.id.fullScreenProgressBar);
+        imagePager = findViewById(R.id.fullScreenPager);
         imageInfoTextView = findViewById(R.id.imageInfoTextView);
         closeButton = findViewById(R.id.closeButton);
     }
 
     private void loadImageData() {
-        String imageUrl = getIntent().getStringExtra("image_url");
+        // The gallery hands its whole list over through ResultStore; after a process restart
+        // only the tapped image_url is left
+        imageUrls = ResultStore.getInstance(this)
+                .getImageUrls(getIntent().getStringExtra(ResultStore.EXTRA_IMAGES_TOKEN));
+        if (imageUrls == null || imageUrls.isEmpty()) {
+            imageUrls = new ArrayList<>();
+            String imageUrl = getIntent().getStringExtra("image_url");
+            if (imageUrl != null) {
+                imageUrls.add(imageUrl);
+            }
+        }
         int imagePosition = getIntent().getIntExtra("image_position", 1);
-        int totalImages = getIntent().getIntExtra("total_images", 1);
-
-        // Set image info
-        imageInfoTextView.setText("Image " + imagePosition + " of " + totalImages);
-
-        // Show loading
-        progressBar.setVisibility(View.VISIBLE);
-
-        // Load full resolution image with a RequestListener to handle start/failure/success
-        RequestOptions requestOptions = new RequestOptions()
-                .diskCacheStrategy(DiskCacheStrategy.ALL)
-                .error(R.drawable.ic_error_image);
-
-        Glide.with(this)
-                .load(imageUrl)
-                .apply(requestOptions)
-                .listener(new RequestListener<Drawable>() {
-                    @Override
-                    public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
-                        // Hide progress and let Glide set the error drawable (because we returned false)
-                        progressBar.setVisibility(View.GONE);
-                        Log.e(TAG, "Image load failed: " + imageUrl, e);
-                        return false; // return false so Glide will handle setting the error drawable
-                    }
-
-                    @Override
-                    public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
-                        // Hide progress when image is loaded
-                        progressBar.setVisibility(View.GONE);
-                        return false; // return false so Glide will handle setting the image on the view
-                    }
-                })
-                .into(photoView);
-
-        Log.d(TAG, "Loading full screen image: " + imageUrl);
+        int thumbnailWidth = getIntent().getIntExtra("thumbnail_width", 0);
+        int thumbnailHeight = getIntent().getIntExtra("thumbnail_height", 0);
+
+        imagePager.setAdapter(new FullScreenImageAdapter(this, imageUrls, thumbnailWidth, thumbnailHeight,
+                v -> finish()));
+        imagePager.setOffscreenPageLimit(OFFSCREEN_PAGES);
+        imagePager.registerOnPageChangeCallback(new ViewPager2.OnPageChangeCallback() {
+            @Override
+            public void onPageSelected(int position) {
+                // Set image info
+                imageInfoTextView.setText("Image " + (position + 1) + " of " + imageUrls.size());
+            }
+        });
+        int start = Math.max(0, Math.min(imagePosition - 1, imageUrls.size() - 1));
+        imagePager.setCurrentItem(start, false);
+        imageInfoTextView.setText("Image " + (start + 1) + " of " + imageUrls.size());
+
+        Log.d(TAG, "Showing " + imageUrls.size() + " images, starting at " + (start + 1));
+        HerbAiGlideModule.logMemory("Full screen image opened");
     }
 
     private void setupCloseButton() {
+        // Tapping the image also closes, see FullScreenImageAdapter
         closeButton.setOnClickListener(v -> finish());
-
-        // Also allow tapping the image to close
-        photoView.setOnClickListener(v -> finish());
     }
 
     @Override
@@ -97,4 +82,12 @@ public class FullScreenImageActivity extends AppCompatActivity {
         super.onBackPressed();
         finish();
     }
+
+    @Override
+    protected void onDestroy() {
+        // Recycles every page, which clears its Glide request and closes its region decoder
+        imagePager.setAdapter(null);
+        super.onDestroy();
+        HerbAiGlideModule.logMemory("Full screen image closed");
+    }
 }
@@ -0,0 +1,135 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.util.Log;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.ImageView;
+import android.widget.ProgressBar;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.load.DataSource;
+import com.bumptech.glide.load.engine.GlideException;
+import com.bumptech.glide.request.RequestListener;
+import com.bumptech.glide.request.target.Target;
+import com.github.chrisbanes.photoview.PhotoView;
+
+import java.util.List;
+
+// Pages of FullScreenImageActivity's ViewPager2, one per gallery image. Every page is a
+// display-sized Glide load (the same request the gallery prefetches on touch), shown over
+// the gallery's thumbnail while it decodes. A page scrolled out of the pager's window is
+// cleared, which hands its bitmap back to Glide's pool for the next page to decode into.
+public class FullScreenImageAdapter extends RecyclerView.Adapter<FullScreenImageAdapter.PageViewHolder> {
+    private static final String TAG = "FullScreenImageAdapter";
+
+    private final Context context;
+    private final List<String> imageUrls;
+    private final RequestManager glide;
+    // Size of the gallery's grid cells, 0 when not opened from the gallery
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+    private final View.OnClickListener onImageTap;
+
+    public FullScreenImageAdapter(Context context, List<String> imageUrls, int thumbnailWidth,
+                                  int thumbnailHeight, View.OnClickListener onImageTap) {
+        this.context = context;
+        this.imageUrls = imageUrls;
+        this.glide = Glide.with(context);
+        this.thumbnailWidth = thumbnailWidth;
+        this.thumbnailHeight = thumbnailHeight;
+        this.onImageTap = onImageTap;
+    }
+
+    @NonNull
+    @Override
+    public PageViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_fullscreen_image, parent, false);
+        PageViewHolder holder = new PageViewHolder(view);
+        holder.photoView.setOnClickListener(onImageTap);
+        return holder;
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PageViewHolder holder, int position) {
+        String imageUrl = imageUrls.get(position);
+        holder.zoom.bind(imageUrl);
+        holder.progressBar.setVisibility(View.VISIBLE);
+
+        RequestBuilder<Drawable> request = glide.load(imageUrl)
+                .apply(HerbAiGlideModule.fullScreenOptions(context))
+                .error(R.drawable.ic_error_image);
+        if (thumbnailWidth > 0 && thumbnailHeight > 0) {
+            request = request.thumbnail(glide.load(imageUrl)
+                    .apply(HerbAiGlideModule.thumbnailOptions(thumbnailWidth, thumbnailHeight))
+                    .onlyRetrieveFromCache(true)
+                    .listener(new RequestListener<Drawable>() {
+                        @Override
+                        public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
+                            // Not cached; the spinner stays until the full image arrives
+                            return false;
+                        }
+
+                        @Override
+                        public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+                            // Something to look at already, no spinner over it
+                            holder.progressBar.setVisibility(View.GONE);
+                            return false;
+                        }
+                    }));
+        }
+
+        request.listener(new RequestListener<Drawable>() {
+            @Override
+            public boolean onLoadFailed(@Nullable GlideException e, Object model, Target<Drawable> target, boolean isFirstResource) {
+                holder.progressBar.setVisibility(View.GONE);
+                Log.e(TAG, "Image load failed: " + imageUrl, e);
+                return false; // return false so Glide will handle setting the error drawable
+            }
+
+            @Override
+            public boolean onResourceReady(Drawable resource, Object model, Target<Drawable> target, DataSource dataSource, boolean isFirstResource) {
+                holder.progressBar.setVisibility(View.GONE);
+                // Zooming past this bitmap's resolution switches to region-decoded tiles
+                holder.zoom.setBaseWidth(resource.getIntrinsicWidth());
+                return false;
+            }
+        }).into(holder.photoView);
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PageViewHolder holder) {
+        super.onViewRecycled(holder);
+        // Bitmap back to the pool, zoom tile and region decoder released
+        glide.clear(holder.photoView);
+        holder.zoom.clear();
+    }
+
+    @Override
+    public int getItemCount() {
+        return imageUrls.size();
+    }
+
+    public static class PageViewHolder extends RecyclerView.ViewHolder {
+        PhotoView photoView;
+        ImageView detailView;
+        ProgressBar progressBar;
+        TiledImageZoom zoom;
+
+        public PageViewHolder(@NonNull View itemView) {
+            super(itemView);
+            photoView = itemView.findViewById(R.id.pageImageView);
+            detailView = itemView.findViewById(R.id.pageDetailView);
+            progressBar = itemView.findViewById(R.id.pageProgressBar);
+            zoom = new TiledImageZoom(itemView.getContext(), photoView, detailView);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.herbai;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Image URLs of one plant's gallery, loaded a page at a time as the grid scrolls. Only
+// the URLs are kept; bitmaps exist for the cells on screen and a few rows ahead, so
+// memory does not grow with the number of images. A page that adds no new URLs ends
+// the gallery, which also covers a backend that ignores the offset and sends the first
+// images again. Main thread only.
+public class GalleryPager {
+    static final int PAGE_SIZE = 12;
+    static final int MIN_PAGE_SIZE = 2;
+    static final int MAX_PAGE_SIZE = 50;
+    // Hard cap on URLs per gallery
+    static final int MAX_IMAGES = 200;
+    // Start loading the next page when the user is this many images away from the end
+    static final int PREFETCH_DISTANCE = 6;
+
+    private final int pageSize;
+    private final int maxImages;
+    private final int prefetchDistance;
+
+    private final List<String> imageUrls = new ArrayList<>();
+    private final Set<String> seen = new HashSet<>();
+    // Offset of the page in flight, -1 when none
+    private int loadingOffset = -1;
+    private boolean endReached;
+
+    public GalleryPager(int pageSize) {
+        this(pageSize, MAX_IMAGES, PREFETCH_DISTANCE);
+    }
+
+    GalleryPager(int pageSize, int maxImages, int prefetchDistance) {
+        this.pageSize = clampPageSize(pageSize);
+        this.maxImages = maxImages;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    // For sizes coming from settings
+    static int clampPageSize(int pageSize) {
+        return Math.max(MIN_PAGE_SIZE, Math.min(pageSize, MAX_PAGE_SIZE));
+    }
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    // The list the adapter shows; pages are appended to it
+    public List<String> getImages() {
+        return imageUrls;
+    }
+
+    // Offset of the next page to load for the last visible position, or -1 if nothing
+    // needs loading. Marks that page as in flight until addPage() or pageFailed().
+    public int requestFor(int lastVisible) {
+        if (!hasMore() || loadingOffset >= 0 || lastVisible < imageUrls.size() - prefetchDistance) {
+            return -1;
+        }
+        loadingOffset = imageUrls.size();
+        return loadingOffset;
+    }
+
+    // Returns how many URLs were appended; 0 for a page loaded for an older offset
+    public int addPage(int offset, List<String> urls) {
+        if (offset != imageUrls.size() || (offset > 0 && offset != loadingOffset)) {
+            return 0;
+        }
+        loadingOffset = -1;
+        int added = 0;
+        for (String url : urls) {
+            if (imageUrls.size() >= maxImages) {
+                break;
+            }
+            if (url != null && seen.add(url)) {
+                imageUrls.add(url);
+                added++;
+            }
+        }
+        if (added == 0 || imageUrls.size() >= maxImages) {
+            endReached = true;
+        }
+        return added;
+    }
+
+    // The next scroll tries the same page again
+    public void pageFailed(int offset) {
+        if (offset == loadingOffset) {
+            loadingOffset = -1;
+        }
+    }
+
+    public boolean hasMore() {
+        return !endReached && !imageUrls.isEmpty();
+    }
+
+    public boolean isLoading() {
+        return loadingOffset >= 0;
+    }
+}
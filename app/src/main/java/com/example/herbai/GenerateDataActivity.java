@@ -81,7 +81,7 @@ public class GenerateDataActivity extends AppCompatActivity {
         setupThemeSwitch();
         setupClickListeners();
 
-        client = new OkHttpClient();
+        client = ApiClient.getInstance().getGenerateClient();
     }
 
     private void initializeViews() {
@@ -178,6 +178,7 @@ public class GenerateDataActivity extends AppCompatActivity {
             @Override
             public void onResponse(Call call, Response response) throws IOException {
                 String responseBody = response.body().string();
+                storeGeneratedPlant(responseBody);
 
                 mainHandler.post(() -> {
                     showLoading(false);
@@ -187,6 +188,15 @@ public class GenerateDataActivity extends AppCompatActivity {
         });
     }
 
+    // Runs on the OkHttp thread so later lookups of this plant are answered locally
+    private void storeGeneratedPlant(String responseBody) {
+        try {
+            PlantRepository.getInstance(this).putGenerateResponse(responseBody);
+        } catch (JSONException e) {
+            // parseGenerationResult reports the error to the user
+        }
+    }
+
     private void parseGenerationResult(String responseBody) {
         try {
             JSONObject json = new JSONObject(responseBody);
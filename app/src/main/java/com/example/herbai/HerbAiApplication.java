@@ -0,0 +1,12 @@
+package com.example.herbai;
+
+import android.app.Application;
+
+public class HerbAiApplication extends Application {
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        // Set up the shared HTTP stack (and its disk cache) before any activity needs it
+        ApiClient.init(this);
+    }
+}
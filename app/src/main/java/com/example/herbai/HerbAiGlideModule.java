@@ -0,0 +1,124 @@
+package com.example.herbai;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.graphics.drawable.Drawable;
+import android.os.Debug;
+import android.util.DisplayMetrics;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import com.bumptech.glide.GlideBuilder;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.RequestManager;
+import com.bumptech.glide.annotation.GlideModule;
+import com.bumptech.glide.load.DecodeFormat;
+import com.bumptech.glide.load.engine.DiskCacheStrategy;
+import com.bumptech.glide.load.engine.bitmap_recycle.LruBitmapPool;
+import com.bumptech.glide.load.engine.cache.InternalCacheDiskCacheFactory;
+import com.bumptech.glide.load.engine.cache.LruResourceCache;
+import com.bumptech.glide.load.engine.cache.MemorySizeCalculator;
+import com.bumptech.glide.module.AppGlideModule;
+import com.bumptech.glide.request.RequestOptions;
+
+// Glide setup for the plant image screens. The memory cache and bitmap pool are sized in
+// screens of pixels like Glide's defaults, but never above a fixed share of the app's
+// heap limit, and the disk cache has its own directory and size. Gallery thumbnails are
+// decoded at the exact cell size in RGB_565, half the bytes of ARGB_8888 (photos have no
+// alpha); full-screen images keep ARGB_8888.
+@GlideModule
+public final class HerbAiGlideModule extends AppGlideModule {
+    private static final String TAG = "HerbAiGlideModule";
+    // A two-column grid shows under two screens of thumbnails at a time
+    static final float MEMORY_CACHE_SCREENS = 2f;
+    static final float BITMAP_POOL_SCREENS = 3f;
+    // Each of memory cache and bitmap pool gets at most 1/8 of the heap limit
+    static final int HEAP_FRACTION = 8;
+    static final long DISK_CACHE_BYTES = 100L * 1024 * 1024;
+    static final String DISK_CACHE_DIR = "plant_images";
+    // The first pass of a thumbnail is decoded at 1/4 of the cell size
+    static final int PREVIEW_DIVISOR = 4;
+
+    // Kept for logMemory()
+    private static LruResourceCache memoryCache;
+    private static LruBitmapPool bitmapPool;
+
+    @Override
+    public void applyOptions(@NonNull Context context, @NonNull GlideBuilder builder) {
+        MemorySizeCalculator calculator = new MemorySizeCalculator.Builder(context)
+                .setMemoryCacheScreens(MEMORY_CACHE_SCREENS)
+                .setBitmapPoolScreens(BITMAP_POOL_SCREENS)
+                .build();
+        ActivityManager activityManager = (ActivityManager) context.getSystemService(Context.ACTIVITY_SERVICE);
+        long heapLimit = activityManager.getMemoryClass() * 1024L * 1024L;
+
+        memoryCache = new LruResourceCache(boundedSize(calculator.getMemoryCacheSize(), heapLimit));
+        bitmapPool = new LruBitmapPool(boundedSize(calculator.getBitmapPoolSize(), heapLimit));
+        builder.setMemoryCache(memoryCache)
+                .setBitmapPool(bitmapPool)
+                .setDiskCache(new InternalCacheDiskCacheFactory(context, DISK_CACHE_DIR, DISK_CACHE_BYTES))
+                // Keep the original for the full-screen view and the resized copy for the grid
+                .setDefaultRequestOptions(new RequestOptions().diskCacheStrategy(DiskCacheStrategy.ALL))
+                .setLogLevel(Log.ERROR);
+        Log.d(TAG, "Memory cache " + memoryCache.getMaxSize() / 1024 + " KB, bitmap pool "
+                + bitmapPool.getMaxSize() / 1024 + " KB, disk cache " + DISK_CACHE_BYTES / (1024 * 1024) + " MB");
+    }
+
+    // No Glide modules are declared in the manifest; skip looking for them at startup
+    @Override
+    public boolean isManifestParsingEnabled() {
+        return false;
+    }
+
+    static long boundedSize(long calculatedBytes, long heapLimitBytes) {
+        return Math.min(calculatedBytes, heapLimitBytes / HEAP_FRACTION);
+    }
+
+    // A grid cell. FullScreenImageActivity asks for the same options to find it in the
+    // memory cache, so both must stay in sync.
+    static RequestOptions thumbnailOptions(int width, int height) {
+        return new RequestOptions()
+                .override(width, height)
+                .centerCrop()
+                .format(DecodeFormat.PREFER_RGB_565);
+    }
+
+    // A quarter-size preview first, replaced by the cell-size thumbnail when it is decoded.
+    // The preview only comes from the caches: from the network it would be a second
+    // download of the same URL, racing the thumbnail's.
+    static RequestBuilder<Drawable> loadThumbnail(RequestManager glide, String url, int width, int height) {
+        RequestBuilder<Drawable> preview = glide.load(url)
+                .apply(thumbnailOptions(Math.max(1, width / PREVIEW_DIVISOR), Math.max(1, height / PREVIEW_DIVISOR)))
+                .onlyRetrieveFromCache(true);
+        return glide.load(url).apply(thumbnailOptions(width, height)).thumbnail(preview);
+    }
+
+    // The full-screen image, fitted into the display. A fixed size rather than the view's
+    // so a preload started from the gallery has the same cache key as the real request.
+    static RequestOptions fullScreenOptions(Context context) {
+        DisplayMetrics metrics = context.getResources().getDisplayMetrics();
+        return new RequestOptions()
+                .override(metrics.widthPixels, metrics.heightPixels)
+                .fitCenter();
+    }
+
+    static long bitmapBytes(int width, int height, DecodeFormat format) {
+        return (long) width * height * (format == DecodeFormat.PREFER_RGB_565 ? 2 : 4);
+    }
+
+    // Logs what Glide and the process hold right now, e.g. when a gallery screen opens and closes
+    static void logMemory(String screen) {
+        Runtime runtime = Runtime.getRuntime();
+        StringBuilder report = new StringBuilder(screen).append(": ");
+        if (memoryCache != null) {
+            report.append("Glide memory cache ").append(memoryCache.getCurrentSize() / 1024)
+                    .append("/").append(memoryCache.getMaxSize() / 1024).append(" KB, bitmap pool ")
+                    .append(bitmapPool.getCurrentSize() / 1024).append("/")
+                    .append(bitmapPool.getMaxSize() / 1024).append(" KB, ");
+        }
+        report.append("Java heap ").append((runtime.totalMemory() - runtime.freeMemory()) / 1024)
+                .append(" KB, native heap ").append(Debug.getNativeHeapAllocatedSize() / 1024).append(" KB");
+        Log.d(TAG, report.toString());
+    }
+}
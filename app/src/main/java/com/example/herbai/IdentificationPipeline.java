@@ -0,0 +1,238 @@
+package com.example.herbai;
+
+import android.content.Intent;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Overlaps the detail lookups with showing the result. As soon as /predict answers,
+// every top-k species is looked up in parallel through PlantRepository and
+// ResultActivity is opened with just the name and confidence; details arrive through
+// LiveData. Alternatives are prefetched the same way, so tapping one opens instantly.
+// A low-confidence first answer can be refined later: refine() swaps in the candidates
+// from the full-resolution upload and ResultActivity redraws from them.
+public class IdentificationPipeline {
+    private static final String TAG = "IdentificationPipeline";
+    public static final String EXTRA_PIPELINE_ID = "identificationId";
+    // Set on the screen that shows the top candidate, which follows refinements
+    public static final String EXTRA_REFINABLE = "refinable";
+    static final int TOP_K = 3;
+
+    // Only the latest identifications are kept; older result screens fall back to the repository.
+    // The eldest goes first, so the screen still following a refinement keeps its pipeline.
+    private static final int MAX_PIPELINES = 4;
+    private static final Map<String, IdentificationPipeline> active =
+            new LinkedHashMap<String, IdentificationPipeline>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, IdentificationPipeline> eldest) {
+                    return size() > MAX_PIPELINES;
+                }
+            };
+    private static final AtomicInteger nextId = new AtomicInteger();
+
+    private final String id;
+    private final PlantRepository plantRepository;
+    // Main thread only
+    private List<Candidate> candidates;
+    private final Map<String, MutableLiveData<DetailResult>> details = new HashMap<>();
+    private boolean refining;
+    private final MutableLiveData<List<Candidate>> refinedCandidates = new MutableLiveData<>();
+    private final long startedAt = System.nanoTime();
+
+    // The outcome of one lookup; plant is null when nothing was found
+    public static class DetailResult {
+        private final PlantItem plant;
+
+        DetailResult(PlantItem plant) {
+            this.plant = plant;
+        }
+
+        public PlantItem getPlant() {
+            return plant;
+        }
+    }
+
+    public static class Candidate {
+        private final String species;
+        private final double confidence;
+
+        Candidate(String species, double confidence) {
+            this.species = species;
+            this.confidence = confidence;
+        }
+
+        public String getSpecies() {
+            return species;
+        }
+
+        public double getConfidence() {
+            return confidence;
+        }
+
+        // "Neem (87.3%)", as shown in the probable plants list
+        public String getLabel() {
+            return species + " (" + String.format(Locale.US, "%.1f", confidence * 100) + "%)";
+        }
+    }
+
+    // Starts a lookup for every candidate and registers the pipeline for ResultActivity
+    @MainThread
+    public static IdentificationPipeline start(PlantRepository plantRepository, List<Candidate> candidates) {
+        String id = "identification-" + nextId.incrementAndGet();
+        IdentificationPipeline pipeline = new IdentificationPipeline(id, candidates, plantRepository);
+        synchronized (active) {
+            active.put(id, pipeline);
+        }
+        pipeline.prefetch();
+        return pipeline;
+    }
+
+    // Null when the pipeline is gone, e.g. after the process was restarted
+    public static IdentificationPipeline get(String id) {
+        if (id == null) {
+            return null;
+        }
+        synchronized (active) {
+            return active.get(id);
+        }
+    }
+
+    private IdentificationPipeline(String id, List<Candidate> candidates, PlantRepository plantRepository) {
+        this.id = id;
+        this.candidates = candidates;
+        this.plantRepository = plantRepository;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    @MainThread
+    public List<Candidate> getCandidates() {
+        return candidates;
+    }
+
+    // The candidates came from a low-confidence first answer and a better one is on its way
+    @MainThread
+    public void setRefining(boolean refining) {
+        this.refining = refining;
+    }
+
+    @MainThread
+    public boolean isRefining() {
+        return refining;
+    }
+
+    // Replaces the candidates with the refined ones and looks them up; null or empty keeps
+    // the current ones, e.g. when the full-resolution upload failed
+    @MainThread
+    public void refine(List<Candidate> refined) {
+        refining = false;
+        if (refined != null && !refined.isEmpty()) {
+            candidates = refined;
+            prefetch();
+        }
+        Log.d(TAG, "Refined " + id + " after " + (System.nanoTime() - startedAt) / 1_000_000 + " ms: "
+                + candidates.get(0).getLabel());
+        refinedCandidates.setValue(candidates);
+    }
+
+    // Posts the candidates after every refine()
+    public LiveData<List<Candidate>> getRefinedCandidates() {
+        return refinedCandidates;
+    }
+
+    // The extras ResultActivity shows the top candidate and its alternatives from
+    @MainThread
+    public void putCandidateExtras(Intent intent) {
+        Candidate top = candidates.get(0);
+        ArrayList<String> probablePlants = new ArrayList<>();
+        ArrayList<String> probableSpecies = new ArrayList<>();
+        double[] probableConfidences = new double[candidates.size()];
+        for (int i = 0; i < candidates.size(); i++) {
+            Candidate candidate = candidates.get(i);
+            probablePlants.add(candidate.getLabel());
+            probableSpecies.add(candidate.getSpecies());
+            probableConfidences[i] = candidate.getConfidence();
+        }
+
+        intent.putExtra("plantName", top.getSpecies());
+        intent.putExtra("scientificName", top.getSpecies());
+        intent.putExtra("confidence", top.getConfidence());
+        intent.putStringArrayListExtra("probablePlants", probablePlants);
+        intent.putStringArrayListExtra("probableSpecies", probableSpecies);
+        intent.putExtra("probableConfidences", probableConfidences);
+    }
+
+    // Details for a species; unknown species are looked up on first use
+    @MainThread
+    public LiveData<DetailResult> getDetails(String species) {
+        String key = PlantRepository.normalizeKey(species);
+        MutableLiveData<DetailResult> liveData = details.get(key);
+        if (liveData == null) {
+            liveData = new MutableLiveData<>();
+            details.put(key, liveData);
+            lookup(species, liveData);
+        }
+        return liveData;
+    }
+
+    @MainThread
+    private void prefetch() {
+        for (Candidate candidate : candidates) {
+            getDetails(candidate.getSpecies());
+        }
+    }
+
+    private void lookup(String species, MutableLiveData<DetailResult> liveData) {
+        // The repository calls back on the main thread
+        plantRepository.lookup(species, plant -> {
+            Log.d(TAG, "Details for " + species + (plant != null ? "" : " not found") + " after "
+                    + (System.nanoTime() - startedAt) / 1_000_000 + " ms");
+            liveData.setValue(new DetailResult(plant));
+        });
+    }
+
+    // The first k top_predictions of a /predict response, falling back to "species" alone
+    static List<Candidate> parseCandidates(JSONObject predictResponse, int k) {
+        List<Candidate> candidates = new ArrayList<>();
+        List<String> seen = new ArrayList<>();
+
+        String species = predictResponse.optString("species", "").trim();
+        if (!species.isEmpty()) {
+            candidates.add(new Candidate(species, predictResponse.optDouble("confidence", 0.0)));
+            seen.add(PlantRepository.normalizeKey(species));
+        }
+
+        JSONArray predictions = predictResponse.optJSONArray("top_predictions");
+        if (predictions != null) {
+            for (int i = 0; i < predictions.length() && candidates.size() < k; i++) {
+                JSONObject prediction = predictions.optJSONObject(i);
+                if (prediction == null) {
+                    continue;
+                }
+                String name = prediction.optString("species", "").trim();
+                String key = PlantRepository.normalizeKey(name);
+                if (key.isEmpty() || seen.contains(key)) {
+                    continue;
+                }
+                candidates.add(new Candidate(name, prediction.optDouble("confidence", 0.0)));
+                seen.add(key);
+            }
+        }
+        return candidates;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.herbai;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+import android.os.SystemClock;
+import android.util.Log;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+// Two fingerprints of a photo for PredictionCache. The content hash (SHA-256 of the file)
+// finds the very same file again; the dHash finds the same picture after re-encoding,
+// resizing or small edits. dHash: the image is averaged down to 9x8 gray cells and each
+// bit says whether a cell is brighter than its right neighbour, so near-identical photos
+// are a few bits apart (Hamming distance) and different ones about 32.
+public class ImageHash {
+    private static final String TAG = "ImageHash";
+    static final int HASH_WIDTH = 9;
+    static final int HASH_HEIGHT = 8;
+    // The dHash is computed from a decode with the long edge at least this big
+    static final int SAMPLE_EDGE = 64;
+
+    public static class Key {
+        final String contentHash;
+        final long dHash;
+
+        Key(String contentHash, long dHash) {
+            this.contentHash = contentHash;
+            this.dHash = dHash;
+        }
+
+        @Override
+        public String toString() {
+            return contentHash.substring(0, 12) + "/" + Long.toHexString(dHash);
+        }
+    }
+
+    // Reads the photo twice: once whole for the content hash, once subsampled for the dHash
+    public static Key compute(ContentResolver resolver, Uri uri) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+        String contentHash;
+        try (InputStream inputStream = open(resolver, uri)) {
+            contentHash = contentHash(inputStream);
+        }
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream inputStream = open(resolver, uri)) {
+            BitmapFactory.decodeStream(inputStream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unable to read image bounds: " + uri);
+        }
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = ImagePreparer.calculateInSampleSize(bounds.outWidth, bounds.outHeight, SAMPLE_EDGE);
+        Bitmap bitmap;
+        try (InputStream inputStream = open(resolver, uri)) {
+            bitmap = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (bitmap == null) {
+            throw new IOException("Unable to decode image: " + uri);
+        }
+        int width = bitmap.getWidth();
+        int height = bitmap.getHeight();
+        int[] pixels = new int[width * height];
+        bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+        bitmap.recycle();
+
+        Key key = new Key(contentHash, dHash(pixels, width, height));
+        Log.d(TAG, "Hashed " + uri + " (" + width + "x" + height + " sample) in "
+                + (SystemClock.elapsedRealtime() - start) + " ms: " + key);
+        return key;
+    }
+
+    // dHash of ARGB pixels, row by row; any size down to 9x8
+    static long dHash(int[] argb, int width, int height) {
+        // Box average into 9x8 cells of luma
+        long[] sums = new long[HASH_WIDTH * HASH_HEIGHT];
+        int[] counts = new int[HASH_WIDTH * HASH_HEIGHT];
+        for (int y = 0; y < height; y++) {
+            int cellRow = y * HASH_HEIGHT / height * HASH_WIDTH;
+            for (int x = 0; x < width; x++) {
+                int pixel = argb[y * width + x];
+                int luma = (((pixel >> 16) & 0xff) * 299 + ((pixel >> 8) & 0xff) * 587 + (pixel & 0xff) * 114) / 1000;
+                int cell = cellRow + x * HASH_WIDTH / width;
+                sums[cell] += luma;
+                counts[cell]++;
+            }
+        }
+
+        long hash = 0;
+        for (int row = 0; row < HASH_HEIGHT; row++) {
+            for (int column = 0; column < HASH_WIDTH - 1; column++) {
+                int cell = row * HASH_WIDTH + column;
+                // Compared as sums * counts of the other cell, so cells of unequal size still compare fairly
+                boolean brighter = sums[cell] * counts[cell + 1] > sums[cell + 1] * counts[cell];
+                hash = (hash << 1) | (brighter ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+
+    static String contentHash(InputStream inputStream) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-256 is always available on Android
+            throw new IllegalStateException(e);
+        }
+        byte[] buffer = new byte[64 * 1024];
+        int read;
+        while ((read = inputStream.read(buffer)) != -1) {
+            digest.update(buffer, 0, read);
+        }
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream inputStream = resolver.openInputStream(uri);
+        if (inputStream == null) {
+            throw new FileNotFoundException("No input stream for " + uri);
+        }
+        return inputStream;
+    }
+}
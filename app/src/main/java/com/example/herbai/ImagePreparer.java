@@ -0,0 +1,292 @@
+package com.example.herbai;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Prepares a photo for the /predict upload: bounded decode, EXIF rotation,
+// resize to the model input edge and re-encode at a target quality. Optionally a
+// smaller rendition is encoded from the same decode, for a low-res first attempt.
+public class ImagePreparer {
+    private static final String TAG = "ImagePreparer";
+
+    public static final int DEFAULT_MAX_EDGE = 1024;
+    public static final int DEFAULT_QUALITY = 85;
+
+    private final File outputDir;
+    private final int maxEdge;
+    private final Bitmap.CompressFormat format;
+    private final int quality;
+
+    public ImagePreparer(File outputDir) {
+        this(outputDir, DEFAULT_MAX_EDGE, Bitmap.CompressFormat.JPEG, DEFAULT_QUALITY);
+    }
+
+    public ImagePreparer(File outputDir, int maxEdge, Bitmap.CompressFormat format, int quality) {
+        this.outputDir = outputDir;
+        this.maxEdge = maxEdge;
+        this.format = format;
+        this.quality = quality;
+    }
+
+    public int getMaxEdge() {
+        return maxEdge;
+    }
+
+    public PreparedImage prepare(File source) throws IOException {
+        return prepare(source, 0);
+    }
+
+    // With smallEdge > 0 the result also carries a rendition with its long edge at smallEdge
+    public PreparedImage prepare(File source, int smallEdge) throws IOException {
+        return prepare(() -> new FileInputStream(source), source.length(), source.getName(), smallEdge);
+    }
+
+    public PreparedImage prepare(ContentResolver resolver, Uri uri) throws IOException {
+        return prepare(resolver, uri, 0);
+    }
+
+    // Decodes straight from the ContentResolver, so gallery images never need a temp copy
+    public PreparedImage prepare(ContentResolver resolver, Uri uri, int smallEdge) throws IOException {
+        return prepare(() -> {
+            InputStream inputStream = resolver.openInputStream(uri);
+            if (inputStream == null) {
+                throw new FileNotFoundException("No input stream for " + uri);
+            }
+            return inputStream;
+        }, UriRequestBody.querySize(resolver, uri), uri.toString(), smallEdge);
+    }
+
+    // Returns the prepared rendition, or an "original" result when re-encoding would not make it smaller.
+    // Images already within maxEdge are uploaded as they are and get no small rendition.
+    private PreparedImage prepare(StreamOpener opener, long sourceLength, String name, int smallEdge)
+            throws IOException {
+        long start = SystemClock.elapsedRealtime();
+
+        // Read bounds only so we never allocate the full-resolution bitmap
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream inputStream = opener.open()) {
+            BitmapFactory.decodeStream(inputStream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unable to read image bounds: " + name);
+        }
+
+        int rotation = readExifRotation(opener);
+        int longEdge = Math.max(bounds.outWidth, bounds.outHeight);
+        if (longEdge <= maxEdge && rotation == 0 && "image/jpeg".equals(bounds.outMimeType)) {
+            Log.d(TAG, "Image already within " + maxEdge + "px, uploading as is");
+            return PreparedImage.original(sourceLength, bounds.outWidth, bounds.outHeight,
+                    SystemClock.elapsedRealtime() - start);
+        }
+
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inSampleSize = calculateInSampleSize(bounds.outWidth, bounds.outHeight, maxEdge);
+        Bitmap decoded;
+        try (InputStream inputStream = opener.open()) {
+            decoded = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Unable to decode image: " + name);
+        }
+
+        Bitmap prepared = scaleAndRotate(decoded, rotation);
+        File output = File.createTempFile("prepared_", extensionFor(format), outputDir);
+        PreparedImage small = null;
+        try {
+            encode(prepared, output);
+            if (smallEdge > 0 && Math.max(prepared.getWidth(), prepared.getHeight()) > smallEdge) {
+                int[] smallSize = targetSize(prepared.getWidth(), prepared.getHeight(), smallEdge);
+                Bitmap scaled = Bitmap.createScaledBitmap(prepared, smallSize[0], smallSize[1], true);
+                File smallOutput = File.createTempFile("prepared_small_", extensionFor(format), outputDir);
+                try {
+                    encode(scaled, smallOutput);
+                } finally {
+                    scaled.recycle();
+                }
+                small = new PreparedImage(smallOutput, sourceLength, smallOutput.length(), smallSize[0], smallSize[1],
+                        SystemClock.elapsedRealtime() - start);
+            }
+        } finally {
+            if (prepared != decoded) {
+                prepared.recycle();
+            }
+            decoded.recycle();
+        }
+
+        long elapsed = SystemClock.elapsedRealtime() - start;
+        if (sourceLength > 0 && output.length() >= sourceLength) {
+            Log.d(TAG, "Re-encoded image is not smaller, keeping original");
+            output.delete();
+            PreparedImage original = PreparedImage.original(sourceLength, bounds.outWidth, bounds.outHeight, elapsed);
+            original.small = small;
+            return original;
+        }
+
+        int[] size = targetSize(bounds.outWidth, bounds.outHeight, maxEdge);
+        boolean swapped = rotation == 90 || rotation == 270;
+        PreparedImage result = new PreparedImage(output, sourceLength, output.length(),
+                swapped ? size[1] : size[0], swapped ? size[0] : size[1], elapsed);
+        result.small = small;
+        Log.d(TAG, "Prepared " + result);
+        return result;
+    }
+
+    private void encode(Bitmap bitmap, File output) throws IOException {
+        try (FileOutputStream outputStream = new FileOutputStream(output)) {
+            if (!bitmap.compress(compressFormat(format), quality, outputStream)) {
+                throw new IOException("Unable to encode image: " + output.getAbsolutePath());
+            }
+        }
+    }
+
+    private Bitmap scaleAndRotate(Bitmap bitmap, int rotation) {
+        int[] size = targetSize(bitmap.getWidth(), bitmap.getHeight(), maxEdge);
+        Matrix matrix = new Matrix();
+        matrix.postScale((float) size[0] / bitmap.getWidth(), (float) size[1] / bitmap.getHeight());
+        if (rotation != 0) {
+            matrix.postRotate(rotation);
+        }
+        if (matrix.isIdentity()) {
+            return bitmap;
+        }
+        return Bitmap.createBitmap(bitmap, 0, 0, bitmap.getWidth(), bitmap.getHeight(), matrix, true);
+    }
+
+    private int readExifRotation(StreamOpener opener) {
+        try (InputStream inputStream = opener.open()) {
+            ExifInterface exif = new ExifInterface(inputStream);
+            return exif.getRotationDegrees();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read EXIF orientation: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Largest power of two that keeps the decoded long edge at or above maxEdge
+    static int calculateInSampleSize(int width, int height, int maxEdge) {
+        int longEdge = Math.max(width, height);
+        int sampleSize = 1;
+        while (longEdge / (sampleSize * 2) >= maxEdge) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Final width/height with the long edge capped at maxEdge, aspect ratio preserved
+    static int[] targetSize(int width, int height, int maxEdge) {
+        int longEdge = Math.max(width, height);
+        if (longEdge <= maxEdge) {
+            return new int[]{width, height};
+        }
+        float scale = (float) maxEdge / longEdge;
+        return new int[]{
+                Math.max(1, Math.round(width * scale)),
+                Math.max(1, Math.round(height * scale))
+        };
+    }
+
+    @SuppressWarnings("deprecation")
+    private static Bitmap.CompressFormat compressFormat(Bitmap.CompressFormat format) {
+        if (format == Bitmap.CompressFormat.WEBP && Build.VERSION.SDK_INT >= 30) {
+            return Bitmap.CompressFormat.WEBP_LOSSY;
+        }
+        return format;
+    }
+
+    private static String extensionFor(Bitmap.CompressFormat format) {
+        return format == Bitmap.CompressFormat.JPEG ? ".jpg" : format == Bitmap.CompressFormat.PNG ? ".png" : ".webp";
+    }
+
+    private interface StreamOpener {
+        InputStream open() throws IOException;
+    }
+
+    public static class PreparedImage {
+        private final File file;
+        private final long originalBytes;
+        private final long preparedBytes;
+        private final int width;
+        private final int height;
+        private final long encodeTimeMs;
+        // Set when a small rendition was asked for and the image is bigger than that
+        private PreparedImage small;
+
+        PreparedImage(File file, long originalBytes, long preparedBytes, int width, int height, long encodeTimeMs) {
+            this.file = file;
+            this.originalBytes = originalBytes;
+            this.preparedBytes = preparedBytes;
+            this.width = width;
+            this.height = height;
+            this.encodeTimeMs = encodeTimeMs;
+        }
+
+        static PreparedImage original(long originalBytes, int width, int height, long encodeTimeMs) {
+            return new PreparedImage(null, originalBytes, originalBytes, width, height, encodeTimeMs);
+        }
+
+        // Null when the original should be uploaded unchanged
+        public File getFile() {
+            return file;
+        }
+
+        public boolean isOriginal() {
+            return file == null;
+        }
+
+        public long getOriginalBytes() {
+            return originalBytes;
+        }
+
+        public long getPreparedBytes() {
+            return preparedBytes;
+        }
+
+        public long getBytesSaved() {
+            return originalBytes > 0 ? originalBytes - preparedBytes : 0;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+
+        public long getEncodeTimeMs() {
+            return encodeTimeMs;
+        }
+
+        public PreparedImage getSmall() {
+            return small;
+        }
+
+        @Override
+        public String toString() {
+            return "PreparedImage{" +
+                    "file='" + (file != null ? file.getName() : "original") + '\'' +
+                    ", " + width + "x" + height +
+                    ", originalBytes=" + originalBytes +
+                    ", preparedBytes=" + preparedBytes +
+                    ", encodeTimeMs=" + encodeTimeMs +
+                    (small != null ? ", small=" + small.width + "x" + small.height + "/" + small.preparedBytes : "") +
+                    '}';
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.herbai;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+// Runs several image sources in parallel and keeps the first maxImages distinct URLs
+// in arrival order. As soon as enough URLs are in, or the deadline passes, every call
+// still in flight is cancelled, so the wait is about the fastest source, not the sum.
+public class ImageSourceAggregator {
+    private static final String TAG = "ImageSourceAggregator";
+
+    private final int maxImages;
+    private final long deadlineMs;
+    private final List<Source> sources = new ArrayList<>();
+
+    // Guarded by "this"
+    private final Set<String> images = new LinkedHashSet<>();
+    private final List<Call> calls = new ArrayList<>();
+    private boolean cancelled = false;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    // Turns a source's response body into image URLs
+    public interface ResponseParser {
+        List<String> parse(BufferedSource source, int maxImages) throws IOException;
+    }
+
+    // Told the status of a source's unsuccessful response, e.g. to stop using a missing endpoint
+    public interface ErrorListener {
+        void onHttpError(int code);
+    }
+
+    public ImageSourceAggregator(int maxImages, long deadlineMs) {
+        this.maxImages = maxImages;
+        this.deadlineMs = deadlineMs;
+    }
+
+    // Sources must answer with JSON that PlantJsonReader.readImageUrls understands
+    public ImageSourceAggregator addSource(String name, OkHttpClient client, Request request) {
+        return addSource(name, client, request, PlantJsonReader::readImageUrls);
+    }
+
+    public ImageSourceAggregator addSource(String name, OkHttpClient client, Request request,
+                                           ResponseParser parser) {
+        return addSource(name, client, request, parser, null);
+    }
+
+    public ImageSourceAggregator addSource(String name, OkHttpClient client, Request request,
+                                           ResponseParser parser, ErrorListener errorListener) {
+        sources.add(new Source(name, client, request, parser, errorListener));
+        return this;
+    }
+
+    // Blocks until maxImages URLs are collected, every source has finished, or the deadline passes
+    @WorkerThread
+    public List<String> collect() throws InterruptedException {
+        long start = System.nanoTime();
+        AtomicInteger pending = new AtomicInteger(sources.size());
+        if (sources.isEmpty()) {
+            return new ArrayList<>();
+        }
+
+        for (Source source : sources) {
+            Call call = source.client.newCall(source.request);
+            synchronized (this) {
+                if (cancelled) {
+                    break;
+                }
+                calls.add(call);
+            }
+            call.enqueue(new Callback() {
+                @Override
+                public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                    if (!call.isCanceled()) {
+                        Log.w(TAG, source.name + " failed: " + e.getMessage());
+                    }
+                    finishSource(call, pending);
+                }
+
+                @Override
+                public void onResponse(@NonNull Call call, @NonNull Response response) {
+                    try (response) {
+                        if (response.isSuccessful() && response.body() != null) {
+                            List<String> urls = source.parser.parse(response.body().source(), maxImages);
+                            Log.d(TAG, source.name + " returned " + urls.size() + " images after "
+                                    + elapsedMs(start) + " ms");
+                            addImages(urls);
+                        } else {
+                            Log.w(TAG, source.name + " returned " + response.code());
+                            if (source.errorListener != null) {
+                                source.errorListener.onHttpError(response.code());
+                            }
+                        }
+                    } catch (IOException e) {
+                        if (!call.isCanceled()) {
+                            Log.w(TAG, "Could not read " + source.name + ": " + e.getMessage());
+                        }
+                    } finally {
+                        finishSource(call, pending);
+                    }
+                }
+            });
+        }
+
+        boolean finished = done.await(deadlineMs, TimeUnit.MILLISECONDS);
+        int outstanding = cancelOutstanding();
+
+        synchronized (this) {
+            Log.d(TAG, "Collected " + images.size() + " images in " + elapsedMs(start) + " ms"
+                    + (finished ? "" : " (deadline reached)")
+                    + (outstanding > 0 ? ", cancelled " + outstanding + " calls" : ""));
+            return new ArrayList<>(images);
+        }
+    }
+
+    // Stops waiting and cancels all calls, e.g. when the screen is closed
+    public void cancel() {
+        synchronized (this) {
+            cancelled = true;
+        }
+        cancelOutstanding();
+        done.countDown();
+    }
+
+    private void addImages(List<String> urls) {
+        synchronized (this) {
+            for (String url : urls) {
+                if (images.size() >= maxImages) {
+                    break;
+                }
+                images.add(url);
+            }
+            if (images.size() >= maxImages) {
+                done.countDown();
+            }
+        }
+    }
+
+    private void finishSource(Call call, AtomicInteger pending) {
+        synchronized (this) {
+            calls.remove(call);
+        }
+        if (pending.decrementAndGet() == 0) {
+            done.countDown();
+        }
+    }
+
+    // Calls remove themselves when they finish, so whatever is left is still in flight
+    private synchronized int cancelOutstanding() {
+        int outstanding = calls.size();
+        for (Call call : calls) {
+            call.cancel();
+        }
+        calls.clear();
+        return outstanding;
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    private static class Source {
+        final String name;
+        final OkHttpClient client;
+        final Request request;
+        final ResponseParser parser;
+        final ErrorListener errorListener;
+
+        Source(String name, OkHttpClient client, Request request, ResponseParser parser,
+               ErrorListener errorListener) {
+            this.name = name;
+            this.client = client;
+            this.request = request;
+            this.parser = parser;
+            this.errorListener = errorListener;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSource;
+
+// Looks up image URLs by plant name without running the classifier. Several names go
+// out in one POST /plant_images request and every answer is kept on disk, so the gallery
+// and the result screen only hit the network for plants they have never shown.
+// Until the backend has the endpoint, each name falls back to /smart_search.
+public class ImageUrlClient {
+    private static final String TAG = "ImageUrlClient";
+    static final String LOOKUP_PATH = "plant_images";
+    static final int MAX_NAMES_PER_REQUEST = 20;
+    // Always ask for this many so a later caller wanting more still hits the cache
+    static final int IMAGES_PER_PLANT = 10;
+    private static final int MEMORY_ENTRIES = 200;
+
+    static final long CACHE_TTL_MS = 7L * 24 * 60 * 60 * 1000;
+    // Plants without images may get some once the database is filled in
+    static final long EMPTY_CACHE_TTL_MS = 24L * 60 * 60 * 1000;
+
+    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+
+    private static ImageUrlClient instance;
+
+    private final PlantStore store;
+    private final ApiClient apiClient;
+    private final Executor callbackExecutor;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+
+    // Guarded by "this"
+    private final LinkedHashMap<String, CachedImages> memory;
+    // Set once the backend answers 404, so the rest of the session goes straight to /smart_search
+    private volatile boolean lookupEndpointMissing = false;
+
+    private final AtomicInteger cacheHits = new AtomicInteger();
+    private final AtomicInteger lookupRequests = new AtomicInteger();
+    private final AtomicInteger fallbackRequests = new AtomicInteger();
+
+    public interface ImagesCallback {
+        // Called on the main thread with an entry for every non-blank requested name
+        void onImagesLoaded(Map<String, List<String>> images);
+    }
+
+    public static synchronized ImageUrlClient getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getFilesDir(), "plant_images");
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new ImageUrlClient(new PlantStore(directory), ApiClient.getInstance(), mainHandler::post);
+        }
+        return instance;
+    }
+
+    ImageUrlClient(PlantStore store, ApiClient apiClient, Executor callbackExecutor) {
+        this.store = store;
+        this.apiClient = apiClient;
+        this.callbackExecutor = callbackExecutor;
+        this.memory = new LinkedHashMap<String, CachedImages>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedImages> eldest) {
+                return size() > MEMORY_ENTRIES;
+            }
+        };
+    }
+
+    // Cache first, then one request per MAX_NAMES_PER_REQUEST missing names
+    public void lookup(Collection<String> names, int maxImages, ImagesCallback callback) {
+        List<String> requested = new ArrayList<>(names);
+        executor.execute(() -> {
+            Map<String, List<String>> images;
+            try {
+                images = get(requested, maxImages);
+            } catch (IOException e) {
+                Log.e(TAG, "Image lookup failed: " + e.getMessage());
+                images = new LinkedHashMap<>();
+                for (String name : requested) {
+                    List<String> cached = getCached(name, maxImages);
+                    images.put(name, cached != null ? cached : new ArrayList<>());
+                }
+            }
+            Map<String, List<String>> result = images;
+            callbackExecutor.execute(() -> callback.onImagesLoaded(result));
+        });
+    }
+
+    // Returns an entry for every non-blank name, keyed as passed in; empty when the plant has no images
+    @WorkerThread
+    public Map<String, List<String>> get(Collection<String> names, int maxImages) throws IOException {
+        Map<String, List<String>> images = new LinkedHashMap<>();
+        Set<String> missing = new LinkedHashSet<>();
+        for (String name : names) {
+            if (normalizeKey(name).isEmpty()) {
+                continue;
+            }
+            List<String> cached = getCached(name, maxImages);
+            if (cached != null) {
+                images.put(name, cached);
+            } else {
+                missing.add(name);
+            }
+        }
+        if (missing.isEmpty()) {
+            return images;
+        }
+
+        List<String> batch = new ArrayList<>();
+        for (String name : missing) {
+            batch.add(name);
+            if (batch.size() == MAX_NAMES_PER_REQUEST) {
+                images.putAll(fetch(batch, maxImages));
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            images.putAll(fetch(batch, maxImages));
+        }
+        return images;
+    }
+
+    // Local only; null when the name was never looked up or the entry has expired
+    @WorkerThread
+    public List<String> getCached(String name, int maxImages) {
+        String key = normalizeKey(name);
+        if (key.isEmpty()) {
+            return null;
+        }
+
+        CachedImages cached;
+        synchronized (this) {
+            cached = memory.get(key);
+        }
+        if (cached == null) {
+            cached = CachedImages.fromJson(store.read(key));
+            if (cached != null) {
+                synchronized (this) {
+                    memory.put(key, cached);
+                }
+            }
+        }
+        if (cached == null || cached.isExpired(System.currentTimeMillis())) {
+            return null;
+        }
+        cacheHits.incrementAndGet();
+        return limit(cached.urls, maxImages);
+    }
+
+    // Images offset..offset+limit of the first name that has any, for galleries that load
+    // more as they scroll. Within the first IMAGES_PER_PLANT they come from the cache; later
+    // pages are not cached. A backend that ignores "offset" answers with the first images.
+    @WorkerThread
+    public List<String> getPage(Collection<String> names, int offset, int limit) throws IOException {
+        List<String> requested = new ArrayList<>();
+        for (String name : names) {
+            if (!normalizeKey(name).isEmpty()) {
+                requested.add(name);
+            }
+        }
+        if (requested.isEmpty()) {
+            return new ArrayList<>();
+        }
+        if (offset + limit <= IMAGES_PER_PLANT) {
+            Map<String, List<String>> images = get(requested, offset + limit);
+            for (String name : requested) {
+                List<String> urls = images.get(name);
+                if (urls != null && !urls.isEmpty()) {
+                    return skip(urls, offset);
+                }
+            }
+            return new ArrayList<>();
+        }
+
+        if (!lookupEndpointMissing) {
+            lookupRequests.incrementAndGet();
+            Log.d(TAG, "Looking up images " + offset + ".." + (offset + limit) + " for " + requested.get(0));
+            try (Response response = apiClient.getSearchClient()
+                    .newCall(newLookupRequest(requested, offset, limit)).execute()) {
+                if (response.code() == 404 || response.code() == 405) {
+                    markLookupMissing();
+                } else if (!response.isSuccessful() || response.body() == null) {
+                    throw new IOException(LOOKUP_PATH + " returned " + response.code());
+                } else {
+                    return firstImages(PlantJsonReader.readImageUrlsByName(response.body().source(), limit),
+                            requested);
+                }
+            }
+        }
+
+        // smart_search cannot page; read as far as the page reaches and skip the rest
+        for (String name : requested) {
+            fallbackRequests.incrementAndGet();
+            try (Response response = apiClient.getSearchClient().newCall(smartSearchRequest(name)).execute()) {
+                if (response.isSuccessful() && response.body() != null) {
+                    List<String> urls = PlantJsonReader.readImageUrls(response.body().source(), offset + limit);
+                    if (!urls.isEmpty()) {
+                        return skip(urls, offset);
+                    }
+                }
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    // The batch request on its own, for callers that run it alongside other sources
+    public Request newLookupRequest(Collection<String> names) {
+        return newLookupRequest(names, 0, IMAGES_PER_PLANT);
+    }
+
+    private Request newLookupRequest(Collection<String> names, int offset, int limit) {
+        JSONObject body = new JSONObject();
+        try {
+            body.put("names", new JSONArray(names));
+            body.put("max_images", limit);
+            if (offset > 0) {
+                body.put("offset", offset);
+            }
+        } catch (JSONException e) {
+            // Only thrown for non-finite numbers
+            throw new IllegalStateException(e);
+        }
+        return new Request.Builder()
+                .url(apiClient.url(LOOKUP_PATH))
+                .header("Accept", "application/json")
+                .post(RequestBody.create(body.toString(), JSON))
+                .build();
+    }
+
+    // Parser for newLookupRequest responses: caches every name and returns the first one's images
+    public ImageSourceAggregator.ResponseParser newLookupParser(Collection<String> names) {
+        List<String> requested = new ArrayList<>(names);
+        return (BufferedSource source, int maxImages) -> {
+            Map<String, List<String>> images = readLookupResponse(source, requested);
+            for (String name : requested) {
+                List<String> urls = images.get(name);
+                if (urls != null && !urls.isEmpty()) {
+                    return limit(urls, maxImages);
+                }
+            }
+            return new ArrayList<>();
+        };
+    }
+
+    public boolean isLookupEndpointAvailable() {
+        return !lookupEndpointMissing;
+    }
+
+    // For callers that send newLookupRequest() themselves and get a 404 or 405 back
+    public void markLookupMissing() {
+        if (!lookupEndpointMissing) {
+            Log.w(TAG, LOOKUP_PATH + " not available, using smart_search for the rest of the session");
+        }
+        lookupEndpointMissing = true;
+    }
+
+    public int getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    public int getLookupRequestCount() {
+        return lookupRequests.get();
+    }
+
+    public int getFallbackRequestCount() {
+        return fallbackRequests.get();
+    }
+
+    private Map<String, List<String>> fetch(List<String> names, int maxImages) throws IOException {
+        Map<String, List<String>> images = null;
+        if (!lookupEndpointMissing) {
+            images = fetchBatch(names);
+        }
+        if (images == null) {
+            images = fetchEachFromSmartSearch(names);
+        }
+
+        Map<String, List<String>> limited = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : images.entrySet()) {
+            limited.put(entry.getKey(), limit(entry.getValue(), maxImages));
+        }
+        return limited;
+    }
+
+    // Null when the backend does not have the endpoint yet
+    private Map<String, List<String>> fetchBatch(List<String> names) throws IOException {
+        lookupRequests.incrementAndGet();
+        Log.d(TAG, "Looking up images for " + names.size() + " plants in one request");
+        try (Response response = apiClient.getSearchClient().newCall(newLookupRequest(names)).execute()) {
+            if (response.code() == 404 || response.code() == 405) {
+                markLookupMissing();
+                return null;
+            }
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException(LOOKUP_PATH + " returned " + response.code());
+            }
+            return readLookupResponse(response.body().source(), names);
+        }
+    }
+
+    private Map<String, List<String>> readLookupResponse(BufferedSource source, List<String> names)
+            throws IOException {
+        Map<String, List<String>> byName = PlantJsonReader.readImageUrlsByName(source, IMAGES_PER_PLANT);
+
+        // The server may echo names in its own case, so match them through the normalized key
+        Map<String, List<String>> byKey = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : byName.entrySet()) {
+            byKey.put(normalizeKey(entry.getKey()), entry.getValue());
+        }
+
+        Map<String, List<String>> images = new LinkedHashMap<>();
+        for (String name : names) {
+            List<String> urls = byKey.get(normalizeKey(name));
+            images.put(name, urls != null ? urls : new ArrayList<>());
+            put(name, images.get(name));
+        }
+        return images;
+    }
+
+    private Map<String, List<String>> fetchEachFromSmartSearch(List<String> names) throws IOException {
+        Map<String, List<String>> images = new LinkedHashMap<>();
+        for (String name : names) {
+            fallbackRequests.incrementAndGet();
+            try (Response response = apiClient.getSearchClient().newCall(smartSearchRequest(name)).execute()) {
+                if (!response.isSuccessful() || response.body() == null) {
+                    Log.w(TAG, "smart_search returned " + response.code() + " for " + name);
+                    images.put(name, new ArrayList<>());
+                    continue;
+                }
+                List<String> urls = PlantJsonReader.readImageUrls(response.body().source(), IMAGES_PER_PLANT);
+                images.put(name, urls);
+                put(name, urls);
+            }
+        }
+        return images;
+    }
+
+    private Request smartSearchRequest(String name) {
+        return new Request.Builder()
+                .url(apiClient.url(ApiClient.smartSearchPath(name)))
+                .header("Accept", "application/json")
+                .get()
+                .build();
+    }
+
+    private void put(String name, List<String> urls) {
+        String key = normalizeKey(name);
+        if (key.isEmpty()) {
+            return;
+        }
+        CachedImages cached = new CachedImages(new ArrayList<>(urls), System.currentTimeMillis());
+        synchronized (this) {
+            memory.put(key, cached);
+        }
+        store.write(key, cached.toJson());
+    }
+
+    private static List<String> limit(List<String> urls, int maxImages) {
+        return new ArrayList<>(urls.subList(0, Math.min(urls.size(), maxImages)));
+    }
+
+    // Images of the first name with any; the server may echo names in its own case
+    private static List<String> firstImages(Map<String, List<String>> byName, List<String> names) {
+        Map<String, List<String>> byKey = new LinkedHashMap<>();
+        for (Map.Entry<String, List<String>> entry : byName.entrySet()) {
+            byKey.put(normalizeKey(entry.getKey()), entry.getValue());
+        }
+        for (String name : names) {
+            List<String> urls = byKey.get(normalizeKey(name));
+            if (urls != null && !urls.isEmpty()) {
+                return urls;
+            }
+        }
+        return new ArrayList<>();
+    }
+
+    private static List<String> skip(List<String> urls, int offset) {
+        return new ArrayList<>(urls.subList(Math.min(offset, urls.size()), urls.size()));
+    }
+
+    private static String normalizeKey(String name) {
+        return PlantRepository.normalizeKey(name);
+    }
+
+    private static class CachedImages {
+        final List<String> urls;
+        final long fetchedAt;
+
+        CachedImages(List<String> urls, long fetchedAt) {
+            this.urls = urls;
+            this.fetchedAt = fetchedAt;
+        }
+
+        boolean isExpired(long now) {
+            long ttl = urls.isEmpty() ? EMPTY_CACHE_TTL_MS : CACHE_TTL_MS;
+            return now - fetchedAt > ttl;
+        }
+
+        String toJson() {
+            JSONObject json = new JSONObject();
+            try {
+                json.put("fetched_at", fetchedAt);
+                json.put("image_urls", new JSONArray(urls));
+            } catch (JSONException e) {
+                throw new IllegalStateException(e);
+            }
+            return json.toString();
+        }
+
+        static CachedImages fromJson(String text) {
+            if (text == null) {
+                return null;
+            }
+            try {
+                JSONObject json = new JSONObject(text);
+                JSONArray array = json.getJSONArray("image_urls");
+                List<String> urls = new ArrayList<>();
+                for (int i = 0; i < array.length(); i++) {
+                    urls.add(array.getString(i));
+                }
+                return new CachedImages(urls, json.getLong("fetched_at"));
+            } catch (JSONException e) {
+                Log.w(TAG, "Corrupt image cache entry: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+}
@@ -0,0 +1,380 @@
+package com.example.herbai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+
+// Offline keyword search over what plants are used for: uses, medicinal properties and
+// chemical components of every stored plant, ranked with BM25. Words are lower-cased,
+// stop words dropped and suffixes stripped ("digestion", "digestive" -> "digest").
+// Posting lists are delta + varint encoded byte arrays. Plants can be added at any time;
+// adding a plant again with other keywords retires its old document instead of rewriting
+// postings, and once retired documents outnumber live ones the index is rebuilt.
+public class KeywordIndex {
+    // BM25 defaults
+    private static final float K1 = 1.2f;
+    private static final float B = 0.75f;
+    // The last word of a query still being typed matches up to this many longer terms
+    private static final int MAX_PREFIX_EXPANSIONS = 8;
+    private static final int MIN_PREFIX_LENGTH = 3;
+
+    private static final Set<String> STOP_WORDS = new HashSet<>(Arrays.asList(
+            "a", "an", "and", "are", "as", "at", "be", "by", "for", "from", "has", "have", "in", "into",
+            "is", "it", "its", "of", "on", "or", "other", "such", "that", "the", "this", "to", "with",
+            "also", "used", "use", "uses", "using", "various", "etc"));
+
+    // Suffixes stripped after plurals, longest first; at most one is removed
+    private static final String[] SUFFIXES = {"ational", "ation", "atory", "ative", "ition", "ness",
+            "ment", "ing", "ion", "ive", "ous", "ful", "ity", "ed", "ly", "al", "ic"};
+
+    // Guarded by "this"
+    private final List<PlantItem> docs = new ArrayList<>();
+    private final List<String[]> docTerms = new ArrayList<>();
+    private int[] docLengths = new int[16];
+    private final BitSet retired = new BitSet();
+    private final Map<String, Integer> docByKey = new HashMap<>();
+    private final TreeMap<String, PostingList> terms = new TreeMap<>();
+    private int liveDocs;
+    private long liveLength;
+
+    // Scratch space for search(), indexed by document id; all zero between queries
+    private float[] scores = new float[0];
+    private int[] touched = new int[0];
+    private int touchedCount;
+
+    // Document ids only grow, so every list is appended in order and stored as deltas
+    static final class PostingList {
+        byte[] data = new byte[8];
+        int length;
+        int lastDoc = -1;
+        // Documents in the list that are not retired
+        int liveCount;
+
+        void add(int doc, int frequency) {
+            writeVarInt(lastDoc < 0 ? doc : doc - lastDoc);
+            writeVarInt(frequency);
+            lastDoc = doc;
+            liveCount++;
+        }
+
+        private void writeVarInt(int value) {
+            if (length + 5 > data.length) {
+                data = Arrays.copyOf(data, data.length * 2);
+            }
+            while ((value & ~0x7f) != 0) {
+                data[length++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            data[length++] = (byte) value;
+        }
+    }
+
+    // Adding a plant that is already indexed (same repository key) replaces it
+    public synchronized void add(PlantItem plant) {
+        String key = PlantRepository.keyFor(plant);
+        if (key.isEmpty()) {
+            return;
+        }
+        Integer previous = docByKey.get(key);
+        if (previous != null && sameKeywords(docs.get(previous), plant)) {
+            // PlantRepository.put() runs on every refresh; most of them change nothing indexed here
+            docs.set(previous, plant);
+            return;
+        }
+        if (previous != null) {
+            docByKey.remove(key);
+            retire(previous);
+            if (docs.size() - liveDocs > liveDocs) {
+                compact();
+            }
+        }
+
+        List<String> tokens = new ArrayList<>();
+        tokens.addAll(tokenize(plant.getUses()));
+        tokens.addAll(tokenize(plant.getMedicinalProperties()));
+        tokens.addAll(tokenize(plant.getChemicalComponents()));
+        if (tokens.isEmpty()) {
+            return;
+        }
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        for (String token : tokens) {
+            Integer count = frequencies.get(token);
+            frequencies.put(token, count == null ? 1 : count + 1);
+        }
+
+        int doc = docs.size();
+        docs.add(plant);
+        docTerms.add(frequencies.keySet().toArray(new String[0]));
+        if (doc == docLengths.length) {
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+        }
+        docLengths[doc] = tokens.size();
+        docByKey.put(key, doc);
+        liveDocs++;
+        liveLength += tokens.size();
+
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            PostingList postings = terms.get(entry.getKey());
+            if (postings == null) {
+                postings = new PostingList();
+                terms.put(entry.getKey(), postings);
+            }
+            postings.add(doc, entry.getValue());
+        }
+    }
+
+    public void addAll(List<PlantItem> plants) {
+        for (PlantItem plant : plants) {
+            add(plant);
+        }
+    }
+
+    // Plants with at least one indexed keyword
+    public synchronized int size() {
+        return liveDocs;
+    }
+
+    // Bytes used by all posting lists, for measuring the encoding
+    synchronized long getPostingBytes() {
+        long bytes = 0;
+        for (PostingList postings : terms.values()) {
+            bytes += postings.length;
+        }
+        return bytes;
+    }
+
+    // Best BM25 match first. Unless the query ends with a space, its last word is also treated
+    // as the start of a longer word, so results appear while typing.
+    public synchronized List<PlantItem> search(String query, int limit) {
+        List<PlantItem> results = new ArrayList<>();
+        List<String> queryTerms = tokenize(query);
+        if (liveDocs == 0 || limit <= 0 || (queryTerms.isEmpty() && query.trim().isEmpty())) {
+            return results;
+        }
+
+        if (scores.length < docs.size()) {
+            scores = new float[docs.size() * 2];
+            touched = new int[docs.size() * 2];
+        }
+        touchedCount = 0;
+
+        Set<String> scored = new HashSet<>();
+        for (String term : queryTerms) {
+            if (scored.add(term)) {
+                score(terms.get(term), 1f);
+            }
+        }
+        if (!query.isEmpty() && !Character.isWhitespace(query.charAt(query.length() - 1))) {
+            for (String expansion : expandLastWord(query)) {
+                if (scored.add(expansion)) {
+                    // Slightly below a typed word, which is what the user actually asked for
+                    score(terms.get(expansion), 0.8f);
+                }
+            }
+        }
+
+        int[] top = selectTop(limit);
+        for (int doc : top) {
+            results.add(docs.get(doc));
+        }
+        for (int i = 0; i < touchedCount; i++) {
+            scores[touched[i]] = 0f;
+        }
+        return results;
+    }
+
+    private void score(PostingList postings, float weight) {
+        if (postings == null || postings.liveCount == 0) {
+            return;
+        }
+        float averageLength = (float) liveLength / liveDocs;
+        float idf = (float) Math.log(1 + (liveDocs - postings.liveCount + 0.5) / (postings.liveCount + 0.5));
+
+        byte[] data = postings.data;
+        int position = 0;
+        int doc = 0;
+        boolean first = true;
+        while (position < postings.length) {
+            // Inline varint decoding; this loop is the whole cost of a query
+            int delta = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data[position++];
+                delta |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+            int frequency = 0;
+            shift = 0;
+            do {
+                b = data[position++];
+                frequency |= (b & 0x7f) << shift;
+                shift += 7;
+            } while ((b & 0x80) != 0);
+
+            doc = first ? delta : doc + delta;
+            first = false;
+            if (retired.get(doc)) {
+                continue;
+            }
+
+            float norm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+            float score = weight * idf * frequency * (K1 + 1) / (frequency + norm);
+            if (scores[doc] == 0f) {
+                touched[touchedCount++] = doc;
+            }
+            scores[doc] += score;
+        }
+    }
+
+    // Indexed terms the unfinished last word could become, plus stems it already contains
+    // ("digesti" is past the stem "digest")
+    private List<String> expandLastWord(String query) {
+        List<String> expansions = new ArrayList<>();
+        String[] words = query.toLowerCase().split("[^\\p{L}\\p{Nd}]+");
+        String last = words.length > 0 ? words[words.length - 1] : "";
+        if (last.length() < MIN_PREFIX_LENGTH || STOP_WORDS.contains(last)) {
+            return expansions;
+        }
+        for (String term : terms.subMap(last, last + Character.MAX_VALUE).keySet()) {
+            if (expansions.size() == MAX_PREFIX_EXPANSIONS) {
+                break;
+            }
+            expansions.add(term);
+        }
+        for (int length = last.length() - 1; length >= MIN_PREFIX_LENGTH; length--) {
+            String prefix = last.substring(0, length);
+            if (terms.containsKey(prefix)) {
+                expansions.add(prefix);
+                break;
+            }
+        }
+        return expansions;
+    }
+
+    private void retire(int doc) {
+        retired.set(doc);
+        liveDocs--;
+        liveLength -= docLengths[doc];
+        for (String term : docTerms.get(doc)) {
+            terms.get(term).liveCount--;
+        }
+        // Nothing else points at these any more
+        docs.set(doc, null);
+        docTerms.set(doc, new String[0]);
+    }
+
+    private static boolean sameKeywords(PlantItem indexed, PlantItem plant) {
+        return Objects.equals(indexed.getUses(), plant.getUses())
+                && Objects.equals(indexed.getMedicinalProperties(), plant.getMedicinalProperties())
+                && Objects.equals(indexed.getChemicalComponents(), plant.getChemicalComponents());
+    }
+
+    // Re-indexes the live documents from scratch, so queries stop decoding retired postings
+    private void compact() {
+        List<PlantItem> live = new ArrayList<>(liveDocs);
+        for (PlantItem plant : docs) {
+            if (plant != null) {
+                live.add(plant);
+            }
+        }
+        docs.clear();
+        docTerms.clear();
+        docLengths = new int[Math.max(16, live.size())];
+        retired.clear();
+        docByKey.clear();
+        terms.clear();
+        liveDocs = 0;
+        liveLength = 0;
+        for (PlantItem plant : live) {
+            add(plant);
+        }
+    }
+
+    private int[] selectTop(int limit) {
+        int[] top = new int[Math.min(limit, touchedCount)];
+        int size = 0;
+        for (int i = 0; i < touchedCount; i++) {
+            int candidate = touched[i];
+            if (size == top.length && scores[candidate] <= scores[top[size - 1]]) {
+                continue;
+            }
+            int position = size < top.length ? size++ : size - 1;
+            while (position > 0 && scores[candidate] > scores[top[position - 1]]) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = candidate;
+        }
+        return top;
+    }
+
+    // Lower case words without stop words, each reduced to its stem
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (PlantItem.isPlaceholder(text)) {
+            return tokens;
+        }
+        for (String word : text.toLowerCase().split("[^\\p{L}\\p{Nd}]+")) {
+            if (word.length() < 2 || STOP_WORDS.contains(word)) {
+                continue;
+            }
+            tokens.add(stem(word));
+        }
+        return tokens;
+    }
+
+    // A light suffix stripper, enough to make "fevers", "digestion" and "digestive" meet;
+    // stems are never shorter than three letters
+    static String stem(String word) {
+        if (word.length() <= 3) {
+            return word;
+        }
+
+        String stem = word;
+        if (stem.endsWith("ies") && stem.length() > 4) {
+            stem = stem.substring(0, stem.length() - 3) + "y";
+        } else if (stem.endsWith("sses")) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("es") && endsWithAny(stem.substring(0, stem.length() - 2), "s", "x", "z", "ch", "sh")) {
+            stem = stem.substring(0, stem.length() - 2);
+        } else if (stem.endsWith("s") && !endsWithAny(stem, "ss", "us", "is")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+
+        for (String suffix : SUFFIXES) {
+            if (stem.endsWith(suffix) && stem.length() - suffix.length() >= 3) {
+                stem = stem.substring(0, stem.length() - suffix.length());
+                break;
+            }
+        }
+
+        if (stem.length() > 4 && stem.endsWith("e")) {
+            stem = stem.substring(0, stem.length() - 1);
+        }
+        // "inflamm" (from "inflammation") and "inflam" (from "inflamed") are the same word
+        int n = stem.length();
+        if (n > 4 && stem.charAt(n - 1) == stem.charAt(n - 2) && "lsz".indexOf(stem.charAt(n - 1)) < 0
+                && "aeiou".indexOf(stem.charAt(n - 1)) < 0) {
+            stem = stem.substring(0, n - 1);
+        }
+        return stem;
+    }
+
+    private static boolean endsWithAny(String word, String... suffixes) {
+        for (String suffix : suffixes) {
+            if (word.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
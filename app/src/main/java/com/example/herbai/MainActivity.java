@@ -6,12 +6,8 @@ import android.content.Intent;
 import android.content.SharedPreferences;
 import android.content.pm.PackageManager;
 import android.graphics.Bitmap;
-import android.graphics.ImageDecoder;
-import java.io.FileNotFoundException;
 import android.os.Environment;
 import android.net.Uri;
-import android.os.Build;
-import java.util.concurrent.TimeUnit;
 
 import android.os.Bundle;
 import android.os.Handler;
@@ -40,27 +36,19 @@ import androidx.core.content.FileProvider;
 import com.google.android.material.floatingactionbutton.FloatingActionButton;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
-import org.json.JSONArray;
-import org.json.JSONException;
 import org.json.JSONObject;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.Executor;
 import java.util.concurrent.Executors;
 
-import okhttp3.Call;
-import okhttp3.Callback;
 import okhttp3.MediaType;
-import okhttp3.MultipartBody;
 import okhttp3.OkHttpClient;
-import okhttp3.Request;
 import okhttp3.RequestBody;
-import okhttp3.Response;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
@@ -68,6 +56,10 @@ public class MainActivity extends AppCompatActivity {
     private SwitchMaterial themeSwitch;
     private SharedPreferences sharedPreferences;
     private static final String PREFS_NAME = "theme_prefs";
+    // Percent; first answers from the small rendition below it are refined at full resolution
+    static final String STAGE_ONE_CONFIDENCE = "stage_one_confidence";
+    // Long edge of the small rendition identified first
+    private static final int STAGE_ONE_EDGE = 384;
     private static final String NIGHT_MODE = "night_mode";
     private ImageView imageView;
     private Uri imageUri;
@@ -85,9 +77,20 @@ public class MainActivity extends AppCompatActivity {
     private File cameraImageFile;
     private boolean isMenuVisible = false;
 
-    // Network client
+    // Network client (shared app-wide connection pool)
     private OkHttpClient client;
 
+    // Normalized plant records, cached in memory and on disk
+    private PlantRepository plantRepository;
+
+    // Downscales and re-encodes photos before they are uploaded
+    private ImagePreparer imagePreparer;
+    private UploadSpool uploadSpool;
+    // Decodes the selected photo at the image view's size, off the main thread
+    private PreviewDecoder previewDecoder;
+    // Starts /predict as soon as a photo is picked, so the tap often finds the answer waiting
+    private SpeculativeIdentifier identifier;
+
     // Replace with your actual server URL
     private static final String BASE_URL = "https://serverv1-1.onrender.com/";
 
@@ -103,15 +106,20 @@ public class MainActivity extends AppCompatActivity {
 
         setContentView(R.layout.activity_main);
 
-        // Initialize network client
-        // Initialize network client with extended timeouts for ML prediction
-        client = new OkHttpClient.Builder()
-                .connectTimeout(30, TimeUnit.SECONDS)      // Time to establish connection
-                .readTimeout(60, TimeUnit.SECONDS)         // Time to read response (important for ML predictions)
-                .writeTimeout(30, TimeUnit.SECONDS)        // Time to upload image
-                .retryOnConnectionFailure(true)            // Retry on connection failures
-                .build();
-
+        // Initialize network client; the predict profile has extended timeouts for ML prediction
+        client = ApiClient.getInstance().getPredictClient();
+
+        plantRepository = PlantRepository.getInstance(this);
+        imagePreparer = new ImagePreparer(getCacheDir());
+        uploadSpool = new UploadSpool(getCacheDir());
+        previewDecoder = new PreviewDecoder(getContentResolver());
+        identifier = new SpeculativeIdentifier(client, BASE_URL + "predict", this::createUpload,
+                executor, mainHandler::post, SpeculativeIdentifier.meteredNetwork(this),
+                photoId -> ImageHash.compute(getContentResolver(), Uri.parse(photoId)),
+                PredictionCache.getInstance(this));
+        // Images the backend has seen before are answered by hash, without uploading them again
+        identifier.setHashLookupUrl(BASE_URL + "predict_by_hash");
+        executor.execute(() -> UploadSpool.sweep(getCacheDir()));
 
         // Initialize loading dialog
         loadingDialog = new LoadingDialog(this);
@@ -153,6 +161,7 @@ public class MainActivity extends AppCompatActivity {
                         imageUri = result.getData().getData();
                         if (imageUri != null) {
                             displayImage(imageUri);
+                            identifier.speculate(imageUri.toString());
                             Log.d(TAG, "Image selected from gallery: " + imageUri.toString());
                         }
                     }
@@ -171,6 +180,7 @@ public class MainActivity extends AppCompatActivity {
                                 if (cameraImageFile.exists() && cameraImageFile.length() > 0) {
                                     imageUri = cameraImageUri;
                                     displayImage(cameraImageUri);
+                                    identifier.speculate(cameraImageUri.toString());
                                     Log.d(TAG, "Image captured successfully: " + cameraImageUri.toString());
                                     Log.d(TAG, "Camera file size: " + cameraImageFile.length() + " bytes");
                                 } else {
@@ -358,28 +368,32 @@ public class MainActivity extends AppCompatActivity {
         }
 
     private void displayImage(Uri uri) {
-        try {
-            if (uri == null) {
-                Log.e(TAG, "URI is null");
-                return;
-            }
+        if (uri == null) {
+            Log.e(TAG, "URI is null");
+            return;
+        }
 
-            Bitmap bitmap;
-            if (Build.VERSION.SDK_INT >= 29) {
-                ImageDecoder.Source source = ImageDecoder.createSource(getContentResolver(), uri);
-                bitmap = ImageDecoder.decodeBitmap(source);
-            } else {
-                bitmap = MediaStore.Images.Media.getBitmap(getContentResolver(), uri);
+        // The view has a fixed size; fall back to its layout size before the first layout
+        int width = imageView.getWidth() > 0 ? imageView.getWidth() : imageView.getLayoutParams().width;
+        int height = imageView.getHeight() > 0 ? imageView.getHeight() : imageView.getLayoutParams().height;
+        previewDecoder.decode(uri, width, height, new PreviewDecoder.Callback() {
+            @Override
+            public void onPreviewReady(Uri uri, Bitmap bitmap) {
+                if (isDestroyed()) {
+                    return;
+                }
+                imageView.setImageBitmap(bitmap);
+                Log.d(TAG, "Image displayed successfully");
             }
 
-            imageView.setImageBitmap(bitmap);
-            Log.d(TAG, "Image displayed successfully");
-
-        } catch (Exception e) {
-            Log.e(TAG, "Error displaying image: " + e.getMessage());
-            e.printStackTrace();
-            Toast.makeText(this, "Error displaying image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-        }
+            @Override
+            public void onPreviewFailed(Uri uri, Exception e) {
+                if (isDestroyed()) {
+                    return;
+                }
+                Toast.makeText(MainActivity.this, "Error displaying image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
 
@@ -388,445 +402,175 @@ public class MainActivity extends AppCompatActivity {
             Toast.makeText(this, "Please select or capture an image first!", Toast.LENGTH_SHORT).show();
             return;
         }
+        if (imageUri == null) {
+            Log.e(TAG, "No image URI to upload");
+            Toast.makeText(MainActivity.this, "Error preparing image file", Toast.LENGTH_SHORT).show();
+            showDummyResults();
+            return;
+        }
 
         loadingDialog.show();
         loadingDialog.setLoadingText("Identifying plant...");
 
-        executor.execute(() -> {
-            try {
-                File imageFile;
-
-                // Check if this is a camera image
-                if (cameraImageFile != null && cameraImageFile.exists() &&
-                        imageUri != null && imageUri.equals(cameraImageUri)) {
-
-                    // VALIDATE CAMERA FILE
-                    if (!cameraImageFile.exists()) {
-                        Log.e(TAG, "Camera file does not exist: " + cameraImageFile.getAbsolutePath());
-                        mainHandler.post(() -> {
-                            loadingDialog.dismiss();
-                            Toast.makeText(MainActivity.this, "Error: Camera image file not found", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-
-                    if (cameraImageFile.length() == 0) {
-                        Log.e(TAG, "Camera file is empty: " + cameraImageFile.getAbsolutePath());
-                        mainHandler.post(() -> {
-                            loadingDialog.dismiss();
-                            Toast.makeText(MainActivity.this, "Error: Camera image is empty", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-
-                    if (!cameraImageFile.canRead()) {
-                        Log.e(TAG, "Cannot read camera file: " + cameraImageFile.getAbsolutePath());
-                        mainHandler.post(() -> {
-                            loadingDialog.dismiss();
-                            Toast.makeText(MainActivity.this, "Error: Cannot read camera image", Toast.LENGTH_SHORT).show();
-                        });
-                        return;
-                    }
-
-                    imageFile = cameraImageFile;
-                    Log.d(TAG, "Using original camera file: " + imageFile.getAbsolutePath());
-                    Log.d(TAG, "Camera file size: " + imageFile.length() + " bytes");
-                    Log.d(TAG, "Camera file readable: " + imageFile.canRead());
-                } else {
-                    // For gallery images, create temp file as before
-                    imageFile = createTempFileFromUri(imageUri);
-                }
-
-                if (imageFile == null || !imageFile.exists()) {
-                    Log.e(TAG, "Final image file is null or doesn't exist");
-                    mainHandler.post(() -> {
-                        loadingDialog.dismiss();
-                        Toast.makeText(MainActivity.this, "Error preparing image file", Toast.LENGTH_SHORT).show();
-                        showDummyResults();
-                    });
+        // Picks up the upload started on selection, if there is one
+        identifier.identify(imageUri.toString(), new SpeculativeIdentifier.Listener() {
+            // Set once the first answer is on screen; main thread only
+            private IdentificationPipeline pipeline;
+            // A refinement outcome that came in before the pipeline existed; null candidates mean it failed
+            private boolean refinementArrived;
+            private List<IdentificationPipeline.Candidate> refinedCandidates;
+
+            @Override
+            public void onPrediction(JSONObject jsonResponse, boolean refining) {
+                // The top species and its alternatives, in confidence order
+                List<IdentificationPipeline.Candidate> candidates =
+                        IdentificationPipeline.parseCandidates(jsonResponse, IdentificationPipeline.TOP_K);
+                if (candidates.isEmpty()) {
+                    Log.e(TAG, "No species found in prediction response");
+                    loadingDialog.dismiss();
+                    Toast.makeText(MainActivity.this, "No plant identified", Toast.LENGTH_SHORT).show();
+                    showDummyResults();
                     return;
                 }
 
-                if (imageFile.length() == 0) {
-                    Log.e(TAG, "Final image file is empty");
-                    mainHandler.post(() -> {
-                        loadingDialog.dismiss();
-                        Toast.makeText(MainActivity.this, "Error: Image file is empty", Toast.LENGTH_SHORT).show();
-                        showDummyResults();
-                    });
-                    return;
-                }
+                IdentificationPipeline.Candidate top = candidates.get(0);
+                Log.d(TAG, "Identified plant: " + top.getSpecies() + " (confidence: " + top.getConfidence() + ")"
+                        + (refining ? ", refining at full resolution" : ""));
 
-                Log.d(TAG, "=== UPLOADING IMAGE ===");
-                Log.d(TAG, "File path: " + imageFile.getAbsolutePath());
-                Log.d(TAG, "File size: " + imageFile.length() + " bytes");
-                Log.d(TAG, "File readable: " + imageFile.canRead());
-                Log.d(TAG, "File name: " + imageFile.getName());
-
-                // Step 1: Call /predict endpoint for plant identification
-                RequestBody requestBody = new MultipartBody.Builder()
-                        .setType(MultipartBody.FORM)
-                        .addFormDataPart("file", imageFile.getName(),
-                                RequestBody.create(imageFile, MediaType.parse("image/*")))
-                        .build();
-
-                Request request = new Request.Builder()
-                        .url(BASE_URL + "predict")
-                        .post(requestBody)
-                        .build();
-
-                Log.d(TAG, "Sending request to: " + BASE_URL + "predict");
-
-                client.newCall(request).enqueue(new Callback() {
-                    @Override
-                    public void onFailure(Call call, IOException e) {
-                        Log.e(TAG, "Prediction failed: " + e.getMessage());
-                        Log.e(TAG, "Exception class: " + e.getClass().getName());
-                        e.printStackTrace();
-                        mainHandler.post(() -> {
-                            loadingDialog.dismiss();
-                            Toast.makeText(MainActivity.this, "Prediction failed: " + e.getMessage(), Toast.LENGTH_LONG).show();
-                            showDummyResults();
-                        });
-                    }
+                executor.execute(() -> {
+                    // Keep any database matches so the detail lookups below can be answered locally
+                    plantRepository.putPredictResponse(jsonResponse);
 
-                    @Override
-                    public void onResponse(Call call, Response response) throws IOException {
-                        String responseBody = response.body().string();
-                        Log.d(TAG, "=== PREDICTION RESPONSE ===");
-                        Log.d(TAG, "Response code: " + response.code());
-                        Log.d(TAG, responseBody);
-
-                        // ... rest of your response handling code
-
-                        Log.d(TAG, "=== PREDICTION RESPONSE ===");
-                        Log.d(TAG, responseBody);
-
-                        try {
-                            JSONObject jsonResponse = new JSONObject(responseBody);
-
-                            // Check for error
-                            if (jsonResponse.has("error")) {
-                                String errorMessage = jsonResponse.getString("error");
-                                Log.e(TAG, "Prediction error: " + errorMessage);
-                                mainHandler.post(() -> {
-                                    loadingDialog.dismiss();
-                                    Toast.makeText(MainActivity.this, "Prediction error: " + errorMessage, Toast.LENGTH_SHORT).show();
-                                    showDummyResults();
-                                });
-                                return;
-                            }
-
-                            // Extract plant name from prediction response
-                            String identifiedPlantName = "";
-                            double confidence = 0.0;
-                            ArrayList<String> topPredictions = new ArrayList<>();
-
-                            if (jsonResponse.has("species")) {
-                                identifiedPlantName = jsonResponse.getString("species");
-                                confidence = jsonResponse.optDouble("confidence", 0.0);
-
-                                // Extract top predictions for backup
-                                if (jsonResponse.has("top_predictions")) {
-                                    JSONArray predictions = jsonResponse.getJSONArray("top_predictions");
-                                    for (int i = 0; i < Math.min(3, predictions.length()); i++) {
-                                        JSONObject pred = predictions.getJSONObject(i);
-                                        String species = pred.optString("species", "");
-                                        double predConf = pred.optDouble("confidence", 0.0);
-                                        topPredictions.add(species + " (" + String.format("%.1f", predConf * 100) + "%)");
-                                    }
-                                }
-                            } else {
-                                Log.e(TAG, "No species found in prediction response");
-                                mainHandler.post(() -> {
-                                    loadingDialog.dismiss();
-                                    Toast.makeText(MainActivity.this, "No plant identified", Toast.LENGTH_SHORT).show();
-                                    showDummyResults();
-                                });
-                                return;
-                            }
-
-                            Log.d(TAG, "Identified plant: " + identifiedPlantName + " (confidence: " + confidence + ")");
-
-                            // Step 2: Call /smart_search for detailed information
-                            mainHandler.post(() -> loadingDialog.setLoadingText("Fetching plant details..."));
-
-                            fetchDetailedPlantInfo(identifiedPlantName, confidence, topPredictions);
-
-                        } catch (JSONException e) {
-                            Log.e(TAG, "Error parsing prediction response: " + e.getMessage());
-                            mainHandler.post(() -> {
-                                loadingDialog.dismiss();
-                                Toast.makeText(MainActivity.this, "Error parsing prediction response", Toast.LENGTH_SHORT).show();
-                                showDummyResults();
-                            });
+                    // Step 2: look up every candidate in parallel and show the result right away
+                    mainHandler.post(() -> {
+                        loadingDialog.dismiss();
+                        pipeline = IdentificationPipeline.start(plantRepository, candidates);
+                        pipeline.setRefining(refining);
+                        if (refinementArrived) {
+                            pipeline.refine(refinedCandidates);
                         }
-                    }
+                        showPipelinedResult(pipeline);
+                    });
                 });
+            }
 
-            } catch (Exception e) {
-                Log.e(TAG, "Error preparing image: " + e.getMessage());
-                mainHandler.post(() -> {
-                    loadingDialog.dismiss();
-                    Toast.makeText(MainActivity.this, "Error preparing image: " + e.getMessage(), Toast.LENGTH_SHORT).show();
-                    showDummyResults();
+            @Override
+            public void onRefined(JSONObject jsonResponse) {
+                List<IdentificationPipeline.Candidate> candidates =
+                        IdentificationPipeline.parseCandidates(jsonResponse, IdentificationPipeline.TOP_K);
+                Log.d(TAG, "Refined identification: " + (candidates.isEmpty() ? "no species" : candidates.get(0).getLabel())
+                        + "; " + Math.round(identifier.getStageOneShare() * 100) + "% resolved at stage one, "
+                        + identifier.getStageOneBytesSaved() + " bytes saved");
+                executor.execute(() -> {
+                    plantRepository.putPredictResponse(jsonResponse);
+                    mainHandler.post(() -> refine(candidates));
                 });
             }
-        });
-    }
-
-
-
-
-
-
-    // Replace the fetchDetailedPlantInfo method in MainActivity with this fixed version
-    private void fetchDetailedPlantInfo(String plantName, double confidence, ArrayList<String> fallbackPredictions) {
-        try {
-            // Use %20 encoding instead of + encoding for spaces
-            String encodedPlantName = plantName.replace(" ", "%20");
-            String smartSearchUrl = BASE_URL + "smart_search/" + encodedPlantName;
-
-            Log.d(TAG, "Original plant name: " + plantName);
-            Log.d(TAG, "Encoded plant name: " + encodedPlantName);
-            Log.d(TAG, "Fetching details from: " + smartSearchUrl);
-
-            Request request = new Request.Builder()
-                    .url(smartSearchUrl)
-                    .get()
-                    .build();
-
-            client.newCall(request).enqueue(new Callback() {
-                @Override
-                public void onFailure(Call call, IOException e) {
-                    Log.e(TAG, "Smart search failed: " + e.getMessage());
-                    mainHandler.post(() -> {
-                        loadingDialog.dismiss();
-                        // Show results with limited info from prediction
-                        showLimitedResults(plantName, confidence, fallbackPredictions);
-                    });
-                }
 
-                @Override
-                public void onResponse(Call call, Response response) throws IOException {
-                    String responseBody = response.body().string();
-                    Log.d(TAG, "=== SMART SEARCH RESPONSE ===");
-                    Log.d(TAG, "Response code: " + response.code());
-                    Log.d(TAG, "Response body: " + responseBody);
+            @Override
+            public void onRefinementFailed(String message) {
+                Log.w(TAG, "Refinement failed, keeping the first answer: " + message);
+                refine(null);
+            }
 
-                    mainHandler.post(() -> {
-                        loadingDialog.dismiss();
-                        processSmartSearchResponse(responseBody, plantName, confidence, fallbackPredictions);
-                    });
+            // The pipeline may still be starting; it then picks the outcome up when it does
+            private void refine(List<IdentificationPipeline.Candidate> candidates) {
+                if (pipeline == null) {
+                    refinementArrived = true;
+                    refinedCandidates = candidates;
+                    return;
                 }
-            });
+                pipeline.refine(candidates);
+            }
 
-        } catch (Exception e) {
-            Log.e(TAG, "Error in smart search request: " + e.getMessage());
-            mainHandler.post(() -> {
+            @Override
+            public void onFailure(String message) {
                 loadingDialog.dismiss();
-                showLimitedResults(plantName, confidence, fallbackPredictions);
-            });
-        }
-    }
-    // Process the smart_search response and launch ResultActivity
-    private void processSmartSearchResponse(String responseBody, String fallbackPlantName, double confidence, ArrayList<String> fallbackPredictions) {
-        try {
-            JSONObject jsonResponse = new JSONObject(responseBody);
-
-            // Check for success
-            if (!jsonResponse.has("success") || !jsonResponse.getBoolean("success")) {
-                Log.w(TAG, "Smart search was not successful");
-                showLimitedResults(fallbackPlantName, confidence, fallbackPredictions);
-                return;
+                Toast.makeText(MainActivity.this, message, Toast.LENGTH_LONG).show();
+                showDummyResults();
             }
+        });
+    }
 
-            // Extract results array
-            if (!jsonResponse.has("results")) {
-                Log.w(TAG, "No results in smart search response");
-                showLimitedResults(fallbackPlantName, confidence, fallbackPredictions);
-                return;
+    // Called by SpeculativeIdentifier on its work thread, on selection or on the tap
+    private SpeculativeIdentifier.Upload createUpload(String photoId) throws IOException {
+        Uri uri = Uri.parse(photoId);
+        // Camera shots are read from their file, gallery images are streamed from the ContentResolver
+        File cameraFile = cameraImageFile;
+        boolean isCameraImage = cameraFile != null && cameraFile.exists() && uri.equals(cameraImageUri);
+
+        if (isCameraImage) {
+            // VALIDATE CAMERA FILE
+            if (cameraFile.length() == 0) {
+                throw new IOException("Camera image is empty");
             }
-
-            JSONArray results = jsonResponse.getJSONArray("results");
-            if (results.length() == 0) {
-                Log.w(TAG, "Empty results array");
-                showLimitedResults(fallbackPlantName, confidence, fallbackPredictions);
-                return;
+            if (!cameraFile.canRead()) {
+                throw new IOException("Cannot read camera image");
             }
+            Log.d(TAG, "Using original camera file: " + cameraFile.getAbsolutePath());
+            Log.d(TAG, "Camera file size: " + cameraFile.length() + " bytes");
+        }
 
-            // Extract data from the first (and should be only) result
-            JSONObject plantData = results.getJSONObject(0);
-
-            Log.d(TAG, "=== EXTRACTING PLANT DATA ===");
-
-            // Extract all available fields with fallbacks
-            String plantName = extractPlantField(plantData, "plant_name", fallbackPlantName);
-            String scientificName = extractPlantField(plantData, "scientific_name", plantName);
-            String family = extractPlantField(plantData, "family", "");
-            String habitat = extractPlantField(plantData, "habitat", "");
-            String uses = extractPlantField(plantData, "uses", "");
-            String medicinalProperties = extractPlantField(plantData, "medicinal_properties", "");
-            String chemicalComponents = extractPlantField(plantData, "chemical_components", "");
-
-            // Create probable plants list (include original predictions as fallback)
-            ArrayList<String> probablePlants = new ArrayList<>();
-            probablePlants.add(plantName);
-
-            // Add fallback predictions if we have them
-            if (fallbackPredictions != null && !fallbackPredictions.isEmpty()) {
-                for (String pred : fallbackPredictions) {
-                    if (!probablePlants.contains(pred)) {
-                        probablePlants.add(pred);
-                    }
-                }
-            }
+        // Downscale to the model input size before uploading, with a small rendition to try first
+        ImagePreparer.PreparedImage prepared = prepareForUpload(uri, isCameraImage ? cameraFile : null);
+        File preparedFile = prepared != null ? prepared.getFile() : null;
+        SpeculativeIdentifier.Upload full;
+        if (preparedFile != null) {
+            full = new SpeculativeIdentifier.Upload(RequestBody.create(preparedFile, MediaType.parse("image/*")),
+                    preparedFile.getName(), preparedFile);
+        } else if (isCameraImage) {
+            full = new SpeculativeIdentifier.Upload(RequestBody.create(cameraFile, MediaType.parse("image/*")),
+                    cameraFile.getName(), null);
+        } else {
+            // A spooled copy is deleted with the upload, like a prepared rendition
+            RequestBody body = UriRequestBody.create(getContentResolver(), uri, uploadSpool);
+            full = new SpeculativeIdentifier.Upload(body,
+                    UriRequestBody.queryDisplayName(getContentResolver(), uri, "upload.jpg"),
+                    UriRequestBody.spooledFile(body));
+        }
 
-            // Log extracted values
-            Log.d(TAG, "Final plant name: '" + plantName + "'");
-            Log.d(TAG, "Final scientific name: '" + scientificName + "'");
-            Log.d(TAG, "Final family: '" + family + "'");
-            Log.d(TAG, "Final habitat: '" + habitat + "'");
-            Log.d(TAG, "Final uses: '" + uses + "'");
-
-            // Create and start ResultActivity
-            Intent intent = new Intent(MainActivity.this, ResultActivity.class);
-            intent.putExtra("plantName", plantName);
-            intent.putExtra("scientificName", scientificName);
-            intent.putExtra("family", family);
-            intent.putExtra("habitat", habitat);
-            intent.putExtra("uses", uses);
-            intent.putExtra("confidence", confidence);
-            intent.putExtra("isRealIdentification", true);
-            intent.putExtra("isFromSearchRoute", false);
-            intent.putExtra("hasDbImages", false);
-
-            // Database information
-            intent.putExtra("databaseUses", uses);
-            intent.putExtra("databaseMedicinalProperties", medicinalProperties);
-            intent.putExtra("databaseChemicalComponents", chemicalComponents);
-
-            intent.putStringArrayListExtra("dbImageUrls", new ArrayList<String>());
-            intent.putStringArrayListExtra("probablePlants", probablePlants);
-
-            startActivity(intent);
-
-        } catch (JSONException e) {
-            Log.e(TAG, "Error parsing smart search response: " + e.getMessage());
-            e.printStackTrace();
-            showLimitedResults(fallbackPlantName, confidence, fallbackPredictions);
-        } catch (Exception e) {
-            Log.e(TAG, "Unexpected error processing smart search: " + e.getMessage());
-            e.printStackTrace();
-            showLimitedResults(fallbackPlantName, confidence, fallbackPredictions);
+        ImagePreparer.PreparedImage small = prepared != null ? prepared.getSmall() : null;
+        if (small == null) {
+            return full;
         }
+        return new SpeculativeIdentifier.Upload(RequestBody.create(small.getFile(), MediaType.parse("image/*")),
+                small.getFile().getName(), small.getFile(), full);
     }
 
-    // Helper method to extract plant field with validation
-    private String extractPlantField(JSONObject plantData, String fieldName, String fallback) {
-        String value = plantData.optString(fieldName, "").trim();
-
-        // Check if value is meaningful
-        if (value.isEmpty() ||
-                value.equals("null") ||
-                value.equals("NULL") ||
-                value.equals("None") ||
-                value.equals("Unknown")) {
-
-            Log.d(TAG, "Field '" + fieldName + "' is empty/null, using fallback: '" + fallback + "'");
-            return fallback;
+    // Runs the image through the preparation stage; null means upload the original
+    private ImagePreparer.PreparedImage prepareForUpload(Uri uri, File cameraFile) {
+        if (imagePreparer == null) {
+            return null;
         }
 
-        Log.d(TAG, "Field '" + fieldName + "': '" + value + "'");
-        return value;
+        try {
+            ImagePreparer.PreparedImage prepared = cameraFile != null
+                    ? imagePreparer.prepare(cameraFile, STAGE_ONE_EDGE)
+                    : imagePreparer.prepare(getContentResolver(), uri, STAGE_ONE_EDGE);
+            Log.d(TAG, "Prepared upload: " + prepared.getPreparedBytes() + " bytes (saved "
+                    + prepared.getBytesSaved() + " bytes in " + prepared.getEncodeTimeMs() + " ms)");
+            return prepared;
+        } catch (IOException | OutOfMemoryError e) {
+            Log.w(TAG, "Image preparation failed, uploading original: " + e.getMessage());
+            return null;
+        }
     }
 
-    // Show results with limited information when smart search fails
-    private void showLimitedResults(String plantName, double confidence, ArrayList<String> probablePlants) {
-        Log.d(TAG, "Showing limited results for: " + plantName);
-
+    // Opens ResultActivity with what /predict returned; the details arrive through the pipeline
+    private void showPipelinedResult(IdentificationPipeline pipeline) {
         Intent intent = new Intent(MainActivity.this, ResultActivity.class);
-        intent.putExtra("plantName", plantName);
-        intent.putExtra("scientificName", plantName);
-        intent.putExtra("family", "");
-        intent.putExtra("habitat", "");
-        intent.putExtra("uses", "Detailed information is being fetched. Please use 'Search More' for additional details.");
-        intent.putExtra("confidence", confidence);
+        pipeline.putCandidateExtras(intent);
         intent.putExtra("isRealIdentification", true);
         intent.putExtra("isFromSearchRoute", false);
-        intent.putExtra("hasDbImages", false);
-
-        // Empty database information
-        intent.putExtra("databaseUses", "");
-        intent.putExtra("databaseMedicinalProperties", "");
-        intent.putExtra("databaseChemicalComponents", "");
-
-        intent.putStringArrayListExtra("dbImageUrls", new ArrayList<String>());
-        intent.putStringArrayListExtra("probablePlants", probablePlants != null ? probablePlants : new ArrayList<String>());
+        intent.putExtra("detailsPending", true);
+        intent.putExtra(IdentificationPipeline.EXTRA_PIPELINE_ID, pipeline.getId());
+        intent.putExtra(IdentificationPipeline.EXTRA_REFINABLE, true);
 
         startActivity(intent);
     }
 
 
 
-    private File createTempFileFromUri(Uri uri) {
-        try {
-            if (uri == null) {
-                Log.e(TAG, "URI is null");
-                return null;
-            }
-
-            Log.d(TAG, "Creating temp file from URI: " + uri.toString());
-            Log.d(TAG, "URI scheme: " + uri.getScheme());
-
-            // CHECK IF THIS IS CAMERA IMAGE - RETURN ORIGINAL FILE
-            if (cameraImageFile != null && cameraImageFile.exists() &&
-                    uri.equals(cameraImageUri)) {
-                Log.d(TAG, "Using original camera file: " + cameraImageFile.getAbsolutePath());
-                Log.d(TAG, "Camera file size: " + cameraImageFile.length());
-                Log.d(TAG, "Camera file can read: " + cameraImageFile.canRead());
-
-                // IMPORTANT: Return the camera file directly, don't copy it!
-                return cameraImageFile;
-            }
-
-            // For gallery images or other content URIs, create a temp file
-            File tempFile = new File(getCacheDir(), "temp_image_" + System.currentTimeMillis() + ".jpg");
-
-            try (InputStream inputStream = getContentResolver().openInputStream(uri);
-                 FileOutputStream outputStream = new FileOutputStream(tempFile)) {
-
-                if (inputStream == null) {
-                    Log.e(TAG, "InputStream is null for URI: " + uri);
-                    return null;
-                }
-
-                byte[] buffer = new byte[8192];
-                int bytesRead;
-                long totalBytesRead = 0;
-
-                while ((bytesRead = inputStream.read(buffer)) != -1) {
-                    outputStream.write(buffer, 0, bytesRead);
-                    totalBytesRead += bytesRead;
-                }
-
-                Log.d(TAG, "Temp file created: " + tempFile.getAbsolutePath());
-                Log.d(TAG, "Total bytes copied: " + totalBytesRead);
-
-                return tempFile;
-            }
-        } catch (FileNotFoundException e) {
-            Log.e(TAG, "File not found for URI: " + uri);
-            e.printStackTrace();
-            return null;
-        } catch (Exception e) {
-            Log.e(TAG, "Error creating temp file: " + e.getMessage());
-            e.printStackTrace();
-            return null;
-        }
-    }
-
-
 private void showDummyResults() {
         ArrayList<String> probablePlants = new ArrayList<>(Arrays.asList(
                 "Tulsi (Holy Basil)", "Neem", "Aloe Vera"
@@ -865,4 +609,29 @@ private void showDummyResults() {
             }
         }
     }
-}
\ No newline at end of file
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        // The threshold may have been changed in Settings
+        identifier.setConfidenceThreshold(getStageOneConfidence(sharedPreferences));
+    }
+
+    // 0..1, from the percent stored by SettingsActivity
+    static double getStageOneConfidence(SharedPreferences preferences) {
+        int percent = preferences.getInt(STAGE_ONE_CONFIDENCE,
+                (int) Math.round(SpeculativeIdentifier.DEFAULT_CONFIDENCE_THRESHOLD * 100));
+        return clampConfidencePercent(percent) / 100.0;
+    }
+
+    static int clampConfidencePercent(int percent) {
+        return Math.max(0, Math.min(100, percent));
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        previewDecoder.shutdown();
+        identifier.cancel();
+    }
+}
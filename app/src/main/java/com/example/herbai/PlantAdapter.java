@@ -10,118 +10,158 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
-import java.util.ArrayList;
+import java.nio.charset.StandardCharsets;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
-public class PlantAdapter extends RecyclerView.Adapter<PlantAdapter.PlantViewHolder> {
+// Search results for both search screens. Lists are diffed on a background thread by
+// ListAdapter, so a new query only rebinds the cards that changed, and every plant keeps
+// the same item id across queries, so RecyclerView can reuse its card.
+public class PlantAdapter extends ListAdapter<PlantItem, PlantAdapter.PlantViewHolder> {
     private static final String TAG = "PlantAdapter";
-    private List<PlantItem> plantList;
-    private Context context;
 
-    public PlantAdapter(List<PlantItem> plantList) {
-        // Ensure plantList is never null
-        this.plantList = plantList != null ? plantList : new ArrayList<>();
-        Log.d(TAG, "PlantAdapter created with " + this.plantList.size() + " items");
+    private final OnPlantClickListener clickListener;
+    // Plants without a repository key, by instance; only those in the current list are kept
+    private final Map<PlantItem, Long> unnamedIds = new IdentityHashMap<>();
+    private long nextUnnamedId;
+
+    public interface OnPlantClickListener {
+        void onPlantClick(PlantItem plant);
+    }
+
+    // Same plant: same repository key, or the same object for plants without one.
+    // Same contents: everything the card shows is equal.
+    static final DiffUtil.ItemCallback<PlantItem> DIFF_CALLBACK = new DiffUtil.ItemCallback<PlantItem>() {
+        @Override
+        public boolean areItemsTheSame(@NonNull PlantItem oldItem, @NonNull PlantItem newItem) {
+            String key = PlantRepository.keyFor(oldItem);
+            return key.isEmpty() ? oldItem == newItem : key.equals(PlantRepository.keyFor(newItem));
+        }
+
+        @Override
+        public boolean areContentsTheSame(@NonNull PlantItem oldItem, @NonNull PlantItem newItem) {
+            return Objects.equals(oldItem.getDisplayTitle(), newItem.getDisplayTitle())
+                    && Objects.equals(oldItem.getScientificName(), newItem.getScientificName())
+                    && Objects.equals(oldItem.getFamily(), newItem.getFamily())
+                    && Objects.equals(oldItem.getShortDescription(), newItem.getShortDescription())
+                    && Objects.equals(oldItem.getDataSource(), newItem.getDataSource())
+                    && oldItem.isAutoGenerated() == newItem.isAutoGenerated();
+        }
+    };
+
+    // Opens the plant in PlantDetailActivity
+    public PlantAdapter() {
+        this(null);
+    }
+
+    public PlantAdapter(OnPlantClickListener clickListener) {
+        super(DIFF_CALLBACK);
+        this.clickListener = clickListener;
+        setHasStableIds(true);
+    }
+
+    @Override
+    public long getItemId(int position) {
+        PlantItem plant = getItem(position);
+        String key = PlantRepository.keyFor(plant);
+        if (!key.isEmpty()) {
+            return itemIdFor(key);
+        }
+        Long id = unnamedIds.get(plant);
+        if (id == null) {
+            id = nextUnnamedId++;
+            unnamedIds.put(plant, id);
+        }
+        return id;
     }
 
-    // Method to update the plant list
-    public void updatePlantList(List<PlantItem> newPlantList) {
-        this.plantList = newPlantList != null ? newPlantList : new ArrayList<>();
-        Log.d(TAG, "Plant list updated with " + this.plantList.size() + " items");
-        notifyDataSetChanged();
+    @Override
+    public void onCurrentListChanged(@NonNull List<PlantItem> previousList, @NonNull List<PlantItem> currentList) {
+        if (unnamedIds.isEmpty()) {
+            return;
+        }
+        Map<PlantItem, Long> shown = new IdentityHashMap<>();
+        for (PlantItem plant : currentList) {
+            Long id = unnamedIds.get(plant);
+            if (id != null) {
+                shown.put(plant, id);
+            }
+        }
+        unnamedIds.clear();
+        unnamedIds.putAll(shown);
     }
 
     @NonNull
     @Override
     public PlantViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
-        context = parent.getContext();
-        View view = LayoutInflater.from(context).inflate(R.layout.item_plant, parent, false);
-        Log.d(TAG, "onCreateViewHolder called");
+        View view = LayoutInflater.from(parent.getContext()).inflate(R.layout.item_plant, parent, false);
         return new PlantViewHolder(view);
     }
 
+    // Called for every card scrolled into view, so no logging here
     @Override
     public void onBindViewHolder(@NonNull PlantViewHolder holder, int position) {
-        Log.d(TAG, "onBindViewHolder called for position: " + position);
-
-        if (plantList == null || position >= plantList.size()) {
-            Log.w(TAG, "Invalid position or null plantList. Position: " + position + ", List size: " + (plantList != null ? plantList.size() : "null"));
-            return;
-        }
-
-        PlantItem plant = plantList.get(position);
+        PlantItem plant = getItem(position);
         if (plant == null) {
             Log.w(TAG, "Plant at position " + position + " is null");
             return;
         }
 
-        Log.d(TAG, "Binding plant: " + plant.getDisplayTitle());
-
-        // Set plant name with null check
         String plantName = plant.getDisplayTitle();
         String displayName = (plantName != null && !plantName.trim().isEmpty()) ? plantName : "Unknown Plant";
         holder.plantNameTextView.setText(displayName);
-        Log.d(TAG, "Set plant name: " + displayName);
 
-        // Set scientific name with null check
         String scientificName = plant.getScientificName();
         String displayScientificName = (scientificName != null && !scientificName.trim().isEmpty() && !scientificName.equals("Unknown"))
                 ? scientificName : "Scientific name not available";
         holder.scientificNameTextView.setText(displayScientificName);
-        Log.d(TAG, "Set scientific name: " + displayScientificName);
 
-        // Set family with null check
         String family = plant.getFamily();
         String displayFamily = (family != null && !family.trim().isEmpty() && !family.equals("Unknown"))
                 ? "Family: " + family : "Family: Unknown";
         holder.familyTextView.setText(displayFamily);
-        Log.d(TAG, "Set family: " + displayFamily);
 
-        // Set short description with null check
         String shortDescription = plant.getShortDescription();
         String displayDescription = (shortDescription != null && !shortDescription.trim().isEmpty())
                 ? shortDescription : "No description available";
         holder.shortDescriptionTextView.setText(displayDescription);
-        Log.d(TAG, "Set description: " + displayDescription);
 
-        // Show data source indicator with null check
         String dataSource = plant.getDataSource();
         String dataSourceText = "Source: " + (dataSource != null ? dataSource : "Unknown");
         if (plant.isAutoGenerated()) {
             dataSourceText += " (Auto-generated)";
         }
         holder.dataSourceTextView.setText(dataSourceText);
-        Log.d(TAG, "Set data source: " + dataSourceText);
 
-        // Set click listener for the card
         holder.cardView.setOnClickListener(v -> {
             Log.d(TAG, "Card clicked for: " + plant.getDisplayTitle());
+            if (clickListener != null) {
+                clickListener.onPlantClick(plant);
+                return;
+            }
+            Context context = v.getContext();
             Intent intent = new Intent(context, PlantDetailActivity.class);
-            intent.putExtra("plant_name", plant.getPlantName() != null ? plant.getPlantName() : "");
-            intent.putExtra("scientific_name", plant.getScientificName() != null ? plant.getScientificName() : "");
-            intent.putExtra("family", plant.getFamily() != null ? plant.getFamily() : "");
-            intent.putExtra("kingdom", plant.getKingdom() != null ? plant.getKingdom() : "");
-            intent.putExtra("genus", plant.getGenus() != null ? plant.getGenus() : "");
-            intent.putExtra("species", plant.getSpecies() != null ? plant.getSpecies() : "");
-            intent.putExtra("medicinal_properties", plant.getMedicinalProperties() != null ? plant.getMedicinalProperties() : "");
-            intent.putExtra("habitat", plant.getHabitat() != null ? plant.getHabitat() : "");
-            intent.putExtra("uses", plant.getUses() != null ? plant.getUses() : "");
-            intent.putExtra("chemical_components", plant.getChemicalComponents() != null ? plant.getChemicalComponents() : "");
-            intent.putExtra("auto_generated", plant.isAutoGenerated());
-            intent.putExtra("data_source", plant.getDataSource() != null ? plant.getDataSource() : "");
+            intent.putExtra(ResultStore.EXTRA_TOKEN, ResultStore.getInstance(context).put(plant));
             context.startActivity(intent);
         });
-
-        Log.d(TAG, "Successfully bound plant at position " + position);
     }
 
-    @Override
-    public int getItemCount() {
-        int count = plantList != null ? plantList.size() : 0;
-        Log.d(TAG, "getItemCount called, returning: " + count);
-        return count;
+    // 64-bit FNV-1a of the repository key: the same in every adapter, with no table to grow.
+    // A collision among a screen's few hundred plants is vanishingly unlikely.
+    static long itemIdFor(String key) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        // RecyclerView.NO_ID means "no stable id"
+        return hash == RecyclerView.NO_ID ? 0 : hash;
     }
 
     public static class PlantViewHolder extends RecyclerView.ViewHolder {
@@ -150,4 +190,4 @@ public class PlantAdapter extends RecyclerView.Adapter<PlantAdapter.PlantViewHol
             if (dataSourceTextView == null) Log.e("PlantAdapter", "dataSourceTextView not found");
         }
     }
-}
\ No newline at end of file
+}
@@ -40,6 +40,8 @@ public class PlantDetailActivity extends AppCompatActivity {
     private CardView chemicalCard;
 
     // Data storage
+    private String plantName;
+    private String scientificName;
     private String completeUsesText = "";
     private boolean isExpanded = false;
 
@@ -58,7 +60,7 @@ public class PlantDetailActivity extends AppCompatActivity {
         initializeViews();
         setupThemeSwitch();
         setupButtons();
-        displayPlantData();
+        loadPlantData();
     }
 
     private void initializeViews() {
@@ -119,20 +121,29 @@ public class PlantDetailActivity extends AppCompatActivity {
         });
     }
 
-    private void displayPlantData() {
-        Intent intent = getIntent();
-
-        // Extract plant data from intent
-        String plantName = intent.getStringExtra("plantName");
-        String scientificName = intent.getStringExtra("scientificName");
-        String family = intent.getStringExtra("family");
-        String habitat = intent.getStringExtra("habitat");
-        String genus = intent.getStringExtra("genus");
-        String uses = intent.getStringExtra("uses");
-        String medicinalProperties = intent.getStringExtra("medicinalProperties");
-        String chemicalComponents = intent.getStringExtra("chemicalComponents");
-        String dataSource = intent.getStringExtra("dataSource");
-        boolean autoGenerated = intent.getBooleanExtra("autoGenerated", false);
+    // The plant comes from ResultStore; after process death it is restored from the plant repository
+    private void loadPlantData() {
+        String token = getIntent().getStringExtra(ResultStore.EXTRA_TOKEN);
+        ResultStore.getInstance(this).load(token, plant -> {
+            if (isFinishing() || isDestroyed()) {
+                return;
+            }
+            displayPlantData(plant != null ? plant : new PlantItem());
+        });
+    }
+
+    private void displayPlantData(PlantItem plant) {
+        // Extract plant data; placeholders from the PlantItem getters count as missing
+        plantName = detailValue(plant.getPlantName());
+        scientificName = detailValue(plant.getScientificName());
+        String family = detailValue(plant.getFamily());
+        String habitat = detailValue(plant.getHabitat());
+        String genus = detailValue(plant.getGenus());
+        String uses = detailValue(plant.getUses());
+        String medicinalProperties = detailValue(plant.getMedicinalProperties());
+        String chemicalComponents = detailValue(plant.getChemicalComponents());
+        String dataSource = detailValue(plant.getDataSource());
+        boolean autoGenerated = plant.isAutoGenerated();
 
         Log.d(TAG, "=== DISPLAYING PLANT DETAIL DATA ===");
         Log.d(TAG, "Plant name: " + plantName);
@@ -237,6 +248,10 @@ public class PlantDetailActivity extends AppCompatActivity {
         }
     }
 
+    private static String detailValue(String value) {
+        return PlantItem.isPlaceholder(value) ? "" : value;
+    }
+
     private boolean isValidField(String field) {
         if (field == null || field.trim().isEmpty()) {
             return false;
@@ -257,9 +272,6 @@ public class PlantDetailActivity extends AppCompatActivity {
     }
 
     private void openImageGallery() {
-        String plantName = getIntent().getStringExtra("plantName");
-        String scientificName = getIntent().getStringExtra("scientificName");
-
         if (!isValidField(plantName)) {
             Toast.makeText(this, "Plant name not available for image search", Toast.LENGTH_SHORT).show();
             return;
@@ -272,8 +284,6 @@ public class PlantDetailActivity extends AppCompatActivity {
     }
 
     private void searchMoreInformation() {
-        String plantName = getIntent().getStringExtra("plantName");
-
         if (!isValidField(plantName)) {
             Toast.makeText(this, "Plant name not available for search", Toast.LENGTH_SHORT).show();
             return;
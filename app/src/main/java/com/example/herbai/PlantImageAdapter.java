@@ -3,10 +3,13 @@ package com.example.herbai;
 import android.app.Activity;
 import android.content.Context;
 import android.content.Intent;
+import android.content.res.Resources;
 import android.graphics.drawable.Drawable;
 import android.util.Log;
 import android.view.LayoutInflater;
+import android.view.MotionEvent;
 import android.view.View;
+import android.view.ViewConfiguration;
 import android.view.ViewGroup;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
@@ -19,24 +22,52 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.bumptech.glide.Glide;
+import com.bumptech.glide.ListPreloader;
+import com.bumptech.glide.RequestBuilder;
+import com.bumptech.glide.integration.recyclerview.RecyclerViewPreloader;
 import com.bumptech.glide.load.DataSource;
-import com.bumptech.glide.load.engine.DiskCacheStrategy;
 import com.bumptech.glide.load.engine.GlideException;
 import com.bumptech.glide.request.RequestListener;
-import com.bumptech.glide.request.RequestOptions;
 import com.bumptech.glide.request.target.Target;
+import com.bumptech.glide.util.FixedPreloadSizeProvider;
 
+import java.util.Collections;
 import java.util.List;
 
-public class PlantImageAdapter extends RecyclerView.Adapter<PlantImageAdapter.ImageViewHolder> {
+// Gallery grid. Thumbnails for the rows just past the screen are loaded ahead of the
+// scroll by createPreloader(); since every thumbnail request also keeps the downloaded
+// original in Glide's disk cache, the full-screen image needs no network once a cell
+// has been shown. A press on a cell that is not the start of a scroll starts decoding its
+// full-screen image, so it is usually in memory by the time FullScreenImageActivity asks.
+public class PlantImageAdapter extends RecyclerView.Adapter<PlantImageAdapter.ImageViewHolder>
+        implements ListPreloader.PreloadModelProvider<String> {
     private static final String TAG = "PlantImageAdapter";
+    static final int COLUMNS = 2;
+    // Three rows ahead
+    static final int PRELOAD_AHEAD = 3 * COLUMNS;
     private Context context;
     private List<String> imageUrls;
+    // Pixel size of a grid cell; thumbnails are decoded at exactly this size
+    private final int thumbnailWidth;
+    private final int thumbnailHeight;
+    // Last image whose full-screen version was started on touch
+    private String prefetchedUrl;
+    private final int touchSlop;
 
     public PlantImageAdapter(Context context, List<String> imageUrls) {
         this.context = context;
         this.imageUrls = imageUrls;
-        Log.d(TAG, "PlantImageAdapter created with " + imageUrls.size() + " images");
+
+        // The grid spans the screen minus its margins, each card has margins of its own
+        Resources resources = context.getResources();
+        int gridWidth = resources.getDisplayMetrics().widthPixels
+                - 2 * resources.getDimensionPixelSize(R.dimen.gallery_margin);
+        thumbnailWidth = Math.max(1, gridWidth / COLUMNS
+                - 2 * resources.getDimensionPixelSize(R.dimen.gallery_image_margin));
+        thumbnailHeight = resources.getDimensionPixelSize(R.dimen.gallery_image_height);
+        touchSlop = ViewConfiguration.get(context).getScaledTouchSlop();
+        Log.d(TAG, "PlantImageAdapter created with " + imageUrls.size() + " images, thumbnails "
+                + thumbnailWidth + "x" + thumbnailHeight);
     }
 
     @NonNull
@@ -56,16 +87,11 @@ public class PlantImageAdapter extends RecyclerView.Adapter<PlantImageAdapter.Im
         holder.errorTextView.setVisibility(View.GONE);
         holder.imageView.setImageDrawable(null);
 
-        // RequestOptions for placeholder/error
-        RequestOptions requestOptions = new RequestOptions()
-                .diskCacheStrategy(DiskCacheStrategy.ALL)
-                .error(R.drawable.ic_error_image)
-                .placeholder(R.drawable.ic_placeholder_image);
-
+        // Decoded at the exact cell size in RGB_565, with a quarter-size preview first.
         // Use a RequestListener to handle success/failure and hide progressBar
-        Glide.with(context)
-                .load(imageUrl)
-                .apply(requestOptions)
+        HerbAiGlideModule.loadThumbnail(Glide.with(context), imageUrl, thumbnailWidth, thumbnailHeight)
+                .error(R.drawable.ic_error_image)
+                .placeholder(R.drawable.ic_placeholder_image)
                 .listener(new RequestListener<Drawable>() {
                     @Override
                     public boolean onLoadFailed(@Nullable GlideException e, Object model,
@@ -90,12 +116,47 @@ public class PlantImageAdapter extends RecyclerView.Adapter<PlantImageAdapter.Im
                 })
                 .into(holder.imageView);
 
+        // Every scroll also starts with a touch down, so wait out the tap timeout first: a
+        // press still in place by then is about to be a click. Moving past the touch slop,
+        // or the grid taking over the gesture, calls it off.
+        holder.pendingPrefetch = () -> prefetchFullScreen(imageUrl);
+        holder.cardView.setOnTouchListener((v, event) -> {
+            switch (event.getActionMasked()) {
+                case MotionEvent.ACTION_DOWN:
+                    holder.downX = event.getX();
+                    holder.downY = event.getY();
+                    v.postDelayed(holder.pendingPrefetch, ViewConfiguration.getTapTimeout());
+                    break;
+                case MotionEvent.ACTION_MOVE:
+                    if (Math.abs(event.getX() - holder.downX) > touchSlop
+                            || Math.abs(event.getY() - holder.downY) > touchSlop) {
+                        v.removeCallbacks(holder.pendingPrefetch);
+                    }
+                    break;
+                case MotionEvent.ACTION_UP:
+                    // A quick tap ends before the timeout
+                    if (v.removeCallbacks(holder.pendingPrefetch)) {
+                        prefetchFullScreen(imageUrl);
+                    }
+                    break;
+                case MotionEvent.ACTION_CANCEL:
+                    v.removeCallbacks(holder.pendingPrefetch);
+                    break;
+            }
+            return false;
+        });
+
         // Set click listener for full screen view
         holder.cardView.setOnClickListener(v -> {
             Intent intent = new Intent(context, FullScreenImageActivity.class);
             intent.putExtra("image_url", imageUrl);
+            // The viewer pages through all of them; up to 200 URLs stay out of the Binder transaction
+            intent.putExtra(ResultStore.EXTRA_IMAGES_TOKEN, ResultStore.getInstance(context).putImageUrls(imageUrls));
             intent.putExtra("image_position", position + 1);
             intent.putExtra("total_images", imageUrls.size());
+            // Lets the full-screen view show this cell's thumbnail from memory while loading
+            intent.putExtra("thumbnail_width", thumbnailWidth);
+            intent.putExtra("thumbnail_height", thumbnailHeight);
             // If adapter was created with application context, need FLAG_NEW_TASK
             if (!(context instanceof Activity)) {
                 intent.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
@@ -104,11 +165,59 @@ public class PlantImageAdapter extends RecyclerView.Adapter<PlantImageAdapter.Im
         });
     }
 
+    // Cells scrolled off the grid give their bitmap back to Glide's pool right away, so
+    // however long the gallery gets only the cells in view and the preloaded rows hold one
+    @Override
+    public void onViewRecycled(@NonNull ImageViewHolder holder) {
+        super.onViewRecycled(holder);
+        Glide.with(context).clear(holder.imageView);
+        holder.cardView.removeCallbacks(holder.pendingPrefetch);
+        holder.cardView.setOnTouchListener(null);
+        holder.cardView.setOnClickListener(null);
+    }
+
     @Override
     public int getItemCount() {
         return imageUrls.size();
     }
 
+    // Scroll listener for the grid that loads thumbnails PRELOAD_AHEAD cells ahead
+    public RecyclerViewPreloader<String> createPreloader(Activity activity) {
+        return new RecyclerViewPreloader<>(Glide.with(activity), this,
+                new FixedPreloadSizeProvider<>(thumbnailWidth, thumbnailHeight), PRELOAD_AHEAD);
+    }
+
+    @NonNull
+    @Override
+    public List<String> getPreloadItems(int position) {
+        if (position < 0 || position >= imageUrls.size()) {
+            return Collections.emptyList();
+        }
+        return Collections.singletonList(imageUrls.get(position));
+    }
+
+    // Same size and options as onBindViewHolder(), so the bound cell finds it in memory
+    @Nullable
+    @Override
+    public RequestBuilder<?> getPreloadRequestBuilder(@NonNull String imageUrl) {
+        return Glide.with(context).load(imageUrl)
+                .apply(HerbAiGlideModule.thumbnailOptions(thumbnailWidth, thumbnailHeight));
+    }
+
+    // Through the application's RequestManager: the gallery's is paused as soon as the
+    // full-screen activity covers it, which would cancel the decode halfway
+    private void prefetchFullScreen(String imageUrl) {
+        if (imageUrl.equals(prefetchedUrl)) {
+            return;
+        }
+        prefetchedUrl = imageUrl;
+        Context appContext = context.getApplicationContext();
+        Glide.with(appContext)
+                .load(imageUrl)
+                .apply(HerbAiGlideModule.fullScreenOptions(appContext))
+                .preload();
+    }
+
     public void updateImages(List<String> newImageUrls) {
         this.imageUrls.clear();
         this.imageUrls.addAll(newImageUrls);
@@ -121,6 +230,10 @@ public class PlantImageAdapter extends RecyclerView.Adapter<PlantImageAdapter.Im
         ImageView imageView;
         ProgressBar progressBar;
         TextView errorTextView;
+        // Touch state of the press that may turn into a click
+        Runnable pendingPrefetch;
+        float downX;
+        float downY;
 
         public ImageViewHolder(@NonNull View itemView) {
             super(itemView);
@@ -1,5 +1,8 @@
 package com.example.herbai;
 
+import java.util.ArrayList;
+import java.util.List;
+
 public class PlantItem {
     private String plantName;
     private String scientificName;
@@ -14,6 +17,7 @@ public class PlantItem {
     private boolean autoGenerated;
     private String dataSource;
     private double confidence;
+    private List<String> imageUrls;
 
     // Default constructor
     public PlantItem() {
@@ -83,6 +87,29 @@ public class PlantItem {
         return confidence;
     }
 
+    public List<String> getImageUrls() {
+        return imageUrls != null ? imageUrls : new ArrayList<>();
+    }
+
+    // True for empty values and the placeholders the backend and the getters above use
+    public static boolean isPlaceholder(String value) {
+        if (value == null) {
+            return true;
+        }
+        String trimmed = value.trim().toLowerCase();
+        return trimmed.isEmpty() ||
+                trimmed.equals("null") ||
+                trimmed.equals("none") ||
+                trimmed.equals("unknown") ||
+                trimmed.equals("unknown plant") ||
+                trimmed.equals("unknown family") ||
+                trimmed.equals("information not available") ||
+                trimmed.equals("various environments") ||
+                trimmed.equals("uses not specified") ||
+                trimmed.equals("uses to be researched") ||
+                trimmed.equals("not specified");
+    }
+
     // Display methods
     public String getDisplayTitle() {
         if (plantName != null && !plantName.trim().isEmpty()) {
@@ -194,6 +221,10 @@ public class PlantItem {
         this.confidence = confidence;
     }
 
+    public void setImageUrls(List<String> imageUrls) {
+        this.imageUrls = imageUrls;
+    }
+
     @Override
     public String toString() {
         return "PlantItem{" +
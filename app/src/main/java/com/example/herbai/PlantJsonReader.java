@@ -0,0 +1,421 @@
+package com.example.herbai;
+
+import com.squareup.moshi.JsonDataException;
+import com.squareup.moshi.JsonReader;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import okio.BufferedSource;
+
+// Pull parser for backend responses. Reads straight from the response source into
+// PlantItem and image URL lists without building an org.json tree, and stops reading
+// as soon as the caller has what it asked for. Values the caller does not need are
+// skipped without being decoded into strings.
+public class PlantJsonReader {
+    // Index order is shared: the first three SEARCH_KEYS are also the first RESPONSE_KEYS
+    private static final JsonReader.Options SEARCH_KEYS = JsonReader.Options.of(
+            "success", "was_generated", "results", "next_cursor");
+    private static final JsonReader.Options RESPONSE_KEYS = JsonReader.Options.of(
+            "success", "was_generated", "results", "db_image_urls", "db_matches");
+    private static final int SUCCESS = 0;
+    private static final int WAS_GENERATED = 1;
+    private static final int RESULTS = 2;
+    private static final int DB_IMAGE_URLS = 3;
+    private static final int DB_MATCHES = 4;
+    // SEARCH_KEYS only
+    private static final int NEXT_CURSOR = 3;
+
+    private static final JsonReader.Options PLANT_KEYS = JsonReader.Options.of(
+            "plant_name", "scientific_name", "family", "kingdom", "genus", "species",
+            "medicinal_properties", "habitat", "uses", "chemical_components",
+            "auto_generated", "data_source", "confidence", "image_urls");
+
+    private static final JsonReader.Options IMAGE_KEYS = JsonReader.Options.of("image_urls");
+
+    private static final JsonReader.Options IMAGE_LOOKUP_KEYS = JsonReader.Options.of("success", "images");
+
+    private PlantJsonReader() {
+    }
+
+    // Reads a /smart_search or /search_by_keywords response, binding at most maxResults plants.
+    // Once maxResults are read the rest of the body is left unread.
+    public static PlantRepository.SearchResponse readSearchResponse(BufferedSource source, int maxResults)
+            throws IOException {
+        JsonReader reader = JsonReader.of(source);
+        boolean success = false;
+        boolean sawSuccess = false;
+        boolean wasGenerated = false;
+        String nextCursor = null;
+        List<PlantItem> plants = new ArrayList<>();
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.selectName(SEARCH_KEYS)) {
+                    case NEXT_CURSOR:
+                        // Sorts before "results". Plain offsets are read as text too; an empty
+                        // or "null" cursor means this is the last page
+                        nextCursor = readText(reader);
+                        break;
+                    case SUCCESS:
+                        success = readBoolean(reader);
+                        sawSuccess = true;
+                        break;
+                    case WAS_GENERATED:
+                        wasGenerated = readBoolean(reader);
+                        break;
+                    case RESULTS:
+                        if (readPlants(reader, plants, maxResults)) {
+                            // The backend only sends results on success, and "success"
+                            // sorts after "results", so do not wait for it
+                            return new PlantRepository.SearchResponse(sawSuccess ? success : true,
+                                    wasGenerated, plants, nextCursor);
+                        }
+                        break;
+                    default:
+                        reader.skipName();
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (JsonDataException e) {
+            throw new IOException("Malformed search response: " + e.getMessage(), e);
+        }
+        return new PlantRepository.SearchResponse(success, wasGenerated, plants, nextCursor);
+    }
+
+    // Image URLs for the best match in a /smart_search or /predict response, in the same
+    // priority the gallery always used: the first result's image_urls, then db_image_urls,
+    // then the first db_match. Stops reading once the first result alone fills maxImages.
+    public static List<String> readImageUrls(BufferedSource source, int maxImages) throws IOException {
+        JsonReader reader = JsonReader.of(source);
+        Set<String> resultImages = new LinkedHashSet<>();
+        Set<String> dbImages = new LinkedHashSet<>();
+        Set<String> matchImages = new LinkedHashSet<>();
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.selectName(RESPONSE_KEYS)) {
+                    case RESULTS:
+                        if (readFirstImageList(reader, resultImages, maxImages, true)) {
+                            return merge(maxImages, resultImages, dbImages, matchImages);
+                        }
+                        break;
+                    case DB_IMAGE_URLS:
+                        readUrls(reader, dbImages, maxImages, false);
+                        break;
+                    case DB_MATCHES:
+                        readFirstImageList(reader, matchImages, maxImages, false);
+                        break;
+                    case SUCCESS:
+                        if (!readBoolean(reader)) {
+                            return new ArrayList<>();
+                        }
+                        break;
+                    case WAS_GENERATED:
+                        reader.skipValue();
+                        break;
+                    default:
+                        reader.skipName();
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (JsonDataException e) {
+            throw new IOException("Malformed image response: " + e.getMessage(), e);
+        }
+        return merge(maxImages, resultImages, dbImages, matchImages);
+    }
+
+    // Reads a /plant_images response: {"success": true, "images": {"<name as sent>": [urls]}}.
+    // Names the server knows nothing about come back with an empty list.
+    public static Map<String, List<String>> readImageUrlsByName(BufferedSource source, int maxImages)
+            throws IOException {
+        JsonReader reader = JsonReader.of(source);
+        Map<String, List<String>> images = new LinkedHashMap<>();
+
+        try {
+            reader.beginObject();
+            while (reader.hasNext()) {
+                switch (reader.selectName(IMAGE_LOOKUP_KEYS)) {
+                    case 0:
+                        if (!readBoolean(reader)) {
+                            return new LinkedHashMap<>();
+                        }
+                        break;
+                    case 1:
+                        if (reader.peek() != JsonReader.Token.BEGIN_OBJECT) {
+                            reader.skipValue();
+                            break;
+                        }
+                        reader.beginObject();
+                        while (reader.hasNext()) {
+                            String name = reader.nextName();
+                            Set<String> urls = new LinkedHashSet<>();
+                            readUrls(reader, urls, maxImages, false);
+                            images.put(name, new ArrayList<>(urls));
+                        }
+                        reader.endObject();
+                        break;
+                    default:
+                        reader.skipName();
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+        } catch (JsonDataException e) {
+            throw new IOException("Malformed image lookup response: " + e.getMessage(), e);
+        }
+        return images;
+    }
+
+    // Returns true if it stopped early because maxResults were read
+    private static boolean readPlants(JsonReader reader, List<PlantItem> plants, int maxResults) throws IOException {
+        if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+            return false;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (plants.size() >= maxResults) {
+                return true;
+            }
+            if (reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                plants.add(readPlant(reader));
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return false;
+    }
+
+    static PlantItem readPlant(JsonReader reader) throws IOException {
+        PlantItem plant = new PlantItem();
+        String plantName = null;
+        String species = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.selectName(PLANT_KEYS)) {
+                case 0:
+                    plantName = readText(reader);
+                    break;
+                case 1:
+                    plant.setScientificName(readText(reader));
+                    break;
+                case 2:
+                    plant.setFamily(readText(reader));
+                    break;
+                case 3:
+                    plant.setKingdom(readText(reader));
+                    break;
+                case 4:
+                    plant.setGenus(readText(reader));
+                    break;
+                case 5:
+                    species = readText(reader);
+                    plant.setSpecies(species);
+                    break;
+                case 6:
+                    plant.setMedicinalProperties(readText(reader));
+                    break;
+                case 7:
+                    plant.setHabitat(readText(reader));
+                    break;
+                case 8:
+                    plant.setUses(readText(reader));
+                    break;
+                case 9:
+                    plant.setChemicalComponents(readText(reader));
+                    break;
+                case 10:
+                    plant.setAutoGenerated(readBoolean(reader));
+                    break;
+                case 11:
+                    String dataSource = readText(reader);
+                    if (dataSource != null) {
+                        plant.setDataSource(dataSource);
+                    }
+                    break;
+                case 12:
+                    plant.setConfidence(readDouble(reader));
+                    break;
+                case 13:
+                    Set<String> imageUrls = new LinkedHashSet<>();
+                    readUrls(reader, imageUrls, Integer.MAX_VALUE, false);
+                    plant.setImageUrls(new ArrayList<>(imageUrls));
+                    break;
+                default:
+                    reader.skipName();
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        plant.setPlantName(plantName != null ? plantName : species);
+        return plant;
+    }
+
+    // Reads image_urls from the first object of an array and skips the remaining objects.
+    // With stopWhenFull it returns true as soon as maxImages are collected, leaving the
+    // reader mid-document; the caller must not read from it again.
+    private static boolean readFirstImageList(JsonReader reader, Set<String> into, int maxImages,
+                                              boolean stopWhenFull) throws IOException {
+        if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+            return false;
+        }
+        reader.beginArray();
+        boolean first = true;
+        while (reader.hasNext()) {
+            if (first && reader.peek() == JsonReader.Token.BEGIN_OBJECT) {
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    if (reader.selectName(IMAGE_KEYS) == 0) {
+                        if (readUrls(reader, into, maxImages, stopWhenFull)) {
+                            return true;
+                        }
+                    } else {
+                        reader.skipName();
+                        reader.skipValue();
+                    }
+                }
+                reader.endObject();
+            } else {
+                reader.skipValue();
+            }
+            first = false;
+        }
+        reader.endArray();
+        return false;
+    }
+
+    // Same contract as readFirstImageList for a plain array of URLs
+    private static boolean readUrls(JsonReader reader, Set<String> into, int maxImages,
+                                    boolean stopWhenFull) throws IOException {
+        if (reader.peek() != JsonReader.Token.BEGIN_ARRAY) {
+            reader.skipValue();
+            return false;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            if (into.size() >= maxImages) {
+                if (stopWhenFull) {
+                    return true;
+                }
+                reader.skipValue();
+            } else if (reader.peek() == JsonReader.Token.STRING) {
+                String url = reader.nextString().trim();
+                if (isImageUrl(url)) {
+                    into.add(url);
+                }
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endArray();
+        return stopWhenFull && into.size() >= maxImages;
+    }
+
+    // http(s) URLs that look like images; the backend mixes in page links
+    public static boolean isImageUrl(String url) {
+        if (url == null || url.trim().isEmpty()) {
+            return false;
+        }
+        String lowerUrl = url.toLowerCase();
+        return (lowerUrl.startsWith("http://") || lowerUrl.startsWith("https://")) &&
+                (lowerUrl.contains(".jpg") || lowerUrl.contains(".jpeg") ||
+                        lowerUrl.contains(".png") || lowerUrl.contains(".gif") ||
+                        lowerUrl.contains("cloudinary.com") || lowerUrl.contains("image"));
+    }
+
+    @SafeVarargs
+    private static List<String> merge(int maxImages, Set<String>... sources) {
+        Set<String> merged = new LinkedHashSet<>();
+        for (Set<String> source : sources) {
+            for (String url : source) {
+                if (merged.size() >= maxImages) {
+                    return new ArrayList<>(merged);
+                }
+                merged.add(url);
+            }
+        }
+        return new ArrayList<>(merged);
+    }
+
+    // Same normalization as PlantRepository.fromJson: arrays joined, placeholders dropped
+    private static String readText(JsonReader reader) throws IOException {
+        String text;
+        switch (reader.peek()) {
+            case NULL:
+                reader.nextNull();
+                return null;
+            case STRING:
+            case NUMBER:
+                text = reader.nextString().trim();
+                break;
+            case BOOLEAN:
+                text = String.valueOf(reader.nextBoolean());
+                break;
+            case BEGIN_ARRAY:
+                StringBuilder joined = new StringBuilder();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    String item = readText(reader);
+                    if (item != null) {
+                        if (joined.length() > 0) {
+                            joined.append(", ");
+                        }
+                        joined.append(item);
+                    }
+                }
+                reader.endArray();
+                text = joined.toString();
+                break;
+            default:
+                reader.skipValue();
+                return null;
+        }
+        return PlantItem.isPlaceholder(text) ? null : text;
+    }
+
+    private static boolean readBoolean(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case BOOLEAN:
+                return reader.nextBoolean();
+            case STRING:
+                return Boolean.parseBoolean(reader.nextString());
+            default:
+                reader.skipValue();
+                return false;
+        }
+    }
+
+    private static double readDouble(JsonReader reader) throws IOException {
+        switch (reader.peek()) {
+            case NUMBER:
+                return reader.nextDouble();
+            case STRING:
+                try {
+                    return Double.parseDouble(reader.nextString().trim());
+                } catch (NumberFormatException e) {
+                    return 0.0;
+                }
+            default:
+                reader.skipValue();
+                return 0.0;
+        }
+    }
+}
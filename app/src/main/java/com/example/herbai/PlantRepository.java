@@ -0,0 +1,484 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Single place plant data comes from. Normalizes /smart_search, /search_by_keywords,
+// /predict db_matches and /generate_plant_data payloads into PlantItem, keeps a bounded
+// LRU in memory keyed by normalized scientific name and persists every record to disk,
+// so a plant that was seen once is never fetched again.
+public class PlantRepository {
+    private static final String TAG = "PlantRepository";
+    static final int DEFAULT_MEMORY_ENTRIES = 200;
+
+    private static PlantRepository instance;
+
+    private final PlantStore store;
+    private final ApiClient apiClient;
+    private final Executor callbackExecutor;
+    private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+    // Both maps are guarded by "this"; access-ordered LinkedHashMap gives O(1) LRU.
+    // Aliases are bounded the same way, an evicted one is read back from the store.
+    private final LinkedHashMap<String, PlantItem> memory;
+    private final LinkedHashMap<String, String> aliases;
+
+    private final AtomicInteger memoryHits = new AtomicInteger();
+    private final AtomicInteger diskHits = new AtomicInteger();
+    private final AtomicInteger networkFetches = new AtomicInteger();
+    // Concurrent fetches of the same name share one request and one parsed PlantItem
+    private final SingleFlight<String, PlantItem> fetches = new SingleFlight<>();
+
+    // Filled from disk once by loadSearchIndex() and kept current by put()
+    private final PlantSearchIndex searchIndex = new PlantSearchIndex();
+    private final KeywordIndex keywordIndex = new KeywordIndex();
+    private final Object searchIndexLock = new Object();
+    private boolean searchIndexLoaded = false;
+
+    public interface PlantCallback {
+        // Called on the main thread; plant is null when nothing could be found
+        void onPlantLoaded(PlantItem plant);
+    }
+
+    public static synchronized PlantRepository getInstance(Context context) {
+        if (instance == null) {
+            File directory = new File(context.getApplicationContext().getFilesDir(), "plants");
+            Handler mainHandler = new Handler(Looper.getMainLooper());
+            instance = new PlantRepository(new PlantStore(directory), ApiClient.getInstance(),
+                    mainHandler::post, DEFAULT_MEMORY_ENTRIES);
+        }
+        return instance;
+    }
+
+    PlantRepository(PlantStore store, ApiClient apiClient, Executor callbackExecutor, int maxMemoryEntries) {
+        this.store = store;
+        this.apiClient = apiClient;
+        this.callbackExecutor = callbackExecutor;
+        this.memory = new LinkedHashMap<String, PlantItem>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, PlantItem> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+        this.aliases = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > maxMemoryEntries;
+            }
+        };
+    }
+
+    // Lower case, single spaces, so "Azadirachta  indica" and "azadirachta indica" share a key
+    public static String normalizeKey(String name) {
+        if (name == null) {
+            return "";
+        }
+        return name.trim().replaceAll("\\s+", " ").toLowerCase(Locale.ROOT);
+    }
+
+    // Memory, then disk, then /smart_search; the callback runs on the main thread
+    public void lookup(String name, PlantCallback callback) {
+        executor.execute(() -> {
+            PlantItem plant;
+            try {
+                plant = fetch(name);
+            } catch (IOException e) {
+                Log.e(TAG, "Lookup failed for " + name + ": " + e.getMessage());
+                plant = null;
+            }
+            PlantItem result = plant;
+            callbackExecutor.execute(() -> callback.onPlantLoaded(result));
+        });
+    }
+
+    // Local lookup only: memory, then the on-disk store. Null when the plant was never seen.
+    @WorkerThread
+    public PlantItem get(String name) {
+        checkNotMainThread();
+        String key = normalizeKey(name);
+        if (key.isEmpty()) {
+            return null;
+        }
+
+        synchronized (this) {
+            PlantItem plant = memory.get(key);
+            if (plant == null && aliases.containsKey(key)) {
+                plant = memory.get(aliases.get(key));
+            }
+            if (plant != null) {
+                memoryHits.incrementAndGet();
+                return plant;
+            }
+        }
+
+        String recordKey = key;
+        String json = store.read(recordKey);
+        if (json == null) {
+            recordKey = store.readAlias(key);
+            json = recordKey != null ? store.read(recordKey) : null;
+        }
+        if (json == null) {
+            return null;
+        }
+
+        try {
+            PlantItem plant = fromJson(new JSONObject(json));
+            synchronized (this) {
+                memory.put(recordKey, plant);
+                if (!recordKey.equals(key)) {
+                    aliases.put(key, recordKey);
+                }
+            }
+            diskHits.incrementAndGet();
+            return plant;
+        } catch (JSONException e) {
+            Log.w(TAG, "Corrupt record for " + name + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Local lookup, falling back to /smart_search when the plant has never been seen
+    @WorkerThread
+    public PlantItem fetch(String name) throws IOException {
+        PlantItem cached = get(name);
+        if (cached != null) {
+            return cached;
+        }
+        return fetches.execute(normalizeKey(name), () -> fetchFromNetwork(name));
+    }
+
+    @WorkerThread
+    private PlantItem fetchFromNetwork(String name) throws IOException {
+        networkFetches.incrementAndGet();
+        Request request = new Request.Builder()
+                .url(apiClient.url(ApiClient.smartSearchPath(name)))
+                .header("Accept", "application/json")
+                .get()
+                .build();
+
+        // Only the best match is needed, so the reader stops after the first result
+        SearchResponse searchResponse;
+        try (Response response = apiClient.getSearchClient().newCall(request).execute()) {
+            if (!response.isSuccessful() || response.body() == null) {
+                throw new IOException("smart_search returned " + response.code());
+            }
+            searchResponse = PlantJsonReader.readSearchResponse(response.body().source(), 1);
+        }
+
+        putAll(searchResponse.getPlants());
+        if (searchResponse.getPlants().isEmpty()) {
+            return null;
+        }
+
+        // Remember what was asked for, so the same query is answered locally next time
+        PlantItem best = searchResponse.getPlants().get(0);
+        addAlias(normalizeKey(name), keyFor(best));
+        return best;
+    }
+
+    // Stores the db_matches of a /predict response; returns them in server order
+    @WorkerThread
+    public List<PlantItem> putPredictResponse(JSONObject json) {
+        List<PlantItem> matches = parsePredictMatches(json);
+        putAll(matches);
+        return matches;
+    }
+
+    // Stores the generated_data of a /generate_plant_data response; null if generation failed
+    @WorkerThread
+    public PlantItem putGenerateResponse(String json) throws JSONException {
+        PlantItem plant = parseGeneratedPlant(new JSONObject(json));
+        if (plant != null) {
+            put(plant);
+        }
+        return plant;
+    }
+
+    @WorkerThread
+    public void putAll(List<PlantItem> plants) {
+        for (PlantItem plant : plants) {
+            put(plant);
+        }
+    }
+
+    @WorkerThread
+    public void put(PlantItem plant) {
+        checkNotMainThread();
+        String key = keyFor(plant);
+        if (key.isEmpty()) {
+            return;
+        }
+        synchronized (this) {
+            memory.put(key, plant);
+        }
+        searchIndex.add(plant);
+        keywordIndex.add(plant);
+        store.write(key, toJson(plant).toString());
+        if (!PlantItem.isPlaceholder(plant.getPlantName())) {
+            addAlias(normalizeKey(plant.getPlantName()), key);
+        }
+    }
+
+    private void addAlias(String alias, String key) {
+        if (alias.isEmpty() || key.isEmpty() || alias.equals(key)) {
+            return;
+        }
+        synchronized (this) {
+            if (key.equals(aliases.get(alias))) {
+                return;
+            }
+            aliases.put(alias, key);
+        }
+        store.writeAlias(alias, key);
+    }
+
+    // Local type-ahead index; may still be loading, in which case it only has the plants seen so far
+    public PlantSearchIndex getSearchIndex() {
+        return searchIndex;
+    }
+
+    // Offline keyword index over uses, medicinal properties and components; loaded with the search index
+    public KeywordIndex getKeywordIndex() {
+        return keywordIndex;
+    }
+
+    // loadSearchIndex() in the background; onLoaded runs on the main thread
+    public void loadSearchIndex(Runnable onLoaded) {
+        executor.execute(() -> {
+            loadSearchIndex();
+            callbackExecutor.execute(onLoaded);
+        });
+    }
+
+    // Reads every stored plant into the search and keyword indexes; only the first call does any work
+    @WorkerThread
+    public void loadSearchIndex() {
+        checkNotMainThread();
+        synchronized (searchIndexLock) {
+            if (searchIndexLoaded) {
+                return;
+            }
+            long start = System.nanoTime();
+            for (String json : store.readAll()) {
+                try {
+                    PlantItem plant = fromJson(new JSONObject(json));
+                    searchIndex.add(plant);
+                    keywordIndex.add(plant);
+                } catch (JSONException e) {
+                    Log.w(TAG, "Skipping corrupt record in search index: " + e.getMessage());
+                }
+            }
+            searchIndexLoaded = true;
+            Log.d(TAG, "Search index loaded " + searchIndex.size() + " plants ("
+                    + keywordIndex.size() + " with keywords) in "
+                    + (System.nanoTime() - start) / 1_000_000 + " ms");
+        }
+    }
+
+    // Scientific name when known, otherwise the common name; empty when neither is
+    static String keyFor(PlantItem plant) {
+        if (!PlantItem.isPlaceholder(plant.getScientificName())) {
+            return normalizeKey(plant.getScientificName());
+        }
+        if (!PlantItem.isPlaceholder(plant.getPlantName())) {
+            return normalizeKey(plant.getPlantName());
+        }
+        return "";
+    }
+
+    public int getMemoryHitCount() {
+        return memoryHits.get();
+    }
+
+    public int getDiskHitCount() {
+        return diskHits.get();
+    }
+
+    public int getNetworkFetchCount() {
+        return networkFetches.get();
+    }
+
+    public int getCoalescedFetchCount() {
+        return fetches.getCoalescedCount();
+    }
+
+    private static void checkNotMainThread() {
+        Looper mainLooper = Looper.getMainLooper();
+        if (mainLooper != null && mainLooper.getThread() == Thread.currentThread()) {
+            throw new IllegalStateException("PlantRepository must not be read on the main thread");
+        }
+    }
+
+    // ---- Parsing ----
+
+    static List<PlantItem> parsePredictMatches(JSONObject json) {
+        List<PlantItem> matches = new ArrayList<>();
+        JSONArray dbMatches = json.optJSONArray("db_matches");
+        if (dbMatches == null) {
+            return matches;
+        }
+        for (int i = 0; i < dbMatches.length(); i++) {
+            JSONObject match = dbMatches.optJSONObject(i);
+            if (match != null) {
+                matches.add(fromJson(match));
+            }
+        }
+        return matches;
+    }
+
+    static PlantItem parseGeneratedPlant(JSONObject json) {
+        if (!json.optBoolean("success", false)) {
+            return null;
+        }
+        JSONObject generated = json.optJSONObject("generated_data");
+        if (generated == null) {
+            return null;
+        }
+        PlantItem plant = fromJson(generated);
+        plant.setAutoGenerated(true);
+        return plant;
+    }
+
+    // Maps a backend plant object (or a stored record, which uses the same keys) to a PlantItem
+    static PlantItem fromJson(JSONObject json) {
+        PlantItem plant = new PlantItem();
+        String plantName = text(json, "plant_name");
+        plant.setPlantName(plantName != null ? plantName : text(json, "species"));
+        plant.setScientificName(text(json, "scientific_name"));
+        plant.setFamily(text(json, "family"));
+        plant.setKingdom(text(json, "kingdom"));
+        plant.setGenus(text(json, "genus"));
+        plant.setSpecies(text(json, "species"));
+        plant.setMedicinalProperties(text(json, "medicinal_properties"));
+        plant.setHabitat(text(json, "habitat"));
+        plant.setUses(text(json, "uses"));
+        plant.setChemicalComponents(text(json, "chemical_components"));
+        plant.setAutoGenerated(json.optBoolean("auto_generated", false));
+        String dataSource = text(json, "data_source");
+        if (dataSource != null) {
+            plant.setDataSource(dataSource);
+        }
+        plant.setConfidence(json.optDouble("confidence", 0.0));
+
+        JSONArray images = json.optJSONArray("image_urls");
+        if (images != null) {
+            List<String> imageUrls = new ArrayList<>();
+            for (int i = 0; i < images.length(); i++) {
+                String url = images.optString(i, "").trim();
+                if (PlantJsonReader.isImageUrl(url) && !imageUrls.contains(url)) {
+                    imageUrls.add(url);
+                }
+            }
+            plant.setImageUrls(imageUrls);
+        }
+        return plant;
+    }
+
+    static JSONObject toJson(PlantItem plant) {
+        JSONObject json = new JSONObject();
+        try {
+            json.put("plant_name", plant.getPlantName());
+            json.put("scientific_name", plant.getScientificName());
+            json.put("family", plant.getFamily());
+            json.put("kingdom", plant.getKingdom());
+            json.put("genus", plant.getGenus());
+            json.put("species", plant.getSpecies());
+            json.put("medicinal_properties", plant.getMedicinalProperties());
+            json.put("habitat", plant.getHabitat());
+            json.put("uses", plant.getUses());
+            json.put("chemical_components", plant.getChemicalComponents());
+            json.put("auto_generated", plant.isAutoGenerated());
+            json.put("data_source", plant.getDataSource());
+            json.put("confidence", plant.getConfidence());
+            json.put("image_urls", new JSONArray(plant.getImageUrls()));
+        } catch (JSONException e) {
+            // Only thrown for non-finite numbers
+            Log.w(TAG, "Could not serialize " + plant + ": " + e.getMessage());
+        }
+        return json;
+    }
+
+    // Trimmed string value, arrays joined with ", ", null for missing or placeholder values
+    private static String text(JSONObject json, String key) {
+        Object value = json.opt(key);
+        if (value == null || value == JSONObject.NULL) {
+            return null;
+        }
+        String text;
+        if (value instanceof JSONArray) {
+            JSONArray array = (JSONArray) value;
+            StringBuilder joined = new StringBuilder();
+            for (int i = 0; i < array.length(); i++) {
+                String item = array.optString(i, "").trim();
+                if (!item.isEmpty()) {
+                    if (joined.length() > 0) {
+                        joined.append(", ");
+                    }
+                    joined.append(item);
+                }
+            }
+            text = joined.toString();
+        } else {
+            text = String.valueOf(value).trim();
+        }
+        return PlantItem.isPlaceholder(text) ? null : text;
+    }
+
+    public static class SearchResponse {
+        private final boolean success;
+        private final boolean wasGenerated;
+        private final List<PlantItem> plants;
+        // Set by a paging backend when more results follow; null on the last page
+        private final String nextCursor;
+
+        SearchResponse(boolean success, boolean wasGenerated, List<PlantItem> plants) {
+            this(success, wasGenerated, plants, null);
+        }
+
+        SearchResponse(boolean success, boolean wasGenerated, List<PlantItem> plants, String nextCursor) {
+            this.success = success;
+            this.wasGenerated = wasGenerated;
+            this.plants = plants;
+            this.nextCursor = nextCursor;
+        }
+
+        public boolean isSuccess() {
+            return success;
+        }
+
+        public boolean wasGenerated() {
+            return wasGenerated;
+        }
+
+        public List<PlantItem> getPlants() {
+            return plants;
+        }
+
+        public String getNextCursor() {
+            return nextCursor;
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.herbai;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.TreeMap;
+
+// In-memory type-ahead index over every plant the repository has stored. Common name,
+// scientific name and family are indexed as whole fields and word by word in a sorted
+// term map, so any prefix is a range lookup. Terms are also split into trigrams, which
+// catches typos ("azadiracta") once the prefix lookup runs out of matches.
+// Fast enough to query on every keystroke on the main thread. 50k plants take about 50 MB,
+// mostly the term map; that is the price of prefix lookups without a disk index.
+public class PlantSearchIndex {
+    static final int FIELD_NAME = 0;
+    static final int FIELD_SCIENTIFIC = 1;
+    static final int FIELD_FAMILY = 2;
+    private static final float[] FIELD_WEIGHTS = {1.0f, 0.9f, 0.5f};
+    // A posting is plant id << 3 | WHOLE_FIELD | field; WHOLE_FIELD marks a term that is
+    // the whole field rather than one of its words
+    private static final int WHOLE_FIELD = 4;
+
+    private static final float SCORE_EXACT = 4f;
+    private static final float SCORE_FIELD_PREFIX = 3f;
+    private static final float SCORE_WORD_PREFIX = 2f;
+    // Fuzzy matches score their trigram similarity (0..1), always below any prefix match
+    private static final float MIN_SIMILARITY = 0.45f;
+    private static final int MIN_FUZZY_LENGTH = 3;
+
+    // Short prefixes match a large part of the index; stop after this many candidates
+    private static final int MAX_PREFIX_CANDIDATES = 2000;
+
+    // Guarded by "this"
+    private final List<PlantItem> plants = new ArrayList<>();
+    private final Map<String, Integer> plantIds = new HashMap<>();
+    // Ids of the terms each plant has postings in, by plant id, so a changed plant can be removed
+    private final List<int[]> plantTerms = new ArrayList<>();
+    private final TreeMap<String, Term> terms = new TreeMap<>();
+    private final List<Term> termList = new ArrayList<>();
+    private final Map<String, IntList> trigrams = new HashMap<>();
+
+    // Scratch space for search(), reused so a keystroke allocates next to nothing.
+    // scores is indexed by plant id and shared by term id; both are all zero between queries.
+    private float[] scores = new float[0];
+    private int[] touchedPlants = new int[0];
+    private int touchedPlantCount;
+    private int[] shared = new int[0];
+    private int[] touchedTerms = new int[0];
+
+    // The term's postings are the IntList itself, one object less per term.
+    // Its trigram count is text.length(), one per padded position.
+    private static final class Term extends IntList {
+        final String text;
+        final int id;
+
+        Term(String text, int id) {
+            this.text = text;
+            this.id = id;
+        }
+    }
+
+    // Adding a plant that is already indexed (same repository key) replaces the stored item,
+    // and its postings if a name changed
+    public synchronized void add(PlantItem plant) {
+        String key = PlantRepository.keyFor(plant);
+        if (key.isEmpty()) {
+            return;
+        }
+        Integer existing = plantIds.get(key);
+        int id;
+        if (existing != null) {
+            id = existing;
+            PlantItem indexed = plants.set(id, plant);
+            if (sameFields(indexed, plant)) {
+                return;
+            }
+            removePostings(id);
+        } else {
+            id = plants.size();
+            plants.add(plant);
+            plantTerms.add(null);
+            plantIds.put(key, id);
+        }
+        IntList termIds = new IntList();
+        addField(plant.getPlantName(), id, FIELD_NAME, termIds);
+        addField(plant.getScientificName(), id, FIELD_SCIENTIFIC, termIds);
+        addField(plant.getFamily(), id, FIELD_FAMILY, termIds);
+        plantTerms.set(id, termIds.toArray());
+    }
+
+    public void addAll(List<PlantItem> plants) {
+        for (PlantItem plant : plants) {
+            add(plant);
+        }
+    }
+
+    public synchronized int size() {
+        return plants.size();
+    }
+
+    // Best matches first: exact field, field prefix, word prefix, then typo-tolerant matches
+    public synchronized List<PlantItem> search(String query, int limit) {
+        String normalized = PlantRepository.normalizeKey(query);
+        if (normalized.isEmpty() || limit <= 0) {
+            return new ArrayList<>();
+        }
+
+        if (scores.length < plants.size()) {
+            scores = new float[plants.size() * 2];
+            touchedPlants = new int[plants.size() * 2];
+        }
+        touchedPlantCount = 0;
+        collectPrefixMatches(normalized);
+        if (touchedPlantCount < limit && normalized.length() >= MIN_FUZZY_LENGTH) {
+            collectFuzzyMatches(normalized);
+        }
+
+        List<PlantItem> results = new ArrayList<>();
+        for (int plantId : selectTop(limit)) {
+            results.add(plants.get(plantId));
+        }
+        // Leave the score table zeroed for the next query
+        for (int i = 0; i < touchedPlantCount; i++) {
+            scores[touchedPlants[i]] = 0f;
+        }
+        return results;
+    }
+
+    private void collectPrefixMatches(String query) {
+        for (Term term : terms.subMap(query, query + Character.MAX_VALUE).values()) {
+            boolean exact = term.text.length() == query.length();
+            for (int i = 0; i < term.size; i++) {
+                int posting = term.values[i];
+                int field = posting & 3;
+                boolean wholeField = (posting & WHOLE_FIELD) != 0;
+                float score = exact && wholeField ? SCORE_EXACT
+                        : wholeField ? SCORE_FIELD_PREFIX : SCORE_WORD_PREFIX;
+                offer(posting >>> 3, score * FIELD_WEIGHTS[field]);
+            }
+            if (touchedPlantCount >= MAX_PREFIX_CANDIDATES) {
+                return;
+            }
+        }
+    }
+
+    private void collectFuzzyMatches(String query) {
+        if (shared.length < termList.size()) {
+            shared = new int[termList.size() * 2];
+            touchedTerms = new int[termList.size() * 2];
+        }
+        int touchedTermCount = 0;
+
+        List<String> queryTrigrams = trigramsOf(query);
+        for (String trigram : queryTrigrams) {
+            IntList termIds = trigrams.get(trigram);
+            if (termIds == null) {
+                continue;
+            }
+            for (int i = 0; i < termIds.size; i++) {
+                int termId = termIds.values[i];
+                if (shared[termId]++ == 0) {
+                    touchedTerms[touchedTermCount++] = termId;
+                }
+            }
+        }
+
+        for (int t = 0; t < touchedTermCount; t++) {
+            int termId = touchedTerms[t];
+            Term term = termList.get(termId);
+            // Dice coefficient over the two trigram sets
+            float similarity = 2f * shared[termId] / (queryTrigrams.size() + term.text.length());
+            shared[termId] = 0;
+            if (similarity < MIN_SIMILARITY) {
+                continue;
+            }
+            for (int i = 0; i < term.size; i++) {
+                int posting = term.values[i];
+                offer(posting >>> 3, similarity * FIELD_WEIGHTS[posting & 3]);
+            }
+        }
+    }
+
+    // Scores are always positive, so 0 means the plant has not matched yet
+    private void offer(int plantId, float score) {
+        float best = scores[plantId];
+        if (best == 0f) {
+            touchedPlants[touchedPlantCount++] = plantId;
+            scores[plantId] = score;
+        } else if (score > best) {
+            scores[plantId] = score;
+        }
+    }
+
+    // The limit best touched plants in rank order; insertion into a short array beats sorting
+    // thousands of candidates for a one-letter query
+    private int[] selectTop(int limit) {
+        int[] top = new int[Math.min(limit, touchedPlantCount)];
+        int size = 0;
+        for (int i = 0; i < touchedPlantCount; i++) {
+            int candidate = touchedPlants[i];
+            if (size == top.length && !ranksBefore(candidate, top[size - 1])) {
+                continue;
+            }
+            int position = size < top.length ? size++ : size - 1;
+            while (position > 0 && ranksBefore(candidate, top[position - 1])) {
+                top[position] = top[position - 1];
+                position--;
+            }
+            top[position] = candidate;
+        }
+        return top;
+    }
+
+    private boolean ranksBefore(int a, int b) {
+        if (scores[a] != scores[b]) {
+            return scores[a] > scores[b];
+        }
+        // Shorter names are closer completions of what was typed
+        return plants.get(a).getPlantName().length() < plants.get(b).getPlantName().length();
+    }
+
+    private static boolean sameFields(PlantItem indexed, PlantItem plant) {
+        return Objects.equals(indexed.getPlantName(), plant.getPlantName())
+                && Objects.equals(indexed.getScientificName(), plant.getScientificName())
+                && Objects.equals(indexed.getFamily(), plant.getFamily());
+    }
+
+    // Drops the plant from every term it was in; emptied terms stay for when they come back
+    private void removePostings(int plantId) {
+        for (int termId : plantTerms.get(plantId)) {
+            Term term = termList.get(termId);
+            int kept = 0;
+            for (int i = 0; i < term.size; i++) {
+                if (term.values[i] >>> 3 != plantId) {
+                    term.values[kept++] = term.values[i];
+                }
+            }
+            term.size = kept;
+        }
+    }
+
+    private void addField(String value, int plantId, int field, IntList termIds) {
+        if (PlantItem.isPlaceholder(value)) {
+            return;
+        }
+        String normalized = PlantRepository.normalizeKey(value);
+        if (normalized.isEmpty()) {
+            return;
+        }
+        addPosting(normalized, (plantId << 3) | WHOLE_FIELD | field, termIds);
+        if (normalized.indexOf(' ') >= 0) {
+            for (String word : normalized.split(" ")) {
+                if (!word.isEmpty()) {
+                    addPosting(word, (plantId << 3) | field, termIds);
+                }
+            }
+        }
+    }
+
+    private void addPosting(String text, int posting, IntList plantTermIds) {
+        Term term = terms.get(text);
+        if (term == null) {
+            term = new Term(text, termList.size());
+            terms.put(text, term);
+            termList.add(term);
+            for (String trigram : trigramsOf(text)) {
+                IntList termIds = trigrams.get(trigram);
+                if (termIds == null) {
+                    termIds = new IntList();
+                    trigrams.put(trigram, termIds);
+                }
+                termIds.add(term.id);
+            }
+        }
+        // A plant's postings are added together, so a word repeated within one field ends up
+        // next to its first posting
+        boolean duplicate = term.size > 0 && term.values[term.size - 1] == posting;
+        if (!duplicate) {
+            term.add(posting);
+            plantTermIds.add(term.id);
+        }
+    }
+
+    // Padded with a space on both ends, so "neem" gives " ne", "nee", "eem", "em "
+    static List<String> trigramsOf(String text) {
+        String padded = " " + text + " ";
+        List<String> result = new ArrayList<>(text.length());
+        for (int i = 0; i + 3 <= padded.length(); i++) {
+            result.add(padded.substring(i, i + 3));
+        }
+        return result;
+    }
+
+    // Growable int array; boxed lists would double the index size
+    private static class IntList {
+        int[] values = new int[1];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                int[] grown = new int[size * 2];
+                System.arraycopy(values, 0, grown, 0, size);
+                values = grown;
+            }
+            values[size++] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
@@ -0,0 +1,287 @@
+package com.example.herbai;
+
+import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+import androidx.lifecycle.AndroidViewModel;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Search state for PlantSearchActivity and PlantSearchActivityK. Lives as long as the
+// screen (survives rotation), debounces typing and cancels the search in flight when
+// the screen is finished, so no request outlives the activity that wanted it.
+// Plants already stored on the device are matched on every keystroke through
+// PlantSearchIndex; the server's results are merged in front of them when they arrive.
+// The keyword screen searches KeywordIndex instead and only asks the server when the
+// device has too few matches. Server results are paged through SearchPager: the screen
+// reports what is visible and the next page is requested before the user reaches the end.
+public class PlantSearchViewModel extends AndroidViewModel {
+    private static final String TAG = "PlantSearchViewModel";
+    static final long DEBOUNCE_MS = 1000;
+    static final int MIN_QUERY_LENGTH = 3;
+    static final int LOCAL_RESULT_LIMIT = 20;
+    // Keyword searches with at least this many local matches are answered without the server
+    static final int MIN_OFFLINE_KEYWORD_RESULTS = 3;
+
+    private final PlantRepository repository;
+    private final SearchController controller;
+    private final SearchPager pager = new SearchPager();
+    // The server search being paged, null when results came from the device only
+    private String pagedQuery;
+    private PathBuilder pagedPathBuilder;
+    private List<PlantItem> pagedLocal;
+    private LocalSearch localSearch;
+    private boolean localFirst = false;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final MutableLiveData<SearchState> state = new MutableLiveData<>();
+    private Runnable pendingSearch;
+    // Latest state of the server search, shown again when the user types their way back to it
+    private SearchState lastSearch;
+
+    // One of the on-device indexes
+    interface LocalSearch {
+        List<PlantItem> search(String query, int limit);
+    }
+
+    // Builds the request path for a query, e.g. "smart_search/<query>"
+    public interface PathBuilder {
+        String pathFor(String query);
+    }
+
+    // What the search screen should show. Local results are there from the first keystroke;
+    // response (server results merged with local ones) or error is set once loading ends.
+    public static class SearchState {
+        private final String query;
+        private final List<PlantItem> localResults;
+        private final boolean loading;
+        private final PlantRepository.SearchResponse response;
+        private final String error;
+
+        SearchState(String query, List<PlantItem> localResults, boolean loading,
+                    PlantRepository.SearchResponse response, String error) {
+            this.query = query;
+            this.localResults = localResults;
+            this.loading = loading;
+            this.response = response;
+            this.error = error;
+        }
+
+        public String getQuery() {
+            return query;
+        }
+
+        public List<PlantItem> getLocalResults() {
+            return localResults;
+        }
+
+        public boolean isLoading() {
+            return loading;
+        }
+
+        public PlantRepository.SearchResponse getResponse() {
+            return response;
+        }
+
+        public String getError() {
+            return error;
+        }
+    }
+
+    public PlantSearchViewModel(@NonNull Application application) {
+        super(application);
+        repository = PlantRepository.getInstance(application);
+        controller = new SearchController(ApiClient.getInstance(), repository, mainHandler::post);
+        localSearch = repository.getSearchIndex()::search;
+        repository.loadSearchIndex(this::refreshLocalResults);
+    }
+
+    // For keyword search: rank stored plants by what they are used for, and only go to the
+    // server when there are fewer than MIN_OFFLINE_KEYWORD_RESULTS of them
+    @MainThread
+    public void useKeywordIndex() {
+        localSearch = repository.getKeywordIndex()::search;
+        localFirst = true;
+    }
+
+    public LiveData<SearchState> getState() {
+        return state;
+    }
+
+    // Called on every text change: local matches right away, the server only for the text
+    // left standing for DEBOUNCE_MS
+    @MainThread
+    public void onQueryChanged(String query, PathBuilder pathBuilder) {
+        removePendingSearch();
+        if (query.length() < MIN_QUERY_LENGTH) {
+            // Whatever is still loading is for text the user has deleted
+            controller.cancel();
+        }
+        if (query.isEmpty()) {
+            state.setValue(null);
+            return;
+        }
+
+        SearchState current = state.getValue();
+        if (current == null || !query.equals(current.getQuery())) {
+            state.setValue(new SearchState(query, searchLocally(query), false, null, null));
+        }
+        if (query.length() >= MIN_QUERY_LENGTH) {
+            pendingSearch = () -> search(query, pathBuilder);
+            mainHandler.postDelayed(pendingSearch, DEBOUNCE_MS);
+        }
+    }
+
+    // Searches right away, e.g. for a query passed in by another screen
+    @MainThread
+    public void search(String query, PathBuilder pathBuilder) {
+        removePendingSearch();
+        List<PlantItem> local = searchLocally(query);
+        if (localFirst && local.size() >= MIN_OFFLINE_KEYWORD_RESULTS) {
+            SearchState current = state.getValue();
+            if (current != null && current == lastSearch && query.equals(current.getQuery())
+                    && current.getResponse() != null) {
+                // Already showing exactly this
+                return;
+            }
+            Log.d(TAG, "Answered \"" + query + "\" from the keyword index");
+            // Whatever is still loading was asked for older text
+            controller.cancel();
+            pagedQuery = null;
+            setSearchState(new SearchState(query, local, false,
+                    new PlantRepository.SearchResponse(true, false, local), null));
+            return;
+        }
+        SearchPager.PageRequest firstPage = pager.firstRequest();
+        SearchController.Listener listener = new SearchController.Listener() {
+            @Override
+            public void onSearchResult(String query, PlantRepository.SearchResponse response) {
+                pager.addPage(firstPage, response);
+                setSearchState(pagedState(false));
+            }
+
+            @Override
+            public void onSearchFailed(String query, String message) {
+                setSearchState(new SearchState(query, local, false, null, message));
+            }
+        };
+        if (controller.search(query, pager.pathFor(pathBuilder.pathFor(query), firstPage), listener)) {
+            pager.reset();
+            pagedQuery = query;
+            pagedPathBuilder = pathBuilder;
+            pagedLocal = local;
+            setSearchState(new SearchState(query, local, true, null, null));
+        } else if (lastSearch != null && state.getValue() != lastSearch) {
+            // Still loading or already answered; no new request, just show it again
+            state.setValue(lastSearch);
+        }
+    }
+
+    // Called as the result list scrolls, with the first and last visible positions. Loads the
+    // next page when the end comes near, or a page dropped from the window when the user
+    // scrolls back up.
+    @MainThread
+    public void onResultsScrolled(int firstVisible, int lastVisible) {
+        SearchState current = state.getValue();
+        if (pagedQuery == null || current == null || current != lastSearch
+                || current.getResponse() == null || current.isLoading()) {
+            return;
+        }
+        SearchPager.PageRequest request = pager.requestFor(firstVisible, lastVisible);
+        if (request == null) {
+            return;
+        }
+        SearchController.Listener listener = new SearchController.Listener() {
+            @Override
+            public void onSearchResult(String query, PlantRepository.SearchResponse response) {
+                if (!pager.addPage(request, response)) {
+                    Log.d(TAG, "Page at " + request.offset + " no longer fits the results on screen");
+                }
+                setSearchState(pagedState(false));
+            }
+
+            @Override
+            public void onSearchFailed(String query, String message) {
+                // Keep what is shown; scrolling again retries
+                Log.w(TAG, "Could not load more results for \"" + query + "\": " + message);
+                setSearchState(pagedState(false));
+            }
+        };
+        String path = pager.pathFor(pagedPathBuilder.pathFor(pagedQuery), request);
+        if (controller.loadPage(pagedQuery, path, listener)) {
+            setSearchState(pagedState(true));
+        }
+    }
+
+    // The pages in memory, followed by local matches once the server has nothing more
+    private SearchState pagedState(boolean loadingMore) {
+        List<PlantItem> local = pager.hasMoreAfter() ? new ArrayList<>() : pagedLocal;
+        return new SearchState(pagedQuery, pagedLocal, loadingMore, merge(pager.getWindow(), local), null);
+    }
+
+    private void setSearchState(SearchState searchState) {
+        lastSearch = searchState;
+        state.setValue(searchState);
+    }
+
+    // Server results first, in the server's order, then local matches it did not return.
+    // The server's cursor is kept, so the screen can tell more results will follow.
+    static PlantRepository.SearchResponse merge(PlantRepository.SearchResponse remote, List<PlantItem> local) {
+        List<PlantItem> plants = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        if (remote.isSuccess()) {
+            for (PlantItem plant : remote.getPlants()) {
+                plants.add(plant);
+                keys.add(PlantRepository.keyFor(plant));
+            }
+        }
+        for (PlantItem plant : local) {
+            if (keys.add(PlantRepository.keyFor(plant))) {
+                plants.add(plant);
+            }
+        }
+        return new PlantRepository.SearchResponse(remote.isSuccess() || !plants.isEmpty(),
+                remote.wasGenerated(), plants, remote.getNextCursor());
+    }
+
+    private List<PlantItem> searchLocally(String query) {
+        long start = System.nanoTime();
+        List<PlantItem> results = localSearch.search(query, LOCAL_RESULT_LIMIT);
+        Log.d(TAG, "Local search for \"" + query + "\": " + results.size() + " results in "
+                + (System.nanoTime() - start) / 1000 + " us");
+        return results;
+    }
+
+    // The index finished loading from disk; show what it knows for text typed before that
+    private void refreshLocalResults() {
+        SearchState current = state.getValue();
+        if (current != null && current.getResponse() == null && current.getLocalResults().isEmpty()) {
+            state.setValue(new SearchState(current.getQuery(), searchLocally(current.getQuery()),
+                    current.isLoading(), null, current.getError()));
+        }
+    }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        removePendingSearch();
+        controller.cancel();
+        Log.d(TAG, "Search screen closed after " + controller.getRequestCount() + " requests, "
+                + controller.getCancelledCount() + " cancelled, " + controller.getStaleCount() + " stale");
+    }
+
+    private void removePendingSearch() {
+        if (pendingSearch != null) {
+            mainHandler.removeCallbacks(pendingSearch);
+            pendingSearch = null;
+        }
+    }
+}
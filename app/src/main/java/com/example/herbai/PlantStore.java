@@ -0,0 +1,136 @@
+package com.example.herbai;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+
+// One small file per plant record, named by a hash of its key, so a lookup is a
+// single file open. Aliases (common name -> scientific key) are stored the same way.
+public class PlantStore {
+    private static final String TAG = "PlantStore";
+    private static final String RECORD_SUFFIX = ".json";
+    private static final String ALIAS_SUFFIX = ".alias";
+
+    private final File directory;
+
+    public PlantStore(File directory) {
+        this.directory = directory;
+    }
+
+    public String read(String key) {
+        return readFile(fileFor(key, RECORD_SUFFIX));
+    }
+
+    public void write(String key, String json) {
+        writeFile(fileFor(key, RECORD_SUFFIX), json);
+    }
+
+    public void delete(String key) {
+        fileFor(key, RECORD_SUFFIX).delete();
+    }
+
+    public String readAlias(String alias) {
+        return readFile(fileFor(alias, ALIAS_SUFFIX));
+    }
+
+    public void writeAlias(String alias, String key) {
+        writeFile(fileFor(alias, ALIAS_SUFFIX), key);
+    }
+
+    // Every stored record, in no particular order; for rebuilding in-memory indexes
+    public List<String> readAll() {
+        List<String> records = new ArrayList<>();
+        File[] files = directory.listFiles((dir, name) -> name.endsWith(RECORD_SUFFIX));
+        if (files == null) {
+            return records;
+        }
+        for (File file : files) {
+            String record = readFile(file);
+            if (record != null) {
+                records.add(record);
+            }
+        }
+        return records;
+    }
+
+    public int size() {
+        String[] names = directory.list((dir, name) -> name.endsWith(RECORD_SUFFIX));
+        return names != null ? names.length : 0;
+    }
+
+    private File fileFor(String key, String suffix) {
+        return new File(directory, sha1(key) + suffix);
+    }
+
+    private String readFile(File file) {
+        if (!file.isFile()) {
+            return null;
+        }
+        try (InputStream inputStream = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int offset = 0;
+            int read;
+            while (offset < bytes.length && (read = inputStream.read(bytes, offset, bytes.length - offset)) != -1) {
+                offset += read;
+            }
+            return new String(bytes, 0, offset, StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read " + file.getName() + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    // Write to a temp file and rename, so a crash never leaves a half-written record. Each
+    // write has a temp file of its own: two threads storing the same key must not share one.
+    private void writeFile(File file, String content) {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            Log.w(TAG, "Could not create " + directory);
+            return;
+        }
+        File temp = null;
+        try {
+            temp = File.createTempFile(file.getName() + ".", ".tmp", directory);
+            try (OutputStream outputStream = new FileOutputStream(temp)) {
+                outputStream.write(content.getBytes(StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Could not write " + file.getName() + ": " + e.getMessage());
+            if (temp != null) {
+                temp.delete();
+            }
+            return;
+        }
+        if (!temp.renameTo(file)) {
+            file.delete();
+            if (!temp.renameTo(file)) {
+                Log.w(TAG, "Could not replace " + file.getName());
+                temp.delete();
+            }
+        }
+    }
+
+    private static String sha1(String value) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            byte[] hash = digest.digest(value.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            // SHA-1 is always available on Android
+            throw new IllegalStateException(e);
+        }
+    }
+}
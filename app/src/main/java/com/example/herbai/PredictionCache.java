@@ -0,0 +1,241 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// /predict answers of photos identified before, so identifying the same photo again
+// (a retry, or MainActivity recreated by the theme switch) needs no upload. Entries are
+// found by the file's content hash first, then by the nearest dHash within MAX_DISTANCE
+// bits, which catches the same picture re-encoded or resized. That is a linear scan over a
+// long[] of the live hashes: microseconds at MAX_ENTRIES, and faster than a BK-tree there.
+// Only species, confidence and top_predictions are kept; the MAX_ENTRIES most recently
+// used stay on disk, with a use sequence number so the order survives a restart.
+public class PredictionCache {
+    private static final String TAG = "PredictionCache";
+    static final int MAX_ENTRIES = 500;
+    // Re-encoded or resized copies of a photo are within a few bits, different photos ~32 apart
+    static final int MAX_DISTANCE = 6;
+    private static final String[] KEPT_FIELDS = {"species", "confidence", "top_predictions"};
+
+    private static PredictionCache instance;
+
+    private final PlantStore store;
+    private final int maxEntries;
+    private final int maxDistance;
+
+    // Guarded by "this"; by content hash, least recently used first
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    // dHashes of the entries, scanned by get(); an entry's slot indexes both arrays
+    private long[] dHashes = new long[16];
+    private Entry[] slots = new Entry[16];
+    private int count;
+    // Last use sequence number handed out
+    private long lastUse;
+    private boolean loaded;
+
+    private final AtomicInteger exactHits = new AtomicInteger();
+    private final AtomicInteger nearHits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+
+    private static class Entry {
+        final String contentHash;
+        final long dHash;
+        final JSONObject response;
+        long lastUse;
+        int slot;
+
+        Entry(String contentHash, long dHash, JSONObject response, long lastUse) {
+            this.contentHash = contentHash;
+            this.dHash = dHash;
+            this.response = response;
+            this.lastUse = lastUse;
+        }
+
+        String toJson() throws JSONException {
+            return new JSONObject()
+                    .put("content_hash", contentHash)
+                    .put("dhash", Long.toHexString(dHash))
+                    .put("last_use", lastUse)
+                    .put("response", response)
+                    .toString();
+        }
+
+        static Entry fromJson(String text) {
+            try {
+                JSONObject json = new JSONObject(text);
+                // Entries written before last_use existed count as the least recently used
+                return new Entry(json.getString("content_hash"), Long.parseUnsignedLong(json.getString("dhash"), 16),
+                        json.getJSONObject("response"), json.optLong("last_use", 0));
+            } catch (JSONException | NumberFormatException e) {
+                Log.w(TAG, "Corrupt prediction cache entry: " + e.getMessage());
+                return null;
+            }
+        }
+    }
+
+    public static synchronized PredictionCache getInstance(Context context) {
+        if (instance == null) {
+            instance = new PredictionCache(new PlantStore(new File(context.getApplicationContext().getFilesDir(),
+                    "predictions")), MAX_ENTRIES, MAX_DISTANCE);
+        }
+        return instance;
+    }
+
+    PredictionCache(PlantStore store, int maxEntries, int maxDistance) {
+        this.store = store;
+        this.maxEntries = maxEntries;
+        this.maxDistance = maxDistance;
+    }
+
+    // The cached answer for this photo or a near-identical one, null if there is none
+    @WorkerThread
+    public synchronized JSONObject get(ImageHash.Key key) {
+        ensureLoaded();
+        Entry entry = entries.get(key.contentHash);
+        if (entry != null) {
+            exactHits.incrementAndGet();
+            Log.d(TAG, "Same photo as before: " + key);
+            return copy(used(entry).response);
+        }
+        int nearest = -1;
+        int nearestDistance = maxDistance + 1;
+        for (int i = 0; i < count; i++) {
+            int distance = ImageHash.distance(dHashes[i], key.dHash);
+            if (distance < nearestDistance) {
+                nearest = i;
+                nearestDistance = distance;
+            }
+        }
+        if (nearest >= 0) {
+            nearHits.incrementAndGet();
+            Log.d(TAG, "Photo " + nearestDistance + " bits from one identified before: " + key);
+            Entry match = slots[nearest];
+            entries.get(match.contentHash);
+            return copy(used(match).response);
+        }
+        misses.incrementAndGet();
+        return null;
+    }
+
+    @WorkerThread
+    public synchronized void put(ImageHash.Key key, JSONObject response) {
+        ensureLoaded();
+        JSONObject kept = new JSONObject();
+        try {
+            for (String field : KEPT_FIELDS) {
+                if (response.has(field)) {
+                    kept.put(field, response.get(field));
+                }
+            }
+            Entry entry = new Entry(key.contentHash, key.dHash, kept, ++lastUse);
+            add(entry);
+            store.write(key.contentHash, entry.toJson());
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not cache prediction: " + e.getMessage());
+        }
+    }
+
+    @WorkerThread
+    public synchronized int size() {
+        ensureLoaded();
+        return entries.size();
+    }
+
+    public int getExactHitCount() {
+        return exactHits.get();
+    }
+
+    public int getNearHitCount() {
+        return nearHits.get();
+    }
+
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    // Records the use on disk too, so eviction after a restart follows the same order
+    private Entry used(Entry entry) {
+        entry.lastUse = ++lastUse;
+        try {
+            store.write(entry.contentHash, entry.toJson());
+        } catch (JSONException e) {
+            Log.w(TAG, "Could not record use of " + entry.contentHash + ": " + e.getMessage());
+        }
+        return entry;
+    }
+
+    private void add(Entry entry) {
+        Entry previous = entries.put(entry.contentHash, entry);
+        if (previous != null) {
+            entry.slot = previous.slot;
+        } else {
+            if (count == dHashes.length) {
+                dHashes = Arrays.copyOf(dHashes, count * 2);
+                slots = Arrays.copyOf(slots, count * 2);
+            }
+            entry.slot = count++;
+        }
+        dHashes[entry.slot] = entry.dHash;
+        slots[entry.slot] = entry;
+
+        while (entries.size() > maxEntries) {
+            Map.Entry<String, Entry> eldest = entries.entrySet().iterator().next();
+            entries.remove(eldest.getKey());
+            removeSlot(eldest.getValue().slot);
+            store.delete(eldest.getKey());
+        }
+    }
+
+    // Moves the last slot into the freed one
+    private void removeSlot(int slot) {
+        Entry last = slots[--count];
+        dHashes[slot] = last.dHash;
+        slots[slot] = last;
+        last.slot = slot;
+        slots[count] = null;
+    }
+
+    private void ensureLoaded() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        List<Entry> loadedEntries = new ArrayList<>();
+        for (String record : store.readAll()) {
+            Entry entry = Entry.fromJson(record);
+            if (entry != null) {
+                loadedEntries.add(entry);
+            }
+        }
+        // Files come back in directory order; least recently used first restores the LRU order
+        Collections.sort(loadedEntries, (a, b) -> Long.compare(a.lastUse, b.lastUse));
+        for (Entry entry : loadedEntries) {
+            add(entry);
+            lastUse = Math.max(lastUse, entry.lastUse);
+        }
+        Log.d(TAG, "Loaded " + entries.size() + " cached predictions");
+    }
+
+    private static JSONObject copy(JSONObject json) {
+        try {
+            return new JSONObject(json.toString());
+        } catch (JSONException e) {
+            // It was valid JSON when stored
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.herbai;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.ImageDecoder;
+import android.graphics.Matrix;
+import android.net.Uri;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.provider.MediaStore;
+import android.util.Log;
+import android.util.Size;
+
+import androidx.exifinterface.media.ExifInterface;
+
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Decodes the picked or captured photo for MainActivity's image view, off the main
+// thread and at about the view's size instead of the full resolution (a 12 MP photo is
+// 48 MB as an ARGB bitmap). MediaStore images use the system thumbnail; everything else
+// is decoded with a target size (ImageDecoder) or inSampleSize (BitmapFactory). The result
+// is a HARDWARE bitmap where possible, whose pixels are not on the Java heap.
+public class PreviewDecoder {
+    private static final String TAG = "PreviewDecoder";
+
+    private final ContentResolver resolver;
+    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Bumped on every decode; only the latest selection is delivered
+    private final AtomicInteger generation = new AtomicInteger();
+
+    public interface Callback {
+        // Main thread
+        void onPreviewReady(Uri uri, Bitmap bitmap);
+
+        void onPreviewFailed(Uri uri, Exception e);
+    }
+
+    public PreviewDecoder(ContentResolver resolver) {
+        this.resolver = resolver;
+    }
+
+    // Decodes uri to cover width x height (the view uses centerCrop)
+    public void decode(Uri uri, int width, int height, Callback callback) {
+        int seq = generation.incrementAndGet();
+        executor.execute(() -> {
+            if (seq != generation.get()) {
+                return;
+            }
+            long start = SystemClock.elapsedRealtime();
+            try {
+                Bitmap bitmap = decodeNow(uri, Math.max(1, width), Math.max(1, height));
+                Log.d(TAG, "Preview " + bitmap.getWidth() + "x" + bitmap.getHeight() + " " + bitmap.getConfig()
+                        + " for a " + width + "x" + height + " view in " + (SystemClock.elapsedRealtime() - start) + " ms");
+                mainHandler.post(() -> {
+                    if (seq == generation.get()) {
+                        callback.onPreviewReady(uri, bitmap);
+                    }
+                });
+            } catch (IOException | RuntimeException | OutOfMemoryError e) {
+                Log.e(TAG, "Preview decode failed for " + uri + ": " + e.getMessage());
+                Exception error = e instanceof Exception ? (Exception) e : new IOException(e.getMessage());
+                mainHandler.post(() -> {
+                    if (seq == generation.get()) {
+                        callback.onPreviewFailed(uri, error);
+                    }
+                });
+            }
+        });
+    }
+
+    public void shutdown() {
+        generation.incrementAndGet();
+        executor.shutdown();
+    }
+
+    private Bitmap decodeNow(Uri uri, int width, int height) throws IOException {
+        if (Build.VERSION.SDK_INT >= 29) {
+            if (MediaStore.AUTHORITY.equals(uri.getAuthority())) {
+                try {
+                    // Served from the media provider's thumbnail cache when it has one
+                    return toHardware(resolver.loadThumbnail(uri, new Size(width, height), null));
+                } catch (IOException e) {
+                    Log.w(TAG, "No thumbnail for " + uri + ", decoding: " + e.getMessage());
+                }
+            }
+            ImageDecoder.Source source = ImageDecoder.createSource(resolver, uri);
+            // ImageDecoder applies the EXIF orientation itself
+            return ImageDecoder.decodeBitmap(source, (decoder, info, src) -> {
+                int[] size = coverSize(info.getSize().getWidth(), info.getSize().getHeight(), width, height);
+                decoder.setTargetSize(size[0], size[1]);
+                decoder.setAllocator(ImageDecoder.ALLOCATOR_HARDWARE);
+            });
+        }
+
+        BitmapFactory.Options bounds = new BitmapFactory.Options();
+        bounds.inJustDecodeBounds = true;
+        try (InputStream inputStream = open(uri)) {
+            BitmapFactory.decodeStream(inputStream, null, bounds);
+        }
+        if (bounds.outWidth <= 0 || bounds.outHeight <= 0) {
+            throw new IOException("Unable to read image bounds: " + uri);
+        }
+
+        int rotation = readExifRotation(uri);
+        boolean swapped = rotation == 90 || rotation == 270;
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        // The view's box in the image's own orientation
+        options.inSampleSize = coverSampleSize(bounds.outWidth, bounds.outHeight,
+                swapped ? height : width, swapped ? width : height);
+        if (rotation == 0 && Build.VERSION.SDK_INT >= 26) {
+            options.inPreferredConfig = Bitmap.Config.HARDWARE;
+        }
+        Bitmap decoded;
+        try (InputStream inputStream = open(uri)) {
+            decoded = BitmapFactory.decodeStream(inputStream, null, options);
+        }
+        if (decoded == null) {
+            throw new IOException("Unable to decode image: " + uri);
+        }
+        if (rotation == 0) {
+            return decoded;
+        }
+
+        Matrix matrix = new Matrix();
+        matrix.postRotate(rotation);
+        Bitmap rotated = Bitmap.createBitmap(decoded, 0, 0, decoded.getWidth(), decoded.getHeight(), matrix, true);
+        if (rotated != decoded) {
+            decoded.recycle();
+        }
+        return toHardware(rotated);
+    }
+
+    private InputStream open(Uri uri) throws IOException {
+        InputStream inputStream = resolver.openInputStream(uri);
+        if (inputStream == null) {
+            throw new FileNotFoundException("No input stream for " + uri);
+        }
+        return inputStream;
+    }
+
+    private int readExifRotation(Uri uri) {
+        try (InputStream inputStream = open(uri)) {
+            return new ExifInterface(inputStream).getRotationDegrees();
+        } catch (IOException e) {
+            Log.w(TAG, "Could not read EXIF orientation: " + e.getMessage());
+            return 0;
+        }
+    }
+
+    // Moves a software bitmap's pixels to graphics memory; only worth it for display
+    private static Bitmap toHardware(Bitmap bitmap) {
+        if (Build.VERSION.SDK_INT < 26 || bitmap.getConfig() == Bitmap.Config.HARDWARE) {
+            return bitmap;
+        }
+        Bitmap hardware = bitmap.copy(Bitmap.Config.HARDWARE, false);
+        if (hardware == null) {
+            return bitmap;
+        }
+        bitmap.recycle();
+        return hardware;
+    }
+
+    // Largest power of two that still leaves the decoded image covering width x height
+    static int coverSampleSize(int sourceWidth, int sourceHeight, int width, int height) {
+        int sampleSize = 1;
+        while (sourceWidth / (sampleSize * 2) >= width && sourceHeight / (sampleSize * 2) >= height) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    // Source size scaled down, aspect ratio kept, until one edge matches the box; never scaled up
+    static int[] coverSize(int sourceWidth, int sourceHeight, int width, int height) {
+        float scale = Math.max((float) width / sourceWidth, (float) height / sourceHeight);
+        if (scale >= 1f) {
+            return new int[]{sourceWidth, sourceHeight};
+        }
+        return new int[]{
+                Math.max(1, Math.round(sourceWidth * scale)),
+                Math.max(1, Math.round(sourceHeight * scale))
+        };
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.herbai;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+
+import okhttp3.Interceptor;
+import okhttp3.MediaType;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+// Application interceptor that lets identical GETs in flight at the same time share one
+// network call. The first caller's response body is buffered and every waiting caller
+// gets its own copy, so each can read (and close) it independently. Each call keeps its
+// own cancellation; see SingleFlight.
+public class RequestCoalescer implements Interceptor {
+    private static final String TAG = "RequestCoalescer";
+
+    private final SingleFlight<String, SharedResponse> flights = new SingleFlight<>();
+
+    // Tag for requests that must not join a flight, e.g. a background revalidation started
+    // from inside the very call it would otherwise wait for
+    public static final class Bypass {
+    }
+
+    @NonNull
+    @Override
+    public Response intercept(@NonNull Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isCoalescable(request)) {
+            return chain.proceed(request);
+        }
+
+        SingleFlight.Result<SharedResponse> result = flights.execute(keyFor(request),
+                () -> SharedResponse.read(chain.proceed(request)),
+                () -> chain.call().isCanceled());
+        if (result.isShared()) {
+            Log.d(TAG, "Shared in-flight response for " + request.url().encodedPath());
+        }
+        return result.getValue().copyFor(request);
+    }
+
+    // Number of calls answered by another call's network request
+    public int getCoalescedCount() {
+        return flights.getCoalescedCount();
+    }
+
+    // Only requests without a body and without side effects
+    static boolean isCoalescable(Request request) {
+        return ("GET".equals(request.method()) || "HEAD".equals(request.method())) && request.body() == null
+                && request.tag(Bypass.class) == null;
+    }
+
+    // Headers that change what the server or the cache answers are part of the key
+    static String keyFor(Request request) {
+        return request.method() + " " + request.url()
+                + " cc=" + request.header("Cache-Control")
+                + " accept=" + request.header("Accept");
+    }
+
+    private static final class SharedResponse {
+        final Response response;
+        final byte[] body;
+        final MediaType contentType;
+
+        private SharedResponse(Response response, byte[] body, MediaType contentType) {
+            this.response = response;
+            this.body = body;
+            this.contentType = contentType;
+        }
+
+        static SharedResponse read(Response response) throws IOException {
+            try (ResponseBody body = response.body()) {
+                if (body == null) {
+                    return new SharedResponse(response, null, null);
+                }
+                return new SharedResponse(response, body.bytes(), body.contentType());
+            }
+        }
+
+        Response copyFor(Request request) {
+            Response.Builder builder = response.newBuilder().request(request);
+            if (body != null) {
+                builder.body(ResponseBody.create(body, contentType));
+            }
+            return builder.build();
+        }
+    }
+}
@@ -13,10 +13,16 @@ import android.widget.Toast;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.appcompat.app.AppCompatDelegate;
 import androidx.cardview.widget.CardView;
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
 
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
@@ -28,9 +34,14 @@ public class ResultActivity extends AppCompatActivity {
     private static final String PREFS_NAME = "theme_prefs";
     private static final String NIGHT_MODE = "night_mode";
     private static final int MAX_USES_LENGTH = 200; // Character limit before showing "Read More"
+    // Handed to the gallery as its first page; it loads the rest while scrolling
+    private static final int GALLERY_IMAGES = ImageUrlClient.IMAGES_PER_PLANT;
     private Button viewImagesButton;
     private ArrayList<String> dbImageUrls;
     private boolean hasDbImages;
+    private String scientificName;
+    // What observePendingDetails() listens to, swapped when a refinement changes the top plant
+    private LiveData<IdentificationPipeline.DetailResult> pendingDetails;
     private TextView topPlantNameTextView;
     private TextView scientificNameTextView;
     private TextView familyTextView;
@@ -71,6 +82,9 @@ public class ResultActivity extends AppCompatActivity {
         displayResults();
         setupButtons();
         setupImageGalleryFeature();
+        observePendingDetails();
+        observeRefinement();
+        prefetchProbablePlantImages();
     }
 
     private void initializeViews() {
@@ -130,7 +144,7 @@ public class ResultActivity extends AppCompatActivity {
 
         // Extract all data from intent
         String plantName = intent.getStringExtra("plantName");
-        String scientificName = intent.getStringExtra("scientificName");
+        scientificName = intent.getStringExtra("scientificName");
         String family = intent.getStringExtra("family");
         String habitat = intent.getStringExtra("habitat");
         String uses = intent.getStringExtra("uses");
@@ -166,6 +180,32 @@ public class ResultActivity extends AppCompatActivity {
             topPlantNameTextView.setText("Plant Identified");
         }
 
+        displayTaxonomy(plantName, scientificName, family, habitat);
+
+        // Display medicinal properties and uses; pipelined identifications and store tokens fill them in later
+        if (intent.getBooleanExtra("detailsPending", false) || intent.hasExtra(ResultStore.EXTRA_TOKEN)) {
+            plantUsesTextView.setText("Fetching plant details...");
+            plantUsesTextView.setVisibility(View.VISIBLE);
+        } else {
+            displayMedicinalUses(uses, databaseUses, databaseMedicinalProperties, databaseChemicalComponents);
+        }
+
+        // Display confidence
+        if (confidence > 0) {
+            confidenceTextView.setText(String.format("Confidence: %.1f%%", confidence * 100));
+            confidenceTextView.setVisibility(View.VISIBLE);
+        } else {
+            confidenceTextView.setVisibility(View.GONE);
+        }
+
+        // Display identification status
+        displayIdentificationStatus(isRealIdentification, confidence, isFromSearchRoute);
+
+        // Display probable plants
+        displayProbablePlants(probablePlants);
+    }
+
+    private void displayTaxonomy(String plantName, String scientificName, String family, String habitat) {
         // Display scientific name (show only if different from plant name)
         if (scientificName != null && !scientificName.trim().isEmpty() &&
                 !scientificName.equals(plantName) && !scientificName.equals("null")) {
@@ -194,23 +234,100 @@ public class ResultActivity extends AppCompatActivity {
             habitatTextView.setVisibility(View.GONE);
             Log.d(TAG, "Habitat hidden - value was: '" + habitat + "'");
         }
+    }
 
-        // Display medicinal properties and uses
-        displayMedicinalUses(uses, databaseUses, databaseMedicinalProperties, databaseChemicalComponents);
+    // Details for a pipelined identification: from the pipeline's prefetch when it is still
+    // around, otherwise from the repository (e.g. after the process was restarted).
+    // Screens opened with a ResultStore token read the plant from the store instead.
+    private void observePendingDetails() {
+        Intent intent = getIntent();
+        String plantName = intent.getStringExtra("plantName");
+        String token = intent.getStringExtra(ResultStore.EXTRA_TOKEN);
+        if (token != null) {
+            ResultStore.getInstance(this).load(token, plant -> {
+                if (!isFinishing() && !isDestroyed()) {
+                    displayDetails(plantName, plant);
+                }
+            });
+            return;
+        }
+        if (pendingDetails != null) {
+            pendingDetails.removeObservers(this);
+            pendingDetails = null;
+        }
+        if (!intent.getBooleanExtra("detailsPending", false) || plantName == null) {
+            return;
+        }
 
-        // Display confidence
-        if (confidence > 0) {
-            confidenceTextView.setText(String.format("Confidence: %.1f%%", confidence * 100));
-            confidenceTextView.setVisibility(View.VISIBLE);
+        IdentificationPipeline pipeline = IdentificationPipeline.get(
+                intent.getStringExtra(IdentificationPipeline.EXTRA_PIPELINE_ID));
+        LiveData<IdentificationPipeline.DetailResult> details;
+        if (pipeline != null) {
+            details = pipeline.getDetails(plantName);
         } else {
-            confidenceTextView.setVisibility(View.GONE);
+            MutableLiveData<IdentificationPipeline.DetailResult> lookup = new MutableLiveData<>();
+            PlantRepository.getInstance(this).lookup(plantName,
+                    plant -> lookup.setValue(new IdentificationPipeline.DetailResult(plant)));
+            details = lookup;
         }
+        pendingDetails = details;
+        details.observe(this, result -> displayDetails(plantName, result.getPlant()));
+    }
 
-        // Display identification status
-        displayIdentificationStatus(isRealIdentification, confidence, isFromSearchRoute);
+    // A low-confidence first answer is redrawn once the full-resolution upload is answered
+    private void observeRefinement() {
+        Intent intent = getIntent();
+        if (!intent.getBooleanExtra(IdentificationPipeline.EXTRA_REFINABLE, false)) {
+            return;
+        }
+        IdentificationPipeline pipeline = IdentificationPipeline.get(
+                intent.getStringExtra(IdentificationPipeline.EXTRA_PIPELINE_ID));
+        if (pipeline == null) {
+            return;
+        }
+        if (pipeline.isRefining()) {
+            identificationStatusText.setText("⟳ Low confidence, checking the full-resolution photo...");
+        }
+        pipeline.getRefinedCandidates().observe(this, candidates -> {
+            Log.d(TAG, "Refined result: " + candidates.get(0).getLabel());
+            Intent refined = new Intent(getIntent());
+            pipeline.putCandidateExtras(refined);
+            setIntent(refined);
+
+            // Images of the first answer's plant no longer apply
+            topPlantNameTextView.setCompoundDrawablesWithIntrinsicBounds(0, 0, 0, 0);
+            displayResults();
+            setupImageGalleryButton();
+            observePendingDetails();
+            prefetchProbablePlantImages();
+        });
+    }
 
-        // Display probable plants
-        displayProbablePlants(probablePlants);
+    private void displayDetails(String plantName, PlantItem plant) {
+        if (plant == null) {
+            Log.w(TAG, "No details found for " + plantName);
+            displayMedicinalUses("Detailed information is being fetched. Please use 'Search More' for additional details.",
+                    "", "", "");
+            return;
+        }
+
+        Log.d(TAG, "Details arrived for " + plantName);
+        scientificName = PlantItem.isPlaceholder(plant.getScientificName()) ? plantName : plant.getScientificName();
+        displayTaxonomy(plantName, scientificName, detailValue(plant.getFamily()), detailValue(plant.getHabitat()));
+        String uses = detailValue(plant.getUses());
+        displayMedicinalUses(uses, uses, detailValue(plant.getMedicinalProperties()),
+                detailValue(plant.getChemicalComponents()));
+
+        if (!hasDbImages && !plant.getImageUrls().isEmpty()) {
+            dbImageUrls = new ArrayList<>(plant.getImageUrls());
+            hasDbImages = true;
+            setupImageGalleryButton();
+        }
+    }
+
+    // PlantItem getters fall back to display placeholders; the display methods expect ""
+    private static String detailValue(String value) {
+        return PlantItem.isPlaceholder(value) ? "" : value;
     }
 
     // Replace the displayMedicinalUses method in ResultActivity with this fixed version
@@ -400,6 +517,13 @@ public class ResultActivity extends AppCompatActivity {
 
                 cardView.addView(plantTextView);
                 probablePlantsLayout.addView(cardView);
+
+                // Alternatives from a pipelined identification open from the prefetch
+                String species = probableSpecies(i);
+                if (species != null && !species.equals(getIntent().getStringExtra("plantName"))) {
+                    int index = i;
+                    cardView.setOnClickListener(v -> openAlternative(species, index));
+                }
             }
         } else {
             // Show a message if no probable plants are available
@@ -411,6 +535,30 @@ public class ResultActivity extends AppCompatActivity {
         }
     }
 
+    private String probableSpecies(int index) {
+        ArrayList<String> species = getIntent().getStringArrayListExtra("probableSpecies");
+        return species != null && index < species.size() ? species.get(index) : null;
+    }
+
+    private void openAlternative(String species, int index) {
+        double[] confidences = getIntent().getDoubleArrayExtra("probableConfidences");
+
+        Intent intent = new Intent(this, ResultActivity.class);
+        intent.putExtra("plantName", species);
+        intent.putExtra("scientificName", species);
+        intent.putExtra("confidence", confidences != null && index < confidences.length ? confidences[index] : 0.0);
+        intent.putExtra("isRealIdentification", true);
+        intent.putExtra("isFromSearchRoute", false);
+        intent.putExtra("detailsPending", true);
+        intent.putExtra(IdentificationPipeline.EXTRA_PIPELINE_ID,
+                getIntent().getStringExtra(IdentificationPipeline.EXTRA_PIPELINE_ID));
+        intent.putStringArrayListExtra("probablePlants", getIntent().getStringArrayListExtra("probablePlants"));
+        intent.putStringArrayListExtra("probableSpecies", getIntent().getStringArrayListExtra("probableSpecies"));
+        intent.putExtra("probableConfidences", confidences);
+        startActivity(intent);
+        Log.d(TAG, "Opened alternative: " + species);
+    }
+
     private void setupButtons() {
         backButton.setOnClickListener(v -> {
             finish(); // Go back to MainActivity
@@ -435,6 +583,19 @@ public class ResultActivity extends AppCompatActivity {
         dbImageUrls = getIntent().getStringArrayListExtra("dbImageUrls");
         hasDbImages = getIntent().getBooleanExtra("hasDbImages", false);
 
+        setupImageGalleryButton();
+
+        // Also make the plant name clickable to view images
+        topPlantNameTextView.setOnClickListener(v -> {
+            if (hasDbImages) {
+                openImageGallery();
+            } else {
+                Toast.makeText(this, "No images available for this plant", Toast.LENGTH_SHORT).show();
+            }
+        });
+    }
+
+    private void setupImageGalleryButton() {
         // Setup view images button
         if (viewImagesButton != null) {
             if (hasDbImages && dbImageUrls != null && !dbImageUrls.isEmpty()) {
@@ -446,15 +607,6 @@ public class ResultActivity extends AppCompatActivity {
             }
         }
 
-        // Also make the plant name clickable to view images
-        topPlantNameTextView.setOnClickListener(v -> {
-            if (hasDbImages) {
-                openImageGallery();
-            } else {
-                Toast.makeText(this, "No images available for this plant", Toast.LENGTH_SHORT).show();
-            }
-        });
-
         // Add visual indicator if images are available
         if (hasDbImages && dbImageUrls != null && !dbImageUrls.isEmpty()) {
             topPlantNameTextView.setCompoundDrawablesWithIntrinsicBounds(0, 0, R.drawable.ic_camera_small, 0);
@@ -462,10 +614,41 @@ public class ResultActivity extends AppCompatActivity {
         }
     }
 
-    private void openImageGallery() {
+    // One batched lookup for the identified plant and every alternative, so the gallery
+    // opens from the image cache; also shows the images button if the match had none
+    private void prefetchProbablePlantImages() {
+        Set<String> names = new LinkedHashSet<>();
         String plantName = getIntent().getStringExtra("plantName");
-        String scientificName = getIntent().getStringExtra("scientificName");
+        if (plantName != null && !plantName.trim().isEmpty()) {
+            names.add(plantName);
+        }
+        // Only plain species names; the probablePlants display labels carry a confidence suffix
+        ArrayList<String> probableSpecies = getIntent().getStringArrayListExtra("probableSpecies");
+        if (probableSpecies != null) {
+            names.addAll(probableSpecies);
+        }
+        if (names.isEmpty()) {
+            return;
+        }
 
+        Log.d(TAG, "Prefetching images for " + names.size() + " plants");
+        ImageUrlClient.getInstance(this).lookup(names, GALLERY_IMAGES, images -> {
+            // The top plant may have been refined in the meantime
+            if (isFinishing() || isDestroyed() || plantName == null
+                    || !plantName.equals(getIntent().getStringExtra("plantName"))) {
+                return;
+            }
+            List<String> topImages = images.get(plantName);
+            if (!hasDbImages && topImages != null && !topImages.isEmpty()) {
+                dbImageUrls = new ArrayList<>(topImages);
+                hasDbImages = true;
+                setupImageGalleryButton();
+            }
+        });
+    }
+
+    private void openImageGallery() {
+        String plantName = getIntent().getStringExtra("plantName");
         if (plantName == null || plantName.trim().isEmpty()) {
             Toast.makeText(this, "Plant name not available", Toast.LENGTH_SHORT).show();
             return;
@@ -0,0 +1,124 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Hands PlantItem records from one screen to the next. The sender puts the plant here
+// and passes only a short token in the Intent, instead of a dozen String extras that
+// go through Binder on every navigation. Tokens of plants with a name are backed by
+// PlantRepository, so a screen restored after process death can still load its plant.
+// Image URL lists for the full-screen viewer are handed over the same way, in memory only.
+public class ResultStore {
+    private static final String TAG = "ResultStore";
+    public static final String EXTRA_TOKEN = "plantToken";
+    public static final String EXTRA_IMAGES_TOKEN = "imagesToken";
+    private static final int MAX_ENTRIES = 50;
+    // A gallery list is up to a few hundred URLs; only the latest few viewers need theirs
+    private static final int MAX_IMAGE_LISTS = 5;
+
+    // "plant:<repository key>" can be restored from disk, "session:<n>" and "images:<n>" only live in memory
+    static final String PLANT_PREFIX = "plant:";
+    static final String SESSION_PREFIX = "session:";
+    static final String IMAGES_PREFIX = "images:";
+
+    private static ResultStore instance;
+
+    private final PlantRepository plantRepository;
+    private final Executor executor;
+    private final AtomicInteger nextSessionId = new AtomicInteger();
+
+    // Guarded by "this"
+    private final LinkedHashMap<String, PlantItem> entries =
+            new LinkedHashMap<String, PlantItem>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, PlantItem> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+    private final LinkedHashMap<String, List<String>> imageLists =
+            new LinkedHashMap<String, List<String>>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, List<String>> eldest) {
+                    return size() > MAX_IMAGE_LISTS;
+                }
+            };
+
+    public static synchronized ResultStore getInstance(Context context) {
+        if (instance == null) {
+            instance = new ResultStore(PlantRepository.getInstance(context), Executors.newSingleThreadExecutor());
+        }
+        return instance;
+    }
+
+    ResultStore(PlantRepository plantRepository, Executor executor) {
+        this.plantRepository = plantRepository;
+        this.executor = executor;
+    }
+
+    // Returns the token to put in the Intent under EXTRA_TOKEN
+    public String put(PlantItem plant) {
+        String key = PlantRepository.keyFor(plant);
+        String token = key.isEmpty() ? SESSION_PREFIX + nextSessionId.incrementAndGet() : PLANT_PREFIX + key;
+        synchronized (this) {
+            entries.put(token, plant);
+        }
+        if (!key.isEmpty()) {
+            // Usually already stored by the search screens; writing again keeps the restore path simple
+            executor.execute(() -> plantRepository.put(plant));
+        }
+        return token;
+    }
+
+    // In-memory entry only; null if the process was restarted since the token was issued
+    public synchronized PlantItem get(String token) {
+        return token != null ? entries.get(token) : null;
+    }
+
+    // Returns the token to put in the Intent under EXTRA_IMAGES_TOKEN; the list is copied
+    public String putImageUrls(List<String> imageUrls) {
+        String token = IMAGES_PREFIX + nextSessionId.incrementAndGet();
+        synchronized (this) {
+            imageLists.put(token, new ArrayList<>(imageUrls));
+        }
+        return token;
+    }
+
+    // Null if the process was restarted since the token was issued
+    public synchronized List<String> getImageUrls(String token) {
+        return token != null ? imageLists.get(token) : null;
+    }
+
+    // Memory first, then the repository for restorable tokens; the callback runs on the main thread
+    // (synchronously for a memory hit) with null when the plant is gone
+    @MainThread
+    public void load(String token, PlantRepository.PlantCallback callback) {
+        PlantItem plant = get(token);
+        if (plant != null || token == null || !token.startsWith(PLANT_PREFIX)) {
+            if (plant == null) {
+                Log.w(TAG, "No plant for token " + token);
+            }
+            callback.onPlantLoaded(plant);
+            return;
+        }
+
+        Log.d(TAG, "Restoring " + token + " from the plant repository");
+        plantRepository.lookup(token.substring(PLANT_PREFIX.length()), restored -> {
+            if (restored != null) {
+                synchronized (this) {
+                    entries.put(token, restored);
+                }
+            }
+            callback.onPlantLoaded(restored);
+        });
+    }
+}
@@ -0,0 +1,219 @@
+package com.example.herbai;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Runs one search at a time. Starting a new search cancels the previous OkHttp call, which
+// closes its socket instead of letting it download a response nobody will show. Every
+// search gets a sequence number and a result is only delivered while its number is still
+// the latest, so a late answer for an old query can never overwrite a newer one. Further
+// pages of the search on screen come from loadPage() under the same sequence number.
+public class SearchController {
+    private static final String TAG = "SearchController";
+
+    private final ApiClient apiClient;
+    private final PlantRepository plantRepository;
+    private final Executor callbackExecutor;
+    private final AtomicLong sequence = new AtomicLong();
+
+    // Guarded by "this"
+    private Call currentCall;
+    // A further page of the current search, see loadPage()
+    private Call pageCall;
+    // Path of the search in flight or on screen; the same path again is not searched twice
+    private String currentPath;
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final AtomicInteger stale = new AtomicInteger();
+
+    public interface Listener {
+        void onSearchResult(String query, PlantRepository.SearchResponse response);
+
+        void onSearchFailed(String query, String message);
+    }
+
+    SearchController(ApiClient apiClient, PlantRepository plantRepository, Executor callbackExecutor) {
+        this.apiClient = apiClient;
+        this.plantRepository = plantRepository;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    // path is relative to the API base, e.g. "smart_search/neem". Returns false when the
+    // same search is already running or showing, in which case the listener is not called.
+    public boolean search(String query, String path, Listener listener) {
+        Request request = buildRequest(path);
+
+        long seq;
+        Call call;
+        synchronized (this) {
+            if (path.equals(currentPath)) {
+                Log.d(TAG, "Already searched " + path + ", keeping the current results");
+                return false;
+            }
+            cancelLocked();
+            seq = sequence.incrementAndGet();
+            currentPath = path;
+            call = apiClient.getSearchClient().newCall(request);
+            currentCall = call;
+        }
+
+        requests.incrementAndGet();
+        Log.d(TAG, "Search #" + seq + ": " + request.url());
+        enqueue(seq, call, query, listener, false);
+        return true;
+    }
+
+    // Loads another page of the search on screen, path being that page's URL. Runs next to
+    // the search without cancelling it; a new search or cancel() stops it and drops its
+    // result. Returns false while another page is still loading.
+    public boolean loadPage(String query, String path, Listener listener) {
+        Request request = buildRequest(path);
+
+        long seq;
+        Call call;
+        synchronized (this) {
+            if (pageCall != null) {
+                return false;
+            }
+            seq = sequence.get();
+            call = apiClient.getSearchClient().newCall(request);
+            pageCall = call;
+        }
+
+        requests.incrementAndGet();
+        Log.d(TAG, "Page of search #" + seq + ": " + request.url());
+        enqueue(seq, call, query, listener, true);
+        return true;
+    }
+
+    private Request buildRequest(String path) {
+        return new Request.Builder()
+                .url(apiClient.url(path))
+                .header("Accept", "application/json")
+                .get()
+                .build();
+    }
+
+    private void enqueue(long seq, Call call, String query, Listener listener, boolean page) {
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                if (call.isCanceled()) {
+                    Log.d(TAG, "Search #" + seq + " cancelled");
+                    return;
+                }
+                Log.e(TAG, "Search #" + seq + " failed: " + e.getMessage());
+                deliverFailure(seq, call, query, listener, e.getMessage(), page);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                try (Response r = response) {
+                    if (!isCurrent(seq)) {
+                        // Superseded while the headers were on their way; skip parsing the body
+                        stale.incrementAndGet();
+                        return;
+                    }
+                    if (!r.isSuccessful() || r.body() == null) {
+                        Log.w(TAG, "Search #" + seq + " returned " + r.code());
+                        deliverFailure(seq, call, query, listener, "Server returned " + r.code(), page);
+                        return;
+                    }
+                    PlantRepository.SearchResponse searchResponse =
+                            PlantJsonReader.readSearchResponse(r.body().source(), Integer.MAX_VALUE);
+                    plantRepository.putAll(searchResponse.getPlants());
+                    deliver(seq, call, () -> listener.onSearchResult(query, searchResponse));
+                } catch (IOException e) {
+                    if (call.isCanceled()) {
+                        Log.d(TAG, "Search #" + seq + " cancelled while reading");
+                        return;
+                    }
+                    Log.e(TAG, "Search #" + seq + " could not be read: " + e.getMessage());
+                    deliverFailure(seq, call, query, listener, e.getMessage(), page);
+                }
+            }
+        });
+    }
+
+    // Cancels the running search and drops any result still on its way to the listener
+    public synchronized void cancel() {
+        cancelLocked();
+        sequence.incrementAndGet();
+        currentPath = null;
+    }
+
+    public int getRequestCount() {
+        return requests.get();
+    }
+
+    // Searches stopped on the network because a newer one started or the screen went away
+    public int getCancelledCount() {
+        return cancelled.get();
+    }
+
+    // Responses that arrived after they were superseded and were thrown away
+    public int getStaleCount() {
+        return stale.get();
+    }
+
+    private void cancelLocked() {
+        if (currentCall != null) {
+            currentCall.cancel();
+            cancelled.incrementAndGet();
+            currentCall = null;
+        }
+        if (pageCall != null) {
+            pageCall.cancel();
+            cancelled.incrementAndGet();
+            pageCall = null;
+        }
+    }
+
+    private boolean isCurrent(long seq) {
+        return seq == sequence.get();
+    }
+
+    private void deliverFailure(long seq, Call call, String query, Listener listener, String message,
+                                boolean page) {
+        synchronized (this) {
+            if (isCurrent(seq) && !page) {
+                // Let the user retry the same text
+                currentPath = null;
+            }
+        }
+        deliver(seq, call, () -> listener.onSearchFailed(query, message));
+    }
+
+    private void deliver(long seq, Call call, Runnable result) {
+        synchronized (this) {
+            // Finished; nothing left to cancel on the network
+            if (currentCall == call) {
+                currentCall = null;
+            }
+            if (pageCall == call) {
+                pageCall = null;
+            }
+        }
+        callbackExecutor.execute(() -> {
+            // Checked again on the callback thread, a newer search may have started in between
+            if (!isCurrent(seq)) {
+                stale.incrementAndGet();
+                Log.d(TAG, "Dropped stale result of search #" + seq);
+                return;
+            }
+            result.run();
+        });
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.herbai;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Server results of one search, loaded a page at a time as the user scrolls. Pages are
+// requested with "offset", "limit" and, after the first page, the "next_cursor" the server
+// returned for the page before. Only the last MAX_PAGES pages are kept; pages dropped from
+// the front are loaded again if the user scrolls back up. A backend that does not page
+// ignores the parameters and sends everything without a cursor, which is then one page.
+// Main thread only.
+public class SearchPager {
+    static final int PAGE_SIZE = 20;
+    static final int MAX_PAGES = 5;
+    // Start loading the next page when the user is this many results away from the end
+    static final int PREFETCH_DISTANCE = 5;
+
+    private final int pageSize;
+    private final int maxPages;
+    private final int prefetchDistance;
+
+    private final ArrayDeque<Page> pages = new ArrayDeque<>();
+    // Requests of pages dropped from the front, the one right before the window last
+    private final ArrayDeque<PageRequest> droppedBefore = new ArrayDeque<>();
+    private int windowSize;
+    private boolean success;
+    private boolean wasGenerated;
+
+    public static class PageRequest {
+        final int offset;
+        // null for the first page
+        final String cursor;
+        // Loads a dropped page back in front of the window
+        final boolean before;
+
+        PageRequest(int offset, String cursor, boolean before) {
+            this.offset = offset;
+            this.cursor = cursor;
+            this.before = before;
+        }
+    }
+
+    private static class Page {
+        final PageRequest request;
+        final List<PlantItem> plants;
+        final String nextCursor;
+
+        Page(PageRequest request, List<PlantItem> plants, String nextCursor) {
+            this.request = request;
+            this.plants = plants;
+            this.nextCursor = nextCursor;
+        }
+    }
+
+    public SearchPager() {
+        this(PAGE_SIZE, MAX_PAGES, PREFETCH_DISTANCE);
+    }
+
+    SearchPager(int pageSize, int maxPages, int prefetchDistance) {
+        this.pageSize = pageSize;
+        this.maxPages = maxPages;
+        this.prefetchDistance = prefetchDistance;
+    }
+
+    public void reset() {
+        pages.clear();
+        droppedBefore.clear();
+        windowSize = 0;
+        success = false;
+        wasGenerated = false;
+    }
+
+    public PageRequest firstRequest() {
+        return new PageRequest(0, null, false);
+    }
+
+    // Adds the query parameters for a page to a search path like "smart_search/neem"
+    public String pathFor(String path, PageRequest request) {
+        StringBuilder builder = new StringBuilder(path)
+                .append(path.indexOf('?') < 0 ? '?' : '&')
+                .append("offset=").append(request.offset)
+                .append("&limit=").append(pageSize);
+        if (request.cursor != null) {
+            try {
+                builder.append("&cursor=").append(URLEncoder.encode(request.cursor, "UTF-8"));
+            } catch (UnsupportedEncodingException e) {
+                // UTF-8 is always supported
+                throw new IllegalStateException(e);
+            }
+        }
+        return builder.toString();
+    }
+
+    // Returns false for a page that no longer fits the window (loaded for an older position)
+    public boolean addPage(PageRequest request, PlantRepository.SearchResponse response) {
+        // An empty page ends the results even if it came with a cursor
+        String nextCursor = response.getPlants().isEmpty() ? null : response.getNextCursor();
+        Page page = new Page(request, response.getPlants(), nextCursor);
+        if (request.before) {
+            if (droppedBefore.peekLast() != request) {
+                return false;
+            }
+            droppedBefore.pollLast();
+            pages.addFirst(page);
+            windowSize += page.plants.size();
+            while (pages.size() > maxPages) {
+                // The next request after the window is built from the new last page's cursor
+                windowSize -= pages.removeLast().plants.size();
+            }
+            return true;
+        }
+
+        if (pages.isEmpty()) {
+            if (request.offset != 0) {
+                return false;
+            }
+            success = response.isSuccess();
+            wasGenerated = response.wasGenerated();
+        } else if (request.offset != endOffset()) {
+            return false;
+        }
+        pages.addLast(page);
+        windowSize += page.plants.size();
+        while (pages.size() > maxPages) {
+            Page dropped = pages.removeFirst();
+            droppedBefore.addLast(new PageRequest(dropped.request.offset, dropped.request.cursor, true));
+            windowSize -= dropped.plants.size();
+        }
+        return true;
+    }
+
+    // The page to load for the visible range of positions in getWindow(), or null if
+    // nothing needs loading
+    public PageRequest requestFor(int firstVisible, int lastVisible) {
+        if (pages.isEmpty()) {
+            return null;
+        }
+        if (hasMoreAfter() && lastVisible >= windowSize - prefetchDistance) {
+            Page last = pages.peekLast();
+            return new PageRequest(endOffset(), last.nextCursor, false);
+        }
+        if (hasMoreBefore() && firstVisible >= 0 && firstVisible < prefetchDistance) {
+            return droppedBefore.peekLast();
+        }
+        return null;
+    }
+
+    public boolean hasMoreAfter() {
+        return !pages.isEmpty() && pages.peekLast().nextCursor != null;
+    }
+
+    public boolean hasMoreBefore() {
+        return !droppedBefore.isEmpty();
+    }
+
+    public boolean isEmpty() {
+        return pages.isEmpty();
+    }
+
+    // Results in the window as one response. The cursor is set while more pages follow.
+    // A plant the server sent twice (the results changed between pages) is only kept once.
+    public PlantRepository.SearchResponse getWindow() {
+        List<PlantItem> plants = new ArrayList<>(windowSize);
+        Set<String> keys = new HashSet<>();
+        for (Page page : pages) {
+            for (PlantItem plant : page.plants) {
+                String key = PlantRepository.keyFor(plant);
+                if (key.isEmpty() || keys.add(key)) {
+                    plants.add(plant);
+                }
+            }
+        }
+        String nextCursor = hasMoreAfter() ? pages.peekLast().nextCursor : null;
+        return new PlantRepository.SearchResponse(success, wasGenerated, plants, nextCursor);
+    }
+
+    private int endOffset() {
+        Page last = pages.peekLast();
+        return last.request.offset + last.plants.size();
+    }
+}
@@ -0,0 +1,236 @@
+package com.example.herbai;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Cache;
+import okhttp3.CacheControl;
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.Interceptor;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+
+// Disk cache for /smart_search and /search_by_keywords responses.
+// OkHttp's Cache does the storage (LRU on a size-capped DiskLruCache) and sends
+// If-None-Match when an entry goes stale; the interceptors here add the freshness
+// the backend does not declare, stale-while-revalidate, and offline fallback.
+public class SearchResponseCache {
+    private static final String TAG = "SearchResponseCache";
+
+    public static final long DEFAULT_MAX_BYTES = 10L * 1024 * 1024;
+    static final int DEFAULT_FRESH_SECONDS = 10 * 60;
+    static final int DEFAULT_STALE_SECONDS = 24 * 60 * 60;
+
+    private final Cache cache;
+    private final int freshSeconds;
+    private final int staleSeconds;
+    private OkHttpClient revalidationClient;
+
+    private final AtomicInteger hits = new AtomicInteger();
+    private final AtomicInteger staleHits = new AtomicInteger();
+    private final AtomicInteger misses = new AtomicInteger();
+    private final AtomicInteger offlineHits = new AtomicInteger();
+    private final AtomicInteger revalidations = new AtomicInteger();
+
+    public SearchResponseCache(File directory, long maxBytes) {
+        this(directory, maxBytes, DEFAULT_FRESH_SECONDS, DEFAULT_STALE_SECONDS);
+    }
+
+    SearchResponseCache(File directory, long maxBytes, int freshSeconds, int staleSeconds) {
+        this.cache = new Cache(directory, maxBytes);
+        this.freshSeconds = freshSeconds;
+        this.staleSeconds = staleSeconds;
+    }
+
+    // Only the read-only search endpoints are cached; /predict and /generate never are
+    static boolean isCacheable(Request request) {
+        if (!"GET".equals(request.method())) {
+            return false;
+        }
+        String path = request.url().encodedPath();
+        return path.contains("/smart_search/") || path.contains("/search_by_keywords/");
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    // Background revalidations go through this client so they share the pool and the cache
+    void setRevalidationClient(OkHttpClient client) {
+        this.revalidationClient = client;
+    }
+
+    public Interceptor getApplicationInterceptor() {
+        return this::interceptApplication;
+    }
+
+    public Interceptor getNetworkInterceptor() {
+        return this::interceptNetwork;
+    }
+
+    private Response interceptApplication(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        if (!isCacheable(request) || request.tag(Revalidation.class) != null) {
+            return chain.proceed(request);
+        }
+
+        // 1. Anything within the stale window is answered from disk straight away
+        Request cachedOnly = request.newBuilder()
+                .cacheControl(new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(staleSeconds, TimeUnit.SECONDS)
+                        .build())
+                .build();
+        Response cached = chain.proceed(cachedOnly);
+        if (cached.code() != 504) {
+            if (isStale(cached)) {
+                staleHits.incrementAndGet();
+                Log.d(TAG, "Stale hit, revalidating in background: " + request.url());
+                revalidate(request);
+            } else {
+                hits.incrementAndGet();
+                Log.d(TAG, "Hit: " + request.url());
+            }
+            return cached;
+        }
+        cached.close();
+
+        // 2. Miss: go to the network (OkHttp adds If-None-Match if an old entry exists)
+        misses.incrementAndGet();
+        Log.d(TAG, "Miss: " + request.url());
+        try {
+            Response response = chain.proceed(request);
+            if (response.code() < 500) {
+                return response;
+            }
+            Response fallback = lastGood(chain, request);
+            if (fallback != null) {
+                response.close();
+                return fallback;
+            }
+            return response;
+        } catch (IOException e) {
+            // 3. Offline: serve the last good JSON however old it is
+            Response fallback = lastGood(chain, request);
+            if (fallback != null) {
+                return fallback;
+            }
+            throw e;
+        }
+    }
+
+    private Response interceptNetwork(Interceptor.Chain chain) throws IOException {
+        Request request = chain.request();
+        Response response = chain.proceed(request);
+        if (!isCacheable(request) || !response.isSuccessful() && response.code() != 304) {
+            return response;
+        }
+        if (response.code() == 304) {
+            revalidations.incrementAndGet();
+        }
+        // The backend sends no freshness info, so give OkHttp a lifetime to work with.
+        // An ETag the server does send is kept and used for If-None-Match.
+        if (response.header("Cache-Control") == null) {
+            return response.newBuilder()
+                    .header("Cache-Control", "public, max-age=" + freshSeconds)
+                    .removeHeader("Pragma")
+                    .build();
+        }
+        return response;
+    }
+
+    private Response lastGood(Interceptor.Chain chain, Request request) throws IOException {
+        Request offline = request.newBuilder()
+                .cacheControl(new CacheControl.Builder()
+                        .onlyIfCached()
+                        .maxStale(Integer.MAX_VALUE, TimeUnit.SECONDS)
+                        .build())
+                .build();
+        Response cached = chain.proceed(offline);
+        if (cached.code() == 504) {
+            cached.close();
+            return null;
+        }
+        offlineHits.incrementAndGet();
+        Log.d(TAG, "Offline, serving last good response: " + request.url());
+        return cached;
+    }
+
+    private void revalidate(Request request) {
+        OkHttpClient client = revalidationClient;
+        if (client == null) {
+            return;
+        }
+        Request refresh = request.newBuilder()
+                .tag(Revalidation.class, new Revalidation())
+                .tag(RequestCoalescer.Bypass.class, new RequestCoalescer.Bypass())
+                .build();
+        client.newCall(refresh).enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                Log.d(TAG, "Background revalidation failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) throws IOException {
+                // Reading the body is what commits a 200 into the cache
+                try (response) {
+                    response.body().string();
+                }
+            }
+        });
+    }
+
+    // OkHttp marks responses served past their max-age with "Warning: 110"
+    private static boolean isStale(Response response) {
+        String warning = response.header("Warning");
+        return warning != null && warning.startsWith("110");
+    }
+
+    public int getHitCount() {
+        return hits.get();
+    }
+
+    public int getStaleHitCount() {
+        return staleHits.get();
+    }
+
+    public int getMissCount() {
+        return misses.get();
+    }
+
+    public int getOfflineHitCount() {
+        return offlineHits.get();
+    }
+
+    // Conditional requests the server answered with 304 Not Modified
+    public int getRevalidatedCount() {
+        return revalidations.get();
+    }
+
+    public String getStatsSummary() {
+        long sizeBytes;
+        try {
+            sizeBytes = cache.size();
+        } catch (IOException e) {
+            sizeBytes = -1;
+        }
+        return "hits=" + hits.get() +
+                ", stale=" + staleHits.get() +
+                ", misses=" + misses.get() +
+                ", offline=" + offlineHits.get() +
+                ", 304s=" + revalidations.get() +
+                ", size=" + sizeBytes / 1024 + "KB/" + cache.maxSize() / 1024 + "KB";
+    }
+
+    private static final class Revalidation {
+    }
+}
@@ -20,6 +20,8 @@ public class SettingsActivity extends AppCompatActivity {
     private static final String SERVER_URL = "server_url";
 
     private EditText serverUrlEditText;
+    private EditText galleryPageSizeEditText;
+    private EditText stageOneConfidenceEditText;
     private Button saveButton, testConnectionButton;
     private TextView connectionStatusTextView;
 
@@ -44,6 +46,8 @@ public class SettingsActivity extends AppCompatActivity {
     private void initializeViews() {
         themeSwitch = findViewById(R.id.themeSwitch);
         serverUrlEditText = findViewById(R.id.serverUrlEditText);
+        galleryPageSizeEditText = findViewById(R.id.galleryPageSizeEditText);
+        stageOneConfidenceEditText = findViewById(R.id.stageOneConfidenceEditText);
         saveButton = findViewById(R.id.saveButton);
         testConnectionButton = findViewById(R.id.testConnectionButton);
         connectionStatusTextView = findViewById(R.id.connectionStatusTextView);
@@ -70,6 +74,9 @@ public class SettingsActivity extends AppCompatActivity {
     private void loadSettings() {
         String savedUrl = sharedPreferences.getString(SERVER_URL, "http://your-server-url:10000");
         serverUrlEditText.setText(savedUrl);
+        galleryPageSizeEditText.setText(String.valueOf(PlantImageGalleryActivity.getPageSize(sharedPreferences)));
+        stageOneConfidenceEditText.setText(String.valueOf(
+                Math.round(MainActivity.getStageOneConfidence(sharedPreferences) * 100)));
     }
 
     private void setupClickListeners() {
@@ -90,8 +97,28 @@ public class SettingsActivity extends AppCompatActivity {
             serverUrl = "http://" + serverUrl;
         }
 
+        // Kept within what the gallery accepts
+        int pageSize = GalleryPager.PAGE_SIZE;
+        try {
+            pageSize = GalleryPager.clampPageSize(Integer.parseInt(galleryPageSizeEditText.getText().toString().trim()));
+        } catch (NumberFormatException e) {
+            // Empty field, keep the default
+        }
+        galleryPageSizeEditText.setText(String.valueOf(pageSize));
+
+        int confidence = (int) Math.round(MainActivity.getStageOneConfidence(sharedPreferences) * 100);
+        try {
+            confidence = MainActivity.clampConfidencePercent(
+                    Integer.parseInt(stageOneConfidenceEditText.getText().toString().trim()));
+        } catch (NumberFormatException e) {
+            // Empty field, keep the saved value
+        }
+        stageOneConfidenceEditText.setText(String.valueOf(confidence));
+
         SharedPreferences.Editor editor = sharedPreferences.edit();
         editor.putString(SERVER_URL, serverUrl);
+        editor.putInt(PlantImageGalleryActivity.GALLERY_PAGE_SIZE, pageSize);
+        editor.putInt(MainActivity.STAGE_ONE_CONFIDENCE, confidence);
         editor.apply();
 
         Toast.makeText(this, "Settings saved successfully", Toast.LENGTH_SHORT).show();
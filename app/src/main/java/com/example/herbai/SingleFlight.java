@@ -0,0 +1,131 @@
+package com.example.herbai;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs at most one load per key at a time. Callers that ask for a key already in flight
+// wait for that load and get its result instead of starting their own. Cancellation is
+// per caller: a cancelled follower just stops waiting, and if the leader is cancelled its
+// followers start a fresh load rather than inheriting the cancellation.
+public class SingleFlight<K, V> {
+    // How often a waiting follower checks whether it was cancelled
+    private static final long CANCEL_POLL_MS = 50;
+
+    private final Map<K, Flight<V>> inFlight = new HashMap<>();
+    private final AtomicInteger coalesced = new AtomicInteger();
+
+    public interface Loader<V> {
+        V load() throws IOException;
+    }
+
+    public interface CancelSignal {
+        boolean isCancelled();
+    }
+
+    public static final CancelSignal NEVER_CANCELLED = () -> false;
+
+    // Result as seen by one caller, so leaders can tell whether they actually shared the result
+    public static final class Result<V> {
+        private final V value;
+        private final boolean shared;
+
+        Result(V value, boolean shared) {
+            this.value = value;
+            this.shared = shared;
+        }
+
+        public V getValue() {
+            return value;
+        }
+
+        // True for followers that were answered from another caller's load
+        public boolean isShared() {
+            return shared;
+        }
+    }
+
+    public V execute(K key, Loader<V> loader) throws IOException {
+        return execute(key, loader, NEVER_CANCELLED).getValue();
+    }
+
+    public Result<V> execute(K key, Loader<V> loader, CancelSignal cancel) throws IOException {
+        while (true) {
+            Flight<V> flight;
+            boolean leader = false;
+            synchronized (inFlight) {
+                flight = inFlight.get(key);
+                if (flight == null) {
+                    flight = new Flight<>();
+                    inFlight.put(key, flight);
+                    leader = true;
+                }
+            }
+
+            if (leader) {
+                return new Result<>(lead(key, flight, loader, cancel), false);
+            }
+
+            await(flight, cancel);
+            if (flight.leaderCancelled) {
+                // Not our cancellation; go round again and lead or follow the next flight
+                continue;
+            }
+            coalesced.incrementAndGet();
+            if (flight.error != null) {
+                throw flight.error;
+            }
+            return new Result<>(flight.value, true);
+        }
+    }
+
+    // Number of callers answered by another caller's load
+    public int getCoalescedCount() {
+        return coalesced.get();
+    }
+
+    private V lead(K key, Flight<V> flight, Loader<V> loader, CancelSignal cancel) throws IOException {
+        try {
+            V value = loader.load();
+            flight.value = value;
+            return value;
+        } catch (IOException e) {
+            flight.leaderCancelled = cancel.isCancelled();
+            flight.error = e;
+            throw e;
+        } catch (RuntimeException e) {
+            flight.error = new IOException(e);
+            throw e;
+        } finally {
+            synchronized (inFlight) {
+                inFlight.remove(key);
+            }
+            flight.done.countDown();
+        }
+    }
+
+    private static void await(Flight<?> flight, CancelSignal cancel) throws IOException {
+        try {
+            while (!flight.done.await(CANCEL_POLL_MS, TimeUnit.MILLISECONDS)) {
+                if (cancel.isCancelled()) {
+                    throw new InterruptedIOException("Canceled");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for a shared request");
+        }
+    }
+
+    private static final class Flight<V> {
+        final CountDownLatch done = new CountDownLatch(1);
+        // Written by the leader before done is counted down
+        volatile V value;
+        volatile IOException error;
+        volatile boolean leaderCancelled;
+    }
+}
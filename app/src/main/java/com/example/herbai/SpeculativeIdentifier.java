@@ -0,0 +1,723 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.net.ConnectivityManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+
+import okhttp3.Call;
+import okhttp3.Callback;
+import okhttp3.MediaType;
+import okhttp3.MultipartBody;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.BufferedSink;
+import okio.HashingSink;
+import okio.Okio;
+
+// Runs /predict for a photo. Photos are named by an opaque id (MainActivity uses the Uri's
+// string form), so this class needs no Android types. With speculate() the upload starts
+// as soon as the user picks or takes a photo; when they tap identify, identify() joins that call or hands over its
+// answer instead of starting from scratch. Picking another photo cancels the previous
+// attempt. Speculation is skipped on metered networks and limited to MAX_SPECULATIONS per
+// SPECULATION_WINDOW_MS, so browsing through photos cannot turn into a stream of uploads.
+// With a PredictionCache, a photo identified before is answered from it without uploading.
+// With a hash lookup URL, the SHA-256 of the prepared upload is sent first and the server
+// answers if it has seen those bytes; only on a miss is the image uploaded, together with
+// its hash. A backend without the endpoint (404/405) gets plain /predict from then on.
+// When the upload carries a full-resolution rendition, the small one goes first; an answer
+// below the confidence threshold is passed on as a first result and then refined by
+// uploading the full rendition.
+public class SpeculativeIdentifier {
+    private static final String TAG = "SpeculativeIdentifier";
+    private static final MediaType JSON = MediaType.parse("application/json; charset=utf-8");
+    static final int MAX_SPECULATIONS = 5;
+    static final long SPECULATION_WINDOW_MS = 60_000;
+    // Same cut-off as the "High confidence" label in ResultActivity
+    public static final double DEFAULT_CONFIDENCE_THRESHOLD = 0.8;
+
+    private final OkHttpClient client;
+    private final String predictUrl;
+    private final UploadFactory uploadFactory;
+    private final Executor workExecutor;
+    private final Executor callbackExecutor;
+    private final BooleanSupplier meteredNetwork;
+    // Both null when there is no cache
+    private final Hasher hasher;
+    private final PredictionCache cache;
+    private final Budget budget = new Budget(MAX_SPECULATIONS, SPECULATION_WINDOW_MS);
+    // Null when the hash-first protocol is off
+    private volatile String hashLookupUrl;
+    // Set once the backend answers 404, so the rest of the session uploads straight away
+    private volatile boolean hashLookupMissing = false;
+    private final AtomicInteger hashHits = new AtomicInteger();
+    private final AtomicInteger hashMisses = new AtomicInteger();
+    private final AtomicLong uploadBytesSaved = new AtomicLong();
+    private volatile double confidenceThreshold = DEFAULT_CONFIDENCE_THRESHOLD;
+    private final AtomicInteger stageOneResolved = new AtomicInteger();
+    private final AtomicInteger refined = new AtomicInteger();
+    // Full renditions not uploaded, minus small ones uploaded in vain
+    private final AtomicLong stageOneBytesSaved = new AtomicLong();
+
+    // Guarded by "this"
+    private Attempt current;
+    private final Stats speculativeStats = new Stats();
+    private final Stats coldStats = new Stats();
+
+    // The file part of a /predict request
+    public static class Upload {
+        final RequestBody body;
+        final String fileName;
+        // Deleted once the call is over, null if there is nothing to clean up
+        final File tempFile;
+        // Uploaded after this one when its answer is not confident enough; may be null
+        final Upload fullResolution;
+        // Hex SHA-256 of the body for the hash lookup, taken on the work executor; null skips the lookup
+        String sha256;
+
+        public Upload(RequestBody body, String fileName, File tempFile) {
+            this(body, fileName, tempFile, null);
+        }
+
+        public Upload(RequestBody body, String fileName, File tempFile, Upload fullResolution) {
+            this.body = body;
+            this.fileName = fileName;
+            this.tempFile = tempFile;
+            this.fullResolution = fullResolution;
+        }
+    }
+
+    // Prepares the photo for upload; called on the work executor
+    public interface UploadFactory {
+        Upload create(String photoId) throws IOException;
+    }
+
+    // Fingerprints the photo for the cache; called on the work executor
+    public interface Hasher {
+        ImageHash.Key hash(String photoId) throws IOException;
+    }
+
+    // With refining set, onRefined or onRefinementFailed follows onPrediction
+    public interface Listener {
+        void onPrediction(JSONObject response, boolean refining);
+
+        void onRefined(JSONObject response);
+
+        // The first answer stands
+        void onRefinementFailed(String message);
+
+        void onFailure(String message);
+    }
+
+    private static class Attempt {
+        final String photoId;
+        final boolean speculative;
+        final long startedAt = System.nanoTime();
+        final List<Listener> listeners = new ArrayList<>();
+        Call call;
+        boolean cancelled;
+        boolean done;
+        JSONObject response;
+        String error;
+        // Set when identify() attached
+        long tappedAt;
+        // The full-resolution upload runs after a low-confidence first answer
+        boolean refining;
+        // Got the first answer, waiting for the refined one
+        final List<Listener> refinementListeners = new ArrayList<>();
+
+        Attempt(String photoId, boolean speculative) {
+            this.photoId = photoId;
+            this.speculative = speculative;
+        }
+    }
+
+    public SpeculativeIdentifier(OkHttpClient client, String predictUrl, UploadFactory uploadFactory,
+                                 Executor workExecutor, Executor callbackExecutor, BooleanSupplier meteredNetwork) {
+        this(client, predictUrl, uploadFactory, workExecutor, callbackExecutor, meteredNetwork, null, null);
+    }
+
+    public SpeculativeIdentifier(OkHttpClient client, String predictUrl, UploadFactory uploadFactory,
+                                 Executor workExecutor, Executor callbackExecutor, BooleanSupplier meteredNetwork,
+                                 Hasher hasher, PredictionCache cache) {
+        this.client = client;
+        this.predictUrl = predictUrl;
+        this.uploadFactory = uploadFactory;
+        this.workExecutor = workExecutor;
+        this.callbackExecutor = callbackExecutor;
+        this.meteredNetwork = meteredNetwork;
+        this.hasher = hasher;
+        this.cache = cache;
+    }
+
+    // Sends the upload's hash to this endpoint before uploading; null turns it off
+    public void setHashLookupUrl(String url) {
+        hashLookupUrl = url;
+    }
+
+    // Answers for a small rendition below this are refined with the full-resolution one
+    public void setConfidenceThreshold(double threshold) {
+        confidenceThreshold = threshold;
+    }
+
+    // Metered networks (mobile data, hotspots, Data Saver) come from the ConnectivityManager
+    public static BooleanSupplier meteredNetwork(Context context) {
+        ConnectivityManager connectivity =
+                (ConnectivityManager) context.getApplicationContext().getSystemService(Context.CONNECTIVITY_SERVICE);
+        return () -> connectivity == null || connectivity.isActiveNetworkMetered();
+    }
+
+    // A photo was picked or taken; starts identifying it if the policy allows
+    public synchronized boolean speculate(String photoId) {
+        if (current != null && current.photoId.equals(photoId) && current.error == null && !current.cancelled) {
+            return true;
+        }
+        cancelCurrent();
+        if (meteredNetwork.getAsBoolean()) {
+            Log.d(TAG, "Metered network, not speculating");
+            return false;
+        }
+        if (!budget.tryAcquire(System.currentTimeMillis())) {
+            Log.d(TAG, "Speculation budget used up, waiting for the tap");
+            return false;
+        }
+        Log.d(TAG, "Speculatively identifying " + photoId);
+        current = new Attempt(photoId, true);
+        start(current);
+        return true;
+    }
+
+    // The user tapped identify. Joins the speculative attempt for the same photo, or uses
+    // its answer if it already came back; otherwise starts a new attempt.
+    public void identify(String photoId, Listener listener) {
+        Attempt attempt;
+        synchronized (this) {
+            boolean reusable = current != null && current.photoId.equals(photoId) && !current.cancelled
+                    && current.error == null;
+            if (!reusable) {
+                cancelCurrent();
+                current = new Attempt(photoId, false);
+                start(current);
+            }
+            attempt = current;
+            attempt.tappedAt = System.nanoTime();
+            attempt.listeners.add(listener);
+            if (!attempt.done) {
+                Log.d(TAG, (attempt.speculative ? "Joined speculative" : "Started") + " identification of " + photoId);
+                return;
+            }
+        }
+        Log.d(TAG, "Speculative identification of " + photoId + " already finished");
+        deliver(attempt);
+    }
+
+    // Drops whatever is in flight, e.g. when the screen is closed
+    public synchronized void cancel() {
+        cancelCurrent();
+    }
+
+    public synchronized Stats getSpeculativeStats() {
+        return speculativeStats.copy();
+    }
+
+    public synchronized Stats getColdStats() {
+        return coldStats.copy();
+    }
+
+    public int getHashHitCount() {
+        return hashHits.get();
+    }
+
+    public int getHashMissCount() {
+        return hashMisses.get();
+    }
+
+    // Bytes of images the server already knew, so they were never uploaded
+    public long getUploadBytesSaved() {
+        return uploadBytesSaved.get();
+    }
+
+    // Identifications answered from the small rendition alone
+    public int getStageOneResolvedCount() {
+        return stageOneResolved.get();
+    }
+
+    public int getRefinedCount() {
+        return refined.get();
+    }
+
+    // Share of two-stage identifications that needed only the small rendition
+    public double getStageOneShare() {
+        int total = stageOneResolved.get() + refined.get();
+        return total > 0 ? (double) stageOneResolved.get() / total : 0.0;
+    }
+
+    public long getStageOneBytesSaved() {
+        return stageOneBytesSaved.get();
+    }
+
+    private void cancelCurrent() {
+        if (current == null) {
+            return;
+        }
+        current.cancelled = true;
+        if (current.call != null) {
+            current.call.cancel();
+        }
+        // Whoever shows the first answer keeps it
+        List<Listener> waiting = new ArrayList<>(current.refinementListeners);
+        current.refinementListeners.clear();
+        if (!waiting.isEmpty()) {
+            callbackExecutor.execute(() -> {
+                for (Listener listener : waiting) {
+                    listener.onRefinementFailed("Cancelled");
+                }
+            });
+        }
+        current = null;
+    }
+
+    private void start(Attempt attempt) {
+        workExecutor.execute(() -> {
+            ImageHash.Key key = null;
+            if (cache != null) {
+                try {
+                    key = hasher.hash(attempt.photoId);
+                    JSONObject cached = cache.get(key);
+                    if (cached != null) {
+                        finish(attempt, cached, null);
+                        return;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Not cacheable, upload it anyway
+                    Log.w(TAG, "Could not hash " + attempt.photoId + ": " + e.getMessage());
+                }
+            }
+            ImageHash.Key cacheKey = key;
+
+            Upload upload;
+            long length;
+            try {
+                upload = uploadFactory.create(attempt.photoId);
+                length = upload.body.contentLength();
+                if (length == 0) {
+                    discard(upload);
+                    finish(attempt, null, "Image file is empty");
+                    return;
+                }
+            } catch (IOException | RuntimeException e) {
+                Log.e(TAG, "Error preparing image: " + e.getMessage());
+                finish(attempt, null, "Error preparing image: " + e.getMessage());
+                return;
+            }
+            // Here rather than on the OkHttp thread that sends the full rendition later
+            if (hashLookupUrl != null && !hashLookupMissing) {
+                digest(upload);
+                if (upload.fullResolution != null) {
+                    digest(upload.fullResolution);
+                }
+            }
+
+            send(attempt, upload, length, cacheKey, false);
+        });
+    }
+
+    // Hash lookup first when it is on, otherwise straight to /predict
+    private void send(Attempt attempt, Upload upload, long length, ImageHash.Key cacheKey, boolean refinement) {
+        String lookupUrl = hashLookupUrl;
+        if (lookupUrl == null || hashLookupMissing || upload.sha256 == null) {
+            upload(attempt, upload, length, null, cacheKey, refinement);
+            return;
+        }
+        lookUpHash(attempt, lookupUrl, upload, length, upload.sha256, cacheKey, refinement);
+    }
+
+    // Asks the server for an answer to these exact bytes; uploads them when it has none
+    private void lookUpHash(Attempt attempt, String lookupUrl, Upload upload, long length, String uploadHash,
+                            ImageHash.Key cacheKey, boolean refinement) {
+        Request request;
+        try {
+            request = new Request.Builder()
+                    .url(lookupUrl)
+                    .post(RequestBody.create(new JSONObject().put("sha256", uploadHash).toString(), JSON))
+                    .build();
+        } catch (JSONException e) {
+            // Only a string is put
+            throw new IllegalStateException(e);
+        }
+        Call call = client.newCall(request);
+        synchronized (this) {
+            if (attempt.cancelled) {
+                discard(upload);
+                return;
+            }
+            attempt.call = call;
+        }
+        Log.d(TAG, "Looking up " + uploadHash + " before uploading " + length + " bytes");
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                if (call.isCanceled()) {
+                    failed(attempt, upload, cacheKey, refinement, "Prediction failed: " + e.getMessage());
+                    return;
+                }
+                Log.w(TAG, "Hash lookup failed, uploading: " + e.getMessage());
+                upload(attempt, upload, length, uploadHash, cacheKey, refinement);
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                JSONObject prediction = null;
+                try (response) {
+                    if (response.code() == 404 || response.code() == 405) {
+                        Log.d(TAG, "Backend has no hash lookup, using plain /predict");
+                        hashLookupMissing = true;
+                        upload(attempt, upload, length, null, cacheKey, refinement);
+                        return;
+                    }
+                    String body = response.body() != null ? response.body().string() : "";
+                    if (response.isSuccessful()) {
+                        JSONObject json = new JSONObject(body);
+                        if (json.optBoolean("found")) {
+                            prediction = json.getJSONObject("prediction");
+                        }
+                    } else {
+                        Log.w(TAG, "Hash lookup answered " + response.code() + ", uploading");
+                    }
+                } catch (IOException | JSONException e) {
+                    Log.w(TAG, "Error reading hash lookup response, uploading: " + e.getMessage());
+                }
+
+                if (prediction == null || prediction.has("error")) {
+                    hashMisses.incrementAndGet();
+                    upload(attempt, upload, length, uploadHash, cacheKey, refinement);
+                    return;
+                }
+                deleteTempFile(upload);
+                hashHits.incrementAndGet();
+                uploadBytesSaved.addAndGet(length);
+                Log.d(TAG, "Server already knew " + uploadHash + ", skipped uploading " + length + " bytes");
+                answered(attempt, upload, length, prediction, cacheKey, refinement);
+            }
+        });
+    }
+
+    // Multipart POST to /predict; with uploadHash the server can answer these bytes by hash next time
+    private void upload(Attempt attempt, Upload upload, long length, String uploadHash, ImageHash.Key cacheKey,
+                        boolean refinement) {
+        MultipartBody.Builder multipart = new MultipartBody.Builder()
+                .setType(MultipartBody.FORM)
+                .addFormDataPart("file", upload.fileName, upload.body);
+        if (uploadHash != null) {
+            multipart.addFormDataPart("sha256", uploadHash);
+        }
+        Request request = new Request.Builder()
+                .url(predictUrl)
+                .post(multipart.build())
+                .build();
+        Call call = client.newCall(request);
+        synchronized (this) {
+            if (attempt.cancelled) {
+                discard(upload);
+                return;
+            }
+            attempt.call = call;
+        }
+        Log.d(TAG, "Uploading " + upload.fileName + " (" + length + " bytes) to " + predictUrl);
+
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(@NonNull Call call, @NonNull IOException e) {
+                if (!call.isCanceled()) {
+                    Log.e(TAG, "Prediction failed: " + e.getMessage());
+                }
+                failed(attempt, upload, cacheKey, refinement, "Prediction failed: " + e.getMessage());
+            }
+
+            @Override
+            public void onResponse(@NonNull Call call, @NonNull Response response) {
+                deleteTempFile(upload);
+                try (response) {
+                    String body = response.body() != null ? response.body().string() : "";
+                    Log.d(TAG, "Prediction response " + response.code() + ": " + body);
+                    if (!response.isSuccessful()) {
+                        // Flask answers {"error": ...}, FastAPI {"detail": ...}, a proxy maybe HTML
+                        failed(attempt, upload, cacheKey, refinement,
+                                "Prediction failed: server returned " + response.code());
+                        return;
+                    }
+                    JSONObject json = new JSONObject(body);
+                    if (json.has("error")) {
+                        failed(attempt, upload, cacheKey, refinement, "Prediction error: " + json.getString("error"));
+                    } else {
+                        answered(attempt, upload, length, json, cacheKey, refinement);
+                    }
+                } catch (IOException | JSONException e) {
+                    Log.e(TAG, "Error reading prediction response: " + e.getMessage());
+                    failed(attempt, upload, cacheKey, refinement, "Error parsing prediction response");
+                }
+            }
+        });
+    }
+
+    // An answer for the small rendition below the threshold goes out as a first result
+    // while the full one is sent; everything else is final, and cached if it names a species
+    private void answered(Attempt attempt, Upload upload, long length, JSONObject json, ImageHash.Key cacheKey,
+                          boolean refinement) {
+        Upload full = upload.fullResolution;
+        if (!refinement && full != null) {
+            long fullLength = lengthOf(full);
+            double confidence = json.optDouble("confidence", 0.0);
+            if (confidence < confidenceThreshold) {
+                refined.incrementAndGet();
+                stageOneBytesSaved.addAndGet(-length);
+                Log.d(TAG, "Confidence " + confidence + " below " + confidenceThreshold + ", uploading "
+                        + fullLength + " byte full rendition");
+                synchronized (this) {
+                    attempt.refining = !attempt.cancelled;
+                }
+                finish(attempt, json, null);
+                send(attempt, full, fullLength, cacheKey, true);
+                return;
+            }
+            stageOneResolved.incrementAndGet();
+            stageOneBytesSaved.addAndGet(Math.max(0, fullLength - length));
+            deleteTempFile(full);
+            Log.d(TAG, "Confidence " + confidence + " from " + length + " bytes, " + (fullLength - length)
+                    + " bytes saved; " + Math.round(getStageOneShare() * 100) + "% resolved at stage one");
+        }
+        if (cacheKey != null && !IdentificationPipeline.parseCandidates(json, 1).isEmpty()) {
+            cache.put(cacheKey, json);
+        }
+        if (refinement) {
+            finishRefinement(attempt, json, null);
+        } else {
+            finish(attempt, json, null);
+        }
+    }
+
+    // A failed small rendition falls back to the full one before the identification fails
+    private void failed(Attempt attempt, Upload upload, ImageHash.Key cacheKey, boolean refinement, String message) {
+        Upload full = upload.fullResolution;
+        boolean cancelled;
+        synchronized (this) {
+            cancelled = attempt.cancelled;
+        }
+        if (!refinement && full != null && !cancelled) {
+            deleteTempFile(upload);
+            Log.w(TAG, "Small rendition failed (" + message + "), sending the full one");
+            send(attempt, full, lengthOf(full), cacheKey, false);
+            return;
+        }
+        discard(upload);
+        if (refinement) {
+            finishRefinement(attempt, null, message);
+        } else {
+            finish(attempt, null, message);
+        }
+    }
+
+    // Hands the full-resolution answer to whoever already shows the first one
+    private void finishRefinement(Attempt attempt, JSONObject response, String error) {
+        List<Listener> listeners;
+        synchronized (this) {
+            if (attempt.cancelled) {
+                return;
+            }
+            attempt.refining = false;
+            if (response != null) {
+                attempt.response = response;
+            }
+            listeners = new ArrayList<>(attempt.refinementListeners);
+            attempt.refinementListeners.clear();
+        }
+        Log.d(TAG, "Refinement done after " + elapsedMs(attempt.startedAt) + " ms"
+                + (error != null ? " with " + error : ""));
+        if (listeners.isEmpty()) {
+            // Nobody tapped yet; identify() gets the refined answer directly
+            return;
+        }
+        callbackExecutor.execute(() -> {
+            for (Listener listener : listeners) {
+                if (error != null) {
+                    listener.onRefinementFailed(error);
+                } else {
+                    listener.onRefined(response);
+                }
+            }
+        });
+    }
+
+    private void finish(Attempt attempt, JSONObject response, String error) {
+        synchronized (this) {
+            if (attempt.cancelled) {
+                return;
+            }
+            attempt.done = true;
+            attempt.response = response;
+            attempt.error = error;
+            if (attempt.listeners.isEmpty()) {
+                // Nobody tapped yet; the answer waits for identify()
+                Log.d(TAG, "Speculative identification done after " + elapsedMs(attempt.startedAt) + " ms"
+                        + (error != null ? " with " + error : ""));
+                return;
+            }
+        }
+        deliver(attempt);
+    }
+
+    private void deliver(Attempt attempt) {
+        List<Listener> listeners;
+        JSONObject response;
+        String error;
+        boolean refining;
+        synchronized (this) {
+            listeners = new ArrayList<>(attempt.listeners);
+            attempt.listeners.clear();
+            response = attempt.response;
+            error = attempt.error;
+            refining = attempt.refining;
+            if (refining) {
+                attempt.refinementListeners.addAll(listeners);
+            }
+            long latencyMs = elapsedMs(attempt.tappedAt);
+            (attempt.speculative ? speculativeStats : coldStats).add(latencyMs);
+            Log.d(TAG, "Tap to result " + latencyMs + " ms (" + (attempt.speculative ? "speculative" : "cold")
+                    + "); speculative " + speculativeStats + ", cold " + coldStats);
+            // A failed attempt is not reused; the next tap starts over
+            if (attempt == current && attempt.error != null) {
+                current = null;
+            }
+        }
+        callbackExecutor.execute(() -> {
+            for (Listener listener : listeners) {
+                if (error != null) {
+                    listener.onFailure(error);
+                } else {
+                    listener.onPrediction(response, refining);
+                }
+            }
+        });
+    }
+
+    private static void digest(Upload upload) {
+        try {
+            upload.sha256 = sha256(upload.body);
+        } catch (IOException e) {
+            Log.w(TAG, "Could not hash " + upload.fileName + ", it is uploaded without a lookup: " + e.getMessage());
+        }
+    }
+
+    // Hex SHA-256 of the bytes the body would upload
+    static String sha256(RequestBody body) throws IOException {
+        HashingSink hashingSink = HashingSink.sha256(Okio.blackhole());
+        try (BufferedSink sink = Okio.buffer(hashingSink)) {
+            body.writeTo(sink);
+        }
+        return hashingSink.hash().hex();
+    }
+
+    private static void deleteTempFile(Upload upload) {
+        if (upload.tempFile != null && upload.tempFile.exists()) {
+            upload.tempFile.delete();
+        }
+    }
+
+    // Deletes the upload's files, including a full rendition that will not be sent
+    private static void discard(Upload upload) {
+        deleteTempFile(upload);
+        if (upload.fullResolution != null) {
+            deleteTempFile(upload.fullResolution);
+        }
+    }
+
+    private static long lengthOf(Upload upload) {
+        try {
+            return upload.body.contentLength();
+        } catch (IOException e) {
+            return -1;
+        }
+    }
+
+    private static long elapsedMs(long startNanos) {
+        return (System.nanoTime() - startNanos) / 1_000_000;
+    }
+
+    // Tap-to-result latencies of one kind of attempt
+    public static class Stats {
+        private int count;
+        private long totalMs;
+        private long maxMs;
+
+        void add(long ms) {
+            count++;
+            totalMs += ms;
+            maxMs = Math.max(maxMs, ms);
+        }
+
+        Stats copy() {
+            Stats copy = new Stats();
+            copy.count = count;
+            copy.totalMs = totalMs;
+            copy.maxMs = maxMs;
+            return copy;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public long getMeanMs() {
+            return count > 0 ? totalMs / count : 0;
+        }
+
+        public long getMaxMs() {
+            return maxMs;
+        }
+
+        @Override
+        public String toString() {
+            return count + " taps, mean " + getMeanMs() + " ms, max " + maxMs + " ms";
+        }
+    }
+
+    // At most "max" speculative starts in any "windowMs"
+    static class Budget {
+        private final int max;
+        private final long windowMs;
+        private final ArrayDeque<Long> starts = new ArrayDeque<>();
+
+        Budget(int max, long windowMs) {
+            this.max = max;
+            this.windowMs = windowMs;
+        }
+
+        synchronized boolean tryAcquire(long now) {
+            while (!starts.isEmpty() && now - starts.peekFirst() >= windowMs) {
+                starts.pollFirst();
+            }
+            if (starts.size() >= max) {
+                return false;
+            }
+            starts.addLast(now);
+            return true;
+        }
+    }
+}
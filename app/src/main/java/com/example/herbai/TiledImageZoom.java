@@ -0,0 +1,268 @@
+package com.example.herbai;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.BitmapRegionDecoder;
+import android.graphics.Matrix;
+import android.graphics.Rect;
+import android.graphics.RectF;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.view.View;
+import android.widget.ImageView;
+
+import com.bumptech.glide.Glide;
+import com.bumptech.glide.load.engine.bitmap_recycle.BitmapPool;
+import com.bumptech.glide.request.FutureTarget;
+import com.github.chrisbanes.photoview.OnMatrixChangedListener;
+import com.github.chrisbanes.photoview.PhotoView;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Sharp zoom into very large images without decoding them whole. A page shows a
+// display-sized bitmap; once the user zooms past its resolution, only the part of the
+// original that is on screen is decoded with BitmapRegionDecoder, at the sample size the
+// zoom needs, and drawn over the page. One tile per page is kept, about a screen of pixels.
+// The original is read from Glide's disk cache, where the gallery already put it.
+public class TiledImageZoom implements OnMatrixChangedListener {
+    private static final String TAG = "TiledImageZoom";
+    // Wait for a pinch or fling to settle before decoding
+    static final long SETTLE_MS = 150;
+    // One decode thread for every page; work for a page that was swiped away is skipped
+    private static final ExecutorService decodeExecutor = Executors.newSingleThreadExecutor();
+
+    private final Context appContext;
+    private final PhotoView photoView;
+    private final ImageView detailView;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable decodeVisible = this::decodeVisibleTile;
+    // Bumped on every bind, clear and matrix change; a tile decoded for an older one is dropped
+    private final AtomicInteger generation = new AtomicInteger();
+
+    private String imageUrl;
+    // Width of the bitmap PhotoView shows, 0 until it is loaded
+    private int baseWidth;
+    private Bitmap tileBitmap;
+
+    // Guarded by "this", used on the decode thread
+    private BitmapRegionDecoder decoder;
+    private String decoderUrl;
+
+    // A region of the original, and where it goes on screen in view coordinates
+    static class Tile {
+        final int left;
+        final int top;
+        final int right;
+        final int bottom;
+        final int sampleSize;
+        final float screenLeft;
+        final float screenTop;
+        final float screenScale;
+
+        Tile(int left, int top, int right, int bottom, int sampleSize, float screenLeft, float screenTop,
+             float screenScale) {
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.sampleSize = sampleSize;
+            this.screenLeft = screenLeft;
+            this.screenTop = screenTop;
+            this.screenScale = screenScale;
+        }
+    }
+
+    public TiledImageZoom(Context context, PhotoView photoView, ImageView detailView) {
+        this.appContext = context.getApplicationContext();
+        this.photoView = photoView;
+        this.detailView = detailView;
+        photoView.setOnMatrixChangeListener(this);
+    }
+
+    public void bind(String imageUrl) {
+        clear();
+        this.imageUrl = imageUrl;
+    }
+
+    // The display-sized bitmap is on screen; zooming past its width decodes tiles
+    public void setBaseWidth(int baseWidth) {
+        this.baseWidth = baseWidth;
+    }
+
+    // The page was recycled or the screen closed
+    public void clear() {
+        generation.incrementAndGet();
+        mainHandler.removeCallbacks(decodeVisible);
+        imageUrl = null;
+        baseWidth = 0;
+        releaseTile();
+        decodeExecutor.execute(this::closeDecoder);
+    }
+
+    @Override
+    public void onMatrixChanged(RectF displayRect) {
+        // The tile no longer lines up with the image; show the base bitmap until the next one
+        generation.incrementAndGet();
+        detailView.setVisibility(View.GONE);
+        mainHandler.removeCallbacks(decodeVisible);
+        mainHandler.postDelayed(decodeVisible, SETTLE_MS);
+    }
+
+    private void decodeVisibleTile() {
+        RectF displayRect = photoView.getDisplayRect();
+        String url = imageUrl;
+        if (url == null || displayRect == null || baseWidth == 0 || displayRect.width() <= baseWidth) {
+            // Not zoomed past what the base bitmap can show
+            releaseTile();
+            return;
+        }
+
+        int seq = generation.get();
+        int viewWidth = photoView.getWidth();
+        int viewHeight = photoView.getHeight();
+        int base = baseWidth;
+        RectF rect = new RectF(displayRect);
+        decodeExecutor.execute(() -> {
+            if (seq != generation.get()) {
+                return;
+            }
+            Bitmap bitmap;
+            Tile tile;
+            synchronized (this) {
+                BitmapRegionDecoder regionDecoder = openDecoder(url);
+                if (regionDecoder == null) {
+                    return;
+                }
+                tile = visibleTile(regionDecoder.getWidth(), regionDecoder.getHeight(), base,
+                        rect.left, rect.top, rect.right, rect.bottom, viewWidth, viewHeight);
+                if (tile == null || seq != generation.get()) {
+                    return;
+                }
+                BitmapFactory.Options options = new BitmapFactory.Options();
+                options.inSampleSize = tile.sampleSize;
+                // Photos have no alpha; half the bytes of ARGB_8888
+                options.inPreferredConfig = Bitmap.Config.RGB_565;
+                bitmap = regionDecoder.decodeRegion(new Rect(tile.left, tile.top, tile.right, tile.bottom), options);
+            }
+            if (bitmap == null) {
+                return;
+            }
+            mainHandler.post(() -> showTile(seq, url, tile, bitmap));
+        });
+    }
+
+    private void showTile(int seq, String url, Tile tile, Bitmap bitmap) {
+        if (seq != generation.get() || !url.equals(imageUrl)) {
+            bitmapPool().put(bitmap);
+            return;
+        }
+        releaseTile();
+        tileBitmap = bitmap;
+        // Tile pixels are sampleSize source pixels wide
+        Matrix matrix = new Matrix();
+        matrix.setScale(tile.screenScale * tile.sampleSize, tile.screenScale * tile.sampleSize);
+        matrix.postTranslate(tile.screenLeft, tile.screenTop);
+        detailView.setImageBitmap(bitmap);
+        detailView.setImageMatrix(matrix);
+        detailView.setVisibility(View.VISIBLE);
+    }
+
+    // Old tiles go to Glide's pool, where the next page's decode can reuse them
+    private void releaseTile() {
+        detailView.setVisibility(View.GONE);
+        detailView.setImageDrawable(null);
+        if (tileBitmap != null) {
+            bitmapPool().put(tileBitmap);
+            tileBitmap = null;
+        }
+    }
+
+    private BitmapPool bitmapPool() {
+        return Glide.get(appContext).getBitmapPool();
+    }
+
+    // Decode thread, holding "this"
+    private BitmapRegionDecoder openDecoder(String url) {
+        if (decoder != null && url.equals(decoderUrl)) {
+            return decoder;
+        }
+        closeDecoder();
+        try {
+            // Already on disk from the gallery; waits for the download otherwise
+            FutureTarget<File> download = Glide.with(appContext).downloadOnly().load(url).submit();
+            String path;
+            try {
+                path = download.get().getAbsolutePath();
+            } finally {
+                Glide.with(appContext).clear(download);
+            }
+            decoder = Build.VERSION.SDK_INT >= Build.VERSION_CODES.S
+                    ? BitmapRegionDecoder.newInstance(path)
+                    : BitmapRegionDecoder.newInstance(path, false);
+            decoderUrl = url;
+            int sourceWidth = decoder.getWidth();
+            Log.d(TAG, "Region decoder for " + sourceWidth + "x" + decoder.getHeight() + " " + url);
+            // Let the user zoom in until one source pixel fills a screen pixel
+            mainHandler.post(() -> {
+                if (url.equals(imageUrl) && baseWidth > 0) {
+                    photoView.setMaximumScale(Math.max(photoView.getMaximumScale(), (float) sourceWidth / baseWidth));
+                }
+            });
+            return decoder;
+        } catch (IOException | ExecutionException e) {
+            Log.w(TAG, "No region decoder for " + url + ": " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return null;
+    }
+
+    private synchronized void closeDecoder() {
+        if (decoder != null) {
+            decoder.recycle();
+            decoder = null;
+            decoderUrl = null;
+        }
+    }
+
+    // The part of a sourceWidth x sourceHeight original that is inside the view, given
+    // where PhotoView draws the whole image (left/top/right/bottom, view coordinates).
+    // null while the base bitmap, baseWidth pixels wide, still has a pixel per screen pixel.
+    static Tile visibleTile(int sourceWidth, int sourceHeight, int baseWidth,
+                            float left, float top, float right, float bottom, int viewWidth, int viewHeight) {
+        float displayWidth = right - left;
+        if (sourceWidth <= baseWidth || displayWidth <= baseWidth || sourceWidth <= 0 || sourceHeight <= 0) {
+            return null;
+        }
+        // Screen pixels per source pixel
+        float scale = displayWidth / sourceWidth;
+
+        int tileLeft = clamp((int) Math.floor((Math.max(left, 0) - left) / scale), sourceWidth);
+        int tileTop = clamp((int) Math.floor((Math.max(top, 0) - top) / scale), sourceHeight);
+        int tileRight = clamp((int) Math.ceil((Math.min(right, viewWidth) - left) / scale), sourceWidth);
+        int tileBottom = clamp((int) Math.ceil((Math.min(bottom, viewHeight) - top) / scale), sourceHeight);
+        if (tileRight <= tileLeft || tileBottom <= tileTop) {
+            return null;
+        }
+
+        // Largest power of two that still leaves at least one tile pixel per screen pixel
+        int sampleSize = 1;
+        while (sampleSize * 2 * scale <= 1f) {
+            sampleSize *= 2;
+        }
+        return new Tile(tileLeft, tileTop, tileRight, tileBottom, sampleSize,
+                left + tileLeft * scale, top + tileTop * scale, scale);
+    }
+
+    private static int clamp(int value, int max) {
+        return Math.max(0, Math.min(value, max));
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.herbai;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+// Cache files for uploads whose length is unknown up front. Every upload gets a file of its
+// own, since a speculative upload and the one after it can be in flight together; the
+// owner deletes it once the request body is no longer needed.
+public class UploadSpool {
+    private static final String TAG = "UploadSpool";
+    private static final String SPOOL_PREFIX = "upload_spool_";
+    public static final long MAX_SPOOL_BYTES = 20L * 1024 * 1024;
+
+    // Files older than this are left over from a previous session
+    private static final long STALE_AGE_MS = 60L * 60 * 1000;
+
+    private final File cacheDir;
+
+    public UploadSpool(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    public File write(InputStream inputStream) throws IOException {
+        File slot = File.createTempFile(SPOOL_PREFIX, ".tmp", cacheDir);
+
+        long total = 0;
+        try (FileOutputStream outputStream = new FileOutputStream(slot, false)) {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = inputStream.read(buffer)) != -1) {
+                total += read;
+                if (total > MAX_SPOOL_BYTES) {
+                    throw new IOException("Image exceeds upload limit of " + MAX_SPOOL_BYTES + " bytes");
+                }
+                outputStream.write(buffer, 0, read);
+            }
+        } catch (IOException e) {
+            slot.delete();
+            throw e;
+        }
+
+        Log.d(TAG, "Spooled " + total + " bytes to " + slot.getName());
+        return slot;
+    }
+
+    // Removes temp images and renditions orphaned by earlier sessions
+    public static void sweep(File cacheDir) {
+        File[] files = cacheDir.listFiles();
+        if (files == null) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+        int deleted = 0;
+        for (File file : files) {
+            String name = file.getName();
+            // Legacy temp copies are never reused; renditions may still be uploading after a recreate()
+            boolean legacy = name.startsWith("temp_image_") || name.equals("dummy_prediction.jpg");
+            boolean stale = (name.startsWith("prepared_") || name.startsWith(SPOOL_PREFIX))
+                    && now - file.lastModified() > STALE_AGE_MS;
+            if ((legacy || stale) && file.isFile() && file.delete()) {
+                deleted++;
+            }
+        }
+        if (deleted > 0) {
+            Log.d(TAG, "Swept " + deleted + " orphaned upload files");
+        }
+    }
+}
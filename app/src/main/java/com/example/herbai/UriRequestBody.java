@@ -0,0 +1,165 @@
+package com.example.herbai;
+
+import android.content.ContentResolver;
+import android.content.res.AssetFileDescriptor;
+import android.database.Cursor;
+import android.net.Uri;
+import android.provider.OpenableColumns;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.Okio;
+import okio.Source;
+
+// Streams an image straight from the ContentResolver into the OkHttp sink, no temp copy
+public class UriRequestBody extends RequestBody {
+    private static final String TAG = "UriRequestBody";
+
+    private final ContentResolver resolver;
+    private final Uri uri;
+    private final MediaType contentType;
+    private final long contentLength;
+
+    private UriRequestBody(ContentResolver resolver, Uri uri, MediaType contentType, long contentLength) {
+        this.resolver = resolver;
+        this.uri = uri;
+        this.contentType = contentType;
+        this.contentLength = contentLength;
+    }
+
+    // Streams when the size is known, otherwise spools into a size-capped cache file of its
+    // own; see spooledFile()
+    public static RequestBody create(ContentResolver resolver, Uri uri, UploadSpool spool) throws IOException {
+        String type = resolver.getType(uri);
+        MediaType mediaType = MediaType.parse(type != null ? type : "image/jpeg");
+
+        long size = querySize(resolver, uri);
+        if (size > 0) {
+            Log.d(TAG, "Streaming " + size + " bytes from " + uri);
+            return new UriRequestBody(resolver, uri, mediaType, size);
+        }
+
+        Log.d(TAG, "Size unknown for " + uri + ", spooling to cache");
+        try (InputStream inputStream = open(resolver, uri)) {
+            return new SpooledBody(spool.write(inputStream), mediaType);
+        }
+    }
+
+    // The cache file behind a body from create(), for the caller to delete after the upload;
+    // null when the body streams from the ContentResolver
+    @Nullable
+    public static File spooledFile(RequestBody body) {
+        return body instanceof SpooledBody ? ((SpooledBody) body).file : null;
+    }
+
+    // Size from OpenableColumns.SIZE, falling back to the asset descriptor; -1 when unknown
+    public static long querySize(ContentResolver resolver, Uri uri) {
+        if (ContentResolver.SCHEME_FILE.equals(uri.getScheme()) && uri.getPath() != null) {
+            File file = new File(uri.getPath());
+            return file.exists() ? file.length() : -1;
+        }
+
+        try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.SIZE}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int index = cursor.getColumnIndex(OpenableColumns.SIZE);
+                if (index >= 0 && !cursor.isNull(index)) {
+                    long size = cursor.getLong(index);
+                    if (size > 0) {
+                        return size;
+                    }
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not query size for " + uri + ": " + e.getMessage());
+        }
+
+        try (AssetFileDescriptor descriptor = resolver.openAssetFileDescriptor(uri, "r")) {
+            if (descriptor != null && descriptor.getLength() > 0) {
+                return descriptor.getLength();
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not open descriptor for " + uri + ": " + e.getMessage());
+        }
+        return -1;
+    }
+
+    // Display name for the multipart part, e.g. IMG_1234.jpg
+    public static String queryDisplayName(ContentResolver resolver, Uri uri, String fallback) {
+        try (Cursor cursor = resolver.query(uri, new String[]{OpenableColumns.DISPLAY_NAME}, null, null, null)) {
+            if (cursor != null && cursor.moveToFirst()) {
+                int index = cursor.getColumnIndex(OpenableColumns.DISPLAY_NAME);
+                if (index >= 0 && !cursor.isNull(index)) {
+                    return cursor.getString(index);
+                }
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Could not query display name for " + uri + ": " + e.getMessage());
+        }
+        return fallback;
+    }
+
+    private static InputStream open(ContentResolver resolver, Uri uri) throws IOException {
+        InputStream inputStream = resolver.openInputStream(uri);
+        if (inputStream == null) {
+            throw new FileNotFoundException("No input stream for " + uri);
+        }
+        return inputStream;
+    }
+
+    @Nullable
+    @Override
+    public MediaType contentType() {
+        return contentType;
+    }
+
+    @Override
+    public long contentLength() {
+        return contentLength;
+    }
+
+    @Override
+    public void writeTo(@NonNull BufferedSink sink) throws IOException {
+        // Re-opened on every write so OkHttp can retry the request
+        try (Source source = Okio.source(open(resolver, uri))) {
+            sink.writeAll(source);
+        }
+    }
+
+    private static final class SpooledBody extends RequestBody {
+        final File file;
+        private final MediaType contentType;
+
+        SpooledBody(File file, MediaType contentType) {
+            this.file = file;
+            this.contentType = contentType;
+        }
+
+        @Nullable
+        @Override
+        public MediaType contentType() {
+            return contentType;
+        }
+
+        @Override
+        public long contentLength() {
+            return file.length();
+        }
+
+        @Override
+        public void writeTo(@NonNull BufferedSink sink) throws IOException {
+            try (Source source = Okio.source(file)) {
+                sink.writeAll(source);
+            }
+        }
+    }
+}
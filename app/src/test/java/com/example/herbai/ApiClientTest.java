@@ -0,0 +1,90 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class ApiClientTest {
+    private MockWebServer server;
+    private ApiClient apiClient;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void profilesShareConnectionPoolAndDispatcher() {
+        OkHttpClient predict = apiClient.getPredictClient();
+        OkHttpClient search = apiClient.getSearchClient();
+        OkHttpClient status = apiClient.getStatusClient();
+
+        assertSame(predict.connectionPool(), search.connectionPool());
+        assertSame(predict.connectionPool(), status.connectionPool());
+        assertSame(predict.dispatcher(), search.dispatcher());
+        assertSame(predict.dispatcher(), status.dispatcher());
+
+        assertEquals(60_000, predict.readTimeoutMillis());
+        assertEquals(20_000, search.readTimeoutMillis());
+        assertEquals(15_000, status.readTimeoutMillis());
+    }
+
+    @Test
+    public void sequentialRequestsReuseOneConnection() throws Exception {
+        server.enqueue(new MockResponse().setBody("{\"success\":true}"));
+        server.enqueue(new MockResponse().setBody("{\"success\":true}"));
+        server.enqueue(new MockResponse().setBody("{\"status\":\"ok\"}"));
+
+        get(apiClient.getSearchClient(), "smart_search/Neem");
+        get(apiClient.getSearchClient(), "smart_search/Tulsi");
+        // A different timeout profile still draws from the same pool
+        get(apiClient.getStatusClient(), "status");
+
+        RecordedRequest first = server.takeRequest();
+        RecordedRequest second = server.takeRequest();
+        RecordedRequest third = server.takeRequest();
+
+        // sequenceNumber counts requests made on the same connection
+        assertEquals(0, first.getSequenceNumber());
+        assertEquals(1, second.getSequenceNumber());
+        assertEquals(2, third.getSequenceNumber());
+        assertEquals(1, apiClient.getConnectionPool().connectionCount());
+    }
+
+    @Test
+    public void requestsCarryUserAgentAndResolveAgainstBaseUrl() throws Exception {
+        server.enqueue(new MockResponse().setBody("{}"));
+
+        get(apiClient.getSearchClient(), "/search_by_keywords/fever");
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("/search_by_keywords/fever", request.getPath());
+        assertEquals(ApiClient.USER_AGENT, request.getHeader("User-Agent"));
+    }
+
+    private void get(OkHttpClient client, String path) throws IOException {
+        Request request = new Request.Builder().url(apiClient.url(path)).build();
+        try (Response response = client.newCall(request).execute()) {
+            assertTrue(response.isSuccessful());
+            response.body().string();
+        }
+    }
+}
@@ -0,0 +1,358 @@
+package com.example.herbai;
+
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import okhttp3.HttpUrl;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.RecordedRequest;
+import okio.Buffer;
+import okio.ByteString;
+
+/**
+ * Stand-in for the Flask backend, so client contracts can be tested offline with
+ * MockWebServer. Holds a small plant table and answers the endpoints the app uses with
+ * the same JSON shapes (keys sorted, as jsonify does). Request counts are kept per
+ * endpoint so tests can assert on batching and caching.
+ *
+ * <p>Searches follow the paging contract: {@code ?offset=n&limit=m} returns that slice of
+ * the results and a {@code next_cursor} while more follow; a cursor sent back replaces
+ * the offset. Without {@code limit} everything comes back in one response, like the
+ * backend before paging.
+ *
+ * <p>{@code /predict} answers every upload with the species set by {@link #setPrediction},
+ * or the one set for the uploaded file's name, and remembers it under the SHA-256 of the uploaded file, if the client sent a matching
+ * {@code sha256} field. {@code /predict_by_hash} then answers those bytes without an upload.
+ */
+public class FakeHerbAiServer extends Dispatcher {
+    private final Map<String, Plant> plants = new LinkedHashMap<>();
+    private final Map<String, AtomicInteger> requestCounts = new ConcurrentHashMap<>();
+    private volatile boolean imageLookupEnabled = true;
+    private volatile boolean hashLookupEnabled = true;
+    private volatile String predictedSpecies = "Azadirachta indica";
+    private volatile double predictedConfidence = 0.9;
+    // Species and confidence by uploaded file name, ahead of the default
+    private final Map<String, Object[]> predictionsByFileName = new ConcurrentHashMap<>();
+    // Uploaded file names /predict answers with a 500
+    private final Set<String> failingFileNames = ConcurrentHashMap.newKeySet();
+    // Prediction JSON by SHA-256 of the uploaded file
+    private final Map<String, String> predictionsByHash = new ConcurrentHashMap<>();
+    private final AtomicLong uploadedBytes = new AtomicLong();
+
+    public static class Plant {
+        final String plantName;
+        final String scientificName;
+        final List<String> imageUrls;
+
+        Plant(String plantName, String scientificName, List<String> imageUrls) {
+            this.plantName = plantName;
+            this.scientificName = scientificName;
+            this.imageUrls = imageUrls;
+        }
+    }
+
+    public FakeHerbAiServer addPlant(String plantName, String scientificName, String... imageUrls) {
+        List<String> urls = new ArrayList<>();
+        for (String url : imageUrls) {
+            urls.add(url);
+        }
+        Plant plant = new Plant(plantName, scientificName, urls);
+        synchronized (plants) {
+            plants.put(PlantRepository.normalizeKey(plantName), plant);
+            plants.put(PlantRepository.normalizeKey(scientificName), plant);
+        }
+        return this;
+    }
+
+    // Behaves like a backend deployed before /plant_images existed
+    public void setImageLookupEnabled(boolean enabled) {
+        imageLookupEnabled = enabled;
+    }
+
+    // Behaves like a backend deployed before /predict_by_hash existed
+    public void setHashLookupEnabled(boolean enabled) {
+        hashLookupEnabled = enabled;
+    }
+
+    // What /predict answers for every upload from now on
+    public void setPrediction(String species, double confidence) {
+        predictedSpecies = species;
+        predictedConfidence = confidence;
+    }
+
+    // What /predict answers for uploads named fileName, e.g. a small rendition
+    public void setPrediction(String fileName, String species, double confidence) {
+        predictionsByFileName.put(fileName, new Object[]{species, confidence});
+    }
+
+    // Makes /predict fail for uploads named fileName, like a model crashing on one input
+    public void setPredictionFailing(String fileName) {
+        failingFileNames.add(fileName);
+    }
+
+    // Image bytes received by /predict
+    public long getUploadedBytes() {
+        return uploadedBytes.get();
+    }
+
+    public int getRequestCount(String endpoint) {
+        AtomicInteger count = requestCounts.get(endpoint);
+        return count != null ? count.get() : 0;
+    }
+
+    @Override
+    public MockResponse dispatch(RecordedRequest request) {
+        String path = request.getPath();
+        if (path == null) {
+            return new MockResponse().setResponseCode(400);
+        }
+        String endpoint = path.substring(1).split("[/?]")[0];
+        requestCounts.computeIfAbsent(endpoint, key -> new AtomicInteger()).incrementAndGet();
+        String pathOnly = path.split("\\?")[0];
+
+        try {
+            switch (endpoint) {
+                case "smart_search":
+                    return smartSearch(decode(pathOnly.substring("/smart_search/".length())), request);
+                case "search_by_keywords":
+                    return keywordSearch(decode(pathOnly.substring("/search_by_keywords/".length())), request);
+                case "plant_images":
+                    if (!imageLookupEnabled || !"POST".equals(request.getMethod())) {
+                        return notFound();
+                    }
+                    // clone() leaves the body readable for tests that inspect the request
+                    return plantImages(new JSONObject(request.getBody().clone().readUtf8()));
+                case "predict":
+                    return predict(request);
+                case "predict_by_hash":
+                    if (!hashLookupEnabled || !"POST".equals(request.getMethod())) {
+                        return notFound();
+                    }
+                    return predictByHash(new JSONObject(request.getBody().clone().readUtf8()));
+                default:
+                    return notFound();
+            }
+        } catch (JSONException e) {
+            return json(400, new JSONObject().put("error", e.getMessage()).put("success", false));
+        }
+    }
+
+    private MockResponse smartSearch(String query, RecordedRequest request) throws JSONException {
+        Plant plant = find(query);
+        if (plant == null) {
+            return json(404, new JSONObject().put("error", "No plant found").put("success", false));
+        }
+        List<Plant> results = new ArrayList<>();
+        results.add(plant);
+        return searchPage(results, request);
+    }
+
+    // Plants with any of the words in their common or scientific name, in insertion order
+    private MockResponse keywordSearch(String keywords, RecordedRequest request) throws JSONException {
+        List<Plant> results = new ArrayList<>();
+        String[] words = keywords.toLowerCase().split("\\s+");
+        synchronized (plants) {
+            for (Plant plant : new LinkedHashSet<>(plants.values())) {
+                String text = (plant.plantName + " " + plant.scientificName).toLowerCase();
+                for (String word : words) {
+                    if (!word.isEmpty() && text.contains(word)) {
+                        results.add(plant);
+                        break;
+                    }
+                }
+            }
+        }
+        if (results.isEmpty()) {
+            return json(404, new JSONObject().put("error", "No plants found").put("success", false));
+        }
+        return searchPage(results, request);
+    }
+
+    private MockResponse searchPage(List<Plant> results, RecordedRequest request) throws JSONException {
+        HttpUrl url = request.getRequestUrl();
+        int offset = parseInt(url.queryParameter("offset"), 0);
+        String cursor = url.queryParameter("cursor");
+        if (cursor != null && cursor.startsWith("c")) {
+            offset = parseInt(cursor.substring(1), offset);
+        }
+        int limit = parseInt(url.queryParameter("limit"), Integer.MAX_VALUE);
+        offset = Math.max(0, Math.min(offset, results.size()));
+        int end = (int) Math.min((long) offset + limit, results.size());
+
+        JSONArray page = new JSONArray();
+        for (Plant plant : results.subList(offset, end)) {
+            page.put(new JSONObject()
+                    .put("image_urls", new JSONArray(plant.imageUrls))
+                    .put("plant_name", plant.plantName)
+                    .put("scientific_name", plant.scientificName));
+        }
+        JSONObject body = new JSONObject()
+                .put("results", page)
+                .put("success", true)
+                .put("was_generated", false);
+        if (end < results.size()) {
+            // Opaque to the client; here it is just the next offset
+            body.put("next_cursor", "c" + end);
+        }
+        return json(200, body);
+    }
+
+    private static int parseInt(String value, int fallback) {
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+
+    // {"names": [...], "max_images": n, "offset": k} -> {"images": {"<name as sent>": [...]}, "success": true}
+    // Without "offset" the images start at the first one
+    private MockResponse plantImages(JSONObject body) throws JSONException {
+        JSONArray names = body.getJSONArray("names");
+        int maxImages = body.optInt("max_images", 10);
+        int offset = Math.max(0, body.optInt("offset", 0));
+        JSONObject images = new JSONObject();
+        for (int i = 0; i < names.length(); i++) {
+            String name = names.getString(i);
+            Plant plant = find(name);
+            JSONArray urls = new JSONArray();
+            if (plant != null) {
+                for (int j = offset; j < plant.imageUrls.size() && j < offset + maxImages; j++) {
+                    urls.put(plant.imageUrls.get(j));
+                }
+            }
+            images.put(name, urls);
+        }
+        return json(200, new JSONObject().put("images", images).put("success", true));
+    }
+
+    // multipart "file" (+ optional "sha256") -> {"confidence": c, "species": s, "top_predictions": [...]}
+    private MockResponse predict(RecordedRequest request) throws JSONException {
+        Map<String, Part> parts = multipartParts(request);
+        Part filePart = parts.get("file");
+        if (filePart == null || filePart.content.size() == 0) {
+            return json(400, new JSONObject().put("error", "No file uploaded"));
+        }
+        ByteString file = filePart.content;
+        uploadedBytes.addAndGet(file.size());
+        if (filePart.fileName != null && failingFileNames.contains(filePart.fileName)) {
+            return json(500, new JSONObject().put("error", "Prediction failed"));
+        }
+        Object[] named = filePart.fileName != null ? predictionsByFileName.get(filePart.fileName) : null;
+        String species = named != null ? (String) named[0] : predictedSpecies;
+        double confidence = named != null ? (Double) named[1] : predictedConfidence;
+        JSONObject prediction = new JSONObject()
+                .put("confidence", confidence)
+                .put("species", species)
+                .put("top_predictions", new JSONArray().put(new JSONObject()
+                        .put("confidence", confidence)
+                        .put("species", species)));
+        // Only stored under a hash the server checked itself
+        Part declared = parts.get("sha256");
+        String hash = file.sha256().hex();
+        if (declared != null && declared.content.utf8().equals(hash)) {
+            predictionsByHash.put(hash, prediction.toString());
+        }
+        return json(200, prediction);
+    }
+
+    // {"sha256": h} -> {"found": true, "prediction": {...}} or {"found": false}
+    private MockResponse predictByHash(JSONObject body) throws JSONException {
+        String prediction = predictionsByHash.get(body.getString("sha256"));
+        if (prediction == null) {
+            return json(200, new JSONObject().put("found", false));
+        }
+        return json(200, new JSONObject().put("found", true).put("prediction", new JSONObject(prediction)));
+    }
+
+    private static class Part {
+        final String fileName;
+        final ByteString content;
+
+        Part(String fileName, ByteString content) {
+            this.fileName = fileName;
+            this.content = content;
+        }
+    }
+
+    // Form fields of a multipart/form-data body by name
+    private static Map<String, Part> multipartParts(RecordedRequest request) {
+        Map<String, Part> parts = new HashMap<>();
+        String contentType = request.getHeader("Content-Type");
+        if (contentType == null || !contentType.contains("boundary=")) {
+            return parts;
+        }
+        ByteString delimiter = ByteString.encodeUtf8("\r\n--" + contentType.substring(contentType.indexOf("boundary=") + 9));
+        // Prefixed with CRLF so the first delimiter looks like the others
+        ByteString body = new Buffer().writeUtf8("\r\n").write(request.getBody().clone().readByteString())
+                .readByteString();
+        ByteString headerEnd = ByteString.encodeUtf8("\r\n\r\n");
+        int start = body.indexOf(delimiter);
+        while (start >= 0) {
+            int partStart = start + delimiter.size();
+            int next = body.indexOf(delimiter, partStart);
+            if (next < 0) {
+                break;
+            }
+            ByteString part = body.substring(partStart, next);
+            int contentStart = part.indexOf(headerEnd);
+            if (contentStart >= 0) {
+                String headers = part.substring(0, contentStart).utf8();
+                int nameStart = headers.indexOf("name=\"");
+                if (nameStart >= 0) {
+                    nameStart += 6;
+                    String name = headers.substring(nameStart, headers.indexOf('"', nameStart));
+                    int fileNameStart = headers.indexOf("filename=\"");
+                    String fileName = fileNameStart >= 0
+                            ? headers.substring(fileNameStart + 10, headers.indexOf('"', fileNameStart + 10)) : null;
+                    parts.put(name, new Part(fileName, part.substring(contentStart + headerEnd.size())));
+                }
+            }
+            start = next;
+        }
+        return parts;
+    }
+
+    private Plant find(String name) {
+        synchronized (plants) {
+            return plants.get(PlantRepository.normalizeKey(name));
+        }
+    }
+
+    private static MockResponse notFound() {
+        return new MockResponse().setResponseCode(404).setBody("<h1>Not Found</h1>");
+    }
+
+    private static MockResponse json(int code, JSONObject body) {
+        return new MockResponse()
+                .setResponseCode(code)
+                .setHeader("Content-Type", "application/json")
+                .setBody(body.toString());
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value.replace("+", "%2B"), StandardCharsets.UTF_8.name());
+        } catch (java.io.UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.herbai;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class GalleryPagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeHerbAiServer backend;
+    private ImageUrlClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeHerbAiServer().addPlant("Neem", "Azadirachta indica", urls(0, 45).toArray(new String[0]));
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+        ApiClient apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+        client = new ImageUrlClient(new PlantStore(folder.newFolder("plant_images")), apiClient, Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void loadsEveryPageWhileScrolling() throws Exception {
+        GalleryPager pager = new GalleryPager(12, 200, 6);
+        List<String> names = Arrays.asList("Neem", "Azadirachta indica");
+        pager.addPage(0, client.getPage(names, 0, pager.getPageSize()));
+        assertEquals(12, pager.getImages().size());
+        assertTrue(pager.hasMore());
+
+        // Top of the grid: nothing to load yet
+        assertEquals(-1, pager.requestFor(3));
+
+        // Scrolled to within PREFETCH_DISTANCE of the end
+        int lastVisible = 6;
+        int offset;
+        while ((offset = pager.requestFor(lastVisible)) >= 0) {
+            // One page at a time
+            assertEquals(-1, pager.requestFor(lastVisible));
+            pager.addPage(offset, client.getPage(names, offset, pager.getPageSize()));
+            lastVisible = pager.getImages().size() - 1;
+        }
+
+        assertEquals(urls(0, 45), pager.getImages());
+        assertFalse(pager.hasMore());
+        // Pages 0, 12, 24, 36 and an empty one at 45 that ends the gallery
+        assertEquals(5, backend.getRequestCount("plant_images"));
+        RecordedRequest first = server.takeRequest();
+        assertFalse(new JSONObject(first.getBody().readUtf8()).has("offset"));
+        JSONObject second = new JSONObject(server.takeRequest().getBody().readUtf8());
+        assertEquals(12, second.getInt("offset"));
+        assertEquals(12, second.getInt("max_images"));
+    }
+
+    @Test
+    public void backendIgnoringOffsetEndsAfterFirstPage() {
+        GalleryPager pager = new GalleryPager(4, 200, 2);
+        pager.addPage(0, urls(0, 4));
+        int offset = pager.requestFor(3);
+        assertEquals(4, offset);
+        // Same images again
+        assertEquals(0, pager.addPage(offset, urls(0, 4)));
+        assertFalse(pager.hasMore());
+        assertEquals(-1, pager.requestFor(3));
+        assertEquals(4, pager.getImages().size());
+    }
+
+    @Test
+    public void stalePagesAreIgnoredAndFailedPagesRetried() {
+        GalleryPager pager = new GalleryPager(4, 200, 2);
+        pager.addPage(0, urls(0, 4));
+        int offset = pager.requestFor(3);
+        // A page for an offset nobody asked for
+        assertEquals(0, pager.addPage(8, urls(8, 12)));
+        assertTrue(pager.isLoading());
+
+        pager.pageFailed(offset);
+        assertFalse(pager.isLoading());
+        assertEquals(offset, pager.requestFor(3));
+        assertEquals(4, pager.addPage(offset, urls(4, 8)));
+        assertTrue(pager.hasMore());
+    }
+
+    @Test
+    public void imageCountAndPageSizeAreBounded() {
+        assertEquals(GalleryPager.MIN_PAGE_SIZE, GalleryPager.clampPageSize(0));
+        assertEquals(GalleryPager.MAX_PAGE_SIZE, GalleryPager.clampPageSize(1000));
+
+        GalleryPager pager = new GalleryPager(10, 25, 2);
+        pager.addPage(0, urls(0, 10));
+        pager.addPage(pager.requestFor(9), urls(10, 20));
+        assertEquals(5, pager.addPage(pager.requestFor(19), urls(20, 30)));
+        assertEquals(25, pager.getImages().size());
+        assertFalse(pager.hasMore());
+    }
+
+    private static List<String> urls(int from, int to) {
+        List<String> urls = new ArrayList<>();
+        for (int i = from; i < to; i++) {
+            urls.add("https://img.example/neem" + i + ".jpg");
+        }
+        return urls;
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.ByteString;
+
+import static com.example.herbai.IdentifierHarness.identifySpecies;
+import static org.junit.Assert.*;
+
+/**
+ * The hash-first protocol of SpeculativeIdentifier against FakeHerbAiServer: an image the
+ * backend has answered before is identified by its hash alone, and a backend without
+ * /predict_by_hash still gets plain uploads.
+ */
+public class HashFirstUploadTest {
+    private static final int IMAGE_BYTES = 400_000;
+
+    private MockWebServer server;
+    private FakeHerbAiServer backend;
+    private ExecutorService workExecutor;
+    // Upload bytes by photo id
+    private final Map<String, byte[]> images = new HashMap<>();
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeHerbAiServer();
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+        workExecutor = Executors.newSingleThreadExecutor();
+
+        byte[] neem = new byte[IMAGE_BYTES];
+        new Random(1).nextBytes(neem);
+        images.put("neem", neem);
+        // The same photo shared again under another name
+        images.put("neem-copy", neem.clone());
+        byte[] tulsi = new byte[IMAGE_BYTES];
+        new Random(2).nextBytes(tulsi);
+        images.put("tulsi", tulsi);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        workExecutor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void knownImageIsAnsweredWithoutUpload() throws Exception {
+        SpeculativeIdentifier identifier = newIdentifier();
+        backend.setPrediction("Azadirachta indica", 0.93);
+
+        assertEquals("Azadirachta indica", identifySpecies(identifier, "neem"));
+        assertEquals(1, identifier.getHashMissCount());
+        assertEquals(IMAGE_BYTES, backend.getUploadedBytes());
+
+        // Same bytes: the answer comes from the lookup, nothing is uploaded
+        assertEquals("Azadirachta indica", identifySpecies(identifier, "neem-copy"));
+        assertEquals(1, identifier.getHashHitCount());
+        assertEquals(IMAGE_BYTES, identifier.getUploadBytesSaved());
+        assertEquals(1, backend.getRequestCount("predict"));
+        assertEquals(2, backend.getRequestCount("predict_by_hash"));
+        assertEquals(IMAGE_BYTES, backend.getUploadedBytes());
+
+        // Other bytes are uploaded
+        backend.setPrediction("Ocimum tenuiflorum", 0.88);
+        assertEquals("Ocimum tenuiflorum", identifySpecies(identifier, "tulsi"));
+        assertEquals(2, identifier.getHashMissCount());
+        assertEquals(2, backend.getRequestCount("predict"));
+    }
+
+    @Test
+    public void backendWithoutHashLookupGetsPlainUploads() throws Exception {
+        backend.setHashLookupEnabled(false);
+        SpeculativeIdentifier identifier = newIdentifier();
+
+        assertEquals("Azadirachta indica", identifySpecies(identifier, "neem"));
+        assertEquals("Azadirachta indica", identifySpecies(identifier, "neem-copy"));
+
+        // Tried once, then skipped for the rest of the session
+        assertEquals(1, backend.getRequestCount("predict_by_hash"));
+        assertEquals(2, backend.getRequestCount("predict"));
+        assertEquals(0, identifier.getHashHitCount());
+        assertEquals(0, identifier.getUploadBytesSaved());
+    }
+
+    @Test
+    public void withoutLookupUrlUploadsStraightAway() throws Exception {
+        SpeculativeIdentifier identifier = newIdentifier();
+        identifier.setHashLookupUrl(null);
+
+        assertEquals("Azadirachta indica", identifySpecies(identifier, "neem"));
+        assertEquals("Azadirachta indica", identifySpecies(identifier, "neem-copy"));
+        assertEquals(0, backend.getRequestCount("predict_by_hash"));
+        assertEquals(2, backend.getRequestCount("predict"));
+    }
+
+    @Test
+    public void hashMatchesTheUploadedBytes() throws IOException {
+        byte[] bytes = images.get("neem");
+        RequestBody body = RequestBody.create(bytes, MediaType.parse("image/jpeg"));
+        assertEquals(ByteString.of(bytes).sha256().hex(), SpeculativeIdentifier.sha256(body));
+        // And the body can still be uploaded afterwards
+        assertEquals(ByteString.of(bytes).sha256().hex(), SpeculativeIdentifier.sha256(body));
+    }
+
+    private SpeculativeIdentifier newIdentifier() {
+        SpeculativeIdentifier identifier = IdentifierHarness.newIdentifier(server,
+                photoId -> new SpeculativeIdentifier.Upload(RequestBody.create(images.get(photoId),
+                        MediaType.parse("image/jpeg")), photoId + ".jpg", null),
+                workExecutor, () -> false);
+        identifier.setHashLookupUrl(server.url("/predict_by_hash").toString());
+        return identifier;
+    }
+}
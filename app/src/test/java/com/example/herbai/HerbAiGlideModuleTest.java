@@ -0,0 +1,34 @@
+package com.example.herbai;
+
+import com.bumptech.glide.load.DecodeFormat;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HerbAiGlideModuleTest {
+    private static final long MB = 1024 * 1024;
+
+    @Test
+    public void cachesNeverExceedTheirShareOfTheHeap() {
+        // Glide's own estimate on a large screen with a small heap limit
+        assertEquals(256 * MB / HerbAiGlideModule.HEAP_FRACTION,
+                HerbAiGlideModule.boundedSize(48 * MB, 256 * MB));
+        // Small screens keep the calculated size
+        assertEquals(12 * MB, HerbAiGlideModule.boundedSize(12 * MB, 512 * MB));
+    }
+
+    // Checks the per-bitmap arithmetic only; real grid memory comes from logMemory() on a device
+    @Test
+    public void rgb565ThumbnailBitmapsAreUnderSixTenthsOfArgb8888() {
+        // 1080 px wide phone at 2.625 density: 2 columns of (1080 - 2 * 42) / 2 - 2 * 21 px by 180dp
+        int width = (1080 - 2 * 42) / 2 - 2 * 21;
+        int height = 473;
+        // Before: view-sized ARGB_8888; after: the same size in RGB_565, plus a 1/16-area preview
+        long before = HerbAiGlideModule.bitmapBytes(width, height, DecodeFormat.PREFER_ARGB_8888);
+        long after = HerbAiGlideModule.bitmapBytes(width, height, DecodeFormat.PREFER_RGB_565)
+                + HerbAiGlideModule.bitmapBytes(width / HerbAiGlideModule.PREVIEW_DIVISOR,
+                height / HerbAiGlideModule.PREVIEW_DIVISOR, DecodeFormat.PREFER_RGB_565);
+        assertTrue(before / 1024 + " KB before, " + after / 1024 + " KB after", after * 10 < before * 6);
+    }
+}
@@ -0,0 +1,34 @@
+package com.example.herbai;
+
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class IdentificationPipelineTest {
+    @Test
+    public void candidatesFollowPredictOrderWithoutDuplicates() throws Exception {
+        JSONObject predict = new JSONObject("{\"species\":\"Neem\",\"confidence\":0.873," +
+                "\"top_predictions\":[{\"species\":\"Neem\",\"confidence\":0.873}," +
+                "{\"species\":\"Tulsi\",\"confidence\":0.08},{\"species\":\" \",\"confidence\":0.02}," +
+                "{\"species\":\"Aloe Vera\",\"confidence\":0.01},{\"species\":\"Mint\",\"confidence\":0.005}]}");
+
+        List<IdentificationPipeline.Candidate> candidates = IdentificationPipeline.parseCandidates(predict, 3);
+
+        assertEquals(3, candidates.size());
+        assertEquals("Neem", candidates.get(0).getSpecies());
+        assertEquals("Tulsi", candidates.get(1).getSpecies());
+        assertEquals("Aloe Vera", candidates.get(2).getSpecies());
+        assertEquals("Neem (87.3%)", candidates.get(0).getLabel());
+    }
+
+    @Test
+    public void responseWithoutSpeciesHasNoCandidates() throws Exception {
+        assertTrue(IdentificationPipeline.parseCandidates(new JSONObject("{\"error\":\"bad image\"}"), 3).isEmpty());
+        assertEquals("Tulsi", IdentificationPipeline.parseCandidates(
+                new JSONObject("{\"top_predictions\":[{\"species\":\"Tulsi\",\"confidence\":0.4}]}"), 3)
+                .get(0).getSpecies());
+    }
+}
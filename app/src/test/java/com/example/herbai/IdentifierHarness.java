@@ -0,0 +1,94 @@
+package com.example.herbai;
+
+import org.json.JSONObject;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Shared setup for the SpeculativeIdentifier tests: an identifier pointed at a
+ * MockWebServer, usually running {@link FakeHerbAiServer}, and a listener that records
+ * what it is told. Photos are plain string ids, so no Android types are involved.
+ */
+class IdentifierHarness {
+    private IdentifierHarness() {
+    }
+
+    // Uploads to the server's /predict; callbacks run on the calling thread
+    static SpeculativeIdentifier newIdentifier(MockWebServer server, SpeculativeIdentifier.UploadFactory uploads,
+                                               Executor workExecutor, BooleanSupplier metered) {
+        return new SpeculativeIdentifier(new OkHttpClient(), server.url("/predict").toString(), uploads,
+                workExecutor, Runnable::run, metered);
+    }
+
+    static Recorder identify(SpeculativeIdentifier identifier, String photoId) {
+        Recorder recorder = new Recorder();
+        identifier.identify(photoId, recorder);
+        return recorder;
+    }
+
+    // The species of the first answer, or "failed: <message>"
+    static String identifySpecies(SpeculativeIdentifier identifier, String photoId) throws InterruptedException {
+        return identify(identifier, photoId).awaitFirst();
+    }
+
+    // Every callback as a line, e.g. "refining Melia azedarach 0.55"
+    static class Recorder implements SpeculativeIdentifier.Listener {
+        private final List<String> events = Collections.synchronizedList(new ArrayList<>());
+        private volatile String firstSpecies;
+
+        @Override
+        public void onPrediction(JSONObject response, boolean refining) {
+            if (firstSpecies == null) firstSpecies = response.optString("species");
+            events.add((refining ? "refining " : "first ") + describe(response));
+        }
+
+        @Override
+        public void onRefined(JSONObject response) {
+            events.add("refined " + describe(response));
+        }
+
+        @Override
+        public void onRefinementFailed(String message) {
+            events.add("refinement failed: " + message);
+        }
+
+        @Override
+        public void onFailure(String message) {
+            if (firstSpecies == null) firstSpecies = "failed: " + message;
+            events.add("failed: " + message);
+        }
+
+        // Waits for count events, and a moment longer to catch unexpected ones
+        List<String> await(int count) throws InterruptedException {
+            waitFor(count);
+            Thread.sleep(200);
+            return new ArrayList<>(events);
+        }
+
+        String awaitFirst() throws InterruptedException {
+            assertTrue("No answer within 5 s", waitFor(1));
+            return firstSpecies;
+        }
+
+        private boolean waitFor(int count) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + 5000;
+            while (events.size() < count && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            return events.size() >= count;
+        }
+
+        private static String describe(JSONObject response) {
+            return response.optString("species") + " " + response.optDouble("confidence");
+        }
+    }
+}
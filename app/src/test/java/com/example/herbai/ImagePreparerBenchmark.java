@@ -0,0 +1,119 @@
+package com.example.herbai;
+
+import org.junit.Test;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.stream.MemoryCacheImageOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * JVM benchmark of the upload preparation stage. Mirrors ImagePreparer's sizing
+ * (power-of-two subsample, then scale to the model edge) with java.awt so it can
+ * run on the host, and reports bytes saved and encode time per resolution.
+ */
+public class ImagePreparerBenchmark {
+    private static final int SOURCE_WIDTH = 4032;
+    private static final int SOURCE_HEIGHT = 3024;
+    private static final float QUALITY = ImagePreparer.DEFAULT_QUALITY / 100f;
+    private static final int[] EDGES = {512, 1024, 2048};
+
+    @Test
+    public void inSampleSize_keepsDecodeAtOrAboveTarget() {
+        assertEquals(1, ImagePreparer.calculateInSampleSize(800, 600, 1024));
+        assertEquals(2, ImagePreparer.calculateInSampleSize(4032, 3024, 1024));
+        assertEquals(4, ImagePreparer.calculateInSampleSize(4032, 3024, 512));
+        assertEquals(1, ImagePreparer.calculateInSampleSize(4032, 3024, 4032));
+    }
+
+    @Test
+    public void targetSize_preservesAspectRatio() {
+        assertArrayEquals(new int[]{1024, 768}, ImagePreparer.targetSize(4032, 3024, 1024));
+        assertArrayEquals(new int[]{384, 512}, ImagePreparer.targetSize(3024, 4032, 512));
+        assertArrayEquals(new int[]{640, 480}, ImagePreparer.targetSize(640, 480, 1024));
+    }
+
+    @Test
+    public void benchmarkBytesSavedPerResolution() throws IOException {
+        BufferedImage source = syntheticPhoto(SOURCE_WIDTH, SOURCE_HEIGHT);
+        long originalBytes = encodeJpeg(source, 0.95f).length;
+        System.out.println("source " + SOURCE_WIDTH + "x" + SOURCE_HEIGHT + ": " + originalBytes + " bytes");
+
+        long previousBytes = 0;
+        for (int edge : EDGES) {
+            // Warm up once so JIT compilation does not land in the first measurement
+            prepare(source, edge);
+
+            long start = System.nanoTime();
+            byte[] prepared = prepare(source, edge);
+            long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+            long saved = originalBytes - prepared.length;
+            System.out.println(String.format("edge %4d px: %8d bytes, saved %8d bytes (%.1f%%), %4d ms",
+                    edge, prepared.length, saved, saved * 100.0 / originalBytes, elapsedMs));
+
+            assertTrue("rendition at " + edge + "px should be smaller than the original",
+                    prepared.length < originalBytes);
+            assertTrue("larger edges should produce larger files", prepared.length > previousBytes);
+            previousBytes = prepared.length;
+        }
+    }
+
+    private static byte[] prepare(BufferedImage source, int edge) throws IOException {
+        int sampleSize = ImagePreparer.calculateInSampleSize(source.getWidth(), source.getHeight(), edge);
+        int[] size = ImagePreparer.targetSize(source.getWidth() / sampleSize, source.getHeight() / sampleSize, edge);
+
+        BufferedImage scaled = new BufferedImage(size[0], size[1], BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        graphics.drawImage(source, 0, 0, size[0], size[1], null);
+        graphics.dispose();
+
+        return encodeJpeg(scaled, QUALITY);
+    }
+
+    private static byte[] encodeJpeg(BufferedImage image, float quality) throws IOException {
+        ImageWriter writer = ImageIO.getImageWritersByFormatName("jpeg").next();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (MemoryCacheImageOutputStream output = new MemoryCacheImageOutputStream(bytes)) {
+            writer.setOutput(output);
+            ImageWriteParam param = writer.getDefaultWriteParam();
+            param.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+            param.setCompressionQuality(quality);
+            writer.write(null, new IIOImage(image, null, null), param);
+        } finally {
+            writer.dispose();
+        }
+        return bytes.toByteArray();
+    }
+
+    // Smooth gradients with sensor-like noise, so JPEG sizes resemble a real camera photo
+    private static BufferedImage syntheticPhoto(int width, int height) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Random random = new Random(42);
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int noise = random.nextInt(24) - 12;
+                int r = clamp((x * 255 / width) / 2 + 40 + noise);
+                int g = clamp(120 + (int) (60 * Math.sin(x / 90.0) * Math.cos(y / 70.0)) + noise);
+                int b = clamp((y * 255 / height) / 3 + 20 + noise);
+                image.setRGB(x, y, (r << 16) | (g << 8) | b);
+            }
+        }
+        return image;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
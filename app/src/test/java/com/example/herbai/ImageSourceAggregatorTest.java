@@ -0,0 +1,147 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class ImageSourceAggregatorTest {
+    private MockWebServer server;
+    private OkHttpClient client;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                switch (request.getPath()) {
+                    case "/fast":
+                        return images("https://img.example/a.jpg", "https://img.example/b.jpg");
+                    case "/fast-duplicate":
+                        return images("https://img.example/a.jpg");
+                    case "/medium":
+                        return images("https://img.example/c.jpg").setBodyDelay(300, TimeUnit.MILLISECONDS);
+                    case "/slow":
+                        return images("https://img.example/slow.jpg").setHeadersDelay(5, TimeUnit.SECONDS);
+                    default:
+                        return new MockResponse().setResponseCode(500);
+                }
+            }
+        });
+        server.start();
+        client = new OkHttpClient.Builder().readTimeout(10, TimeUnit.SECONDS).build();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        client.dispatcher().cancelAll();
+        server.shutdown();
+    }
+
+    @Test
+    public void returnsAsSoonAsEnoughImagesArrive() throws Exception {
+        ImageSourceAggregator aggregator = new ImageSourceAggregator(2, 8000)
+                .addSource("slow", client, get("/slow"))
+                .addSource("fast", client, get("/fast"));
+
+        long start = System.nanoTime();
+        List<String> images = aggregator.collect();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(Arrays.asList("https://img.example/a.jpg", "https://img.example/b.jpg"), images);
+        assertTrue("should not wait for the slow source, took " + elapsedMs + " ms", elapsedMs < 2000);
+        // The slow call was cancelled rather than left running
+        waitFor(() -> client.dispatcher().runningCallsCount() == 0);
+    }
+
+    @Test
+    public void deduplicatesAcrossSources() throws Exception {
+        List<String> images = new ImageSourceAggregator(2, 5000)
+                .addSource("duplicate", client, get("/fast-duplicate"))
+                .addSource("medium", client, get("/medium"))
+                .addSource("error", client, get("/missing"))
+                .collect();
+
+        assertEquals(2, images.size());
+        assertTrue(images.contains("https://img.example/a.jpg"));
+        assertTrue(images.contains("https://img.example/c.jpg"));
+    }
+
+    @Test
+    public void deadlineReturnsWhateverArrived() throws Exception {
+        long start = System.nanoTime();
+        List<String> images = new ImageSourceAggregator(2, 500)
+                .addSource("duplicate", client, get("/fast-duplicate"))
+                .addSource("slow", client, get("/slow"))
+                .collect();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+
+        assertEquals(Arrays.asList("https://img.example/a.jpg"), images);
+        assertTrue("deadline should cut the wait short, took " + elapsedMs + " ms", elapsedMs < 2000);
+    }
+
+    @Test
+    public void finishesWhenAllSourcesFail() throws Exception {
+        List<String> images = new ImageSourceAggregator(2, 5000)
+                .addSource("error", client, get("/missing"))
+                .collect();
+        assertTrue(images.isEmpty());
+    }
+
+    @Test
+    public void errorStatusReachesTheSourcesListener() throws Exception {
+        List<Integer> codes = new ArrayList<>();
+        // Room for more images than there are, so both sources are waited for
+        new ImageSourceAggregator(10, 5000)
+                .addSource("error", client, get("/missing"), PlantJsonReader::readImageUrls, code -> {
+                    synchronized (codes) {
+                        codes.add(code);
+                    }
+                })
+                .addSource("fast", client, get("/fast"), PlantJsonReader::readImageUrls, code -> fail())
+                .collect();
+
+        synchronized (codes) {
+            assertEquals(Arrays.asList(500), codes);
+        }
+    }
+
+    private Request get(String path) {
+        return new Request.Builder().url(server.url(path)).build();
+    }
+
+    private static MockResponse images(String... urls) {
+        StringBuilder json = new StringBuilder("{\"results\":[{\"image_urls\":[");
+        for (int i = 0; i < urls.length; i++) {
+            json.append(i > 0 ? "," : "").append('"').append(urls[i]).append('"');
+        }
+        return new MockResponse().setBody(json.append("]}],\"success\":true}").toString());
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 3000;
+        while (!condition.isMet() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.isMet());
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+}
@@ -0,0 +1,156 @@
+package com.example.herbai;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class ImageUrlClientTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeHerbAiServer backend;
+    private ApiClient apiClient;
+    private File storeDir;
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeHerbAiServer()
+                .addPlant("Neem", "Azadirachta indica",
+                        "https://img.example/neem1.jpg", "https://img.example/neem2.jpg", "https://img.example/neem3.jpg")
+                .addPlant("Tulsi", "Ocimum tenuiflorum", "https://img.example/tulsi.jpg")
+                .addPlant("Aloe Vera", "Aloe barbadensis");
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+        apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+        storeDir = folder.newFolder("plant_images");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void requestContract() throws Exception {
+        ImageUrlClient client = newClient();
+        client.get(Arrays.asList("Neem", "Tulsi"), 2);
+
+        RecordedRequest request = server.takeRequest();
+        assertEquals("POST", request.getMethod());
+        assertEquals("/plant_images", request.getPath());
+        assertTrue(request.getHeader("Content-Type").startsWith("application/json"));
+        JSONObject body = new JSONObject(request.getBody().readUtf8());
+        assertEquals("Neem", body.getJSONArray("names").getString(0));
+        assertEquals("Tulsi", body.getJSONArray("names").getString(1));
+        assertEquals(ImageUrlClient.IMAGES_PER_PLANT, body.getInt("max_images"));
+    }
+
+    @Test
+    public void namesAreBatchedIntoOneRequest() throws Exception {
+        ImageUrlClient client = newClient();
+        Map<String, List<String>> images = client.get(Arrays.asList("Neem", "tulsi", "Aloe Vera", "Unknown herb"), 2);
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(Arrays.asList("https://img.example/neem1.jpg", "https://img.example/neem2.jpg"), images.get("Neem"));
+        assertEquals(Collections.singletonList("https://img.example/tulsi.jpg"), images.get("tulsi"));
+        assertTrue(images.get("Aloe Vera").isEmpty());
+        assertTrue(images.get("Unknown herb").isEmpty());
+        assertEquals(0, backend.getRequestCount("smart_search"));
+        assertEquals(0, backend.getRequestCount("predict"));
+    }
+
+    @Test
+    public void largeBatchesAreSplit() throws Exception {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < ImageUrlClient.MAX_NAMES_PER_REQUEST + 5; i++) {
+            names.add("Plant " + i);
+        }
+        Map<String, List<String>> images = newClient().get(names, 2);
+
+        assertEquals(names.size(), images.size());
+        assertEquals(2, backend.getRequestCount("plant_images"));
+    }
+
+    @Test
+    public void cachedNamesNeverTouchTheNetwork() throws Exception {
+        ImageUrlClient client = newClient();
+        client.get(Arrays.asList("Neem", "Tulsi"), 2);
+
+        // A later caller asking for more images is still served from the cache
+        Map<String, List<String>> images = client.get(Arrays.asList("NEEM", "Tulsi", "Aloe Vera"), 3);
+        assertEquals(3, images.get("NEEM").size());
+        assertEquals(2, server.getRequestCount());
+        assertEquals(Collections.singletonList("Aloe Vera"),
+                new JSONObject(lastRequestBody()).getJSONArray("names").toList());
+
+        // The disk store survives a new client, as it would a process restart
+        ImageUrlClient restarted = newClient();
+        assertEquals(2, restarted.getCached("neem", 2).size());
+        restarted.get(Arrays.asList("Neem", "Tulsi", "Aloe Vera"), 2);
+        assertEquals(2, server.getRequestCount());
+    }
+
+    @Test
+    public void fallsBackToSmartSearchWhenEndpointIsMissing() throws Exception {
+        backend.setImageLookupEnabled(false);
+        ImageUrlClient client = newClient();
+
+        Map<String, List<String>> images = client.get(Arrays.asList("Neem", "Tulsi"), 2);
+        assertEquals(2, images.get("Neem").size());
+        assertEquals(1, images.get("Tulsi").size());
+        assertFalse(client.isLookupEndpointAvailable());
+        assertEquals(1, backend.getRequestCount("plant_images"));
+        assertEquals(2, backend.getRequestCount("smart_search"));
+
+        // The 404 is remembered, so the next miss goes straight to smart_search
+        client.get(Collections.singletonList("Aloe Vera"), 2);
+        assertEquals(1, backend.getRequestCount("plant_images"));
+        assertEquals(3, backend.getRequestCount("smart_search"));
+    }
+
+    @Test
+    public void aggregatorSourceFillsTheCache() throws Exception {
+        ImageUrlClient client = newClient();
+        List<String> names = Arrays.asList("Neem", "Azadirachta indica");
+
+        List<String> images = new ImageSourceAggregator(2, 5000)
+                .addSource("plant_images", apiClient.getSearchClient(),
+                        client.newLookupRequest(names), client.newLookupParser(names))
+                .collect();
+
+        assertEquals(2, images.size());
+        assertEquals(3, client.getCached("Azadirachta indica", 10).size());
+    }
+
+    private ImageUrlClient newClient() {
+        return new ImageUrlClient(new PlantStore(storeDir), apiClient, Runnable::run);
+    }
+
+    private String lastRequestBody() throws InterruptedException {
+        RecordedRequest last = null;
+        RecordedRequest next;
+        while ((next = server.takeRequest(100, java.util.concurrent.TimeUnit.MILLISECONDS)) != null) {
+            last = next;
+        }
+        return last.getBody().readUtf8();
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.herbai;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class KeywordIndexTest {
+    private KeywordIndex index;
+
+    @Before
+    public void setUp() {
+        index = new KeywordIndex();
+        index.add(plant("Neem", "Azadirachta indica", "Skin diseases, fever and dental care",
+                "Antibacterial, antifungal", "Azadirachtin, Nimbin"));
+        index.add(plant("Ginger", "Zingiber officinale", "Digestion, nausea and colds",
+                "Anti-inflammatory, digestive", "Gingerol, Shogaol"));
+        index.add(plant("Giloy", "Tinospora cordifolia", "Chronic fever, fevers of all kinds",
+                "Antipyretic, immunomodulatory", "Berberine"));
+        index.add(plant("Turmeric", "Curcuma longa", "Wound healing and joint pain",
+                "Anti-inflammatory, antioxidant", "Curcumin"));
+    }
+
+    @Test
+    public void stemmingJoinsWordForms() {
+        assertEquals(KeywordIndex.stem("digestion"), KeywordIndex.stem("digestive"));
+        assertEquals(KeywordIndex.stem("fever"), KeywordIndex.stem("fevers"));
+        assertEquals(KeywordIndex.stem("inflammation"), KeywordIndex.stem("inflamed"));
+        assertEquals(KeywordIndex.stem("remedy"), KeywordIndex.stem("remedies"));
+        assertEquals(Arrays.asList("fever", "pain"), KeywordIndex.tokenize("Used for the fever and pain"));
+    }
+
+    @Test
+    public void bm25RanksDenserMatchFirst() {
+        // Giloy mentions fever twice in a short text, Neem once among other uses
+        assertEquals(Arrays.asList("Giloy", "Neem"), names(index.search("fever ", 10)));
+        assertEquals(Arrays.asList("Ginger"), names(index.search("digestive problems ", 10)));
+        assertEquals(Arrays.asList("Turmeric"), names(index.search("curcumin ", 10)));
+    }
+
+    @Test
+    public void unfinishedLastWordMatchesWhileTyping() {
+        assertEquals(Arrays.asList("Giloy", "Neem"), names(index.search("feve", 10)));
+        // Typed past the stem
+        assertEquals(Arrays.asList("Ginger"), names(index.search("digesti", 10)));
+        // A finished word is not expanded
+        assertTrue(index.search("feve ", 10).isEmpty());
+    }
+
+    @Test
+    public void readdedPlantReplacesItsOldKeywords() {
+        index.add(plant("Neem", "Azadirachta indica", "Dandruff and lice", null, null));
+
+        assertEquals(Arrays.asList("Giloy"), names(index.search("fever ", 10)));
+        assertEquals(Arrays.asList("Neem"), names(index.search("dandruff ", 10)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void unchangedPlantIsNotReindexed() {
+        long bytes = index.getPostingBytes();
+        for (int i = 0; i < 100; i++) {
+            index.add(plant("Neem", "Azadirachta indica", "Skin diseases, fever and dental care",
+                    "Antibacterial, antifungal", "Azadirachtin, Nimbin"));
+        }
+        assertEquals(bytes, index.getPostingBytes());
+        assertEquals(Arrays.asList("Giloy", "Neem"), names(index.search("fever ", 10)));
+    }
+
+    @Test
+    public void retiredDocumentsAreCompactedAway() {
+        long bytes = index.getPostingBytes();
+        for (int i = 0; i < 1000; i++) {
+            index.add(plant("Neem", "Azadirachta indica", "Dandruff and lice, remedy " + i, null, null));
+        }
+        // Never more than one retired document per live one
+        assertTrue("posting bytes " + index.getPostingBytes(), index.getPostingBytes() < 3 * bytes);
+        assertEquals(4, index.size());
+        assertEquals(Arrays.asList("Neem"), names(index.search("dandruff ", 10)));
+        assertEquals(Arrays.asList("Giloy"), names(index.search("fever ", 10)));
+        assertEquals(Arrays.asList("Ginger"), names(index.search("digestive ", 10)));
+    }
+
+    @Test
+    public void postingsAreCompact() {
+        KeywordIndex large = new KeywordIndex();
+        for (int i = 0; i < 10_000; i++) {
+            large.add(plant("Plant " + i, "Genus species" + i, "Fever, cough and digestion",
+                    "Antioxidant", "Compound" + i));
+        }
+        // 50k postings (5 terms per plant); stored as two ints each they would take 400 KB.
+        // Shared terms take a one-byte delta and frequency, unique ones start from the full doc id.
+        long uncompressed = 10_000L * 5 * 8;
+        assertTrue("posting bytes " + large.getPostingBytes(), large.getPostingBytes() * 3 < uncompressed);
+        assertEquals(20, large.search("cough ", 20).size());
+    }
+
+    private static PlantItem plant(String name, String scientific, String uses, String properties,
+                                   String components) {
+        PlantItem plant = new PlantItem(name, scientific, null);
+        plant.setUses(uses);
+        plant.setMedicinalProperties(properties);
+        plant.setChemicalComponents(components);
+        return plant;
+    }
+
+    private static List<String> names(List<PlantItem> plants) {
+        List<String> names = new ArrayList<>();
+        for (PlantItem plant : plants) {
+            names.add(plant.getPlantName());
+        }
+        return names;
+    }
+}
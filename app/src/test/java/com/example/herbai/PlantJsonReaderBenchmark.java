@@ -0,0 +1,199 @@
+package com.example.herbai;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Compares the streaming PlantJsonReader with the previous approach of reading the whole
+ * body into a String and building an org.json tree. Payloads are generated with the key
+ * order the Flask backend uses (sorted), so "results" comes before "success".
+ */
+public class PlantJsonReaderBenchmark {
+    private static final int RESULT_COUNT = 2000;
+    private static final int IMAGES_PER_RESULT = 8;
+    private static final int WARMUP_RUNS = 5;
+    private static final int MEASURED_RUNS = 10;
+
+    @Test
+    public void topResultMatchesOrgJson() throws Exception {
+        byte[] payload = searchPayload(50);
+
+        PlantRepository.SearchResponse streamed = PlantJsonReader.readSearchResponse(buffer(payload), 1);
+        PlantItem expected = PlantRepository.fromJson(
+                new JSONObject(new String(payload, StandardCharsets.UTF_8)).getJSONArray("results").getJSONObject(0));
+
+        assertTrue(streamed.isSuccess());
+        assertEquals(1, streamed.getPlants().size());
+        PlantItem actual = streamed.getPlants().get(0);
+        assertEquals(expected.getPlantName(), actual.getPlantName());
+        assertEquals(expected.getScientificName(), actual.getScientificName());
+        assertEquals(expected.getChemicalComponents(), actual.getChemicalComponents());
+        assertEquals(expected.getConfidence(), actual.getConfidence(), 0.0);
+        assertEquals(expected.getImageUrls(), actual.getImageUrls());
+    }
+
+    @Test
+    public void stopsReadingOnceTheCallerHasEnough() throws Exception {
+        Buffer source = buffer(searchPayload(50));
+        long size = source.size();
+
+        PlantJsonReader.readSearchResponse(source, 1);
+
+        // Most of the body is still unread
+        assertTrue(source.size() > size / 2);
+    }
+
+    @Test
+    public void imageUrlsFollowGalleryPriority() throws Exception {
+        String json = "{\"db_image_urls\":[\"https://db.example/a.jpg\"]," +
+                "\"db_matches\":[{\"image_urls\":[\"https://match.example/b.jpg\"]}]," +
+                "\"results\":[{\"image_urls\":[\"https://result.example/c.jpg\",\"notes.txt\"]}," +
+                "{\"image_urls\":[\"https://other.example/d.jpg\"]}],\"success\":true}";
+
+        assertEquals(Arrays.asList("https://result.example/c.jpg", "https://db.example/a.jpg"),
+                PlantJsonReader.readImageUrls(new Buffer().writeUtf8(json), 2));
+        assertEquals(Arrays.asList("https://result.example/c.jpg", "https://db.example/a.jpg",
+                        "https://match.example/b.jpg"),
+                PlantJsonReader.readImageUrls(new Buffer().writeUtf8(json), 10));
+    }
+
+    @Test
+    public void failedSearchHasNoResults() throws Exception {
+        PlantRepository.SearchResponse response = PlantJsonReader.readSearchResponse(
+                new Buffer().writeUtf8("{\"success\":false,\"error\":\"not found\"}"), 10);
+        assertFalse(response.isSuccess());
+        assertTrue(response.getPlants().isEmpty());
+        assertTrue(PlantJsonReader.readImageUrls(
+                new Buffer().writeUtf8("{\"success\":false}"), 2).isEmpty());
+    }
+
+    @Test
+    public void benchmarkAgainstOrgJson() throws Exception {
+        byte[] payload = searchPayload(RESULT_COUNT);
+        System.out.println("payload: " + RESULT_COUNT + " results, " + payload.length / 1024 + " KB");
+
+        Measurement treeAll = measure("org.json, all results", payload, source -> {
+            JSONArray results = new JSONObject(source.readUtf8()).getJSONArray("results");
+            List<PlantItem> plants = new ArrayList<>();
+            for (int i = 0; i < results.length(); i++) {
+                plants.add(PlantRepository.fromJson(results.getJSONObject(i)));
+            }
+            return plants.size();
+        });
+        Measurement streamAll = measure("streaming, all results", payload,
+                source -> PlantJsonReader.readSearchResponse(source, Integer.MAX_VALUE).getPlants().size());
+
+        Measurement treeTop = measure("org.json, top result", payload, source -> {
+            JSONObject first = new JSONObject(source.readUtf8()).getJSONArray("results").getJSONObject(0);
+            return PlantRepository.fromJson(first) != null ? 1 : 0;
+        });
+        Measurement streamTop = measure("streaming, top result", payload,
+                source -> PlantJsonReader.readSearchResponse(source, 1).getPlants().size());
+
+        Measurement streamImages = measure("streaming, first 2 images", payload,
+                source -> PlantJsonReader.readImageUrls(source, 2).size());
+
+        assertEquals(treeAll.result, streamAll.result);
+        assertEquals(treeTop.result, streamTop.result);
+        assertEquals(2, streamImages.result);
+
+        if (treeTop.allocatedBytes > 0) {
+            assertTrue("streaming all results should allocate less than an org.json tree",
+                    streamAll.allocatedBytes < treeAll.allocatedBytes);
+            assertTrue("early stop should allocate a small fraction of a full tree",
+                    streamTop.allocatedBytes * 10 < treeTop.allocatedBytes);
+        }
+    }
+
+    private interface Parser {
+        int parse(Buffer source) throws Exception;
+    }
+
+    private static final class Measurement {
+        final int result;
+        final long allocatedBytes;
+
+        Measurement(int result, long allocatedBytes) {
+            this.result = result;
+            this.allocatedBytes = allocatedBytes;
+        }
+    }
+
+    private static Measurement measure(String label, byte[] payload, Parser parser) throws Exception {
+        for (int i = 0; i < WARMUP_RUNS; i++) {
+            parser.parse(buffer(payload));
+        }
+
+        int result = 0;
+        long totalNanos = 0;
+        long totalAllocated = 0;
+        for (int i = 0; i < MEASURED_RUNS; i++) {
+            // Filling the buffer stands in for the network and is not measured
+            Buffer source = buffer(payload);
+            long allocatedBefore = allocatedBytes();
+            long start = System.nanoTime();
+            result = parser.parse(source);
+            totalNanos += System.nanoTime() - start;
+            totalAllocated += allocatedBytes() - allocatedBefore;
+        }
+
+        long averageAllocated = totalAllocated / MEASURED_RUNS;
+        System.out.println(String.format("%-28s %7.2f ms  %9d KB allocated",
+                label, totalNanos / 1e6 / MEASURED_RUNS, averageAllocated / 1024));
+        return new Measurement(result, averageAllocated);
+    }
+
+    // Per-thread allocation counter on HotSpot; 0 where unsupported
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (bean instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0;
+    }
+
+    private static Buffer buffer(byte[] payload) {
+        return new Buffer().write(payload);
+    }
+
+    private static byte[] searchPayload(int resultCount) throws Exception {
+        JSONArray results = new JSONArray();
+        for (int i = 0; i < resultCount; i++) {
+            JSONArray images = new JSONArray();
+            for (int j = 0; j < IMAGES_PER_RESULT; j++) {
+                images.put("https://res.cloudinary.com/herbai/image/upload/plant_" + i + "_" + j + ".jpg");
+            }
+            JSONObject plant = new JSONObject();
+            plant.put("chemical_components", new JSONArray(Arrays.asList("Compound A" + i, "Compound B" + i)));
+            plant.put("confidence", 0.5 + (i % 50) / 100.0);
+            plant.put("family", "Family " + (i % 40));
+            plant.put("habitat", "Tropical and subtropical regions, plains and foothills up to 1500 m");
+            plant.put("image_urls", images);
+            plant.put("medicinal_properties", "Anti-inflammatory, antibacterial and antioxidant activity " +
+                    "reported in several traditional systems of medicine, entry " + i);
+            plant.put("plant_name", "Plant " + i);
+            plant.put("scientific_name", "Genus" + i + " species" + i);
+            plant.put("uses", "Leaves used for skin conditions, bark decoction for fever, twigs as toothbrush");
+            results.put(plant);
+        }
+
+        // Appended in sorted key order, as jsonify does
+        String body = "{\"db_image_urls\":[\"https://res.cloudinary.com/herbai/image/upload/db.jpg\"]," +
+                "\"db_matches\":[]," +
+                "\"results\":" + results + "," +
+                "\"success\":true,\"was_generated\":false}";
+        return body.getBytes(StandardCharsets.UTF_8);
+    }
+}
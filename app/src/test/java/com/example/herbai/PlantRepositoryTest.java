@@ -0,0 +1,144 @@
+package com.example.herbai;
+
+import org.json.JSONObject;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class PlantRepositoryTest {
+    private static final String NEEM_SEARCH = "{\"success\":true,\"was_generated\":false,\"results\":[{" +
+            "\"plant_name\":\"Neem\",\"scientific_name\":\"Azadirachta indica\",\"family\":\"Meliaceae\"," +
+            "\"uses\":\"Skin care\",\"habitat\":\"Unknown\",\"chemical_components\":[\"Azadirachtin\",\"Nimbin\"]," +
+            "\"image_urls\":[\"https://example.com/neem.jpg\",\"not-a-url\"]}]}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private File storeDir;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        storeDir = folder.newFolder("plants");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void searchResponseIsNormalized() throws Exception {
+        PlantRepository.SearchResponse response =
+                PlantJsonReader.readSearchResponse(new Buffer().writeUtf8(NEEM_SEARCH), 10);
+
+        assertTrue(response.isSuccess());
+        PlantItem neem = response.getPlants().get(0);
+        assertEquals("Azadirachta indica", neem.getScientificName());
+        assertEquals("Azadirachtin, Nimbin", neem.getChemicalComponents());
+        // "Unknown" from the backend is treated as missing and falls back to the getter default
+        assertTrue(PlantItem.isPlaceholder(neem.getHabitat()));
+        assertEquals(1, neem.getImageUrls().size());
+    }
+
+    @Test
+    public void predictMatchesAndGeneratedDataAreNormalized() throws Exception {
+        List<PlantItem> matches = PlantRepository.parsePredictMatches(new JSONObject(
+                "{\"species\":\"Tulsi\",\"db_matches\":[{\"plant_name\":\"Tulsi\",\"scientific_name\":\"Ocimum tenuiflorum\"}]}"));
+        assertEquals("Ocimum tenuiflorum", matches.get(0).getScientificName());
+
+        PlantItem generated = PlantRepository.parseGeneratedPlant(new JSONObject(
+                "{\"success\":true,\"generated_data\":{\"plant_name\":\"Ginger\",\"scientific_name\":\"Zingiber officinale\"}}"));
+        assertTrue(generated.isAutoGenerated());
+        assertNull(PlantRepository.parseGeneratedPlant(new JSONObject("{\"success\":false}")));
+    }
+
+    @Test
+    public void repeatLookupsNeverTouchTheNetwork() throws Exception {
+        server.enqueue(new MockResponse().setBody(NEEM_SEARCH));
+        PlantRepository repository = newRepository(10);
+
+        assertEquals("Azadirachta indica", repository.fetch("Neem").getScientificName());
+        assertEquals("Azadirachta indica", repository.fetch("neem ").getScientificName());
+        assertEquals("Neem", repository.fetch("AZADIRACHTA  INDICA").getPlantName());
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, repository.getNetworkFetchCount());
+        assertEquals(2, repository.getMemoryHitCount());
+    }
+
+    @Test
+    public void recordsSurviveInTheDiskStore() throws Exception {
+        server.enqueue(new MockResponse().setBody(NEEM_SEARCH));
+        newRepository(10).fetch("Neem");
+
+        // A fresh instance has an empty memory cache, as after process death
+        PlantRepository restarted = newRepository(10);
+        PlantItem neem = restarted.get("Neem");
+
+        assertNotNull(neem);
+        assertEquals("Meliaceae", neem.getFamily());
+        assertEquals("https://example.com/neem.jpg", neem.getImageUrls().get(0));
+        assertEquals(1, restarted.getDiskHitCount());
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void concurrentFetchesShareOneRequest() throws Exception {
+        server.enqueue(new MockResponse().setBody(NEEM_SEARCH).setHeadersDelay(300, TimeUnit.MILLISECONDS));
+        PlantRepository repository = newRepository(10);
+
+        ExecutorService callers = Executors.newFixedThreadPool(3);
+        List<Future<PlantItem>> results = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            results.add(callers.submit(() -> repository.fetch("Neem")));
+        }
+        for (Future<PlantItem> result : results) {
+            assertEquals("Azadirachta indica", result.get(5, TimeUnit.SECONDS).getScientificName());
+        }
+        callers.shutdown();
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, repository.getNetworkFetchCount());
+        assertEquals(2, repository.getCoalescedFetchCount());
+    }
+
+    @Test
+    public void memoryCacheIsBounded() {
+        PlantRepository repository = newRepository(2);
+        repository.put(new PlantItem("A", "Alpha a", null));
+        repository.put(new PlantItem("B", "Beta b", null));
+        repository.get("Alpha a");
+        repository.put(new PlantItem("C", "Gamma c", null));
+
+        // "Beta b" was least recently used, so it is evicted and comes back from disk
+        assertNotNull(repository.get("Alpha a"));
+        assertNotNull(repository.get("Beta b"));
+        assertEquals(1, repository.getDiskHitCount());
+    }
+
+    private PlantRepository newRepository(int maxMemoryEntries) {
+        ApiClient apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+        return new PlantRepository(new PlantStore(storeDir), apiClient, Runnable::run, maxMemoryEntries);
+    }
+}
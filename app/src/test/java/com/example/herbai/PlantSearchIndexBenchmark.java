@@ -0,0 +1,141 @@
+package com.example.herbai;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Keystroke latency of PlantSearchIndex over 50k synthetic plants. Every query is a prefix
+ * of a real name as it would be typed, character by character, plus one misspelled full
+ * name per plant so the trigram path is measured too.
+ *
+ * <p>Latency and heap are printed, not asserted, since they vary with the machine. The
+ * assertions check what the index finds.
+ */
+public class PlantSearchIndexBenchmark {
+    private static final int PLANT_COUNT = 50_000;
+    private static final int TYPED_PLANTS = 300;
+    private static final int RESULT_LIMIT = PlantSearchViewModel.LOCAL_RESULT_LIMIT;
+
+    private static final String[] SYLLABLES = {"ka", "ran", "ji", "tul", "si", "ne", "em", "am", "la",
+            "ki", "bra", "hmi", "ash", "wa", "gan", "dha", "mo", "rin", "ga", "shat", "va", "ri", "gu",
+            "du", "chi", "pip", "pa", "li", "ar", "ju", "na", "hal", "di", "me", "thi", "sar", "pa", "gan"};
+
+    @Test
+    public void keystrokeQueries() {
+        Random random = new Random(42);
+        List<PlantItem> plants = syntheticPlants(random);
+
+        long heapBefore = usedHeap();
+        long buildStart = System.nanoTime();
+        PlantSearchIndex index = new PlantSearchIndex();
+        index.addAll(plants);
+        long buildNanos = System.nanoTime() - buildStart;
+        long heapAfter = usedHeap();
+        assertEquals(PLANT_COUNT, index.size());
+
+        List<String> queries = new ArrayList<>();
+        for (int i = 0; i < TYPED_PLANTS; i++) {
+            String name = plants.get(random.nextInt(PLANT_COUNT)).getPlantName().toLowerCase();
+            for (int length = 1; length <= name.length(); length++) {
+                queries.add(name.substring(0, length));
+            }
+            queries.add(misspell(name, random));
+        }
+
+        // Warm up the JIT on the same mix
+        for (String query : queries) {
+            index.search(query, RESULT_LIMIT);
+        }
+
+        long[] nanos = new long[queries.size()];
+        int withResults = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            long start = System.nanoTime();
+            List<PlantItem> results = index.search(queries.get(i), RESULT_LIMIT);
+            nanos[i] = System.nanoTime() - start;
+            if (!results.isEmpty()) {
+                withResults++;
+            }
+        }
+        Arrays.sort(nanos);
+
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        long p50 = nanos[nanos.length / 2];
+        long p99 = nanos[nanos.length * 99 / 100];
+        System.out.println(String.format("index: %d plants built in %d ms, ~%d MB heap",
+                PLANT_COUNT, buildNanos / 1_000_000, Math.max(0, heapAfter - heapBefore) / (1024 * 1024)));
+        System.out.println(String.format("%d queries: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms, %d with results",
+                queries.size(), total / 1e6 / nanos.length, p50 / 1e6, p99 / 1e6,
+                nanos[nanos.length - 1] / 1e6, withResults));
+
+        // Every prefix of an indexed name must find something
+        assertTrue(withResults >= queries.size() - TYPED_PLANTS);
+    }
+
+    @Test
+    public void misspelledNameStillFindsThePlant() {
+        Random random = new Random(7);
+        List<PlantItem> plants = syntheticPlants(random);
+        PlantSearchIndex index = new PlantSearchIndex();
+        index.addAll(plants);
+
+        int found = 0;
+        for (int i = 0; i < 100; i++) {
+            PlantItem plant = plants.get(random.nextInt(PLANT_COUNT));
+            String typo = misspell(plant.getScientificName().toLowerCase(), random);
+            if (index.search(typo, RESULT_LIMIT).contains(plant)) {
+                found++;
+            }
+        }
+        System.out.println("misspelled scientific names found: " + found + "/100");
+        assertTrue(found >= 90);
+    }
+
+    private static List<PlantItem> syntheticPlants(Random random) {
+        List<PlantItem> plants = new ArrayList<>(PLANT_COUNT);
+        for (int i = 0; i < PLANT_COUNT; i++) {
+            String name = capitalize(word(random, 2, 3)) + (random.nextBoolean() ? " " + capitalize(word(random, 1, 2)) : "");
+            // The index makes the scientific name unique so every plant has its own key
+            String scientific = capitalize(word(random, 2, 4)) + " " + word(random, 2, 3) + i;
+            String family = capitalize(word(random, 2, 2)) + "aceae";
+            plants.add(new PlantItem(name, scientific, family));
+        }
+        return plants;
+    }
+
+    private static String word(Random random, int minSyllables, int maxSyllables) {
+        int count = minSyllables + random.nextInt(maxSyllables - minSyllables + 1);
+        StringBuilder word = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            word.append(SYLLABLES[random.nextInt(SYLLABLES.length)]);
+        }
+        return word.toString();
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+
+    // Drops one letter from the middle, the most common typing slip
+    private static String misspell(String text, Random random) {
+        int position = 1 + random.nextInt(Math.max(1, text.length() - 2));
+        return text.substring(0, position) + text.substring(position + 1);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.herbai;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class PlantSearchIndexTest {
+    private PlantSearchIndex index;
+
+    @Before
+    public void setUp() {
+        index = new PlantSearchIndex();
+        index.add(new PlantItem("Neem", "Azadirachta indica", "Meliaceae"));
+        index.add(new PlantItem("Holy Basil", "Ocimum tenuiflorum", "Lamiaceae"));
+        index.add(new PlantItem("Sweet Basil", "Ocimum basilicum", "Lamiaceae"));
+        index.add(new PlantItem("Indian Gooseberry", "Phyllanthus emblica", "Phyllanthaceae"));
+    }
+
+    @Test
+    public void prefixMatchesNamesAndWords() {
+        assertEquals(Arrays.asList("Neem"), names(index.search("ne", 10)));
+        // A common name starting with the text ranks above the second word of a scientific name
+        assertEquals(Arrays.asList("Indian Gooseberry", "Neem"), names(index.search("Indi", 10)));
+        assertEquals(2, index.search("ocimum", 10).size());
+        assertEquals(2, index.search("lamia", 10).size());
+    }
+
+    @Test
+    public void wholeNamePrefixRanksAboveWordPrefix() {
+        // "Basil" starts "Holy Basil" only at its second word, and matches the family of neither
+        index.add(new PlantItem("Basil", "Ocimum americanum", "Lamiaceae"));
+
+        List<String> results = names(index.search("basil", 10));
+        assertEquals("Basil", results.get(0));
+        assertEquals(3, results.size());
+    }
+
+    @Test
+    public void typosFallBackToTrigramMatches() {
+        assertEquals(Arrays.asList("Neem"), names(index.search("azadiracta", 10)));
+        assertEquals("Indian Gooseberry", names(index.search("goosbery", 10)).get(0));
+        assertTrue(index.search("xylophone", 10).isEmpty());
+    }
+
+    @Test
+    public void addingTheSamePlantAgainReplacesIt() {
+        PlantItem updated = new PlantItem("Neem", "Azadirachta indica", "Meliaceae");
+        updated.setUses("Skin care");
+        index.add(updated);
+
+        assertEquals(4, index.size());
+        List<PlantItem> results = index.search("neem", 10);
+        assertEquals(1, results.size());
+        assertSame(updated, results.get(0));
+    }
+
+    @Test
+    public void renamedPlantLosesItsOldName() {
+        index.add(new PlantItem("Tulsi", "Ocimum tenuiflorum", "Lamiaceae"));
+
+        assertEquals(4, index.size());
+        assertEquals(Arrays.asList("Sweet Basil"), names(index.search("basil", 10)));
+        assertEquals(Arrays.asList("Tulsi"), names(index.search("tuls", 10)));
+        // Still found by the fields that did not change
+        assertEquals(2, index.search("ocimum", 10).size());
+    }
+
+    @Test
+    public void remoteResultsComeFirstWhenMerged() {
+        PlantItem remoteNeem = new PlantItem("Neem", "Azadirachta indica", "Meliaceae");
+        PlantItem remoteTulsi = new PlantItem("Tulsi", "Ocimum tenuiflorum", "Lamiaceae");
+        PlantRepository.SearchResponse remote =
+                new PlantRepository.SearchResponse(true, false, Arrays.asList(remoteTulsi, remoteNeem));
+
+        PlantRepository.SearchResponse merged = PlantSearchViewModel.merge(remote, index.search("ocimum", 10));
+
+        // Holy Basil is the same plant as Tulsi (same scientific name) and is not repeated
+        assertEquals(Arrays.asList("Tulsi", "Neem", "Sweet Basil"), names(merged.getPlants()));
+        assertTrue(merged.isSuccess());
+    }
+
+    private static List<String> names(List<PlantItem> plants) {
+        List<String> names = new ArrayList<>();
+        for (PlantItem plant : plants) {
+            names.add(plant.getPlantName());
+        }
+        return names;
+    }
+}
@@ -0,0 +1,165 @@
+package com.example.herbai;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * What PredictionCache adds in front of an upload: hashing a photo (SHA-256 of a 3 MB file
+ * plus the dHash of its subsampled decode) and a lookup among 10k cached predictions, half
+ * near-duplicates of cached photos and half new ones, plus a restart that reloads them.
+ *
+ * <p>Timings are printed, not asserted: they depend on the machine and whatever else it is
+ * running. The assertions only check that every near-duplicate is found and that the cache
+ * finds a match as close as a plain scan over the same hashes.
+ */
+public class PredictionCacheBenchmark {
+    private static final int ENTRIES = 10_000;
+    private static final int QUERIES = 2_000;
+    private static final int FILE_BYTES = 3 * 1024 * 1024;
+    // A 4000x3000 photo decoded with inSampleSize 32
+    private static final int SAMPLE_WIDTH = 125;
+    private static final int SAMPLE_HEIGHT = 93;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void hashingAndLookup() throws Exception {
+        Random random = new Random(42);
+
+        // Hashing
+        byte[] file = new byte[FILE_BYTES];
+        random.nextBytes(file);
+        int[] sample = PredictionCacheTest.syntheticPhoto(random, SAMPLE_WIDTH, SAMPLE_HEIGHT);
+        for (int i = 0; i < 5; i++) {
+            ImageHash.contentHash(new ByteArrayInputStream(file));
+            ImageHash.dHash(sample, SAMPLE_WIDTH, SAMPLE_HEIGHT);
+        }
+        long[] shaNanos = new long[20];
+        long[] dHashNanos = new long[200];
+        for (int i = 0; i < shaNanos.length; i++) {
+            long start = System.nanoTime();
+            ImageHash.contentHash(new ByteArrayInputStream(file));
+            shaNanos[i] = System.nanoTime() - start;
+        }
+        for (int i = 0; i < dHashNanos.length; i++) {
+            long start = System.nanoTime();
+            ImageHash.dHash(sample, SAMPLE_WIDTH, SAMPLE_HEIGHT);
+            dHashNanos[i] = System.nanoTime() - start;
+        }
+        print("SHA-256 of " + FILE_BYTES / (1024 * 1024) + " MB", shaNanos);
+        print("dHash of " + SAMPLE_WIDTH + "x" + SAMPLE_HEIGHT, dHashNanos);
+
+        // Filling and reloading the cache
+        File directory = folder.newFolder("predictions");
+        PredictionCache cache = new PredictionCache(new PlantStore(directory), ENTRIES, PredictionCache.MAX_DISTANCE);
+        long[] hashes = new long[ENTRIES];
+        long fillStart = System.nanoTime();
+        for (int i = 0; i < ENTRIES; i++) {
+            hashes[i] = random.nextLong();
+            cache.put(new ImageHash.Key(sha("photo" + i), hashes[i]), prediction(i));
+        }
+        long fillNanos = System.nanoTime() - fillStart;
+        long loadStart = System.nanoTime();
+        cache = new PredictionCache(new PlantStore(directory), ENTRIES, PredictionCache.MAX_DISTANCE);
+        assertEquals(ENTRIES, cache.size());
+        long loadNanos = System.nanoTime() - loadStart;
+        System.out.println(String.format("%d entries written in %d ms, reloaded in %d ms",
+                ENTRIES, fillNanos / 1_000_000, loadNanos / 1_000_000));
+
+        // Even queries: a cached photo with a few bits changed; odd: a new photo
+        ImageHash.Key[] queries = new ImageHash.Key[QUERIES];
+        int[] expected = new int[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            if (i % 2 == 0) {
+                expected[i] = random.nextInt(ENTRIES);
+                long hash = hashes[expected[i]];
+                for (int flips = random.nextInt(PredictionCache.MAX_DISTANCE / 2 + 1); flips > 0; flips--) {
+                    hash ^= 1L << random.nextInt(64);
+                }
+                queries[i] = new ImageHash.Key(sha("copy" + i), hash);
+            } else {
+                expected[i] = -1;
+                queries[i] = new ImageHash.Key(sha("new" + i), random.nextLong());
+            }
+        }
+
+        for (ImageHash.Key query : queries) {
+            cache.get(query);
+        }
+
+        long[] cacheNanos = new long[QUERIES];
+        int hits = 0;
+        for (int i = 0; i < QUERIES; i++) {
+            long start = System.nanoTime();
+            JSONObject cached = cache.get(queries[i]);
+            cacheNanos[i] = System.nanoTime() - start;
+
+            // As close as anything a full scan finds; ties may pick another entry
+            int linear = linearNearest(hashes, queries[i].dHash);
+            assertEquals(linear < 0, cached == null);
+            if (cached != null) {
+                int found = Integer.parseInt(cached.getString("species").substring("Species ".length()));
+                assertEquals(ImageHash.distance(queries[i].dHash, hashes[linear]),
+                        ImageHash.distance(queries[i].dHash, hashes[found]));
+            }
+            if (expected[i] >= 0) {
+                assertNotNull(cached);
+                hits++;
+            }
+        }
+        print("cache.get over " + ENTRIES, cacheNanos);
+        System.out.println(hits + " of " + QUERIES / 2 + " near-duplicates found; exact " + cache.getExactHitCount()
+                + ", near " + cache.getNearHitCount() + ", miss " + cache.getMissCount());
+
+        assertEquals(QUERIES / 2, hits);
+    }
+
+    // Index of the closest hash within MAX_DISTANCE, or -1
+    private static int linearNearest(long[] hashes, long hash) {
+        int best = -1;
+        int bestDistance = PredictionCache.MAX_DISTANCE + 1;
+        for (int i = 0; i < hashes.length; i++) {
+            int distance = ImageHash.distance(hash, hashes[i]);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+
+    private static JSONObject prediction(int i) throws Exception {
+        return new JSONObject()
+                .put("species", "Species " + i)
+                .put("confidence", 0.5 + (i % 50) / 100.0)
+                .put("top_predictions", new JSONArray()
+                        .put(new JSONObject().put("species", "Species " + (i + 1)).put("confidence", 0.1)));
+    }
+
+    private static String sha(String text) throws Exception {
+        return PredictionCacheTest.contentHash(text);
+    }
+
+    // Sorts in place
+    private static void print(String label, long[] nanos) {
+        Arrays.sort(nanos);
+        long total = 0;
+        for (long n : nanos) {
+            total += n;
+        }
+        System.out.println(String.format("%s: mean %.3f ms, p50 %.3f ms, p99 %.3f ms, max %.3f ms", label,
+                total / 1e6 / nanos.length, nanos[nanos.length / 2] / 1e6, nanos[nanos.length * 99 / 100] / 1e6,
+                nanos[nanos.length - 1] / 1e6));
+    }
+}
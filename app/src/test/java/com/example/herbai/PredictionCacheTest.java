@@ -0,0 +1,205 @@
+package com.example.herbai;
+
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static com.example.herbai.IdentifierHarness.identifySpecies;
+import static org.junit.Assert.*;
+
+public class PredictionCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void dHashSurvivesNoiseAndResizingButSeparatesPhotos() {
+        Random random = new Random(7);
+        int[] leaf = syntheticPhoto(new Random(1), 128, 96);
+        int[] other = syntheticPhoto(new Random(2), 128, 96);
+
+        long hash = ImageHash.dHash(leaf, 128, 96);
+        // Re-encoded: every channel a little off
+        assertTrue(ImageHash.distance(hash, ImageHash.dHash(addNoise(leaf, 4, random), 128, 96)) <= PredictionCache.MAX_DISTANCE);
+        // Resized to half
+        assertTrue(ImageHash.distance(hash, ImageHash.dHash(halve(leaf, 128, 96), 64, 48)) <= PredictionCache.MAX_DISTANCE);
+        // A different photo
+        assertTrue(ImageHash.distance(hash, ImageHash.dHash(other, 128, 96)) > 2 * PredictionCache.MAX_DISTANCE);
+    }
+
+    @Test
+    public void answersSamePhotoAndNearDuplicateFromCache() throws Exception {
+        File directory = folder.newFolder("predictions");
+        PredictionCache cache = new PredictionCache(new PlantStore(directory), 10, PredictionCache.MAX_DISTANCE);
+        ImageHash.Key neem = new ImageHash.Key(contentHash("neem.jpg"), 0x0f0f_0f0f_0f0f_0f0fL);
+        assertNull(cache.get(neem));
+
+        JSONObject response = new JSONObject()
+                .put("species", "Azadirachta indica")
+                .put("confidence", 0.91)
+                .put("top_predictions", new JSONArray().put(new JSONObject().put("species", "Melia azedarach")))
+                .put("db_matches", new JSONArray().put(new JSONObject().put("plant_name", "Neem")));
+        cache.put(neem, response);
+
+        JSONObject same = cache.get(neem);
+        assertEquals("Azadirachta indica", same.getString("species"));
+        assertEquals(1, same.getJSONArray("top_predictions").length());
+        // Database matches belong in PlantRepository, not here
+        assertFalse(same.has("db_matches"));
+
+        // Re-saved copy: other bytes, hash 3 bits away
+        ImageHash.Key resaved = new ImageHash.Key(contentHash("neem-copy.jpg"), neem.dHash ^ 0b1011);
+        assertEquals("Azadirachta indica", cache.get(resaved).getString("species"));
+        // Unrelated photo
+        assertNull(cache.get(new ImageHash.Key(contentHash("tulsi.jpg"), ~neem.dHash)));
+        assertEquals(1, cache.getExactHitCount());
+        assertEquals(1, cache.getNearHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        // Survives a restart
+        PredictionCache restarted = new PredictionCache(new PlantStore(directory), 10, PredictionCache.MAX_DISTANCE);
+        assertEquals(0.91, restarted.get(neem).getDouble("confidence"), 1e-9);
+    }
+
+    @Test
+    public void evictsOldestAndForgetsTheirHashes() throws Exception {
+        File directory = folder.newFolder("predictions");
+        PredictionCache cache = new PredictionCache(new PlantStore(directory), 3, PredictionCache.MAX_DISTANCE);
+        ImageHash.Key[] keys = new ImageHash.Key[8];
+        for (int i = 0; i < keys.length; i++) {
+            // Far apart: 8 bits per step
+            keys[i] = new ImageHash.Key(contentHash("photo" + i), 0xffL << (8 * i));
+            cache.put(keys[i], new JSONObject().put("species", "Plant " + i));
+        }
+
+        assertEquals(3, cache.size());
+        assertEquals(3, new PlantStore(directory).size());
+        assertNull(cache.get(keys[0]));
+        assertNull(cache.get(new ImageHash.Key(contentHash("copy0"), keys[0].dHash)));
+        assertEquals("Plant 7", cache.get(keys[7]).getString("species"));
+    }
+
+    @Test
+    public void recentUseSurvivesRestart() throws Exception {
+        File directory = folder.newFolder("predictions");
+        PredictionCache cache = new PredictionCache(new PlantStore(directory), 3, PredictionCache.MAX_DISTANCE);
+        ImageHash.Key[] keys = new ImageHash.Key[4];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = new ImageHash.Key(contentHash("photo" + i), 0xffL << (8 * i));
+        }
+        for (int i = 0; i < 3; i++) {
+            cache.put(keys[i], new JSONObject().put("species", "Plant " + i));
+        }
+        // Photo 0 identified again, so photo 1 is now the least recently used
+        assertNotNull(cache.get(keys[0]));
+
+        PredictionCache restarted = new PredictionCache(new PlantStore(directory), 3, PredictionCache.MAX_DISTANCE);
+        restarted.put(keys[3], new JSONObject().put("species", "Plant 3"));
+        assertNull(restarted.get(keys[1]));
+        assertEquals("Plant 0", restarted.get(keys[0]).getString("species"));
+        assertEquals("Plant 2", restarted.get(keys[2]).getString("species"));
+    }
+
+    @Test
+    public void onlyAnswersNamingASpeciesAreCached() throws Exception {
+        PredictionCache cache = new PredictionCache(new PlantStore(folder.newFolder("predictions")), 10,
+                PredictionCache.MAX_DISTANCE);
+        // The same photo, picked four times
+        ImageHash.Key neem = new ImageHash.Key(contentHash("neem.jpg"), 0x0f0f_0f0f_0f0f_0f0fL);
+        MockWebServer server = new MockWebServer();
+        server.enqueue(new MockResponse().setResponseCode(503).setBody("{\"detail\": \"Model not loaded\"}"));
+        server.enqueue(new MockResponse().setBody("{\"confidence\": 0.0}"));
+        server.enqueue(new MockResponse().setBody("{\"confidence\": 0.91, \"species\": \"Azadirachta indica\"}"));
+        server.start();
+        ExecutorService workExecutor = Executors.newSingleThreadExecutor();
+        try {
+            SpeculativeIdentifier identifier = new SpeculativeIdentifier(new OkHttpClient(),
+                    server.url("/predict").toString(),
+                    photoId -> new SpeculativeIdentifier.Upload(
+                            RequestBody.create("jpeg bytes", MediaType.parse("image/jpeg")), photoId, null),
+                    workExecutor, Runnable::run, () -> false, photoId -> neem, cache);
+
+            assertTrue(identifySpecies(identifier, "neem-1").startsWith("failed: "));
+            assertEquals(0, cache.size());
+            // Shown as "no match", but not remembered
+            assertEquals("", identifySpecies(identifier, "neem-2"));
+            assertEquals(0, cache.size());
+
+            assertEquals("Azadirachta indica", identifySpecies(identifier, "neem-3"));
+            assertEquals(1, cache.size());
+            assertEquals("Azadirachta indica", identifySpecies(identifier, "neem-4"));
+            assertEquals(3, server.getRequestCount());
+        } finally {
+            workExecutor.shutdownNow();
+            server.shutdown();
+        }
+    }
+
+    static String contentHash(String text) throws IOException {
+        return ImageHash.contentHash(new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    // Blobs of colour, like leaves against a background
+    static int[] syntheticPhoto(Random random, int width, int height) {
+        double[][] blobs = new double[40][];
+        for (int i = 0; i < blobs.length; i++) {
+            blobs[i] = new double[]{random.nextDouble() * width, random.nextDouble() * height,
+                    4 + random.nextDouble() * width / 8, random.nextDouble() * 80};
+        }
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                double value = 0;
+                for (double[] blob : blobs) {
+                    double dx = x - blob[0];
+                    double dy = y - blob[1];
+                    value += blob[3] * Math.exp(-(dx * dx + dy * dy) / (2 * blob[2] * blob[2]));
+                }
+                int gray = (int) Math.min(255, value);
+                pixels[y * width + x] = 0xff000000 | (gray / 2 << 16) | (gray << 8) | gray / 3;
+            }
+        }
+        return pixels;
+    }
+
+    private static int[] addNoise(int[] pixels, int amount, Random random) {
+        int[] noisy = new int[pixels.length];
+        for (int i = 0; i < pixels.length; i++) {
+            int pixel = pixels[i];
+            int r = clamp(((pixel >> 16) & 0xff) + random.nextInt(2 * amount + 1) - amount);
+            int g = clamp(((pixel >> 8) & 0xff) + random.nextInt(2 * amount + 1) - amount);
+            int b = clamp((pixel & 0xff) + random.nextInt(2 * amount + 1) - amount);
+            noisy[i] = 0xff000000 | (r << 16) | (g << 8) | b;
+        }
+        return noisy;
+    }
+
+    private static int[] halve(int[] pixels, int width, int height) {
+        int[] half = new int[(width / 2) * (height / 2)];
+        for (int y = 0; y < height / 2; y++) {
+            for (int x = 0; x < width / 2; x++) {
+                half[y * (width / 2) + x] = pixels[(2 * y) * width + 2 * x];
+            }
+        }
+        return half;
+    }
+
+    private static int clamp(int value) {
+        return Math.max(0, Math.min(255, value));
+    }
+}
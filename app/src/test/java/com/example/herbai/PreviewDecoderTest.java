@@ -0,0 +1,27 @@
+package com.example.herbai;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PreviewDecoderTest {
+    @Test
+    public void sampleSizeKeepsViewCovered() {
+        // 12 MP photo into a 900x900 view: 4032/4 = 1008 and 3024/4 = 756 would not cover 900
+        assertEquals(2, PreviewDecoder.coverSampleSize(4032, 3024, 900, 900));
+        assertEquals(4, PreviewDecoder.coverSampleSize(4032, 3024, 600, 600));
+        // Smaller than the view: decoded as is
+        assertEquals(1, PreviewDecoder.coverSampleSize(640, 480, 900, 900));
+    }
+
+    @Test
+    public void targetSizeCoversViewWithoutUpscaling() {
+        assertArrayEquals(new int[]{1200, 900}, PreviewDecoder.coverSize(4032, 3024, 900, 900));
+        assertArrayEquals(new int[]{900, 1200}, PreviewDecoder.coverSize(3024, 4032, 900, 900));
+        assertArrayEquals(new int[]{640, 480}, PreviewDecoder.coverSize(640, 480, 900, 900));
+
+        // 48 MB as ARGB at full size, under 5 MB at the view's size
+        int[] size = PreviewDecoder.coverSize(4032, 3024, 900, 900);
+        assertTrue(size[0] * size[1] * 4L < 4032 * 3024 * 4L / 10);
+    }
+}
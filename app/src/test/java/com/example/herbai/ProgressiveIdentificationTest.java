@@ -0,0 +1,173 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+/**
+ * Two-stage identification in SpeculativeIdentifier: the small rendition is uploaded first
+ * and the full one only when the first answer is below the confidence threshold.
+ */
+public class ProgressiveIdentificationTest {
+    private static final int SMALL_BYTES = 30_000;
+    private static final int FULL_BYTES = 250_000;
+    private static final String PHOTO = "neem";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeHerbAiServer backend;
+    private ExecutorService workExecutor;
+    private File smallFile;
+    private File fullFile;
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeHerbAiServer();
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+        workExecutor = Executors.newSingleThreadExecutor();
+        smallFile = randomFile("neem-small.jpg", SMALL_BYTES);
+        fullFile = randomFile("neem.jpg", FULL_BYTES);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        workExecutor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void confidentSmallRenditionIsTheAnswer() throws Exception {
+        backend.setPrediction("neem-small.jpg", "Azadirachta indica", 0.92);
+        SpeculativeIdentifier identifier = newIdentifier();
+
+        IdentifierHarness.Recorder recorder = identify(identifier);
+        assertEquals(Collections.singletonList("first Azadirachta indica 0.92"), recorder.await(1));
+
+        assertEquals(1, backend.getRequestCount("predict"));
+        assertEquals(SMALL_BYTES, backend.getUploadedBytes());
+        assertEquals(1, identifier.getStageOneResolvedCount());
+        assertEquals(1.0, identifier.getStageOneShare(), 1e-9);
+        assertEquals(FULL_BYTES - SMALL_BYTES, identifier.getStageOneBytesSaved());
+        // Neither rendition is left behind
+        assertFalse(smallFile.exists());
+        assertFalse(fullFile.exists());
+    }
+
+    @Test
+    public void lowConfidenceIsRefinedWithFullRendition() throws Exception {
+        backend.setPrediction("neem-small.jpg", "Melia azedarach", 0.55);
+        backend.setPrediction("neem.jpg", "Azadirachta indica", 0.95);
+        SpeculativeIdentifier identifier = newIdentifier();
+
+        IdentifierHarness.Recorder recorder = identify(identifier);
+        assertEquals(Arrays.asList("refining Melia azedarach 0.55", "refined Azadirachta indica 0.95"), recorder.await(2));
+
+        assertEquals(2, backend.getRequestCount("predict"));
+        assertEquals(SMALL_BYTES + FULL_BYTES, backend.getUploadedBytes());
+        assertEquals(1, identifier.getRefinedCount());
+        assertEquals(0.0, identifier.getStageOneShare(), 1e-9);
+        // The small upload was in vain
+        assertEquals(-SMALL_BYTES, identifier.getStageOneBytesSaved());
+        assertFalse(fullFile.exists());
+    }
+
+    @Test
+    public void tapAfterSpeculativeRefinementGetsFinalAnswer() throws Exception {
+        backend.setPrediction("neem-small.jpg", "Melia azedarach", 0.55);
+        backend.setPrediction("neem.jpg", "Azadirachta indica", 0.95);
+        SpeculativeIdentifier identifier = newIdentifier();
+
+        assertTrue(identifier.speculate(PHOTO));
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        // Let the refined answer arrive
+        Thread.sleep(300);
+
+        IdentifierHarness.Recorder recorder = identify(identifier);
+        assertEquals(Collections.singletonList("first Azadirachta indica 0.95"), recorder.await(1));
+        assertEquals(2, backend.getRequestCount("predict"));
+    }
+
+    @Test
+    public void failedRefinementKeepsFirstAnswer() throws Exception {
+        backend.setPrediction("neem-small.jpg", "Melia azedarach", 0.55);
+        // The backend rejects an empty file
+        Files.write(fullFile.toPath(), new byte[0]);
+        SpeculativeIdentifier identifier = newIdentifier();
+
+        IdentifierHarness.Recorder recorder = identify(identifier);
+        List<String> events = recorder.await(2);
+        assertEquals("refining Melia azedarach 0.55", events.get(0));
+        assertTrue(events.get(1), events.get(1).startsWith("refinement failed"));
+    }
+
+    @Test
+    public void failedSmallRenditionFallsBackToFullOne() throws Exception {
+        backend.setPredictionFailing("neem-small.jpg");
+        backend.setPrediction("neem.jpg", "Azadirachta indica", 0.95);
+        SpeculativeIdentifier identifier = newIdentifier();
+
+        IdentifierHarness.Recorder recorder = identify(identifier);
+        assertEquals(Collections.singletonList("first Azadirachta indica 0.95"), recorder.await(1));
+        assertEquals(2, backend.getRequestCount("predict"));
+        assertFalse(smallFile.exists());
+        assertFalse(fullFile.exists());
+    }
+
+    @Test
+    public void thresholdDecidesWhatIsConfident() throws Exception {
+        backend.setPrediction("neem-small.jpg", "Melia azedarach", 0.55);
+        SpeculativeIdentifier identifier = newIdentifier();
+        identifier.setConfidenceThreshold(0.5);
+
+        assertEquals(Collections.singletonList("first Melia azedarach 0.55"), identify(identifier).await(1));
+        assertEquals(1, backend.getRequestCount("predict"));
+    }
+
+    // Each photo comes as neem-small.jpg with neem.jpg behind it
+    private SpeculativeIdentifier newIdentifier() {
+        return IdentifierHarness.newIdentifier(server,
+                photoId -> {
+                    SpeculativeIdentifier.Upload full = new SpeculativeIdentifier.Upload(
+                            RequestBody.create(fullFile, MediaType.parse("image/jpeg")), fullFile.getName(), fullFile);
+                    return new SpeculativeIdentifier.Upload(RequestBody.create(smallFile, MediaType.parse("image/jpeg")),
+                            smallFile.getName(), smallFile, full);
+                },
+                workExecutor, () -> false);
+    }
+
+    private File randomFile(String name, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        new Random(size).nextBytes(bytes);
+        File file = folder.newFile(name);
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    private static IdentifierHarness.Recorder identify(SpeculativeIdentifier identifier) {
+        return IdentifierHarness.identify(identifier, PHOTO);
+    }
+}
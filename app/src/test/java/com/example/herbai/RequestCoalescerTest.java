@@ -0,0 +1,165 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.Call;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class RequestCoalescerTest {
+    private MockWebServer server;
+    private ApiClient apiClient;
+    private final ExecutorService callers = Executors.newFixedThreadPool(8);
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                return new MockResponse()
+                        .setBody("{\"path\":\"" + request.getPath() + "\"}")
+                        .setHeadersDelay(500, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        callers.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void identicalRequestsShareOneNetworkCall() throws Exception {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            results.add(callers.submit(() -> body(get("smart_search/Neem"))));
+        }
+        for (Future<String> result : results) {
+            assertEquals("{\"path\":\"/smart_search/Neem\"}", result.get(5, TimeUnit.SECONDS));
+        }
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(4, apiClient.getCoalescer().getCoalescedCount());
+    }
+
+    @Test
+    public void differentRequestsAreNotCoalesced() throws Exception {
+        Future<String> neem = callers.submit(() -> body(get("smart_search/Neem")));
+        Future<String> tulsi = callers.submit(() -> body(get("smart_search/Tulsi")));
+        Call post = apiClient.getSearchClient().newCall(new Request.Builder()
+                .url(apiClient.url("smart_search/Neem"))
+                .post(RequestBody.create("{}", MediaType.get("application/json")))
+                .build());
+        Future<String> posted = callers.submit(() -> body(post));
+
+        neem.get(5, TimeUnit.SECONDS);
+        tulsi.get(5, TimeUnit.SECONDS);
+        posted.get(5, TimeUnit.SECONDS);
+        assertEquals(3, server.getRequestCount());
+        assertEquals(0, apiClient.getCoalescer().getCoalescedCount());
+    }
+
+    @Test
+    public void cancellingAFollowerLeavesTheLeaderRunning() throws Exception {
+        Future<String> leader = callers.submit(() -> body(get("smart_search/Neem")));
+        Thread.sleep(100);
+        Call followerCall = get("smart_search/Neem");
+        Future<String> follower = callers.submit(() -> body(followerCall));
+        Thread.sleep(100);
+
+        followerCall.cancel();
+        try {
+            follower.get(5, TimeUnit.SECONDS);
+            fail("cancelled follower should not get a response");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+
+        assertEquals("{\"path\":\"/smart_search/Neem\"}", leader.get(5, TimeUnit.SECONDS));
+        assertEquals(1, server.getRequestCount());
+    }
+
+    @Test
+    public void cancellingTheLeaderDoesNotFailFollowers() throws Exception {
+        Call leaderCall = get("smart_search/Neem");
+        Future<String> leader = callers.submit(() -> body(leaderCall));
+        Thread.sleep(100);
+        Future<String> follower = callers.submit(() -> body(get("smart_search/Neem")));
+        Thread.sleep(100);
+
+        leaderCall.cancel();
+
+        assertEquals("{\"path\":\"/smart_search/Neem\"}", follower.get(5, TimeUnit.SECONDS));
+        try {
+            leader.get(5, TimeUnit.SECONDS);
+            fail("cancelled leader should not get a response");
+        } catch (java.util.concurrent.ExecutionException e) {
+            assertTrue(e.getCause() instanceof IOException);
+        }
+    }
+
+    @Test
+    public void singleFlightSharesFailures() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>();
+        Callable<String> failing = () -> flight.execute("neem", () -> {
+            sleep(300);
+            throw new IOException("backend down");
+        });
+
+        Future<String> first = callers.submit(failing);
+        Thread.sleep(50);
+        Future<String> second = callers.submit(failing);
+
+        for (Future<String> result : new Future[]{first, second}) {
+            try {
+                result.get(5, TimeUnit.SECONDS);
+                fail();
+            } catch (java.util.concurrent.ExecutionException e) {
+                assertEquals("backend down", e.getCause().getMessage());
+            }
+        }
+        assertEquals(1, flight.getCoalescedCount());
+    }
+
+    private Call get(String path) {
+        return apiClient.getSearchClient().newCall(new Request.Builder().url(apiClient.url(path)).build());
+    }
+
+    private static String body(Call call) throws IOException {
+        try (Response response = call.execute()) {
+            return response.body().string();
+        }
+    }
+
+    private static void sleep(long ms) {
+        try {
+            Thread.sleep(ms);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+
+import static org.junit.Assert.*;
+
+public class ResultStoreTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private File storeDir;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+        storeDir = folder.newFolder("plants");
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void tokenIsShortAndResolvesToThePlant() throws Exception {
+        ResultStore store = new ResultStore(newRepository(), Runnable::run);
+        PlantItem neem = new PlantItem("Neem", "Azadirachta indica", "Meliaceae");
+
+        String token = store.put(neem);
+
+        assertEquals("plant:azadirachta indica", token);
+        assertSame(neem, store.get(token));
+        assertSame(neem, load(store, token));
+    }
+
+    @Test
+    public void plantsSurviveProcessDeathThroughTheRepository() throws Exception {
+        PlantItem neem = new PlantItem("Neem", "Azadirachta indica", "Meliaceae");
+        neem.setUses(longText());
+        String token = new ResultStore(newRepository(), Runnable::run).put(neem);
+
+        // New store and repository with empty memory, as after the process was killed
+        ResultStore restored = new ResultStore(newRepository(), Runnable::run);
+        assertNull(restored.get(token));
+        PlantItem plant = load(restored, token);
+
+        assertNotNull(plant);
+        assertEquals("Meliaceae", plant.getFamily());
+        assertTrue(longText().equals(plant.getUses()));
+        assertEquals(0, server.getRequestCount());
+    }
+
+    @Test
+    public void unnamedPlantsGetSessionTokens() throws Exception {
+        ResultStore store = new ResultStore(newRepository(), Runnable::run);
+        PlantItem unnamed = new PlantItem();
+
+        String token = store.put(unnamed);
+
+        assertTrue(token.startsWith(ResultStore.SESSION_PREFIX));
+        assertSame(unnamed, load(store, token));
+        assertNull(load(new ResultStore(newRepository(), Runnable::run), token));
+    }
+
+    @Test
+    public void imageListsAreHandedOverByToken() throws Exception {
+        ResultStore store = new ResultStore(newRepository(), Runnable::run);
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 200; i++) {
+            urls.add("https://images.example/neem/" + i + ".jpg");
+        }
+
+        String token = store.putImageUrls(urls);
+        urls.clear();
+
+        assertTrue(token.startsWith(ResultStore.IMAGES_PREFIX));
+        assertEquals(200, store.getImageUrls(token).size());
+        assertNull(new ResultStore(newRepository(), Runnable::run).getImageUrls(token));
+        assertNull(store.getImageUrls(null));
+    }
+
+    private PlantItem load(ResultStore store, String token) throws InterruptedException {
+        AtomicReference<PlantItem> result = new AtomicReference<>();
+        CountDownLatch loaded = new CountDownLatch(1);
+        store.load(token, plant -> {
+            result.set(plant);
+            loaded.countDown();
+        });
+        assertTrue(loaded.await(5, TimeUnit.SECONDS));
+        return result.get();
+    }
+
+    private PlantRepository newRepository() {
+        ApiClient apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+        return new PlantRepository(new PlantStore(storeDir), apiClient, Runnable::run,
+                PlantRepository.DEFAULT_MEMORY_ENTRIES);
+    }
+
+    private static String longText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            text.append("Leaves used for skin conditions, bark decoction for fever. ");
+        }
+        return text.toString().trim();
+    }
+}
@@ -0,0 +1,164 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class SearchControllerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private SearchController controller;
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                String name = request.getPath().substring(request.getPath().lastIndexOf('/') + 1);
+                MockResponse response = new MockResponse().setBody(searchBody(name));
+                // "slow" answers long after anything typed later
+                if (name.startsWith("slow")) {
+                    response.setBodyDelay(2, TimeUnit.SECONDS);
+                }
+                return response;
+            }
+        });
+        server.start();
+
+        ApiClient apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+        PlantRepository repository = new PlantRepository(new PlantStore(folder.newFolder("plants")),
+                apiClient, Runnable::run, 50);
+        controller = new SearchController(apiClient, repository, Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void newQueryCancelsPreviousCallAndOnlyLatestIsDelivered() throws Exception {
+        CountDownLatch latest = new CountDownLatch(1);
+        assertTrue(controller.search("slow", "smart_search/slow", listener(null)));
+        // Wait until the first request is actually on the wire before superseding it
+        assertNotNull(server.takeRequest(1, TimeUnit.SECONDS));
+        assertTrue(controller.search("neem", "smart_search/neem", listener(latest)));
+
+        assertTrue(latest.await(5, TimeUnit.SECONDS));
+        // Give a leaked slow response time to show up if the call was not cancelled
+        Thread.sleep(2500);
+
+        assertEquals(1, delivered.size());
+        assertEquals("neem:Neem", delivered.get(0));
+        assertEquals(1, controller.getCancelledCount());
+    }
+
+    @Test
+    public void sameQueryIsNotSearchedTwice() throws Exception {
+        CountDownLatch done = new CountDownLatch(1);
+        assertTrue(controller.search("neem", "smart_search/neem", listener(done)));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+
+        // Same text after a no-op edit: neither a request nor a second delivery
+        assertFalse(controller.search("neem", "smart_search/neem", listener(null)));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, delivered.size());
+    }
+
+    @Test
+    public void resultArrivingAfterNewerSearchIsDropped() throws Exception {
+        // Deliveries are held back, as they would be behind a busy main thread
+        List<Runnable> mainQueue = new CopyOnWriteArrayList<>();
+        ApiClient apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+        PlantRepository repository = new PlantRepository(new PlantStore(folder.newFolder("held")),
+                apiClient, Runnable::run, 50);
+        SearchController held = new SearchController(apiClient, repository, mainQueue::add);
+
+        held.search("tulsi", "smart_search/tulsi", listener(null));
+        waitFor(() -> mainQueue.size() == 1);
+        held.search("neem", "smart_search/neem", listener(null));
+        waitFor(() -> mainQueue.size() == 2);
+
+        for (Runnable runnable : mainQueue) {
+            runnable.run();
+        }
+
+        assertEquals(1, delivered.size());
+        assertEquals("neem:Neem", delivered.get(0));
+        assertEquals(1, held.getStaleCount());
+        // tulsi had already finished, so there was nothing to cancel
+        assertEquals(0, held.getCancelledCount());
+    }
+
+    @Test
+    public void cancelDropsSearchInFlight() throws Exception {
+        controller.search("slow", "smart_search/slow", listener(null));
+        assertNotNull(server.takeRequest(1, TimeUnit.SECONDS));
+        controller.cancel();
+
+        Thread.sleep(2500);
+
+        assertTrue(delivered.isEmpty());
+        assertEquals(1, controller.getCancelledCount());
+        // After cancel the same query can be searched again
+        assertTrue(controller.search("slow", "smart_search/slow", listener(null)));
+    }
+
+    private SearchController.Listener listener(CountDownLatch done) {
+        return new SearchController.Listener() {
+            @Override
+            public void onSearchResult(String query, PlantRepository.SearchResponse response) {
+                delivered.add(query + ":" + response.getPlants().get(0).getPlantName());
+                if (done != null) {
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void onSearchFailed(String query, String message) {
+                delivered.add(query + ":failed " + message);
+                if (done != null) {
+                    done.countDown();
+                }
+            }
+        };
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.isMet()) {
+            assertTrue("Timed out", System.currentTimeMillis() < deadline);
+            Thread.sleep(10);
+        }
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+
+    private static String searchBody(String name) {
+        String plantName = name.isEmpty() ? name : Character.toUpperCase(name.charAt(0)) + name.substring(1);
+        return "{\"success\":true,\"was_generated\":false,\"results\":[{\"plant_name\":\"" + plantName + "\"}]}";
+    }
+}
@@ -0,0 +1,174 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import okhttp3.OkHttpClient;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class SearchPagerTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+    private FakeHerbAiServer backend;
+    private SearchController controller;
+
+    @Before
+    public void setUp() throws IOException {
+        backend = new FakeHerbAiServer();
+        for (int i = 0; i < 50; i++) {
+            backend.addPlant(String.format("Herb %02d", i), String.format("Herba specimen%02d", i));
+        }
+        server = new MockWebServer();
+        server.setDispatcher(backend);
+        server.start();
+
+        ApiClient apiClient = new ApiClient(server.url("/").toString(), new OkHttpClient.Builder());
+        PlantRepository repository = new PlantRepository(new PlantStore(folder.newFolder("plants")),
+                apiClient, Runnable::run, 50);
+        controller = new SearchController(apiClient, repository, Runnable::run);
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void pagesThroughKeywordResultsWithServerCursor() throws Exception {
+        SearchPager pager = new SearchPager(20, 5, 5);
+        SearchPager.PageRequest first = pager.firstRequest();
+        PlantRepository.SearchResponse response = await(controller::search, "herba",
+                pager.pathFor("search_by_keywords/herba", first));
+        assertTrue(pager.addPage(first, response));
+        assertEquals(20, pager.getWindow().getPlants().size());
+        assertTrue(pager.hasMoreAfter());
+
+        // Nowhere near the end yet
+        assertNull(pager.requestFor(0, 10));
+
+        while (pager.hasMoreAfter()) {
+            SearchPager.PageRequest next = pager.requestFor(0, pager.getWindow().getPlants().size() - 1);
+            assertNotNull(next);
+            assertTrue(pager.addPage(next, await(controller::loadPage, "herba",
+                    pager.pathFor("search_by_keywords/herba", next))));
+        }
+
+        List<PlantItem> plants = pager.getWindow().getPlants();
+        assertEquals(50, plants.size());
+        assertEquals("Herb 00", plants.get(0).getPlantName());
+        assertEquals("Herb 49", plants.get(49).getPlantName());
+        assertNull(pager.getWindow().getNextCursor());
+
+        assertEquals(3, backend.getRequestCount("search_by_keywords"));
+        RecordedRequest firstRequest = server.takeRequest();
+        assertEquals("/search_by_keywords/herba?offset=0&limit=20", firstRequest.getPath());
+        assertEquals("c20", server.takeRequest().getRequestUrl().queryParameter("cursor"));
+    }
+
+    @Test
+    public void windowDropsOldPagesAndReloadsThemWhenScrollingBack() {
+        SearchPager pager = new SearchPager(10, 3, 2);
+        SearchPager.PageRequest request = pager.firstRequest();
+        for (int page = 0; page < 5; page++) {
+            assertTrue(pager.addPage(request, page(page * 10, 10, "c" + (page + 1) * 10)));
+            request = pager.requestFor(0, 29);
+        }
+
+        // Pages 2, 3 and 4 are in memory
+        List<PlantItem> window = pager.getWindow().getPlants();
+        assertEquals(30, window.size());
+        assertEquals("Herb 20", window.get(0).getPlantName());
+        assertTrue(pager.hasMoreBefore());
+
+        // Back at the top of the window: page 1 comes back and page 4 is dropped
+        SearchPager.PageRequest previous = pager.requestFor(1, 8);
+        assertNotNull(previous);
+        assertEquals(10, previous.offset);
+        assertTrue(pager.addPage(previous, page(10, 10, "c20")));
+        window = pager.getWindow().getPlants();
+        assertEquals("Herb 10", window.get(0).getPlantName());
+        assertEquals("Herb 39", window.get(window.size() - 1).getPlantName());
+
+        // Scrolling down again asks for page 4 with the cursor page 3 returned
+        SearchPager.PageRequest next = pager.requestFor(25, 29);
+        assertEquals(40, next.offset);
+        assertEquals("c40", next.cursor);
+        // Loading the same dropped page twice is ignored
+        assertFalse(pager.addPage(previous, page(10, 10, "c20")));
+    }
+
+    @Test
+    public void stalePagesAreRejectedAndEmptyPageEndsResults() {
+        SearchPager pager = new SearchPager(10, 3, 2);
+        SearchPager.PageRequest first = pager.firstRequest();
+        assertTrue(pager.addPage(first, page(0, 10, "c10")));
+
+        SearchPager.PageRequest next = pager.requestFor(0, 9);
+        // A page for an offset that does not continue the window
+        assertFalse(pager.addPage(new SearchPager.PageRequest(30, "c30", false), page(30, 10, "c40")));
+
+        assertTrue(pager.addPage(next, new PlantRepository.SearchResponse(true, false, new ArrayList<>(), "c10")));
+        assertFalse(pager.hasMoreAfter());
+        assertNull(pager.requestFor(0, 9));
+    }
+
+    @Test
+    public void backendWithoutPagingIsOnePage() {
+        SearchPager pager = new SearchPager(20, 5, 5);
+        SearchPager.PageRequest first = pager.firstRequest();
+        // The server ignores the paging parameters and sends everything without a cursor
+        assertTrue(pager.addPage(first, page(0, 50, null)));
+
+        assertEquals(50, pager.getWindow().getPlants().size());
+        assertFalse(pager.hasMoreAfter());
+        assertNull(pager.requestFor(40, 49));
+    }
+
+    private interface Search {
+        boolean start(String query, String path, SearchController.Listener listener);
+    }
+
+    private static PlantRepository.SearchResponse await(Search search, String query, String path)
+            throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(1);
+        AtomicReference<PlantRepository.SearchResponse> result = new AtomicReference<>();
+        assertTrue(search.start(query, path, new SearchController.Listener() {
+            @Override
+            public void onSearchResult(String query, PlantRepository.SearchResponse response) {
+                result.set(response);
+                done.countDown();
+            }
+
+            @Override
+            public void onSearchFailed(String query, String message) {
+                done.countDown();
+            }
+        }));
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertNotNull("search failed", result.get());
+        return result.get();
+    }
+
+    private static PlantRepository.SearchResponse page(int offset, int size, String nextCursor) {
+        List<PlantItem> plants = new ArrayList<>();
+        for (int i = offset; i < offset + size; i++) {
+            plants.add(new PlantItem(String.format("Herb %02d", i), String.format("Herba specimen%02d", i), null));
+        }
+        return new PlantRepository.SearchResponse(true, false, plants, nextCursor);
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static org.junit.Assert.*;
+
+public class SearchResponseCacheTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private MockWebServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.start();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.shutdown();
+    }
+
+    @Test
+    public void freshEntryIsServedWithoutNetwork() throws Exception {
+        SearchResponseCache cache = newCache(600, 3600);
+        ApiClient apiClient = newApiClient(cache);
+        server.enqueue(new MockResponse().setBody("{\"plant\":\"Neem\"}"));
+
+        assertEquals("{\"plant\":\"Neem\"}", get(apiClient, "smart_search/Neem"));
+        assertEquals("{\"plant\":\"Neem\"}", get(apiClient, "smart_search/Neem"));
+
+        assertEquals(1, server.getRequestCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(1, cache.getHitCount());
+    }
+
+    @Test
+    public void staleEntryIsServedThenRevalidatedWithEtag() throws Exception {
+        // Zero freshness: every entry is immediately stale but still inside the stale window
+        SearchResponseCache cache = newCache(0, 3600);
+        ApiClient apiClient = newApiClient(cache);
+        server.enqueue(new MockResponse().setHeader("ETag", "\"v1\"").setBody("{\"plant\":\"Tulsi\"}"));
+        server.enqueue(new MockResponse().setResponseCode(304).setHeader("ETag", "\"v1\""));
+
+        get(apiClient, "search_by_keywords/fever");
+        assertEquals("{\"plant\":\"Tulsi\"}", get(apiClient, "search_by_keywords/fever"));
+
+        server.takeRequest();
+        RecordedRequest revalidation = server.takeRequest(5, TimeUnit.SECONDS);
+        assertNotNull("stale hit should trigger a background revalidation", revalidation);
+        assertEquals("\"v1\"", revalidation.getHeader("If-None-Match"));
+
+        waitFor(() -> cache.getRevalidatedCount() == 1);
+        assertEquals(1, cache.getStaleHitCount());
+    }
+
+    @Test
+    public void offlineServesLastGoodResponse() throws Exception {
+        // Nothing is fresh or within the stale window, so the second call must hit the network
+        SearchResponseCache cache = newCache(0, 0);
+        ApiClient apiClient = newApiClient(cache);
+        server.enqueue(new MockResponse().setBody("{\"plant\":\"Aloe\"}"));
+        get(apiClient, "smart_search/Aloe");
+
+        server.shutdown();
+
+        assertEquals("{\"plant\":\"Aloe\"}", get(apiClient, "smart_search/Aloe"));
+        assertEquals(1, cache.getOfflineHitCount());
+    }
+
+    @Test
+    public void serverErrorFallsBackToLastGoodResponse() throws Exception {
+        SearchResponseCache cache = newCache(0, 0);
+        ApiClient apiClient = newApiClient(cache);
+        server.enqueue(new MockResponse().setBody("{\"plant\":\"Ginger\"}"));
+        server.enqueue(new MockResponse().setResponseCode(503));
+
+        get(apiClient, "smart_search/Ginger");
+        assertEquals("{\"plant\":\"Ginger\"}", get(apiClient, "smart_search/Ginger"));
+        assertEquals(1, cache.getOfflineHitCount());
+    }
+
+    @Test
+    public void otherEndpointsAreNotCached() {
+        Request status = new Request.Builder().url(server.url("/status")).build();
+        Request predict = new Request.Builder().url(server.url("/predict")).post(okhttp3.RequestBody.create(new byte[0])).build();
+        Request search = new Request.Builder().url(server.url("/smart_search/Neem")).build();
+
+        assertFalse(SearchResponseCache.isCacheable(status));
+        assertFalse(SearchResponseCache.isCacheable(predict));
+        assertTrue(SearchResponseCache.isCacheable(search));
+    }
+
+    private SearchResponseCache newCache(int freshSeconds, int staleSeconds) throws IOException {
+        return new SearchResponseCache(folder.newFolder(), 1024 * 1024, freshSeconds, staleSeconds);
+    }
+
+    private ApiClient newApiClient(SearchResponseCache cache) {
+        return new ApiClient(server.url("/").toString(), new OkHttpClient.Builder(), cache);
+    }
+
+    private static String get(ApiClient apiClient, String path) throws IOException {
+        Request request = new Request.Builder().url(apiClient.url(path)).build();
+        try (Response response = apiClient.getSearchClient().newCall(request).execute()) {
+            return response.body().string();
+        }
+    }
+
+    private static void waitFor(Condition condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.isMet() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        assertTrue(condition.isMet());
+    }
+
+    private interface Condition {
+        boolean isMet();
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.herbai;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.Call;
+import okhttp3.EventListener;
+import okhttp3.MediaType;
+import okhttp3.OkHttpClient;
+import okhttp3.RequestBody;
+import okhttp3.mockwebserver.Dispatcher;
+import okhttp3.mockwebserver.MockResponse;
+import okhttp3.mockwebserver.MockWebServer;
+import okhttp3.mockwebserver.RecordedRequest;
+
+import static com.example.herbai.IdentifierHarness.identifySpecies;
+import static org.junit.Assert.*;
+
+/**
+ * Speculative and cold taps against a /predict that takes PREDICT_MS to answer.
+ */
+public class SpeculativeIdentifierTest {
+    private static final long PREDICT_MS = 400;
+
+    private MockWebServer server;
+    private ExecutorService workExecutor;
+    private final AtomicInteger predictRequests = new AtomicInteger();
+    private final AtomicBoolean metered = new AtomicBoolean();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new MockWebServer();
+        server.setDispatcher(new Dispatcher() {
+            @Override
+            public MockResponse dispatch(RecordedRequest request) {
+                predictRequests.incrementAndGet();
+                // The species is the uploaded file's name
+                String body = request.getBody().readUtf8();
+                String species = body.replaceAll("(?s).*filename=\"([^\"]+)\".*", "$1");
+                return new MockResponse()
+                        .setBody("{\"confidence\": 0.9, \"species\": \"" + species + "\"}")
+                        .setHeadersDelay(PREDICT_MS, TimeUnit.MILLISECONDS);
+            }
+        });
+        server.start();
+        workExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        workExecutor.shutdownNow();
+        server.shutdown();
+    }
+
+    @Test
+    public void speculatedAnswerIsReadyAtTheTap() throws Exception {
+        // Counts down once a /predict call has been answered and read
+        CountDownLatch answered = new CountDownLatch(2);
+        OkHttpClient client = new OkHttpClient.Builder()
+                .eventListener(new EventListener() {
+                    @Override
+                    public void callEnd(Call call) {
+                        answered.countDown();
+                    }
+                })
+                .build();
+        SpeculativeIdentifier identifier = new SpeculativeIdentifier(client, server.url("/predict").toString(),
+                SpeculativeIdentifierTest::upload, workExecutor, Runnable::run, metered::get);
+
+        // Without speculation the tap waits for the whole round trip
+        assertEquals("neem", identifySpecies(identifier, "neem"));
+        assertEquals(1, identifier.getColdStats().getCount());
+
+        // Picked, and the answer is in before the tap
+        assertTrue(identifier.speculate("tulsi"));
+        // The cold neem upload, then the speculative tulsi one
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+        assertTrue(answered.await(5, TimeUnit.SECONDS));
+        assertEquals("tulsi", identifySpecies(identifier, "tulsi"));
+
+        assertEquals(1, identifier.getSpeculativeStats().getCount());
+        // The tap did not count as a cold one
+        assertEquals(1, identifier.getColdStats().getCount());
+        assertEquals(2, predictRequests.get());
+    }
+
+    @Test
+    public void tapJoinsUploadInFlight() throws Exception {
+        SpeculativeIdentifier identifier = newIdentifier();
+        assertTrue(identifier.speculate("neem"));
+        // Uploaded, the answer is still on its way
+        assertNotNull(server.takeRequest(5, TimeUnit.SECONDS));
+
+        assertEquals("neem", identifySpecies(identifier, "neem"));
+        assertEquals(1, predictRequests.get());
+        assertEquals(1, identifier.getSpeculativeStats().getCount());
+        assertEquals(0, identifier.getColdStats().getCount());
+    }
+
+    @Test
+    public void newSelectionCancelsPreviousAttempt() throws Exception {
+        SpeculativeIdentifier identifier = newIdentifier();
+        assertTrue(identifier.speculate("neem"));
+        Thread.sleep(50);
+        assertTrue(identifier.speculate("tulsi"));
+
+        // Only the latest photo is answered
+        assertEquals("tulsi", identifySpecies(identifier, "tulsi"));
+        assertEquals(1, identifier.getSpeculativeStats().getCount());
+    }
+
+    @Test
+    public void meteredNetworkWaitsForTheTap() throws Exception {
+        metered.set(true);
+        SpeculativeIdentifier identifier = newIdentifier();
+        assertFalse(identifier.speculate("neem"));
+        Thread.sleep(100);
+        assertEquals(0, predictRequests.get());
+
+        assertEquals("neem", identifySpecies(identifier, "neem"));
+        assertEquals(1, identifier.getColdStats().getCount());
+    }
+
+    @Test
+    public void budgetLimitsSpeculationsPerWindow() {
+        SpeculativeIdentifier.Budget budget = new SpeculativeIdentifier.Budget(2, 1000);
+        assertTrue(budget.tryAcquire(0));
+        assertTrue(budget.tryAcquire(10));
+        assertFalse(budget.tryAcquire(500));
+        // The first one has left the window
+        assertTrue(budget.tryAcquire(1000));
+        assertFalse(budget.tryAcquire(1005));
+    }
+
+    // Uploads are named after the photo, and the species echoes the name
+    private SpeculativeIdentifier newIdentifier() {
+        return IdentifierHarness.newIdentifier(server, SpeculativeIdentifierTest::upload, workExecutor, metered::get);
+    }
+
+    private static SpeculativeIdentifier.Upload upload(String photoId) {
+        return new SpeculativeIdentifier.Upload(
+                RequestBody.create("jpeg bytes", MediaType.parse("image/jpeg")), photoId, null);
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.herbai;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TiledImageZoomTest {
+    // A 4032x3024 photo fitted into a 1080x1920 view: the base bitmap is 1080 wide
+    private static final int SOURCE_WIDTH = 4032;
+    private static final int SOURCE_HEIGHT = 3024;
+    private static final int BASE_WIDTH = 1080;
+    private static final int VIEW_WIDTH = 1080;
+    private static final int VIEW_HEIGHT = 1920;
+
+    @Test
+    public void noTileUntilZoomedPastTheBaseBitmap() {
+        // Fitted: 1080x810, centred vertically
+        assertNull(TiledImageZoom.visibleTile(SOURCE_WIDTH, SOURCE_HEIGHT, BASE_WIDTH,
+                0, 555, 1080, 1365, VIEW_WIDTH, VIEW_HEIGHT));
+        // An image no larger than the base bitmap never needs tiles
+        assertNull(TiledImageZoom.visibleTile(1000, 750, 1000, -500, 0, 2500, 1500, VIEW_WIDTH, VIEW_HEIGHT));
+    }
+
+    @Test
+    public void zoomedInDecodesOnlyTheVisiblePart() {
+        // 3x zoom, panned so the centre of the image is on screen: 3240x2430 drawn at (-1080, -255)
+        TiledImageZoom.Tile tile = TiledImageZoom.visibleTile(SOURCE_WIDTH, SOURCE_HEIGHT, BASE_WIDTH,
+                -1080, -255, 2160, 2175, VIEW_WIDTH, VIEW_HEIGHT);
+        assertNotNull(tile);
+        float scale = 3240f / SOURCE_WIDTH;
+        // The middle third horizontally; vertically what lies between 0 and 1920 on screen
+        assertEquals(1344, tile.left);
+        assertEquals(2688, tile.right);
+        assertEquals(255 / scale, tile.top, 1);
+        assertEquals((1920 + 255) / scale, tile.bottom, 1);
+        // 1.24 source pixels per screen pixel: no subsampling, the tile is drawn at (0, 0)
+        assertEquals(1, tile.sampleSize);
+        assertEquals(0f, tile.screenLeft, 0.5f);
+        assertEquals(0f, tile.screenTop, 1f);
+
+        long tilePixels = (long) (tile.right - tile.left) * (tile.bottom - tile.top) / (tile.sampleSize * tile.sampleSize);
+        long wholePixels = (long) SOURCE_WIDTH * SOURCE_HEIGHT;
+        // About a quarter of the photo
+        assertTrue(tilePixels * 3 < wholePixels);
+    }
+
+    @Test
+    public void hugeImagesAreSubsampledToScreenResolution() {
+        // 16000x12000 scan zoomed to 2x of a 1080 wide fit: 4 source pixels per screen pixel
+        TiledImageZoom.Tile tile = TiledImageZoom.visibleTile(16000, 12000, 1080,
+                0, 0, 2160 * 2, 1620 * 2, VIEW_WIDTH, VIEW_HEIGHT);
+        assertNotNull(tile);
+        assertEquals(2, tile.sampleSize);
+        int tileWidth = (tile.right - tile.left) / tile.sampleSize;
+        // At least one tile pixel per screen pixel, at most two
+        assertTrue(tileWidth >= VIEW_WIDTH && tileWidth <= 2 * VIEW_WIDTH);
+    }
+}